@@ -0,0 +1,138 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.api;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class gives read-only random access to the data of a BLOB as returned by
+ * {@link BlobStore#map(net.sf.mmm.util.data.api.id.Id)}. Implementations for the local file-system map the BLOB into
+ * memory so the data can be read in place without any copy. As a {@link ByteBuffer} is limited to 2GB, the BLOB is
+ * split into {@link #getSegment(int) segments} of {@link #SEGMENT_SIZE} bytes.<br>
+ * <b>ATTENTION:</b><br>
+ * A {@link BlobMapping} has to be {@link #close() closed} after use so the underlying memory mapping is released
+ * deterministically instead of lingering until garbage collection. After the {@link BlobMapping} has been
+ * {@link #close() closed}, {@link ByteBuffer}s obtained from it must not be accessed anymore.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+public class BlobMapping implements AutoCloseable {
+
+  /** The size of a {@link #getSegment(int) segment} (except the last one) in bytes. */
+  public static final int SEGMENT_SIZE = 1 << 30;
+
+  private static final int SEGMENT_SHIFT = 30;
+
+  private final long size;
+
+  private final ByteBuffer[] segments;
+
+  private volatile boolean closed;
+
+  /**
+   * The constructor.
+   *
+   * @param size - see {@link #getSize()}.
+   * @param segments the {@link #getSegment(int) segments}. All except the last one have to have a capacity of
+   *        {@link #SEGMENT_SIZE}.
+   */
+  public BlobMapping(long size, ByteBuffer[] segments) {
+    super();
+    this.size = size;
+    this.segments = segments;
+  }
+
+  /**
+   * @return the size of the BLOB in bytes.
+   */
+  public long getSize() {
+
+    return this.size;
+  }
+
+  /**
+   * @return the number of {@link #getSegment(int) segments}.
+   */
+  public int getSegmentCount() {
+
+    return this.segments.length;
+  }
+
+  /**
+   * @param index the index of the requested segment in the range from {@code 0} to {@link #getSegmentCount()}-1.
+   * @return a new read-only {@link ByteBuffer} view on the segment with its own position and limit. Segment
+   *         {@code i} starts at the offset {@code i * }{@link #SEGMENT_SIZE} of the BLOB.
+   */
+  public ByteBuffer getSegment(int index) {
+
+    checkOpen();
+    return this.segments[index].asReadOnlyBuffer();
+  }
+
+  /**
+   * @return a new read-only {@link ByteBuffer} view on the entire BLOB.
+   * @throws IllegalStateException if the BLOB is larger than {@link #SEGMENT_SIZE} so {@link #getSegment(int)} has to
+   *         be used.
+   */
+  public ByteBuffer asByteBuffer() {
+
+    if (this.segments.length != 1) {
+      throw new IllegalStateException("BLOB of " + this.size + " bytes has " + this.segments.length + " segments.");
+    }
+    return getSegment(0);
+  }
+
+  /**
+   * @param position the offset in the BLOB.
+   * @return the byte at the given {@code position}.
+   */
+  public byte get(long position) {
+
+    checkOpen();
+    if ((position < 0) || (position >= this.size)) {
+      throw new IndexOutOfBoundsException(Long.toString(position));
+    }
+    return this.segments[(int) (position >>> SEGMENT_SHIFT)].get((int) (position & (SEGMENT_SIZE - 1)));
+  }
+
+  /**
+   * @return {@code true} if this {@link BlobMapping} has been {@link #close() closed}, {@code false} otherwise.
+   */
+  public boolean isClosed() {
+
+    return this.closed;
+  }
+
+  private void checkOpen() {
+
+    if (this.closed) {
+      throw new IllegalStateException("BlobMapping has been closed.");
+    }
+  }
+
+  @Override
+  public void close() {
+
+    if (this.closed) {
+      return;
+    }
+    synchronized (this) {
+      if (this.closed) {
+        return;
+      }
+      this.closed = true;
+    }
+    release();
+  }
+
+  /**
+   * Called once when this {@link BlobMapping} is {@link #close() closed}. Override to release the underlying
+   * resources.
+   */
+  protected void release() {
+
+    // nothing to do by default
+  }
+
+}
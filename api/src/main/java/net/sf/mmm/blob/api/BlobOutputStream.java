@@ -0,0 +1,51 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.api;
+
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+import net.sf.mmm.util.data.api.id.Id;
+import net.sf.mmm.util.resource.api.DataResource;
+
+/**
+ * This is an {@link OutputStream} to write a new BLOB to a {@link BlobStore}. When the stream is {@link #close()
+ * closed}, the BLOB is saved and its {@link #getId() ID} becomes available. If the producer of the data fails, call
+ * {@link #abort()} instead so the incomplete BLOB gets discarded.
+ *
+ * @see BlobStore#openForWrite()
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+public abstract class BlobOutputStream extends OutputStream {
+
+  /**
+   * The constructor.
+   */
+  public BlobOutputStream() {
+    super();
+  }
+
+  /**
+   * @return the {@link Id} to uniquely identify the saved BLOB or {@code null} if this stream has not yet been
+   *         {@link #close() closed}.
+   */
+  public abstract Id<DataResource> getId();
+
+  /**
+   * Discards the data written so far. A subsequent call of {@link #close()} has no effect.
+   */
+  public abstract void abort();
+
+  /**
+   * @return a {@link WritableByteChannel} view of this stream. {@link WritableByteChannel#close() Closing} the channel
+   *         will {@link #close() close} this stream.
+   */
+  public WritableByteChannel asChannel() {
+
+    return Channels.newChannel(this);
+  }
+
+}
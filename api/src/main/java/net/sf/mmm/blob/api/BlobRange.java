@@ -0,0 +1,81 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.api;
+
+/**
+ * This is a simple immutable range of bytes within a BLOB.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+public final class BlobRange {
+
+  private final long start;
+
+  private final long end;
+
+  /**
+   * The constructor.
+   *
+   * @param start - see {@link #getStart()}.
+   * @param end - see {@link #getEnd()}.
+   */
+  public BlobRange(long start, long end) {
+    super();
+    if ((start < 0) || (end < start)) {
+      throw new IllegalArgumentException(start + "-" + end);
+    }
+    this.start = start;
+    this.end = end;
+  }
+
+  /**
+   * @return the offset of the first byte in this range (inclusive).
+   */
+  public long getStart() {
+
+    return this.start;
+  }
+
+  /**
+   * @return the offset after the last byte in this range (exclusive).
+   */
+  public long getEnd() {
+
+    return this.end;
+  }
+
+  /**
+   * @return the number of bytes in this range.
+   */
+  public long getLength() {
+
+    return this.end - this.start;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+
+    if (obj == this) {
+      return true;
+    }
+    if ((obj == null) || (obj.getClass() != getClass())) {
+      return false;
+    }
+    BlobRange other = (BlobRange) obj;
+    return (this.start == other.start) && (this.end == other.end);
+  }
+
+  @Override
+  public int hashCode() {
+
+    return Long.hashCode(this.start) ^ Long.hashCode(this.end);
+  }
+
+  @Override
+  public String toString() {
+
+    return this.start + "-" + this.end;
+  }
+
+}
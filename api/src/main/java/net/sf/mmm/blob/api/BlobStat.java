@@ -0,0 +1,102 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.api;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * This class contains the metadata of a BLOB as returned by {@link BlobStore#stat(net.sf.mmm.util.data.api.id.Id)}.
+ * It can be retrieved without opening the BLOB.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+public final class BlobStat {
+
+  private final long size;
+
+  private final String hash;
+
+  private final Instant creationTime;
+
+  private final int referenceCount;
+
+  /**
+   * The constructor.
+   *
+   * @param size - see {@link #getSize()}.
+   * @param hash - see {@link #getHash()}.
+   * @param creationTime - see {@link #getCreationTime()}.
+   * @param referenceCount - see {@link #getReferenceCount()}.
+   */
+  public BlobStat(long size, String hash, Instant creationTime, int referenceCount) {
+    super();
+    this.size = size;
+    this.hash = hash;
+    this.creationTime = creationTime;
+    this.referenceCount = referenceCount;
+  }
+
+  /**
+   * @return the size of the BLOB in bytes.
+   */
+  public long getSize() {
+
+    return this.size;
+  }
+
+  /**
+   * @return the hash of the content of the BLOB as hexadecimal {@link String} or {@code null} if not available (e.g.
+   *         for a store that is not de-duplicating).
+   */
+  public String getHash() {
+
+    return this.hash;
+  }
+
+  /**
+   * @return the {@link Instant} when the BLOB was created or {@code null} if not available.
+   */
+  public Instant getCreationTime() {
+
+    return this.creationTime;
+  }
+
+  /**
+   * @return the number of references to the physical BLOB. Will be {@code 1} for stores that do not count
+   *         references.
+   */
+  public int getReferenceCount() {
+
+    return this.referenceCount;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+
+    if (obj == this) {
+      return true;
+    }
+    if ((obj == null) || (obj.getClass() != getClass())) {
+      return false;
+    }
+    BlobStat other = (BlobStat) obj;
+    return (this.size == other.size) && Objects.equals(this.hash, other.hash)
+        && Objects.equals(this.creationTime, other.creationTime) && (this.referenceCount == other.referenceCount);
+  }
+
+  @Override
+  public int hashCode() {
+
+    return Objects.hash(Long.valueOf(this.size), this.hash, this.creationTime, Integer.valueOf(this.referenceCount));
+  }
+
+  @Override
+  public String toString() {
+
+    return "size=" + this.size + ",hash=" + this.hash + ",created=" + this.creationTime + ",references="
+        + this.referenceCount;
+  }
+
+}
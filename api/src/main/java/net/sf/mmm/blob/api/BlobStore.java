@@ -2,11 +2,29 @@
  * http://www.apache.org/licenses/LICENSE-2.0 */
 package net.sf.mmm.blob.api;
 
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
 import net.sf.mmm.util.data.api.id.Id;
 import net.sf.mmm.util.data.base.id.StringVersionId;
 import net.sf.mmm.util.exception.api.ObjectNotFoundException;
+import net.sf.mmm.util.io.api.IoMode;
 import net.sf.mmm.util.io.api.RuntimeIoException;
 import net.sf.mmm.util.resource.api.DataResource;
+import net.sf.mmm.util.resource.base.FileResource;
 import net.sf.mmm.util.resource.base.UnavailableResource;
 
 /**
@@ -33,11 +51,180 @@ public interface BlobStore {
    * @param blob the {@link DataResource} to save. Has to be fresh such that {@link DataResource#openStream()} ensures
    *        to provide an untouched stream where no bytes may already have been consumed. For
    *        {@link net.sf.mmm.util.resource.base.StreamResource} that may be used here in web-context this has to be
-   *        ensured by the caller of this method.
+   *        ensured by the caller of this method. If its {@link DataResource#getSize() size} is known, implementations
+   *        may use it as hint and reject the BLOB if the data does not match that size.
    * @return the {@link Id} to uniquely identify the saved BLOB.
    */
   Id<DataResource> save(DataResource blob);
 
+  /**
+   * Saves a {@link DataResource} as new BLOB in this store that expires after the given time-to-live. An expired BLOB
+   * is {@link #delete(Id) deleted} automatically in the background. As expiry is tracked in coarse time buckets, the
+   * BLOB may remain available for the duration of such bucket after it expired.
+   *
+   * @param blob the {@link DataResource} to save (see {@link #save(DataResource)}).
+   * @param ttl the time-to-live after which the BLOB expires. Has to be positive.
+   * @return the {@link Id} to uniquely identify the saved BLOB.
+   * @throws UnsupportedOperationException if this {@link BlobStore} does not support expiry.
+   */
+  default Id<DataResource> save(DataResource blob, Duration ttl) {
+
+    throw new UnsupportedOperationException("save with ttl");
+  }
+
+  /**
+   * Reads ahead the BLOBs with the given {@link Id}s asynchronously so that subsequent {@link #load(Id) loads} find
+   * their data in a cache (e.g. the page cache of the operating system). This is only a hint: {@link Id}s of BLOBs that
+   * do not exist or can not be read are ignored.<br>
+   * The default implementation does nothing.
+   *
+   * @param ids the {@link Id}s of the BLOBs that will be read soon in the order they will be read.
+   * @return the {@link CompletableFuture} that completes when all BLOBs have been read ahead.
+   *         {@link CompletableFuture#cancel(boolean) Cancelling} it stops to read ahead the remaining BLOBs.
+   */
+  default CompletableFuture<Void> prefetch(Collection<? extends Id<DataResource>> ids) {
+
+    return CompletableFuture.completedFuture(null);
+  }
+
+  /**
+   * Saves the given {@link File} as new BLOB in this store and takes over its ownership. Afterwards the {@link File}
+   * does not exist anymore at its original location. Implementations may therefore move the {@link File} into the
+   * store instead of copying its data.<br>
+   * The default implementation {@link #save(DataResource) saves} the {@link File} and deletes it afterwards.
+   *
+   * @param file the {@link File} to save. Must not be modified or deleted by the caller while this method runs.
+   * @return the {@link Id} to uniquely identify the saved BLOB.
+   */
+  default Id<DataResource> ingest(File file) {
+
+    Id<DataResource> id = save(new FileResource(file));
+    file.delete();
+    return id;
+  }
+
+  /**
+   * Opens a {@link BlobOutputStream} to write a new BLOB. This is an alternative to {@link #save(DataResource)} for
+   * producers that generate the data of the BLOB. The BLOB is saved when the stream is {@link BlobOutputStream#close()
+   * closed} and its {@link Id} is then available via {@link BlobOutputStream#getId()}.<br>
+   * The default implementation buffers the data in a temporary file. Implementations should override this method to
+   * avoid that extra copy.
+   *
+   * @return the new {@link BlobOutputStream}.
+   */
+  default BlobOutputStream openForWrite() {
+
+    File tempFile;
+    OutputStream out;
+    try {
+      tempFile = File.createTempFile("blob", null);
+      out = new FileOutputStream(tempFile);
+    } catch (IOException e) {
+      throw new RuntimeIoException(e, IoMode.OPEN);
+    }
+    return new BlobOutputStream() {
+
+      private Id<DataResource> id;
+
+      private boolean closed;
+
+      @Override
+      public void write(int b) throws IOException {
+
+        out.write(b);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+
+        out.write(b, off, len);
+      }
+
+      @Override
+      public void flush() throws IOException {
+
+        out.flush();
+      }
+
+      @Override
+      public Id<DataResource> getId() {
+
+        return this.id;
+      }
+
+      @Override
+      public void abort() {
+
+        if (!this.closed) {
+          this.closed = true;
+          try {
+            out.close();
+          } catch (IOException e) {
+            // ignore as the data is discarded anyhow
+          } finally {
+            tempFile.delete();
+          }
+        }
+      }
+
+      @Override
+      public void close() throws IOException {
+
+        if (this.closed) {
+          return;
+        }
+        this.closed = true;
+        try {
+          out.close();
+          this.id = ingest(tempFile);
+        } finally {
+          tempFile.delete();
+        }
+      }
+    };
+  }
+
+  /**
+   * Begins a new {@link BlobUpload} to save a (large) BLOB in multiple parts that can be written in parallel and
+   * resumed after failures.
+   *
+   * @return the new {@link BlobUpload}.
+   * @throws UnsupportedOperationException if this {@link BlobStore} does not support {@link BlobUpload}s.
+   */
+  default BlobUpload beginUpload() {
+
+    throw new UnsupportedOperationException("beginUpload");
+  }
+
+  /**
+   * @param uploadId the {@link BlobUpload#getId() ID} of a {@link BlobUpload} that has been {@link #beginUpload()
+   *        begun} before.
+   * @return the {@link BlobUpload} to resume.
+   * @throws ObjectNotFoundException if no such {@link BlobUpload} exists (e.g. if it has already been committed,
+   *         aborted or expired).
+   * @throws UnsupportedOperationException if this {@link BlobStore} does not support {@link BlobUpload}s.
+   */
+  default BlobUpload resumeUpload(String uploadId) throws ObjectNotFoundException {
+
+    throw new UnsupportedOperationException("resumeUpload");
+  }
+
+  /**
+   * Saves a {@link DataResource} as BLOB in this store under the given {@link Id}. Unlike {@link #save(DataResource)}
+   * the {@link Id} is not created by this store but has been created before by a {@link BlobStore} of the same type
+   * (e.g. a replica). This allows to replicate, repair, migrate or restore BLOBs while keeping their {@link Id}s stable.
+   *
+   * @param id the {@link Id} of the BLOB to restore.
+   * @param blob the {@link DataResource} with the data of the BLOB. Has to be fresh (see {@link #save(DataResource)}).
+   * @return {@code true} if the BLOB has been restored, {@code false} if a BLOB with the given {@link Id} already
+   *         exists in this store (idempotent).
+   * @throws UnsupportedOperationException if this {@link BlobStore} does not support to restore BLOBs.
+   */
+  default boolean restore(Id<DataResource> id, DataResource blob) {
+
+    throw new UnsupportedOperationException("restore");
+  }
+
   /**
    * Loads a BLOB as {@link DataResource} from this store.
    *
@@ -72,6 +259,83 @@ public interface BlobStore {
    */
   DataResource find(Id<DataResource> id);
 
+  /**
+   * Provides read-only random access to the data of a BLOB. Implementations for the local file-system map the BLOB into
+   * memory so it can be read in place without copying it.<br>
+   * The default implementation reads the BLOB into heap memory.
+   *
+   * @param id is the {@link Id} pointing to the requested BLOB.
+   * @return the {@link BlobMapping} of the BLOB. Has to be {@link BlobMapping#close() closed} after use.
+   * @throws ObjectNotFoundException in case no BLOB exits for the given {@link Id}.
+   */
+  default BlobMapping map(Id<DataResource> id) throws ObjectNotFoundException {
+
+    DataResource blob = load(id);
+    long size = blob.getSize();
+    int count = Math.max(1, (int) ((size + BlobMapping.SEGMENT_SIZE - 1) / BlobMapping.SEGMENT_SIZE));
+    ByteBuffer[] segments = new ByteBuffer[count];
+    try (InputStream in = blob.openStream()) {
+      long remaining = size;
+      for (int i = 0; i < count; i++) {
+        byte[] data = new byte[(int) Math.min(remaining, BlobMapping.SEGMENT_SIZE)];
+        int offset = 0;
+        while (offset < data.length) {
+          int read = in.read(data, offset, data.length - offset);
+          if (read < 0) {
+            throw new EOFException(blob.getUri());
+          }
+          offset += read;
+        }
+        segments[i] = ByteBuffer.wrap(data).asReadOnlyBuffer();
+        remaining -= data.length;
+      }
+    } catch (IOException e) {
+      throw new RuntimeIoException(e, IoMode.READ);
+    }
+    return new BlobMapping(size, segments);
+  }
+
+  /**
+   * Determines the {@link BlobStat metadata} of a BLOB without opening it.<br>
+   * The default implementation uses {@link #find(Id)}. Implementations should override this method to read the
+   * metadata more efficiently.
+   *
+   * @param id is the {@link Id} pointing to the requested BLOB.
+   * @return the {@link BlobStat} of the BLOB or {@code null} if no BLOB exits for the given {@link Id}.
+   */
+  default BlobStat stat(Id<DataResource> id) {
+
+    DataResource blob = find(id);
+    if (!blob.isAvailable()) {
+      return null;
+    }
+    Date modified = blob.getLastModificationDate();
+    Instant creationTime = null;
+    if (modified != null) {
+      creationTime = modified.toInstant();
+    }
+    return new BlobStat(blob.getSize(), null, creationTime, 1);
+  }
+
+  /**
+   * Bulk variant of {@link #stat(Id)}.
+   *
+   * @param ids the {@link Collection} with the {@link Id}s of the requested BLOBs.
+   * @return the {@link Map} with the given {@link Id}s (in the same order) mapped to their {@link BlobStat}. Will not
+   *         contain {@link Id}s of BLOBs that do not exist.
+   */
+  default Map<Id<DataResource>, BlobStat> stat(Collection<? extends Id<DataResource>> ids) {
+
+    Map<Id<DataResource>, BlobStat> map = new LinkedHashMap<>(ids.size() * 4 / 3 + 1);
+    for (Id<DataResource> id : ids) {
+      BlobStat stat = stat(id);
+      if (stat != null) {
+        map.put(id, stat);
+      }
+    }
+    return map;
+  }
+
   /**
    * Deletes the BLOB with the given {@link Id} from this store.
    *
@@ -83,6 +347,42 @@ public interface BlobStore {
    */
   boolean delete(Id<DataResource> id);
 
+  /**
+   * @return a lazily evaluated {@link Stream} of the {@link Id}s of all BLOBs in this store.
+   * @throws UnsupportedOperationException if this {@link BlobStore} does not support listing.
+   * @see #ids(String)
+   */
+  default Stream<Id<DataResource>> ids() {
+
+    return ids(null);
+  }
+
+  /**
+   * Lists the {@link Id}s of the BLOBs in this store. The {@link Stream} is evaluated lazily so the store can be
+   * traversed with constant memory and may be {@link Stream#parallel() parallel} to traverse it concurrently. It is
+   * weakly consistent: BLOBs saved or deleted during the traversal may or may not be included.
+   *
+   * @param prefix the prefix of the {@link Object#toString() string representation} of the {@link Id}s to list. May
+   *        be {@code null} or empty to list all {@link Id}s.
+   * @return a lazily evaluated {@link Stream} of the {@link Id}s of the BLOBs in this store that start with the given
+   *         {@code prefix}.
+   * @throws UnsupportedOperationException if this {@link BlobStore} does not support listing.
+   */
+  default Stream<Id<DataResource>> ids(String prefix) {
+
+    throw new UnsupportedOperationException("ids");
+  }
+
+  /**
+   * @return {@code true} if this {@link BlobStore} derives the {@link Id} of a BLOB only from its content so saving the
+   *         same data always results in the same {@link Id} (e.g. a de-duplicating store using the hash as {@link Id}),
+   *         {@code false} otherwise (default).
+   */
+  default boolean isContentAddressed() {
+
+    return false;
+  }
+
   /**
    * Allows safe de-serialization of the {@link Object#toString() string representation} of an {@link Id} from this
    * {@link BlobStore}.
@@ -0,0 +1,59 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.api;
+
+import java.io.InputStream;
+import java.util.List;
+
+import net.sf.mmm.util.data.api.id.Id;
+import net.sf.mmm.util.resource.api.DataResource;
+
+/**
+ * This is the interface for a session to upload a BLOB in multiple parts. Unlike {@link BlobStore#save(DataResource)}
+ * the parts may be {@link #write(long, InputStream) written} in any order and in parallel (e.g. from multiple
+ * connections of the same client). If a connection breaks, the upload can be {@link BlobStore#resumeUpload(String)
+ * resumed} and only the missing {@link #getReceivedRanges() ranges} have to be sent again.
+ *
+ * @see BlobStore#beginUpload()
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+public interface BlobUpload {
+
+  /**
+   * @return the unique identifier of this upload session. Can be used to {@link BlobStore#resumeUpload(String) resume}
+   *         this upload.
+   */
+  String getId();
+
+  /**
+   * Writes a part of the BLOB. This method is thread-safe and may be called concurrently for disjoint parts.
+   *
+   * @param offset the position within the BLOB where to write the part.
+   * @param data the {@link InputStream} with the data of the part. Will be read until its end but NOT be closed.
+   * @return the number of bytes that have been written.
+   */
+  long write(long offset, InputStream data);
+
+  /**
+   * @return the {@link List} of the {@link BlobRange}s that have been received so far. Adjacent or overlapping ranges
+   *         are merged and the list is sorted by {@link BlobRange#getStart() start}.
+   */
+  List<BlobRange> getReceivedRanges();
+
+  /**
+   * Completes this upload and saves the BLOB in the {@link BlobStore} just like {@link BlobStore#save(DataResource)}.
+   *
+   * @return the {@link Id} to uniquely identify the saved BLOB.
+   * @throws IllegalStateException if the {@link #getReceivedRanges() received ranges} do not form a single range
+   *         starting at {@code 0}.
+   */
+  Id<DataResource> commit();
+
+  /**
+   * Aborts this upload and discards all data received so far.
+   */
+  void abort();
+
+}
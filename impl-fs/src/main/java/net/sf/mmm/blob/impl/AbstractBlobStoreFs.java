@@ -6,14 +6,61 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.inject.Inject;
 
+import org.slf4j.Logger;
+
+import net.sf.mmm.blob.api.BlobMapping;
+import net.sf.mmm.blob.api.BlobOutputStream;
+import net.sf.mmm.blob.api.BlobStat;
 import net.sf.mmm.blob.api.BlobStore;
+import net.sf.mmm.blob.api.BlobUpload;
 import net.sf.mmm.util.component.base.AbstractLoggableComponent;
 import net.sf.mmm.util.data.api.id.Id;
+import net.sf.mmm.util.exception.api.ObjectNotFoundException;
+import net.sf.mmm.util.exception.api.ValueOutOfRangeException;
 import net.sf.mmm.util.file.api.FileCreationFailedException;
 import net.sf.mmm.util.file.api.FileUtil;
 import net.sf.mmm.util.file.base.FileUtilImpl;
@@ -24,6 +71,7 @@ import net.sf.mmm.util.io.base.StreamUtilImpl;
 import net.sf.mmm.util.lang.api.StringUtil;
 import net.sf.mmm.util.lang.base.StringUtilImpl;
 import net.sf.mmm.util.resource.api.DataResource;
+import net.sf.mmm.util.resource.api.ResourceNotAvailableException;
 import net.sf.mmm.util.resource.base.FileResource;
 import net.sf.mmm.util.resource.base.UnavailableResource;
 
@@ -35,19 +83,29 @@ import net.sf.mmm.util.resource.base.UnavailableResource;
  * <li>It is not scalable (you would need to write to a remote filesystem to cluster the store what would cause other
  * problems). If you want to have a scalable {@link BlobStore} use a different implementation.</li>
  * <li>It is not (fully) transactional. Files are initially written to a temporary income folder before being moved to
- * their final destination to allow a minimal TX support. That income folder is cleaned on startup. However this
+ * their final destination to allow a minimal TX support. Each non-atomic operation is recorded in an
+ * {@link IntentJournal} so only the operations interrupted by a crash are reconciled on startup. However this
  * approach can not lead to reliable TX support. If you want to have a highly concurrent {@link BlobStore} use a
  * different implementation.</li>
  * </ul>
+ * The store can be striped across multiple {@link BlobStoreFsConfigProperties#getDirectories() directories} (e.g. one
+ * per disc) what are represented as {@link BlobVolume}s. By default each BLOB is placed on the {@link BlobVolume}
+ * determined from its {@link BlobId#getPartition() partition} via rendezvous hashing so no lookup table is required and
+ * adding a further directory only relocates a fraction of the BLOBs. A BLOB is found on any {@link BlobVolume} so stores
+ * may also {@link #selectDataVolume(String, BlobVolume) keep} it on the {@link BlobVolume} it has been written to.<br>
+ * BLOBs can be {@link #forTenant(String) saved for a tenant} what charges them to the {@link TenantUsage} of that
+ * tenant and enforces its {@link BlobStoreQuotaConfigProperties quotas}.<br>
  * To summarize: The implementations provided with {@code mmm-blob-impl-fs} are fine to build smaller systems like a
  * home server for personal or family usage. They are also simple and fast. Further they allow you to directly use
  * (read) the data from the store directly (e.g. create symlinks to your personal directories). However, for
- * professional usage with many concurrent users you shall <b>never</b> choose this implementation.
+ * professional usage with many concurrent users you shall <b>never</b> choose this implementation.<br>
+ * The store has to be {@link #close() closed} when it is no longer used to stop its background threads and to release
+ * its files.
  *
  * @author hohwille
  * @since 1.0.0
  */
-public abstract class AbstractBlobStoreFs extends AbstractLoggableComponent implements BlobStore {
+public abstract class AbstractBlobStoreFs extends AbstractLoggableComponent implements BlobStore, AutoCloseable {
 
   /**
    * {@link File#getName() Name} of the {@link File#isDirectory() folder} for the {@link #getIncomeDirectory() income
@@ -61,28 +119,92 @@ public abstract class AbstractBlobStoreFs extends AbstractLoggableComponent impl
    */
   static final String FOLDER_DATA = "data";
 
+  /**
+   * {@link File#getName() Name} of the {@link File#isDirectory() folder} for the {@link ExpiryIndex} in the root
+   * directory of the first {@link BlobVolume}.
+   */
+  static final String FOLDER_EXPIRY = ".expiry";
+
+  /**
+   * {@link File#getName() Name} of the {@link File#isFile() file} for the {@link IntentJournal} in the root directory
+   * of the first {@link BlobVolume}.
+   */
+  static final String FILE_JOURNAL = ".journal";
+
+  /**
+   * {@link File#getName() Name} of the {@link File#isFile() file} for the checkpoint of the {@link QuotaLedger} in the
+   * root directory of the first {@link BlobVolume}.
+   */
+  static final String FILE_QUOTA = ".quota";
+
+  /**
+   * {@link File#getName() Name} of the {@link File#isFile() file} next to the {@link #FILE_BLOB BLOB file} containing
+   * the name of the tenant it is charged to.
+   */
+  static final String FILE_TENANT = "tenant";
+
   /** Generic {@link File#getName() name} of the {@link File#isFile() file} of a BLOB. */
   static final String FILE_BLOB = "blob";
 
+  private static final ThreadLocal<ByteBuffer> PREFETCH_BUFFER = ThreadLocal
+      .withInitial(() -> ByteBuffer.allocateDirect(256 * 1024));
+
+  private static final int MAX_RENAME_ATTEMPTS = 3;
+
+  private static final int MAX_PARTITION_ATTEMPTS = 64;
+
   private BlobStoreFsConfigProperties config;
 
+  private BlobStoreIoConfigProperties ioConfig;
+
+  private BlobStoreQuotaConfigProperties quotaConfig;
+
+  private IoScheduler ioScheduler;
+
   private FileUtil fileUtil;
 
   private StreamUtil streamUtil;
 
   private StringUtil stringUtil;
 
-  private File rootDirectory;
+  private List<BlobVolume> volumes;
+
+  private PartitionGuard partitionGuard;
+
+  private Function<String, BlobVolume> commitLocator;
+
+  private Predicate<String> partitionFilter;
+
+  private BlobStore owner;
+
+  private ExpiryIndex expiryIndex;
 
-  private File incomeDirectory;
+  private ScheduledExecutorService reaper;
 
-  private File dataDirectory;
+  private volatile boolean closed;
+
+  private ExecutorService prefetcher;
+
+  private ScheduledExecutorService pruner;
+
+  private final Queue<File> pruneQueue;
+
+  private final Map<String, BlobUploadImplFs> uploads;
+
+  private IntentJournal journal;
+
+  private QuotaLedger quotaLedger;
+
+  private final BlobMappingCache mappingCache;
 
   /**
    * The constructor.
    */
   public AbstractBlobStoreFs() {
     super();
+    this.mappingCache = new BlobMappingCache(getLogger());
+    this.pruneQueue = new ConcurrentLinkedQueue<>();
+    this.uploads = new ConcurrentHashMap<>();
   }
 
   /**
@@ -103,183 +225,1717 @@ public abstract class AbstractBlobStoreFs extends AbstractLoggableComponent impl
   }
 
   /**
-   * @return the {@link FileUtil} instance.
+   * @param ioConfig the {@link BlobStoreIoConfigProperties} to {@link Inject}.
+   */
+  @Inject
+  public void setIoConfig(BlobStoreIoConfigProperties ioConfig) {
+
+    this.ioConfig = ioConfig;
+  }
+
+  /**
+   * @param quotaConfig the {@link BlobStoreQuotaConfigProperties} to {@link Inject}.
+   */
+  @Inject
+  public void setQuotaConfig(BlobStoreQuotaConfigProperties quotaConfig) {
+
+    this.quotaConfig = quotaConfig;
+  }
+
+  /**
+   * @return the {@link IoScheduler} that schedules the disc I/O of this store.
+   */
+  protected IoScheduler getIoScheduler() {
+
+    return this.ioScheduler;
+  }
+
+  /**
+   * @return the {@link FileUtil} instance.
+   */
+  protected FileUtil getFileUtil() {
+
+    return this.fileUtil;
+  }
+
+  /**
+   * @param fileUtil the {@link FileUtil} to {@link Inject}.
+   */
+  @Inject
+  public void setFileUtil(FileUtil fileUtil) {
+
+    this.fileUtil = fileUtil;
+  }
+
+  /**
+   * @return the {@link StreamUtil} instance.
+   */
+  protected StreamUtil getStreamUtil() {
+
+    return this.streamUtil;
+  }
+
+  /**
+   * @param streamUtil the {@link StreamUtil} to {@link Inject}.
+   */
+  @Inject
+  public void setStreamUtil(StreamUtil streamUtil) {
+
+    this.streamUtil = streamUtil;
+  }
+
+  /**
+   * @return the {@link StringUtil} instance.
+   */
+  protected StringUtil getStringUtil() {
+
+    return this.stringUtil;
+  }
+
+  /**
+   * @param stringUtil the {@link StringUtil} to {@link Inject}.
+   */
+  @Inject
+  public void setStringUtil(StringUtil stringUtil) {
+
+    this.stringUtil = stringUtil;
+  }
+
+  /**
+   * @param partitionGuard the {@link PartitionGuard} to set.
+   */
+  void setPartitionGuard(PartitionGuard partitionGuard) {
+
+    this.partitionGuard = partitionGuard;
+  }
+
+  /**
+   * @param owner the {@link BlobStore} composed of this store (e.g. as tier or shard) that is used to
+   *        {@link #delete(Id) delete} expired BLOBs.
+   */
+  void setOwner(BlobStore owner) {
+
+    this.owner = owner;
+  }
+
+  /**
+   * @param commitLocator the {@link Function} that determines the {@link BlobVolume} where to commit a BLOB with the
+   *        given {@link BlobId#getPartition() partition}. May be a {@link BlobVolume} of a different store of the same
+   *        type. If not set, the {@link #getVolume(String) volume} of this store is used.
+   */
+  void setCommitLocator(Function<String, BlobVolume> commitLocator) {
+
+    this.commitLocator = commitLocator;
+  }
+
+  /**
+   * @param partitionFilter the {@link Predicate} that accepts the {@link BlobId#getPartition() partitions} generated by
+   *        {@link #createIncomeFile()} for this store (e.g. only those owned by this store as a shard). A rejected
+   *        partition is generated again so the BLOB does not have to be moved to a different store on commit. If not
+   *        set, every partition is accepted.
+   */
+  void setPartitionFilter(Predicate<String> partitionFilter) {
+
+    this.partitionFilter = partitionFilter;
+  }
+
+  @Override
+  protected Logger getLogger() {
+
+    // overridden to make the logger accessible for the helper classes of this package
+    return super.getLogger();
+  }
+
+  @Override
+  protected void doInitialize() {
+
+    super.doInitialize();
+    if (this.config == null) {
+      this.config = new BlobStoreFsConfigProperties();
+    }
+    if (this.ioConfig == null) {
+      this.ioConfig = new BlobStoreIoConfigProperties();
+    }
+    if (this.quotaConfig == null) {
+      this.quotaConfig = new BlobStoreQuotaConfigProperties();
+    }
+    this.ioScheduler = new IoScheduler(this.ioConfig);
+    if (this.fileUtil == null) {
+      this.fileUtil = FileUtilImpl.getInstance();
+    }
+    if (this.streamUtil == null) {
+      this.streamUtil = StreamUtilImpl.getInstance();
+    }
+    if (this.stringUtil == null) {
+      this.stringUtil = StringUtilImpl.getInstance();
+    }
+    List<String> directories = this.config.getDirectories();
+    if ((directories == null) || directories.isEmpty()) {
+      directories = Collections.singletonList(this.config.getDirectory());
+    }
+    List<BlobVolume> volumeList = new ArrayList<>(directories.size());
+    for (String directory : directories) {
+      BlobVolume volume = new BlobVolume(volumeList.size(), new File(directory));
+      initializeVolume(volume);
+      volumeList.add(volume);
+    }
+    this.volumes = Collections.unmodifiableList(volumeList);
+    File journalFile = new File(volumeList.get(0).getRootDirectory(), FILE_JOURNAL);
+    List<String> quotaIntents = recover(journalFile);
+    this.journal = new IntentJournal(journalFile, this.config.isJournalSync());
+    this.journal.open();
+    File quotaFile = new File(volumeList.get(0).getRootDirectory(), FILE_QUOTA);
+    this.quotaLedger = new QuotaLedger(quotaFile, this.quotaConfig, this.config.isJournalSync());
+    Set<Long> replayed = this.quotaLedger.open();
+    for (String quotaIntent : quotaIntents) {
+      recoverQuota(quotaIntent, replayed);
+    }
+    File expiryDirectory = new File(volumeList.get(0).getRootDirectory(), FOLDER_EXPIRY);
+    this.fileUtil.mkdirs(expiryDirectory);
+    this.expiryIndex = new ExpiryIndex(expiryDirectory, this.config.getExpiryBucket().toMillis());
+    if (!this.expiryIndex.isEmpty()) {
+      startReaper();
+    }
+  }
+
+  /**
+   * Stops the background threads of this store and closes the {@link IntentJournal} and the {@link QuotaLedger}. The
+   * store must not be used afterwards. Method may be overridden to release additional resources but has to call
+   * {@code super.close()}.
+   */
+  @Override
+  public void close() {
+
+    synchronized (this) {
+      this.closed = true;
+      if (this.reaper != null) {
+        this.reaper.shutdown();
+      }
+      if (this.prefetcher != null) {
+        // pending prefetches are skipped as the store is closed so their futures complete
+        this.prefetcher.shutdown();
+      }
+      if (this.pruner != null) {
+        this.pruner.shutdown();
+      }
+    }
+    if (this.journal != null) {
+      this.journal.close();
+      this.quotaLedger.close();
+    }
+  }
+
+  private void initializeVolume(BlobVolume volume) {
+
+    this.fileUtil.mkdirs(volume.getDataDirectory());
+    File incomeDirectory = volume.getIncomeDirectory();
+    boolean created = this.fileUtil.mkdirs(incomeDirectory);
+    if (!created) {
+      long age = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(24);
+      this.fileUtil.deleteChildren(incomeDirectory, f -> (f.lastModified() < age));
+    }
+  }
+
+  /**
+   * @param journalFile the {@link IntentJournal#getFile() journal file}.
+   * @return the {@link List} with the values of the {@link IntentJournal#TYPE_QUOTA quota intents} of the incomplete
+   *         operations that have to be {@link #recoverQuota(String, Set) recovered} after the {@link QuotaLedger} has
+   *         been opened.
+   */
+  private List<String> recover(File journalFile) {
+
+    Map<Long, List<String>> pending = IntentJournal.readPending(journalFile);
+    List<String> quotaIntents = new ArrayList<>();
+    if (pending.isEmpty()) {
+      return quotaIntents;
+    }
+    getLogger().info("Reconciling {} incomplete operation(s) from {}", Integer.valueOf(pending.size()), journalFile);
+    List<File> partitionDirectories = new ArrayList<>();
+    for (List<String> intents : pending.values()) {
+      for (String intent : intents) {
+        char type = intent.charAt(0);
+        if (type == IntentJournal.TYPE_QUOTA) {
+          quotaIntents.add(intent.substring(1));
+          continue;
+        }
+        File file = new File(intent.substring(1));
+        if (type == IntentJournal.TYPE_PARTITION) {
+          partitionDirectories.add(file);
+        } else if (file.isFile()) {
+          getLogger().debug("Deleting {} of incomplete operation", file);
+          this.fileUtil.delete(file);
+        }
+      }
+    }
+    // partitions are reconciled after all files have been deleted as they may depend on deleted references
+    for (File partitionDirectory : partitionDirectories) {
+      if (partitionDirectory.isDirectory()) {
+        reconcilePartition(partitionDirectory);
+      }
+    }
+    return quotaIntents;
+  }
+
+  /**
+   * Applies or undoes the delta of a {@link IntentJournal#TYPE_QUOTA quota intent} of an operation interrupted by a
+   * crash. Called after the files of the incomplete operations have been reconciled.
+   *
+   * @param quotaIntent the value of the {@link IntentJournal#TYPE_QUOTA quota intent}.
+   * @param replayed the sequence numbers of the updates replayed from the log of the {@link QuotaLedger}.
+   */
+  private void recoverQuota(String quotaIntent, Set<Long> replayed) {
+
+    String[] fields = quotaIntent.split(" ", 5);
+    if (fields.length < 5) {
+      getLogger().warn("Ignoring invalid quota intent {}", quotaIntent);
+      return;
+    }
+    String tenant = fields[1];
+    long bytes;
+    long objects;
+    boolean applied;
+    try {
+      applied = replayed.contains(Long.valueOf(fields[0]));
+      bytes = Long.parseLong(fields[2]);
+      objects = Long.parseLong(fields[3]);
+    } catch (NumberFormatException e) {
+      getLogger().warn("Ignoring invalid quota intent {}", quotaIntent);
+      return;
+    }
+    boolean charge = (objects > 0) || ((objects == 0) && (bytes > 0));
+    boolean required = (new File(fields[4]).exists() == charge);
+    if (applied == required) {
+      return;
+    }
+    if (applied) {
+      bytes = -bytes;
+      objects = -objects;
+    }
+    getLogger().info("Recovering quota of tenant {} by {} bytes and {} BLOB(s)", tenant, Long.valueOf(bytes),
+        Long.valueOf(objects));
+    this.quotaLedger.update(this.quotaLedger.get(tenant), bytes, objects);
+  }
+
+  /**
+   * Reconciles the given {@link #getPartitionDirectory(File) partition directory} that has been modified by an
+   * operation interrupted by a crash. Called on startup after the files of all incomplete operations have been
+   * deleted. By default empty directories are deleted. Method may be overridden to remove further inconsistencies.
+   *
+   * @param partitionDirectory the {@link #getPartitionDirectory(File) partition directory} to reconcile.
+   */
+  protected void reconcilePartition(File partitionDirectory) {
+
+    deleteIfEmpty(partitionDirectory);
+    prune(partitionDirectory);
+  }
+
+  private void deleteIfEmpty(File directory) {
+
+    File[] children = directory.listFiles();
+    if (children == null) {
+      return;
+    }
+    boolean empty = true;
+    for (File child : children) {
+      if (child.isDirectory()) {
+        deleteIfEmpty(child);
+      }
+      if (child.exists()) {
+        empty = false;
+      }
+    }
+    if (empty) {
+      this.fileUtil.delete(directory);
+    }
+  }
+
+  /**
+   * @return the {@link IntentJournal} of this store.
+   */
+  IntentJournal getJournal() {
+
+    return this.journal;
+  }
+
+  /**
+   * Records that the given operation updates the {@link QuotaLedger} by the given delta so it is applied or undone on
+   * recovery if the operation does not complete. Has to be followed by {@link #endQuotaIntent(long)}.
+   *
+   * @param operation the {@link IntentJournal#begin() operation}.
+   * @param tenant the name of the tenant.
+   * @param bytes the number of bytes to charge (positive) or discharge (negative).
+   * @param objects the number of BLOBs to charge (positive) or discharge (negative).
+   * @param file the {@link File} that has to exist after the operation for a charge or must not exist after the
+   *        operation for a discharge. It has to be created or deleted after this method has been called.
+   * @return the sequence number of the update of the {@link QuotaLedger}.
+   */
+  long recordQuotaIntent(long operation, String tenant, long bytes, long objects, File file) {
+
+    long sequence = this.quotaLedger.begin();
+    boolean success = false;
+    try {
+      this.journal.record(operation, IntentJournal.TYPE_QUOTA,
+          sequence + " " + tenant + " " + bytes + " " + objects + " " + file.getPath());
+      success = true;
+    } finally {
+      if (!success) {
+        this.quotaLedger.end();
+      }
+    }
+    return sequence;
+  }
+
+  /**
+   * @param sequence the sequence number returned by {@link #recordQuotaIntent(long, String, long, long, File)} or
+   *        {@code 0} if no quota intent has been recorded.
+   */
+  void endQuotaIntent(long sequence) {
+
+    if (sequence != 0) {
+      this.quotaLedger.end();
+    }
+  }
+
+  @Override
+  public Id<DataResource> createId(String id) {
+
+    return BlobId.of(id);
+  }
+
+  /**
+   * @return the {@link List} of all {@link BlobVolume}s of this store. Contains at least one {@link BlobVolume}.
+   */
+  protected List<BlobVolume> getVolumes() {
+
+    return this.volumes;
+  }
+
+  /**
+   * @param partition the {@link BlobId#getPartition() partition} of a BLOB.
+   * @return the {@link BlobVolume} where a new BLOB with the given {@code partition} is placed.
+   */
+  protected BlobVolume getHomeVolume(String partition) {
+
+    int size = this.volumes.size();
+    if (size == 1) {
+      return this.volumes.get(0);
+    }
+    // rendezvous hashing: adding a volume only moves the partitions that will score highest on the new volume
+    long hash = partition.hashCode();
+    BlobVolume result = null;
+    long maxScore = 0;
+    for (BlobVolume volume : this.volumes) {
+      long score = mix(hash * 31 + volume.getIndex());
+      if ((result == null) || (score > maxScore)) {
+        result = volume;
+        maxScore = score;
+      }
+    }
+    return result;
+  }
+
+  private static long mix(long value) {
+
+    long h = value;
+    h ^= (h >>> 33);
+    h *= 0xff51afd7ed558ccdL;
+    h ^= (h >>> 33);
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= (h >>> 33);
+    return h;
+  }
+
+  /**
+   * @param partition the {@link BlobId#getPartition() partition} of a BLOB.
+   * @return the {@link BlobVolume} containing the given {@code partition}. If the {@code partition} does not exist
+   *         (yet), the {@link #getHomeVolume(String) home volume} is returned.
+   */
+  protected BlobVolume getVolume(String partition) {
+
+    if (this.volumes.size() == 1) {
+      return this.volumes.get(0);
+    }
+    BlobVolume volume = findVolume(partition);
+    if (volume == null) {
+      return getHomeVolume(partition);
+    }
+    return volume;
+  }
+
+  /**
+   * @param partition the {@link BlobId#getPartition() partition} of a BLOB.
+   * @return the {@link BlobVolume} containing the given {@code partition} or {@code null} if it does not exist (yet).
+   *         The {@link #getHomeVolume(String) home volume} is probed first.
+   */
+  protected BlobVolume findVolume(String partition) {
+
+    BlobVolume home = getHomeVolume(partition);
+    String path = Util.toPath(partition);
+    if (new File(home.getDataDirectory(), path).isDirectory()) {
+      return home;
+    }
+    // partition may have been created before further volumes have been added or kept on its income volume
+    for (BlobVolume volume : this.volumes) {
+      if ((volume != home) && new File(volume.getDataDirectory(), path).isDirectory()) {
+        return volume;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param partition the {@link BlobId#getPartition() partition} of a new BLOB to commit.
+   * @param incomeVolume the {@link BlobVolume} where the {@link BlobContext#getIncomeFile() income file} has been
+   *        written.
+   * @return the {@link BlobVolume} where to commit the BLOB. By default this is the {@link #getVolume(String) volume}
+   *         of the {@code partition}. If it differs from the {@code incomeVolume}, the BLOB has to be copied across
+   *         filesystems.
+   */
+  protected BlobVolume selectDataVolume(String partition, BlobVolume incomeVolume) {
+
+    return getVolume(partition);
+  }
+
+  /**
+   * @param incomeFile the {@link File} in the {@link BlobVolume#getIncomeDirectory() income directory} of a
+   *        {@link BlobVolume}.
+   * @return the {@link BlobVolume} of the given {@code incomeFile} or {@code null} if not located in any
+   *         {@link BlobVolume#getIncomeDirectory() income directory}.
+   */
+  protected BlobVolume getIncomeVolume(File incomeFile) {
+
+    for (BlobVolume volume : this.volumes) {
+      if (volume.isIncomeFile(incomeFile)) {
+        return volume;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param incomeId the unique ID used as {@link File#getName() name} for the new income file.
+   * @return the {@link BlobVolume} where to {@link #createIncomeFile() create} the income file. By default this is the
+   *         {@link #getHomeVolume(String) home volume} of the {@code incomeId} as it is used as
+   *         {@link BlobId#getPartition() partition} so the BLOB never has to be moved across volumes.
+   */
+  protected BlobVolume selectIncomeVolume(String incomeId) {
+
+    return getHomeVolume(incomeId);
+  }
+
+  /**
+   * @return the {@link File} pointing to the root directory of this store. In case of multiple
+   *         {@link #getVolumes() volumes} the root directory of the first one.
+   */
+  protected File getRootDirectory() {
+
+    return this.volumes.get(0).getRootDirectory();
+  }
+
+  /**
+   * @return the {@link File} pointing to the folder for incoming BLOBs (written there temporary and then moved to the
+   *         {@link #getDataDirectory() final} destination). In case of multiple {@link #getVolumes() volumes} the income
+   *         directory of the first one.
+   */
+  protected File getIncomeDirectory() {
+
+    return this.volumes.get(0).getIncomeDirectory();
+  }
+
+  /**
+   * @return the {@link File} pointing to the folder for the persistent data. In case of multiple {@link #getVolumes()
+   *         volumes} the data directory of the first one.
+   */
+  protected File getDataDirectory() {
+
+    return this.volumes.get(0).getDataDirectory();
+  }
+
+  /**
+   * @return a unique ID used for file/folder names to prevent collisions.
+   */
+  protected String createUniqueId() {
+
+    long id = (System.currentTimeMillis() << 16) + System.nanoTime() + (Thread.currentThread().getName().hashCode() << 32);
+    return Long.toString(id, 16);
+  }
+
+  /**
+   * @return a new unique {@link File} in the {@link BlobVolume#getIncomeDirectory() income directory} of the
+   *         {@link #selectIncomeVolume(String) selected volume} that does not yet exist.
+   */
+  protected File createIncomeFile() {
+
+    String partition = createUniqueId();
+    if (this.partitionFilter != null) {
+      // bounded as the commit still relocates the BLOB if this store does not get a partition of its own
+      for (int i = 0; (i < MAX_PARTITION_ATTEMPTS) && !this.partitionFilter.test(partition); i++) {
+        partition = createUniqueId();
+      }
+    }
+    return createIncomeFile(selectIncomeVolume(partition), partition);
+  }
+
+  /**
+   * @param volume the {@link BlobVolume} where to create the income file.
+   * @return a new unique {@link File} in the {@link BlobVolume#getIncomeDirectory() income directory} of the given
+   *         {@link BlobVolume} that does not yet exist.
+   */
+  File createIncomeFile(BlobVolume volume) {
+
+    return createIncomeFile(volume, createUniqueId());
+  }
+
+  private File createIncomeFile(BlobVolume volume, String id) {
+
+    String partition = id;
+    File inFile = new File(volume.getIncomeDirectory(), partition);
+    if (inFile.exists()) {
+      getLogger().debug("Income file collision for {}", partition);
+      partition = createUniqueId();
+      inFile = new File(volume.getIncomeDirectory(), partition);
+      if (inFile.exists()) {
+        throw new FileCreationFailedException(inFile);
+      }
+    }
+    return inFile;
+  }
+
+  /**
+   * @param blob the BLOB to {@link #save(DataResource) save}.
+   * @return the {@link BlobContext} with the store specific logic for saving the BLOB.
+   */
+  protected abstract BlobContext createContext(DataResource blob);
+
+  @Override
+  public Id<DataResource> save(DataResource blob) {
+
+    return save(blob, (String) null);
+  }
+
+  /**
+   * @param blob the {@link DataResource} to {@link #save(DataResource) save}.
+   * @param tenant the name of the tenant to charge or {@code null} for none.
+   * @return the {@link Id} to uniquely identify the saved BLOB.
+   * @throws ValueOutOfRangeException if the quota of the {@code tenant} would be exceeded.
+   */
+  Id<DataResource> save(DataResource blob, String tenant) throws ValueOutOfRangeException {
+
+    return save(blob, tenant, false, null);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * This implementation hard-links the {@link File} into the {@link BlobVolume#getIncomeDirectory() income directory}
+   * what is near-instant if it is located on the same filesystem and deletes it after the BLOB has been committed.
+   * Otherwise the {@link File} is copied.
+   */
+  @Override
+  public Id<DataResource> ingest(File file) {
+
+    return ingest(file, null);
+  }
+
+  /**
+   * @param file the {@link File} to {@link #ingest(File) ingest}.
+   * @param tenant the name of the tenant to charge or {@code null} for none.
+   * @return the {@link Id} to uniquely identify the saved BLOB.
+   * @throws ValueOutOfRangeException if the quota of the {@code tenant} would be exceeded.
+   */
+  Id<DataResource> ingest(File file, String tenant) throws ValueOutOfRangeException {
+
+    return save(new FileResource(file), tenant, true, null);
+  }
+
+  private BlobId save(DataResource blob, String tenant, boolean move, Duration ttl) {
+
+    // reserved before the income file is created so oversize BLOBs are rejected without writing a byte
+    QuotaReservation reservation = reserve(tenant, blob);
+    boolean success = false;
+    try {
+      BlobContext context = createContext(blob);
+      context.setTenant(tenant);
+      context.setTimeToLive(ttl);
+      BlobId id = save(context, reservation, move);
+      success = true;
+      return id;
+    } finally {
+      if (!success && (reservation != null)) {
+        reservation.release();
+      }
+    }
+  }
+
+  private QuotaReservation reserve(String tenant, DataResource blob) {
+
+    if (tenant == null) {
+      return null;
+    }
+    // if the size is unknown it will be reserved while the BLOB is written
+    long sizeHint = Math.max(0, getSizeHint(blob));
+    return new QuotaReservation(this.quotaLedger, this.quotaLedger.get(tenant), sizeHint);
+  }
+
+  private static long getSizeHint(DataResource blob) {
+
+    try {
+      return blob.getSize();
+    } catch (ResourceNotAvailableException e) {
+      return -1;
+    }
+  }
+
+  private BlobId save(BlobContext context, QuotaReservation reservation, boolean move) {
+
+    File incomeFile = context.getIncomeFile();
+    File sourceFile = getSourceFile(context.getBlob(), move);
+    BlobVolume volume = getIncomeVolume(incomeFile);
+    volume.beginWrite();
+    context.beginOperation();
+    boolean success = false;
+    try {
+      context.recordIntent(IntentJournal.TYPE_INCOME, incomeFile);
+      if ((sourceFile != null) && link(sourceFile, incomeFile, reservation)) {
+        context.digestIncomeFile();
+      } else {
+        long sizeHint = getSizeHint(context.getBlob());
+        verifySpace(incomeFile, sizeHint);
+        OutputStream fileOut = this.ioScheduler.schedule(IoClass.BULK_SAVE, openIncomeFile(incomeFile, sizeHint));
+        if (reservation != null) {
+          fileOut = reservation.wrap(fileOut);
+        }
+        try (OutputStream out = fileOut; InputStream in = context.openStream()) {
+          long size = IncomeWriter.write(in, out, sizeHint);
+          getLogger().debug("Saved {} bytes to {}", Long.valueOf(size), incomeFile);
+        }
+      }
+      BlobId id = context.commit();
+      if (reservation != null) {
+        // settled before the operation ends so recovery applies the charge if it crashes in between
+        reservation.settle(context.getChargedBytes(), context.getChargedObjects(), context.getQuotaSequence());
+      }
+      Duration ttl = context.getTimeToLive();
+      if (ttl != null) {
+        // added before the operation ends so recovery deletes the BLOB if it crashes before the expiry is recorded
+        addExpiry(id, ttl);
+      }
+      success = true;
+      if (move) {
+        // deleted after the commit so the file survives a crash in between
+        this.fileUtil.delete(sourceFile);
+      }
+      return id;
+    } catch (IOException e) {
+      throw new RuntimeIoException(e, IoMode.COPY);
+    } finally {
+      if (!success && incomeFile.exists()) {
+        this.fileUtil.delete(incomeFile);
+      }
+      context.endOperation();
+      volume.endWrite();
+    }
+  }
+
+  private void addExpiry(BlobId id, Duration ttl) {
+
+    try {
+      // expiry is calculated after the BLOB has been saved so it never falls into a bucket that is already due
+      this.expiryIndex.add(id.getId().toString(), System.currentTimeMillis() + ttl.toMillis());
+    } catch (RuntimeException e) {
+      delete(id);
+      throw e;
+    }
+  }
+
+  /**
+   * Fails fast if the size of a BLOB is known and exceeds the usable space of the filesystem. As the
+   * {@link #openIncomeFile(File, long) preallocated} file may be sparse, this avoids writing most of a large BLOB just
+   * to fail when the disc is full.
+   *
+   * @param incomeFile the {@link #createIncomeFile() income file} to write.
+   * @param sizeHint the size of the BLOB or a negative value if unknown.
+   * @throws IOException if the BLOB does not fit.
+   */
+  private static void verifySpace(File incomeFile, long sizeHint) throws IOException {
+
+    if (sizeHint > IncomeWriter.SMALL_SIZE) {
+      // zero if unknown
+      long usableSpace = incomeFile.getParentFile().getUsableSpace();
+      if ((usableSpace > 0) && (usableSpace < sizeHint)) {
+        throw new IOException("BLOB of " + sizeHint + " bytes exceeds the usable space of " + usableSpace
+            + " bytes at " + incomeFile.getParent());
+      }
+    }
+  }
+
+  /**
+   * Opens the income file for writing. If the size of the BLOB is known and it is not small, the file is preallocated
+   * by extending it to that size before the data is written so the filesystem knows the final size and can allocate
+   * few large extents. As Java has no {@code fallocate}, a filesystem supporting sparse files may still allocate the
+   * blocks when they are written. If the file can not be extended, it is truncated and written without preallocation.
+   * As {@link IncomeWriter} verifies that exactly the given number of bytes is written, no preallocated space is left
+   * unwritten in a committed BLOB.
+   *
+   * @param incomeFile the {@link #createIncomeFile() income file} to write.
+   * @param sizeHint the size of the BLOB or a negative value if unknown.
+   * @return the {@link OutputStream} to write the income file from the beginning.
+   * @throws IOException on error.
+   */
+  private static OutputStream openIncomeFile(File incomeFile, long sizeHint) throws IOException {
+
+    if (sizeHint <= IncomeWriter.SMALL_SIZE) {
+      return new FileOutputStream(incomeFile);
+    }
+    RandomAccessFile file = new RandomAccessFile(incomeFile, "rw");
+    try {
+      try {
+        file.setLength(sizeHint);
+      } catch (IOException e) {
+        // e.g. exceeds the maximum file size of the filesystem what will fail when written
+        file.setLength(0);
+      }
+      // closing the stream closes the channel and the file
+      return Channels.newOutputStream(file.getChannel());
+    } catch (IOException | RuntimeException e) {
+      file.close();
+      throw e;
+    }
+  }
+
+  private static File getSourceFile(DataResource blob, boolean move) {
+
+    // only linked if owned by the store as an in-place modification of the file would change the BLOB
+    if (move && (blob instanceof FileResource)) {
+      return new File(((FileResource) blob).getPath());
+    }
+    return null;
+  }
+
+  private boolean link(File sourceFile, File incomeFile, QuotaReservation reservation) {
+
+    if (reservation != null) {
+      reservation.ensure(sourceFile.length());
+    }
+    try {
+      Files.createLink(incomeFile.toPath(), sourceFile.toPath());
+    } catch (IOException | UnsupportedOperationException e) {
+      // different filesystem or hard-links not supported
+      getLogger().debug("Copying {} as it can not be linked", sourceFile, e);
+      return false;
+    }
+    getLogger().debug("Linked {} to {}", sourceFile, incomeFile);
+    return true;
+  }
+
+  @Override
+  public Id<DataResource> save(DataResource blob, Duration ttl) {
+
+    return save(blob, ttl, null);
+  }
+
+  /**
+   * @param blob the {@link DataResource} to {@link #save(DataResource, Duration) save}.
+   * @param ttl the time-to-live after which the BLOB expires.
+   * @param tenant the name of the tenant to charge or {@code null} for none.
+   * @return the {@link Id} to uniquely identify the saved BLOB.
+   * @throws ValueOutOfRangeException if the quota of the {@code tenant} would be exceeded.
+   * @throws UnsupportedOperationException if this store does not {@link #isExpirySupported() support expiry}.
+   */
+  Id<DataResource> save(DataResource blob, Duration ttl, String tenant) throws ValueOutOfRangeException {
+
+    if (!isExpirySupported()) {
+      throw new UnsupportedOperationException("save with ttl");
+    }
+    if (ttl.isNegative() || ttl.isZero()) {
+      throw new IllegalArgumentException("Time-to-live has to be positive but was " + ttl);
+    }
+    Id<DataResource> id = save(blob, tenant, false, ttl);
+    startReaper();
+    return id;
+  }
+
+  /**
+   * @return {@code true} if BLOBs can be {@link #save(DataResource, Duration) saved with a time-to-live}, {@code false}
+   *         otherwise. Has to be {@code false} if BLOBs saved independently may get the same {@link Id} as the expiry
+   *         of one would delete all of them.
+   */
+  protected boolean isExpirySupported() {
+
+    return true;
+  }
+
+  /**
+   * @param tenant the name of the tenant. Must not be empty or contain whitespaces.
+   * @return a view of this store that charges all BLOBs {@link BlobStore#save(DataResource) saved} to the
+   *         {@link #getUsage(String) usage} of the given {@code tenant}. Saving is rejected with a
+   *         {@link ValueOutOfRangeException} if the {@link BlobStoreQuotaConfigProperties quota} of the tenant would be
+   *         exceeded.
+   */
+  public BlobStore forTenant(String tenant) {
+
+    if (tenant.isEmpty()) {
+      throw new IllegalArgumentException("Tenant must not be empty");
+    }
+    for (int i = 0; i < tenant.length(); i++) {
+      if (Character.isWhitespace(tenant.charAt(i)) || Character.isISOControl(tenant.charAt(i))) {
+        throw new IllegalArgumentException("Illegal tenant: " + tenant);
+      }
+    }
+    return new TenantBlobStore(this, tenant);
+  }
+
+  /**
+   * @param tenant the name of the tenant.
+   * @return the {@link TenantUsage} with the current usage and quotas of the given {@code tenant}.
+   */
+  public TenantUsage getUsage(String tenant) {
+
+    return this.quotaLedger.get(tenant);
+  }
+
+  /**
+   * @param tenant the name of the tenant to discharge or {@code null} for none.
+   * @param bytes the number of bytes to discharge.
+   * @param objects the number of BLOBs to discharge.
+   * @param sequence the sequence number returned by {@link #recordQuotaIntent(long, String, long, long, File)} for the
+   *        negated delta.
+   */
+  protected void discharge(String tenant, long bytes, int objects, long sequence) {
+
+    if (tenant != null) {
+      this.quotaLedger.update(this.quotaLedger.get(tenant), -bytes, -objects, sequence);
+    }
+  }
+
+  /**
+   * @param file the {@link File} containing the name of a tenant.
+   * @return the name of the tenant or {@code null} if the {@link File} does not exist or is empty.
+   */
+  protected String readTenant(File file) {
+
+    byte[] data;
+    try {
+      data = Files.readAllBytes(file.toPath());
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException e) {
+      throw new RuntimeIoException(e, IoMode.READ);
+    }
+    if (data.length == 0) {
+      return null;
+    }
+    return new String(data, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @param file the {@link File} to create.
+   * @param tenant the name of the tenant to write into the given {@link File}.
+   */
+  protected void writeTenant(File file, String tenant) {
+
+    try {
+      Files.write(file.toPath(), tenant.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE_NEW,
+          StandardOpenOption.WRITE);
+    } catch (IOException e) {
+      throw new RuntimeIoException(e, IoMode.WRITE);
+    }
+  }
+
+  private synchronized void startReaper() {
+
+    if ((this.reaper != null) || this.closed) {
+      return;
+    }
+    long interval = this.config.getReaperInterval().toMillis();
+    if (interval <= 0) {
+      return;
+    }
+    this.reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "blob-reaper");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.reaper.scheduleWithFixedDelay(() -> {
+      try {
+        reapExpired();
+      } catch (RuntimeException e) {
+        getLogger().warn("Failed to reap expired BLOBs", e);
+      }
+    }, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Deletes all BLOBs {@link #save(DataResource, Duration) saved with a time-to-live} whose
+   * {@link BlobStoreFsConfigProperties#getExpiryBucket() expiry bucket} is over. This is called periodically in the
+   * background but may also be invoked manually.
+   *
+   * @return the number of deleted BLOBs.
+   */
+  public int reapExpired() {
+
+    return reapExpired(System.currentTimeMillis());
+  }
+
+  /**
+   * @param now the current point in time in milliseconds since the epoch.
+   * @return the number of deleted BLOBs.
+   * @see #reapExpired()
+   */
+  int reapExpired(long now) {
+
+    BlobStore store = this.owner;
+    if (store == null) {
+      store = this;
+    }
+    int count = 0;
+    for (File bucket : this.expiryIndex.takeDue(now)) {
+      for (String id : ExpiryIndex.read(bucket)) {
+        try {
+          if (store.delete(createId(id))) {
+            count++;
+          }
+        } catch (RuntimeException e) {
+          getLogger().warn("Failed to delete expired BLOB {}", id, e);
+        }
+      }
+      this.expiryIndex.remove(bucket);
+    }
+    if (count > 0) {
+      getLogger().info("Deleted {} expired BLOBs", Integer.valueOf(count));
+    }
+    return count;
+  }
+
+  /**
+   * Schedules the given {@link File#isDirectory() directory} to be {@link #pruneEmptyDirectories() pruned} in the
+   * background together with its parent directories up to the {@link BlobVolume#getDataDirectory() data directory}.
+   * Has to be called after a BLOB has been {@link #delete(Id) deleted} from the given {@code directory}.
+   *
+   * @param directory the {@link File#isDirectory() directory} that may have become empty (or has already been
+   *        deleted).
+   */
+  protected void prune(File directory) {
+
+    if (this.config.getPruneInterval().toMillis() <= 0) {
+      return;
+    }
+    this.pruneQueue.add(directory);
+    startPruner();
+  }
+
+  private synchronized void startPruner() {
+
+    if ((this.pruner != null) || this.closed) {
+      return;
+    }
+    long interval = this.config.getPruneInterval().toMillis();
+    this.pruner = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "blob-pruner");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.pruner.scheduleWithFixedDelay(() -> {
+      try {
+        pruneEmptyDirectories();
+      } catch (RuntimeException e) {
+        getLogger().warn("Failed to prune empty directories", e);
+      }
+    }, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Deletes the empty directories left by the BLOBs {@link #delete(Id) deleted} since the last invocation. All
+   * directories collected in the meantime are pruned as one batch from the deepest to the top so shared parent
+   * directories are only checked once. A directory is only deleted if it is empty so a concurrent
+   * {@link #save(DataResource) save} can not lose its BLOB. Instead it will create the directory again if it has been
+   * pruned after its creation. This is called periodically in the background but may also be invoked manually.
+   *
+   * @return the number of deleted directories.
+   */
+  public int pruneEmptyDirectories() {
+
+    PriorityQueue<Path> batch = new PriorityQueue<>(
+        Comparator.comparingInt(Path::getNameCount).reversed().thenComparing(Comparator.naturalOrder()));
+    File directory = this.pruneQueue.poll();
+    while (directory != null) {
+      batch.add(directory.toPath());
+      directory = this.pruneQueue.poll();
+    }
+    Set<Path> visited = new HashSet<>();
+    int count = 0;
+    Path path = batch.poll();
+    while (path != null) {
+      if (visited.add(path) && isPrunable(path)) {
+        try {
+          if (Files.deleteIfExists(path)) {
+            count++;
+          }
+          // the parent is polled after all remaining directories of the same depth (its other children)
+          batch.add(path.getParent());
+        } catch (DirectoryNotEmptyException e) {
+          // the directory still contains BLOBs or is in use by a concurrent save
+        } catch (IOException e) {
+          getLogger().debug("Failed to prune directory {}", path, e);
+        }
+      }
+      path = batch.poll();
+    }
+    if (count > 0) {
+      getLogger().debug("Pruned {} empty directories", Integer.valueOf(count));
+    }
+    return count;
+  }
+
+  private boolean isPrunable(Path directory) {
+
+    for (BlobVolume volume : this.volumes) {
+      Path dataDirectory = volume.getDataDirectory().toPath();
+      if (directory.startsWith(dataDirectory) && !directory.equals(dataDirectory)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Renames the given {@code source} {@link File} to {@code target} after creating the
+   * {@link File#getParentFile() directory} of {@code target}. If that directory has been
+   * {@link #pruneEmptyDirectories() pruned} concurrently in the meantime, it is created again and the rename is
+   * retried.
+   *
+   * @param source the {@link File} to rename.
+   * @param target the new {@link File}.
+   * @return {@code true} if renamed, {@code false} otherwise (e.g. if {@code source} and {@code target} are located on
+   *         different filesystems or the directory could not be created).
+   */
+  boolean renameTo(File source, File target) {
+
+    File directory = target.getParentFile();
+    for (int attempt = 1; attempt <= MAX_RENAME_ATTEMPTS; attempt++) {
+      try {
+        // tolerates concurrent creation of the same directory
+        Files.createDirectories(directory.toPath());
+      } catch (NoSuchFileException e) {
+        getLogger().debug("Parent of {} has been pruned concurrently", directory);
+        continue;
+      } catch (IOException e) {
+        getLogger().debug("Failed to create directory {}", directory, e);
+        return false;
+      }
+      if (source.renameTo(target)) {
+        return true;
+      }
+      if (directory.isDirectory()) {
+        return false;
+      }
+      getLogger().debug("Directory {} has been pruned concurrently", directory);
+    }
+    return false;
+  }
+
+  /**
+   * Saves a BLOB that has already been completely written to the given {@link File} in the {@link #getIncomeDirectory()
+   * income directory}. The {@link File} is {@link BlobContext#commit() committed} just like in
+   * {@link #save(DataResource)} (including de-duplication).
+   *
+   * @param incomeFile the {@link File} in the {@link #getIncomeDirectory() income directory} containing the BLOB.
+   * @return the created {@link Id} pointing to the final BLOB.
+   */
+  protected BlobId commitIncomeFile(File incomeFile) {
+
+    BlobContext context = createContext(new FileResource(incomeFile));
+    context.setIncomeFile(incomeFile);
+    context.digestIncomeFile();
+    // the income file is not recorded as intent so an interrupted upload can still be resumed
+    context.beginOperation();
+    try {
+      return context.commit();
+    } finally {
+      context.endOperation();
+    }
+  }
+
+  @Override
+  public BlobOutputStream openForWrite() {
+
+    File incomeFile = createIncomeFile();
+    BlobContext context = createContext(new FileResource(incomeFile));
+    context.setIncomeFile(incomeFile);
+    context.beginOperation();
+    try {
+      context.recordIntent(IntentJournal.TYPE_INCOME, incomeFile);
+      OutputStream out = context
+          .wrapOutputStream(this.ioScheduler.schedule(IoClass.BULK_SAVE, new FileOutputStream(incomeFile)));
+      return new BlobOutputStreamImplFs(this, context, out);
+    } catch (IOException | RuntimeException e) {
+      context.endOperation();
+      if (e instanceof RuntimeException) {
+        throw (RuntimeException) e;
+      }
+      throw new RuntimeIoException(e, IoMode.OPEN);
+    }
+  }
+
+  @Override
+  public BlobUpload beginUpload() {
+
+    File incomeFile = createIncomeFile();
+    BlobUploadImplFs upload = new BlobUploadImplFs(this, incomeFile);
+    upload.create();
+    this.uploads.put(upload.getId(), upload);
+    getLogger().debug("Started upload {}", incomeFile);
+    return upload;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * This implementation returns the same {@link BlobUpload} for all concurrent resumes of an upload so their parts are
+   * tracked in a single session. Only after a restart the session is loaded from disc.
+   */
+  @Override
+  public BlobUpload resumeUpload(String uploadId) throws ObjectNotFoundException {
+
+    if (!BlobUploadImplFs.isValidId(uploadId)) {
+      throw new ObjectNotFoundException(BlobUpload.class.getSimpleName(), uploadId);
+    }
+    BlobUploadImplFs upload = this.uploads.computeIfAbsent(uploadId, this::loadUpload);
+    if (upload == null) {
+      throw new ObjectNotFoundException(BlobUpload.class.getSimpleName(), uploadId);
+    }
+    return upload;
+  }
+
+  private BlobUploadImplFs loadUpload(String uploadId) {
+
+    for (BlobVolume volume : this.volumes) {
+      File incomeFile = new File(volume.getIncomeDirectory(), uploadId);
+      if (incomeFile.isFile()) {
+        return new BlobUploadImplFs(this, incomeFile);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param upload the {@link BlobUploadImplFs} that has been {@link BlobUpload#commit() committed} or
+   *        {@link BlobUpload#abort() aborted} and can not be {@link #resumeUpload(String) resumed} anymore.
+   */
+  void endUpload(BlobUploadImplFs upload) {
+
+    this.uploads.remove(upload.getId(), upload);
+  }
+
+  @Override
+  public boolean restore(Id<DataResource> id, DataResource blob) {
+
+    BlobId blobId = asBlobId(id);
+    File blobFile = getBlobFile(blobId);
+    if ((blobFile != null) && blobFile.isFile()) {
+      return false;
+    }
+    File blobDirectory = getBlobDirectory(blobId);
+    blobFile = new File(blobDirectory, FILE_BLOB);
+    long operation = this.journal.begin();
+    try {
+      this.journal.record(operation, IntentJournal.TYPE_PARTITION, getPartitionDirectory(blobFile));
+      restoreBlob(blobId, blob, blobFile, getVolume(blobId.getPartition()), operation);
+    } finally {
+      this.journal.end(operation);
+    }
+    getLogger().debug("Restored BLOB {} at {}", blobId, blobFile);
+    return true;
+  }
+
+  private void restoreBlob(BlobId blobId, DataResource blob, File blobFile, BlobVolume volume, long operation) {
+
+    if (!blobFile.isFile()) {
+      // written on the volume of the BLOB so it can be renamed atomically
+      File incomeFile = createIncomeFile(volume);
+      this.journal.record(operation, IntentJournal.TYPE_INCOME, incomeFile);
+      long sizeHint = getSizeHint(blob);
+      try (OutputStream out = this.ioScheduler.schedule(IoClass.MAINTENANCE, new FileOutputStream(incomeFile));
+          InputStream in = blob.openStream()) {
+        verifySpace(incomeFile, sizeHint);
+        IncomeWriter.write(in, out, sizeHint);
+      } catch (IOException e) {
+        this.fileUtil.delete(incomeFile);
+        throw new RuntimeIoException(e, IoMode.COPY);
+      }
+      if (!renameTo(incomeFile, blobFile)) {
+        this.fileUtil.delete(incomeFile);
+        if (!blobFile.isFile()) {
+          throw new IllegalStateException("Failed to move " + incomeFile + " to " + blobFile);
+        }
+        getLogger().debug("BLOB {} has been restored concurrently", blobId);
+      }
+    }
+    restoreReference(blobFile, blobId);
+  }
+
+  /**
+   * Called from {@link #restore(Id, DataResource)} after the {@link #getBlobFile(BlobId) BLOB file} has been restored.
+   * Method may be overridden to restore additional reference information of the given {@link BlobId}.
+   *
+   * @param blobFile the restored {@link #getBlobFile(BlobId) BLOB file}.
+   * @param id the {@link BlobId} of the restored BLOB.
+   */
+  protected void restoreReference(File blobFile, BlobId id) {
+
+    // nothing to do by default
+  }
+
+  @Override
+  public DataResource find(Id<DataResource> id) {
+
+    BlobId blobId = asBlobId(id);
+    File blobFile = getBlobFile(blobId);
+    if (blobFile == null) {
+      return UnavailableResource.INSTANCE;
+    }
+    if (this.ioScheduler.isScheduled(IoClass.INTERACTIVE_READ)) {
+      return new ScheduledFileResource(blobFile, this.ioScheduler);
+    }
+    return new FileResource(blobFile);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * This implementation memory-maps the BLOB file read-only. Concurrent {@link BlobMapping}s of the same BLOB share the
+   * mapping that is unmapped as soon as the last of them is {@link BlobMapping#close() closed}.
+   */
+  @Override
+  public BlobMapping map(Id<DataResource> id) throws ObjectNotFoundException {
+
+    BlobId blobId = asBlobId(id);
+    File blobFile = getBlobFile(blobId);
+    if (blobFile != null) {
+      try {
+        return this.mappingCache.acquire(blobFile);
+      } catch (NoSuchFileException e) {
+        // not found
+      }
+    }
+    throw new ObjectNotFoundException(DataResource.class.getSimpleName(), id);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * This implementation reads the BLOB files with {@link BlobStoreIoConfigProperties#getPrefetchConcurrency()} threads
+   * so their data is in the page cache of the operating system. The reads are scheduled as {@link IoClass#PREFETCH}.
+   */
+  @Override
+  public CompletableFuture<Void> prefetch(Collection<? extends Id<DataResource>> ids) {
+
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    if (ids.isEmpty()) {
+      future.complete(null);
+      return future;
+    }
+    ExecutorService executor = getPrefetcher();
+    if (executor == null) {
+      future.completeExceptionally(new IllegalStateException("Store has been closed"));
+      return future;
+    }
+    AtomicInteger remaining = new AtomicInteger(ids.size());
+    for (Id<DataResource> id : ids) {
+      executor.execute(() -> {
+        try {
+          // skipped if cancelled, failed or closed
+          if (!future.isDone() && !this.closed) {
+            prefetch(id, future);
+          }
+        } catch (RuntimeException e) {
+          future.completeExceptionally(e);
+        } finally {
+          if (remaining.decrementAndGet() == 0) {
+            future.complete(null);
+          }
+        }
+      });
+    }
+    return future;
+  }
+
+  private synchronized ExecutorService getPrefetcher() {
+
+    if (this.closed) {
+      return null;
+    }
+    if (this.prefetcher == null) {
+      AtomicInteger counter = new AtomicInteger();
+      this.prefetcher = Executors.newFixedThreadPool(Math.max(1, this.ioConfig.getPrefetchConcurrency()), r -> {
+        Thread thread = new Thread(r, "blob-prefetch-" + counter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    return this.prefetcher;
+  }
+
+  private void prefetch(Id<DataResource> id, CompletableFuture<Void> future) {
+
+    File blobFile = getBlobFile(asBlobId(id));
+    if (blobFile == null) {
+      return;
+    }
+    try (FileChannel channel = FileChannel.open(blobFile.toPath(), StandardOpenOption.READ)) {
+      this.ioScheduler.begin(IoClass.PREFETCH);
+      try {
+        ByteBuffer buffer = PREFETCH_BUFFER.get();
+        long position = 0;
+        while (!future.isDone()) {
+          buffer.clear();
+          int count = channel.read(buffer, position);
+          if (count < 0) {
+            break;
+          }
+          this.ioScheduler.consume(IoClass.PREFETCH, count);
+          position += count;
+        }
+      } finally {
+        this.ioScheduler.end(IoClass.PREFETCH);
+      }
+    } catch (NoSuchFileException e) {
+      getLogger().debug("BLOB {} to prefetch does not exist", id);
+    } catch (IOException e) {
+      getLogger().debug("Failed to prefetch BLOB {}", id, e);
+    }
+  }
+
+  /**
+   * @param futures the {@link CompletableFuture}s of {@link #prefetch(Collection) prefetch} operations.
+   * @return a {@link CompletableFuture} that completes when all given {@code futures} have completed and
+   *         {@link CompletableFuture#cancel(boolean) cancels} them if it is cancelled itself.
+   */
+  static CompletableFuture<Void> prefetchAll(List<CompletableFuture<Void>> futures) {
+
+    if (futures.size() == 1) {
+      return futures.get(0);
+    }
+    CompletableFuture<Void> all = CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]));
+    all.whenComplete((result, error) -> {
+      if (all.isCancelled()) {
+        for (CompletableFuture<Void> future : futures) {
+          future.cancel(false);
+        }
+      }
+    });
+    return all;
+  }
+
+  @Override
+  public BlobStat stat(Id<DataResource> id) {
+
+    BlobId blobId = asBlobId(id);
+    File blobFile = getBlobFile(blobId);
+    if (blobFile == null) {
+      return null;
+    }
+    BasicFileAttributes attributes;
+    try {
+      attributes = Files.readAttributes(blobFile.toPath(), BasicFileAttributes.class);
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException e) {
+      throw new RuntimeIoException(e, IoMode.READ);
+    }
+    return new BlobStat(attributes.size(), getHash(blobId), attributes.creationTime().toInstant(),
+        getReferenceCount(blobFile, blobId));
+  }
+
+  /**
+   * @param id the {@link BlobId}.
+   * @return the {@link BlobStat#getHash() hash} of the identified BLOB or {@code null} if not available.
    */
-  protected FileUtil getFileUtil() {
+  protected String getHash(BlobId id) {
 
-    return this.fileUtil;
+    return null;
   }
 
   /**
-   * @param fileUtil the {@link FileUtil} to {@link Inject}.
+   * @param blobFile the existing {@link #getBlobFile(BlobId) BLOB file}.
+   * @param id the {@link BlobId}.
+   * @return the {@link BlobStat#getReferenceCount() reference count} of the given BLOB.
    */
-  @Inject
-  public void setFileUtil(FileUtil fileUtil) {
+  protected int getReferenceCount(File blobFile, BlobId id) {
 
-    this.fileUtil = fileUtil;
+    return 1;
   }
 
-  /**
-   * @return the {@link StreamUtil} instance.
-   */
-  protected StreamUtil getStreamUtil() {
+  @Override
+  public boolean delete(Id<DataResource> id) {
 
-    return this.streamUtil;
+    BlobId blobId = asBlobId(id);
+    File blobFile = getBlobFile(blobId);
+    if (blobFile == null) {
+      return false;
+    }
+    // if saved with a time-to-live, the entry in the expiry index is left as a miss (see ExpiryIndex)
+    File tenantFile = new File(blobFile.getParentFile(), FILE_TENANT);
+    String tenant = readTenant(tenantFile);
+    if (tenant == null) {
+      return delete(blobFile, tenantFile, null, 0);
+    }
+    long operation = this.journal.begin();
+    long sequence = 0;
+    try {
+      // if interrupted, recovery discharges the tenant if and only if the BLOB has been deleted
+      sequence = recordQuotaIntent(operation, tenant, -blobFile.length(), -1, blobFile);
+      return delete(blobFile, tenantFile, tenant, sequence);
+    } finally {
+      endQuotaIntent(sequence);
+      this.journal.end(operation);
+    }
   }
 
-  /**
-   * @param streamUtil the {@link StreamUtil} to {@link Inject}.
-   */
-  @Inject
-  public void setStreamUtil(StreamUtil streamUtil) {
+  private boolean delete(File blobFile, File tenantFile, String tenant, long sequence) {
 
-    this.streamUtil = streamUtil;
+    long size = blobFile.length();
+    boolean deleted = this.fileUtil.delete(blobFile);
+    if (tenant != null) {
+      this.fileUtil.delete(tenantFile);
+      if (deleted) {
+        discharge(tenant, size, 1, sequence);
+      }
+    }
+    if (deleted) {
+      prune(blobFile.getParentFile());
+    }
+    return deleted;
   }
 
   /**
-   * @return the {@link StringUtil} instance.
+   * {@inheritDoc}
+   *
+   * This implementation traverses the {@link BlobVolume#getDataDirectory() data directories} and splits on their
+   * sub-directories for {@link Stream#parallel() parallel} streams.
    */
-  protected StringUtil getStringUtil() {
+  @Override
+  public Stream<Id<DataResource>> ids(String prefix) {
 
-    return this.stringUtil;
+    return StreamSupport.stream(new BlobIdSpliterator(this, prefix), false);
   }
 
   /**
-   * @param stringUtil the {@link StringUtil} to {@link Inject}.
+   * Called from {@link #ids(String)} for each {@link #getBlobFile(BlobId) BLOB file} found in the
+   * {@link BlobVolume#getDataDirectory() data directories}. Method has to be overridden by stores with a different
+   * layout.
+   *
+   * @param blobFile the {@link #getBlobFile(BlobId) BLOB file}.
+   * @param path the names of the directories from the {@link BlobVolume#getDataDirectory() data directory} to the given
+   *        {@code blobFile} concatenated without separator.
+   * @param ids the {@link Consumer} that receives the {@link BlobId}s of the given {@code blobFile}.
    */
-  @Inject
-  public void setStringUtil(StringUtil stringUtil) {
+  protected void collectIds(File blobFile, String path, Consumer<BlobId> ids) {
 
-    this.stringUtil = stringUtil;
+    ids.accept(new BlobId(path, null, null));
   }
 
-  @Override
-  protected void doInitialize() {
+  /**
+   * @param id the {@link Id} to the requested BLOB.
+   * @return the {@link File} pointing to the BLOB or {@code null} if not available.
+   */
+  protected BlobId asBlobId(Id<DataResource> id) {
 
-    super.doInitialize();
-    if (this.config == null) {
-      this.config = new BlobStoreFsConfigProperties();
-    }
-    if (this.fileUtil == null) {
-      this.fileUtil = FileUtilImpl.getInstance();
-    }
-    if (this.streamUtil == null) {
-      this.streamUtil = StreamUtilImpl.getInstance();
-    }
-    if (this.stringUtil == null) {
-      this.stringUtil = StringUtilImpl.getInstance();
-    }
-    this.rootDirectory = new File(this.config.getDirectory());
-    this.dataDirectory = new File(this.rootDirectory, FOLDER_DATA);
-    this.fileUtil.mkdirs(this.dataDirectory);
-    this.incomeDirectory = new File(this.rootDirectory, FOLDER_INCOME);
-    boolean created = this.fileUtil.mkdirs(this.incomeDirectory);
-    if (!created) {
-      long age = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(24);
-      this.fileUtil.deleteChildren(this.incomeDirectory, f -> (f.lastModified() < age));
+    Objects.requireNonNull(id, "id");
+    BlobId blobId;
+    if (id instanceof BlobId) {
+      blobId = (BlobId) id;
+    } else {
+      blobId = BlobId.of(id.getId().toString());
     }
+    return blobId;
   }
 
-  @Override
-  public Id<DataResource> createId(String id) {
+  /**
+   * @param id the {@link BlobId} to the requested BLOB.
+   * @return the {@link File} pointing to the BLOB or {@code null} if not available.
+   */
+  protected File getBlobFile(BlobId id) {
 
-    return BlobId.of(id);
+    return getBlobFile(getBlobDirectory(id), id);
   }
 
   /**
-   * @return the {@link File} pointing to the root directory of this store.
+   * @param id the {@link BlobId} to the requested BLOB.
+   * @return the {@link File#isDirectory() directory} where the BLOB is located. May not exist.
    */
-  protected File getRootDirectory() {
+  protected File getBlobDirectory(BlobId id) {
 
-    return this.rootDirectory;
+    String partition = id.getPartition();
+    String path = Util.toPath(partition);
+    String folder = id.getFolder();
+    if ((folder != null) && (!folder.isEmpty())) {
+      path = path + folder;
+    }
+    return new File(getVolume(partition).getDataDirectory(), path);
   }
 
   /**
-   * @return the {@link File} pointing to the folder for incoming BLOBs (written there temporary and then moved to the
-   *         {@link #getDataDirectory() final} destination).
+   * @param blobFile the {@link #getBlobFile(BlobId) BLOB file}.
+   * @return the {@link File#isDirectory() directory} of the {@link BlobId#getPartition() partition} containing the
+   *         given {@code blobFile}.
    */
-  protected File getIncomeDirectory() {
+  protected File getPartitionDirectory(File blobFile) {
 
-    return this.incomeDirectory;
+    return blobFile.getParentFile();
   }
 
   /**
-   * @return the {@link File} pointing to the folder for the persistent data.
+   * @param partition the {@link BlobId#getPartition() partition}.
+   * @return the {@link File#isDirectory() directory} of the given {@code partition}. May not exist.
    */
-  protected File getDataDirectory() {
+  File getPartitionDirectory(String partition) {
 
-    return this.dataDirectory;
+    return new File(getVolume(partition).getDataDirectory(), Util.toPath(partition));
   }
 
   /**
-   * @param blob the BLOB to {@link #save(DataResource) save}.
-   * @return the {@link BlobContext} with the store specific logic for saving the BLOB.
+   * @param volume the {@link BlobVolume} to scan.
+   * @return the {@link Map} with the {@link BlobId#getPartition() partitions} found in the given {@link BlobVolume}
+   *         mapped to the last use (modification or {@link #touchPartition(String, long) access}) of their most
+   *         recently used BLOB.
    */
-  protected abstract BlobContext createContext(DataResource blob);
-
-  @Override
-  public Id<DataResource> save(DataResource blob) {
-
-    BlobContext context = createContext(blob);
-    File incomeFile = context.getIncomeFile();
-    try (FileOutputStream out = new FileOutputStream(incomeFile); InputStream in = context.openStream()) {
-      long size = this.streamUtil.transfer(in, out, false);
-      getLogger().debug("Saved {} bytes to {}", Long.valueOf(size), incomeFile);
-      BlobId id = context.commit();
-      return id;
+  Map<String, Long> scanPartitions(BlobVolume volume) {
+
+    Map<String, Long> partitions = new HashMap<>();
+    Path dataPath = volume.getDataDirectory().toPath();
+    try (Stream<Path> files = Files.walk(dataPath)) {
+      files.filter(p -> p.getFileName().toString().equals(FILE_BLOB)).forEach(p -> {
+        File blobFile = p.toFile();
+        File partitionDirectory = getPartitionDirectory(blobFile);
+        String partition = dataPath.relativize(partitionDirectory.toPath()).toString().replace(File.separator, "");
+        Long used = Long.valueOf(getLastUse(p));
+        partitions.merge(partition, used, (a, b) -> (a.longValue() > b.longValue()) ? a : b);
+      });
     } catch (IOException e) {
-      throw new RuntimeIoException(e, IoMode.COPY);
+      throw new RuntimeIoException(e, IoMode.READ);
+    } catch (UncheckedIOException e) {
+      // concurrent modification (e.g. delete) during walk - continue with what we found
+      getLogger().debug("Walking {} was interrupted", dataPath, e);
     }
+    return partitions;
   }
 
-  @Override
-  public DataResource find(Id<DataResource> id) {
+  private static long getLastUse(Path blobPath) {
 
-    BlobId blobId = asBlobId(id);
-    File blobFile = getBlobFile(blobId);
-    if (blobFile == null) {
-      return UnavailableResource.INSTANCE;
+    try {
+      BasicFileAttributes attributes = Files.readAttributes(blobPath, BasicFileAttributes.class);
+      return Math.max(attributes.lastModifiedTime().toMillis(), attributes.lastAccessTime().toMillis());
+    } catch (IOException e) {
+      // deleted concurrently
+      return 0;
     }
-    return new FileResource(blobFile);
   }
 
-  @Override
-  public boolean delete(Id<DataResource> id) {
+  /**
+   * Records the given {@code accessTime} as last access time of all BLOBs in the given
+   * {@link BlobId#getPartition() partition} so it is considered by {@link #scanPartitions(BlobVolume)}. The time is
+   * written explicitly as the filesystem may be mounted without updating the access time on reads.
+   *
+   * @param partition the {@link BlobId#getPartition() partition}.
+   * @param accessTime the point in time of the last read in milliseconds since the epoch.
+   */
+  void touchPartition(String partition, long accessTime) {
 
-    BlobId blobId = asBlobId(id);
-    File blobFile = getBlobFile(blobId);
-    return this.fileUtil.delete(blobFile);
+    File partitionDirectory = getPartitionDirectory(partition);
+    if (!partitionDirectory.isDirectory()) {
+      return;
+    }
+    FileTime time = FileTime.fromMillis(accessTime);
+    try (Stream<Path> files = Files.walk(partitionDirectory.toPath())) {
+      files.filter(p -> p.getFileName().toString().equals(FILE_BLOB)).forEach(p -> {
+        try {
+          Files.getFileAttributeView(p, BasicFileAttributeView.class).setTimes(null, time, null);
+        } catch (IOException e) {
+          getLogger().debug("Failed to record access time of {}", p, e);
+        }
+      });
+    } catch (IOException | UncheckedIOException e) {
+      // partition relocated or deleted concurrently
+      getLogger().debug("Failed to record access time of partition {}", partition, e);
+    }
   }
 
   /**
-   * @param id the {@link Id} to the requested BLOB.
-   * @return the {@link File} pointing to the BLOB or {@code null} if not available.
+   * Moves an entire {@link BlobId#getPartition() partition} with all its BLOBs to the given {@code target} store that
+   * has to be of the same type so all {@link BlobId}s remain valid.
+   *
+   * @param partition the {@link BlobId#getPartition() partition} to move.
+   * @param target the {@link AbstractBlobStoreFs} where to move the partition to.
+   * @return {@code true} if the partition has been moved, {@code false} if it does not exist in this store.
    */
-  protected BlobId asBlobId(Id<DataResource> id) {
+  boolean movePartition(String partition, AbstractBlobStoreFs target) {
 
-    Objects.requireNonNull(id, "id");
-    BlobId blobId;
-    if (id instanceof BlobId) {
-      blobId = (BlobId) id;
-    } else {
-      blobId = BlobId.of(id.getId().toString());
+    File source = getPartitionDirectory(partition);
+    if (!source.isDirectory()) {
+      return false;
+    }
+    BlobVolume targetVolume = target.getHomeVolume(partition);
+    File destination = new File(targetVolume.getDataDirectory(), Util.toPath(partition));
+    if (destination.exists()) {
+      throw new IllegalStateException("Partition " + partition + " already exists at " + destination);
+    }
+    if (!target.renameTo(source, destination)) {
+      // different filesystem: copy into income directory and then rename atomically
+      File incomeFolder = new File(targetVolume.getIncomeDirectory(), target.createUniqueId());
+      copyPartition(source, incomeFolder);
+      if (!target.renameTo(incomeFolder, destination)) {
+        this.fileUtil.deleteRecursive(incomeFolder);
+        throw new IllegalStateException("Failed to move " + incomeFolder + " to " + destination);
+      }
+      this.fileUtil.deleteRecursive(source);
+    }
+    getLogger().debug("Moved partition {} to {}", partition, destination);
+    return true;
+  }
+
+  private void copyPartition(File source, File destination) {
+
+    boolean limited = this.ioScheduler.isLimited(IoClass.MAINTENANCE);
+    try {
+      if (limited) {
+        this.ioScheduler.begin(IoClass.MAINTENANCE);
+      }
+      try {
+        if (limited) {
+          long size;
+          try (Stream<Path> files = Files.walk(source.toPath())) {
+            size = files.mapToLong(file -> file.toFile().length()).sum();
+          }
+          this.ioScheduler.consume(IoClass.MAINTENANCE, size);
+        }
+        this.fileUtil.copyRecursive(source, destination, false);
+      } finally {
+        if (limited) {
+          this.ioScheduler.end(IoClass.MAINTENANCE);
+        }
+      }
+    } catch (IOException | UncheckedIOException e) {
+      throw new RuntimeIoException(e, IoMode.COPY);
     }
-    return blobId;
   }
 
   /**
-   * @param id the {@link BlobId} to the requested BLOB.
-   * @return the {@link File} pointing to the BLOB or {@code null} if not available.
+   * @param file1 the first {@link File}.
+   * @param file2 the second {@link File}.
+   * @return {@code true} if both {@link File}s have the same content, {@code false} otherwise (also if one of them
+   *         does not exist).
+   * @see BlobComparator
    */
-  protected File getBlobFile(BlobId id) {
-
-    String path = Util.toPath(id.getPartition());
-    String folder = id.getFolder();
-    if ((folder != null) && (!folder.isEmpty())) {
-      path = path + folder;
+  protected boolean isContentEqual(File file1, File file2) {
+
+    try (BlobMapping mapping1 = this.mappingCache.acquire(file1);
+        BlobMapping mapping2 = this.mappingCache.acquire(file2)) {
+      return BlobComparator.isEqual(mapping1, mapping2);
+    } catch (NoSuchFileException e) {
+      // deleted concurrently
+      return false;
     }
-    File blobFolder = new File(this.dataDirectory, path);
-    return getBlobFile(blobFolder, id);
   }
 
   /**
@@ -303,6 +1959,20 @@ public abstract class AbstractBlobStoreFs extends AbstractLoggableComponent impl
     /** @see #getIncomeFile() */
     private File incomeFile;
 
+    private BlobVolume dataVolume;
+
+    private long operation;
+
+    private String tenant;
+
+    private Duration timeToLive;
+
+    private long chargedBytes;
+
+    private int chargedObjects;
+
+    private long quotaSequence;
+
     /**
      * The constructor.
      *
@@ -318,17 +1988,7 @@ public abstract class AbstractBlobStoreFs extends AbstractLoggableComponent impl
      */
     protected File createIncomeFile() {
 
-      String partition = createUniqueId();
-      File inFile = new File(AbstractBlobStoreFs.this.incomeDirectory, partition);
-      if (inFile.exists()) {
-        getLogger().debug("Income file collision for {}", partition);
-        partition = createUniqueId();
-        inFile = new File(AbstractBlobStoreFs.this.incomeDirectory, partition);
-        if (inFile.exists()) {
-          throw new FileCreationFailedException(inFile);
-        }
-      }
-      return inFile;
+      return AbstractBlobStoreFs.this.createIncomeFile();
     }
 
     /**
@@ -336,8 +1996,7 @@ public abstract class AbstractBlobStoreFs extends AbstractLoggableComponent impl
      */
     protected String createUniqueId() {
 
-      long id = (System.currentTimeMillis() << 16) + System.nanoTime() + (Thread.currentThread().getName().hashCode() << 32);
-      return Long.toString(id, 16);
+      return AbstractBlobStoreFs.this.createUniqueId();
     }
 
     /**
@@ -360,6 +2019,137 @@ public abstract class AbstractBlobStoreFs extends AbstractLoggableComponent impl
       return this.incomeFile;
     }
 
+    /**
+     * @param incomeFile the {@link File} in the {@link AbstractBlobStoreFs#getIncomeDirectory() income directory} that
+     *        has already been written and shall be used as {@link #getIncomeFile() income file}.
+     */
+    protected void setIncomeFile(File incomeFile) {
+
+      if (this.incomeFile != null) {
+        throw new IllegalStateException("Income file already set to " + this.incomeFile);
+      }
+      this.incomeFile = incomeFile;
+    }
+
+    /**
+     * @return the name of the tenant the BLOB is saved for or {@code null} for none.
+     */
+    protected String getTenant() {
+
+      return this.tenant;
+    }
+
+    /**
+     * @param tenant the new value of {@link #getTenant()}.
+     */
+    void setTenant(String tenant) {
+
+      this.tenant = tenant;
+    }
+
+    /**
+     * @return the time-to-live after which the BLOB expires or {@code null} if it does not expire.
+     */
+    protected Duration getTimeToLive() {
+
+      return this.timeToLive;
+    }
+
+    /**
+     * @param timeToLive the new value of {@link #getTimeToLive()}.
+     */
+    void setTimeToLive(Duration timeToLive) {
+
+      this.timeToLive = timeToLive;
+    }
+
+    /**
+     * @return the number of bytes {@link #charge(long, int, File) charged} to the {@link #getTenant() tenant}.
+     */
+    long getChargedBytes() {
+
+      return this.chargedBytes;
+    }
+
+    /**
+     * @return the number of BLOBs {@link #charge(long, int, File) charged} to the {@link #getTenant() tenant}.
+     */
+    int getChargedObjects() {
+
+      return this.chargedObjects;
+    }
+
+    /**
+     * @return the sequence number of the {@link #charge(long, int, File) charge} in the {@link QuotaLedger} or
+     *         {@code 0} if not charged.
+     */
+    long getQuotaSequence() {
+
+      return this.quotaSequence;
+    }
+
+    /**
+     * Charges the {@link #getTenant() tenant} when the BLOB is {@link #commit() committed}. May only be called once.
+     *
+     * @param bytes the number of bytes to charge to the {@link #getTenant() tenant}.
+     * @param objects the number of BLOBs to charge to the {@link #getTenant() tenant}.
+     * @param file the {@link File} that will be created afterwards and indicates the charge (e.g. the file containing
+     *        the tenant). If the operation is interrupted by a crash, the charge remains if and only if this
+     *        {@link File} exists after recovery.
+     */
+    protected void charge(long bytes, int objects, File file) {
+
+      if (this.quotaSequence != 0) {
+        throw new IllegalStateException("Already charged");
+      }
+      this.quotaSequence = recordQuotaIntent(this.operation, this.tenant, bytes, objects, file);
+      this.chargedBytes = bytes;
+      this.chargedObjects = objects;
+    }
+
+    /**
+     * Begins the operation of this context in the {@link IntentJournal}. Has to be followed by {@link #endOperation()}.
+     */
+    void beginOperation() {
+
+      this.operation = AbstractBlobStoreFs.this.journal.begin();
+    }
+
+    /**
+     * @param type the type of the intent.
+     * @param file the {@link File} affected by the operation of this context.
+     * @see IntentJournal#record(long, char, File)
+     */
+    void recordIntent(char type, File file) {
+
+      if (this.operation != 0) {
+        AbstractBlobStoreFs.this.journal.record(this.operation, type, file);
+      }
+    }
+
+    /**
+     * Ends the {@link #beginOperation() operation} of this context in the {@link IntentJournal}.
+     */
+    void endOperation() {
+
+      if (this.operation != 0) {
+        endQuotaIntent(this.quotaSequence);
+        this.quotaSequence = 0;
+        AbstractBlobStoreFs.this.journal.end(this.operation);
+        this.operation = 0;
+      }
+    }
+
+    /**
+     * This method is called before {@link #commit()} if the {@link #getIncomeFile() income file} has been written
+     * without using {@link #openStream()}. Method may be overridden to calculate additional features from the
+     * {@link #getIncomeFile() income file}.
+     */
+    protected void digestIncomeFile() {
+
+      // nothing to do by default
+    }
+
     /**
      * @return the {@link DataResource#openStream() BLOB stream}. Method may be overridden to wrap the stream for
      *         additional features.
@@ -369,6 +2159,18 @@ public abstract class AbstractBlobStoreFs extends AbstractLoggableComponent impl
       return this.blob.openStream();
     }
 
+    /**
+     * This method is used by {@link AbstractBlobStoreFs#openForWrite()} where the data is written directly to the
+     * {@link #getIncomeFile() income file} instead of being read via {@link #openStream()}.
+     *
+     * @param out the {@link OutputStream} to the {@link #getIncomeFile() income file}.
+     * @return the given {@link OutputStream}. Method may be overridden to wrap the stream for additional features.
+     */
+    public OutputStream wrapOutputStream(OutputStream out) {
+
+      return out;
+    }
+
     /**
      * This method is called after the BLOB has been successfully written to the {@link #getIncomeFile() income file}.
      * It will move that file to its unique and final destination.
@@ -378,6 +2180,15 @@ public abstract class AbstractBlobStoreFs extends AbstractLoggableComponent impl
     public BlobId commit() {
 
       String partition = getPartition();
+      PartitionGuard guard = AbstractBlobStoreFs.this.partitionGuard;
+      if (guard == null) {
+        return commit(partition);
+      }
+      return guard.guard(partition, () -> commit(partition));
+    }
+
+    private BlobId commit(String partition) {
+
       File dataFile = createDataFile(partition);
       if (dataFile.exists()) {
         getLogger().debug("BLOB {} caused a collision at {}", this.blob.getName(), partition);
@@ -433,9 +2244,19 @@ public abstract class AbstractBlobStoreFs extends AbstractLoggableComponent impl
      */
     protected File createDataFile(String partition) {
 
-      File dataFolder = new File(AbstractBlobStoreFs.this.dataDirectory, createDataPath(partition));
+      BlobVolume volume;
+      if (AbstractBlobStoreFs.this.commitLocator == null) {
+        volume = selectDataVolume(partition, getIncomeVolume(this.incomeFile));
+      } else {
+        volume = AbstractBlobStoreFs.this.commitLocator.apply(partition);
+      }
+      this.dataVolume = volume;
+      File dataDirectory = volume.getDataDirectory();
+      File dataFolder = new File(dataDirectory, createDataPath(partition));
       AbstractBlobStoreFs.this.fileUtil.mkdirs(dataFolder);
-      return createDataFile(partition, dataFolder);
+      File dataFile = createDataFile(partition, dataFolder);
+      recordIntent(IntentJournal.TYPE_PARTITION, getPartitionDirectory(dataFile));
+      return dataFile;
     }
 
     /**
@@ -469,10 +2290,69 @@ public abstract class AbstractBlobStoreFs extends AbstractLoggableComponent impl
      */
     protected void doCommit(File blobFile) {
 
-      boolean success = this.incomeFile.renameTo(blobFile);
+      if (this.timeToLive != null) {
+        recordExpiring(blobFile);
+      }
+      if (this.tenant != null) {
+        // assigned before the BLOB becomes visible so recovery never finds it without its tenant
+        assignTenant(blobFile);
+      }
+      boolean success = renameTo(this.incomeFile, blobFile);
       if (!success) {
-        throw new IllegalStateException("Failed to move " + this.incomeFile + " to " + blobFile);
+        // rename is not possible across different volumes (filesystems)
+        moveAcrossVolumes(blobFile);
+      }
+    }
+
+    /**
+     * Called from {@link #doCommit(File)} before the BLOB is moved to the given data {@link File} if it is saved with a
+     * {@link #getTimeToLive() time-to-live}. Records the reference of the BLOB in the {@link IntentJournal} so it is
+     * deleted on recovery if a crash prevents its expiry from being recorded. By default the data {@link File} is the
+     * only reference of the BLOB.
+     *
+     * @param blobFile the data {@link File} of the BLOB.
+     */
+    protected void recordExpiring(File blobFile) {
+
+      recordIntent(IntentJournal.TYPE_REFERENCE, blobFile);
+    }
+
+    /**
+     * Copies the {@link #getIncomeFile() income file} into the {@link BlobVolume#getIncomeDirectory() income directory}
+     * of the {@link BlobVolume} of the given {@code blobFile} and then renames it atomically so a partially written BLOB
+     * never becomes visible.
+     *
+     * @param blobFile the data {@link File} located on a different {@link BlobVolume} (filesystem).
+     */
+    private void moveAcrossVolumes(File blobFile) {
+
+      File copy = new File(this.dataVolume.getIncomeDirectory(), createUniqueId());
+      recordIntent(IntentJournal.TYPE_INCOME, copy);
+      try {
+        Files.copy(this.incomeFile.toPath(), copy.toPath());
+      } catch (IOException e) {
+        getFileUtil().delete(copy);
+        throw new RuntimeIoException(e, IoMode.COPY);
+      }
+      if (!renameTo(copy, blobFile)) {
+        getFileUtil().delete(copy);
+        throw new IllegalStateException("Failed to move " + copy + " to " + blobFile);
       }
+      getFileUtil().delete(this.incomeFile);
+      getLogger().debug("Moved {} to {} across volumes", this.incomeFile, blobFile);
+    }
+
+    /**
+     * Called from {@link #doCommit(File)} before the BLOB is moved to the given data {@link File} if it is saved for a
+     * {@link #getTenant() tenant}. Records the tenant next to the new BLOB and {@link #charge(long, int, File) charges}
+     * it.
+     *
+     * @param blobFile the data {@link File} of the BLOB.
+     */
+    protected void assignTenant(File blobFile) {
+
+      charge(this.incomeFile.length(), 1, blobFile);
+      writeTenant(new File(blobFile.getParentFile(), FILE_TENANT), this.tenant);
     }
   }
 
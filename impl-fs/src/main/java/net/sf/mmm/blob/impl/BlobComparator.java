@@ -0,0 +1,103 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import net.sf.mmm.blob.api.BlobMapping;
+
+/**
+ * This class compares the content of two {@link BlobMapping memory-mapped} BLOBs. It reads eight bytes at once via
+ * {@link ByteBuffer#getLong(int)} in native byte order what the JIT compiles to plain word loads. Large BLOBs are first
+ * compared at a few sample blocks spread over the entire BLOB so that different content is typically rejected without
+ * reading it completely. Any difference exits the comparison immediately.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+class BlobComparator {
+
+  /** The minimum size in bytes of a BLOB to compare {@link #SAMPLE_COUNT samples} first. */
+  static final long SAMPLE_THRESHOLD = 1024 * 1024;
+
+  /** The number of sample blocks. */
+  static final int SAMPLE_COUNT = 16;
+
+  /** The size of a sample block in bytes. */
+  static final int SAMPLE_SIZE = 4096;
+
+  private BlobComparator() {
+    super();
+  }
+
+  /**
+   * @param mapping1 the first {@link BlobMapping}.
+   * @param mapping2 the second {@link BlobMapping}.
+   * @return {@code true} if both BLOBs have the same content, {@code false} otherwise.
+   */
+  static boolean isEqual(BlobMapping mapping1, BlobMapping mapping2) {
+
+    long size = mapping1.getSize();
+    if (size != mapping2.getSize()) {
+      return false;
+    }
+    if (size >= SAMPLE_THRESHOLD) {
+      long step = (size - SAMPLE_SIZE) / (SAMPLE_COUNT - 1);
+      for (int i = 0; i < SAMPLE_COUNT; i++) {
+        long position = i * step;
+        int segment = (int) (position / BlobMapping.SEGMENT_SIZE);
+        int offset = (int) (position % BlobMapping.SEGMENT_SIZE);
+        ByteBuffer buffer1 = mapping1.getSegment(segment);
+        ByteBuffer buffer2 = mapping2.getSegment(segment);
+        int end = Math.min(offset + SAMPLE_SIZE, buffer1.limit());
+        if (mismatch(buffer1, buffer2, offset, end) >= 0) {
+          return false;
+        }
+      }
+    }
+    int count = mapping1.getSegmentCount();
+    for (int segment = 0; segment < count; segment++) {
+      ByteBuffer buffer1 = mapping1.getSegment(segment);
+      ByteBuffer buffer2 = mapping2.getSegment(segment);
+      if (mismatch(buffer1, buffer2, 0, buffer1.limit()) >= 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param buffer1 the first {@link ByteBuffer}.
+   * @param buffer2 the second {@link ByteBuffer}.
+   * @param start the index where to start the comparison (inclusive).
+   * @param end the index where to end the comparison (exclusive).
+   * @return the index of the first byte that differs or {@code -1} if the given range is equal. A {@link ByteBuffer}
+   *         whose limit is less than {@code end} is considered to differ at its limit.
+   */
+  static int mismatch(ByteBuffer buffer1, ByteBuffer buffer2, int start, int end) {
+
+    ByteBuffer b1 = buffer1.duplicate().order(ByteOrder.nativeOrder());
+    ByteBuffer b2 = buffer2.duplicate().order(ByteOrder.nativeOrder());
+    int limit = Math.min(end, Math.min(b1.limit(), b2.limit()));
+    int i = start;
+    int longEnd = limit - 7;
+    while (i < longEnd) {
+      if (b1.getLong(i) != b2.getLong(i)) {
+        break;
+      }
+      i += 8;
+    }
+    while (i < limit) {
+      if (b1.get(i) != b2.get(i)) {
+        return i;
+      }
+      i++;
+    }
+    if (limit < end) {
+      return limit;
+    }
+    return -1;
+  }
+
+}
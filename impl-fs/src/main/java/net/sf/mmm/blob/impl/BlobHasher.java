@@ -0,0 +1,355 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+/**
+ * This is the abstract base class to calculate the hash of a BLOB according to a {@link DigestMode}.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+abstract class BlobHasher {
+
+  private final String algorithm;
+
+  /**
+   * The constructor.
+   *
+   * @param algorithm the name of the {@link MessageDigest} algorithm.
+   */
+  BlobHasher(String algorithm) {
+    super();
+    this.algorithm = algorithm;
+  }
+
+  /**
+   * @return a new {@link MessageDigest} for the configured algorithm.
+   */
+  MessageDigest createDigest() {
+
+    try {
+      return MessageDigest.getInstance(this.algorithm);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @param buffer the data to hash.
+   * @param offset the index in {@code buffer} where to start.
+   * @param length the number of bytes from {@code buffer} to hash.
+   */
+  abstract void update(byte[] buffer, int offset, int length);
+
+  /**
+   * Completes the calculation. May block until pending chunks have been hashed by worker threads.
+   *
+   * @return the hash of all data given to {@link #update(byte[], int, int)}.
+   */
+  abstract byte[] digest();
+
+  /**
+   * @param in the {@link InputStream} to wrap.
+   * @return an {@link InputStream} that {@link #update(byte[], int, int) updates} this hasher with all bytes that are
+   *         read.
+   */
+  InputStream wrap(InputStream in) {
+
+    return new HashingInputStream(in);
+  }
+
+  /**
+   * @param out the {@link OutputStream} to wrap.
+   * @return an {@link OutputStream} that {@link #update(byte[], int, int) updates} this hasher with all bytes that are
+   *         written.
+   */
+  OutputStream wrap(OutputStream out) {
+
+    return new HashingOutputStream(out);
+  }
+
+  /**
+   * @param algorithm the name of the {@link MessageDigest} algorithm.
+   * @param mode the {@link DigestMode}.
+   * @param chunkSize the size of the chunks handed over to worker threads.
+   * @param parallelism the number of worker threads of the given {@link Executor}.
+   * @param executor the {@link Executor} for the worker threads. May be {@code null} for {@link DigestMode#STREAM}.
+   * @return the new {@link BlobHasher}.
+   */
+  static BlobHasher of(String algorithm, DigestMode mode, int chunkSize, int parallelism, Executor executor) {
+
+    if ((mode == null) || (mode == DigestMode.STREAM)) {
+      return new StreamHasher(algorithm);
+    } else if (mode == DigestMode.PIPELINED) {
+      return new PipelinedHasher(algorithm, chunkSize, executor);
+    } else if (mode == DigestMode.TREE) {
+      return new TreeHasher(algorithm, chunkSize, 2 * parallelism, executor);
+    }
+    throw new IllegalArgumentException(mode.toString());
+  }
+
+  /**
+   * {@link BlobHasher} for {@link DigestMode#STREAM}.
+   */
+  private static class StreamHasher extends BlobHasher {
+
+    private final MessageDigest digest;
+
+    private StreamHasher(String algorithm) {
+      super(algorithm);
+      this.digest = createDigest();
+    }
+
+    @Override
+    void update(byte[] buffer, int offset, int length) {
+
+      this.digest.update(buffer, offset, length);
+    }
+
+    @Override
+    byte[] digest() {
+
+      return this.digest.digest();
+    }
+  }
+
+  /**
+   * Abstract base class for a {@link BlobHasher} that collects the data into chunks handed over to worker threads.
+   */
+  private abstract static class ChunkHasher extends BlobHasher {
+
+    private final int chunkSize;
+
+    private final Semaphore pendingChunks;
+
+    /** The {@link Executor} for the worker threads. */
+    protected final Executor executor;
+
+    private byte[] chunk;
+
+    private int chunkLength;
+
+    private ChunkHasher(String algorithm, int chunkSize, int maxPendingChunks, Executor executor) {
+      super(algorithm);
+      this.chunkSize = chunkSize;
+      this.pendingChunks = new Semaphore(maxPendingChunks);
+      this.executor = executor;
+    }
+
+    @Override
+    void update(byte[] buffer, int offset, int length) {
+
+      int start = offset;
+      int rest = length;
+      while (rest > 0) {
+        if (this.chunk == null) {
+          this.chunk = new byte[this.chunkSize];
+          this.chunkLength = 0;
+        }
+        int count = Math.min(rest, this.chunkSize - this.chunkLength);
+        System.arraycopy(buffer, start, this.chunk, this.chunkLength, count);
+        this.chunkLength += count;
+        start += count;
+        rest -= count;
+        if (this.chunkLength == this.chunkSize) {
+          flush();
+        }
+      }
+    }
+
+    private void flush() {
+
+      try {
+        this.pendingChunks.acquire();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(e);
+      }
+      CompletableFuture<?> future = hashChunk(this.chunk, this.chunkLength);
+      future.whenComplete((result, error) -> this.pendingChunks.release());
+      this.chunk = null;
+    }
+
+    /**
+     * @param data the chunk data. Exclusively owned by this hasher and will not be modified anymore.
+     * @param length the number of bytes in {@code data} to hash.
+     * @return the {@link CompletableFuture} of the asynchronous hashing.
+     */
+    protected abstract CompletableFuture<?> hashChunk(byte[] data, int length);
+
+    /**
+     * @return the final hash after all chunks have been completed.
+     */
+    protected abstract byte[] complete();
+
+    @Override
+    byte[] digest() {
+
+      if ((this.chunk != null) && (this.chunkLength > 0)) {
+        flush();
+      }
+      return complete();
+    }
+  }
+
+  /**
+   * {@link BlobHasher} for {@link DigestMode#PIPELINED}.
+   */
+  private static class PipelinedHasher extends ChunkHasher {
+
+    private static final int MAX_PENDING_CHUNKS = 4;
+
+    private final MessageDigest digest;
+
+    private CompletableFuture<Void> tail;
+
+    private PipelinedHasher(String algorithm, int chunkSize, Executor executor) {
+      super(algorithm, chunkSize, MAX_PENDING_CHUNKS, executor);
+      this.digest = createDigest();
+      this.tail = CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    protected CompletableFuture<?> hashChunk(byte[] data, int length) {
+
+      // chaining the stages guarantees that the chunks are digested sequentially in their original order
+      this.tail = this.tail.thenRunAsync(() -> this.digest.update(data, 0, length), this.executor);
+      return this.tail;
+    }
+
+    @Override
+    protected byte[] complete() {
+
+      this.tail.join();
+      return this.digest.digest();
+    }
+  }
+
+  /**
+   * {@link BlobHasher} for {@link DigestMode#TREE}.
+   */
+  private static class TreeHasher extends ChunkHasher {
+
+    private final List<CompletableFuture<byte[]>> chunkHashes;
+
+    private TreeHasher(String algorithm, int chunkSize, int maxPendingChunks, Executor executor) {
+      super(algorithm, chunkSize, maxPendingChunks, executor);
+      this.chunkHashes = new ArrayList<>();
+    }
+
+    @Override
+    protected CompletableFuture<?> hashChunk(byte[] data, int length) {
+
+      CompletableFuture<byte[]> future = CompletableFuture.supplyAsync(() -> {
+        MessageDigest digest = createDigest();
+        digest.update(data, 0, length);
+        return digest.digest();
+      }, this.executor);
+      this.chunkHashes.add(future);
+      return future;
+    }
+
+    @Override
+    protected byte[] complete() {
+
+      MessageDigest digest = createDigest();
+      for (CompletableFuture<byte[]> chunkHash : this.chunkHashes) {
+        digest.update(chunkHash.join());
+      }
+      return digest.digest();
+    }
+  }
+
+  /**
+   * {@link FilterInputStream} that {@link BlobHasher#update(byte[], int, int) updates} the {@link BlobHasher}.
+   */
+  private class HashingInputStream extends FilterInputStream {
+
+    private HashingInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+
+      int b = this.in.read();
+      if (b >= 0) {
+        update(new byte[] { (byte) b }, 0, 1);
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+
+      int count = this.in.read(buffer, offset, length);
+      if (count > 0) {
+        update(buffer, offset, count);
+      }
+      return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+
+      if (n <= 0) {
+        return 0;
+      }
+      // skipped bytes have to be hashed as well
+      byte[] buffer = new byte[(int) Math.min(n, 4096)];
+      long rest = n;
+      while (rest > 0) {
+        int count = read(buffer, 0, (int) Math.min(rest, buffer.length));
+        if (count < 0) {
+          break;
+        }
+        rest -= count;
+      }
+      return n - rest;
+    }
+
+    @Override
+    public boolean markSupported() {
+
+      return false;
+    }
+  }
+
+  /**
+   * {@link FilterOutputStream} that {@link BlobHasher#update(byte[], int, int) updates} the {@link BlobHasher}.
+   */
+  private class HashingOutputStream extends FilterOutputStream {
+
+    private HashingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+
+      this.out.write(b);
+      update(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+
+      this.out.write(buffer, offset, length);
+      update(buffer, offset, length);
+    }
+  }
+
+}
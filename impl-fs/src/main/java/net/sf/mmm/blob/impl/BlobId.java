@@ -9,7 +9,10 @@ import net.sf.mmm.util.data.base.id.StringVersionId;
 import net.sf.mmm.util.resource.api.DataResource;
 
 /**
- * This is the implementation of {@link Id} pointing to a <em>Binary Large OBject</em> (BLOB).
+ * This is the implementation of {@link Id} pointing to a <em>Binary Large OBject</em> (BLOB). Its {@link #getId() ID}
+ * has the format {@code <partition>[/<folder>][#<copy>]} where each segment is a non-empty sequence of ASCII letters,
+ * digits, {@code '-'} or {@code '_'}. As the segments are mapped to files, any other character (e.g. {@code '.'} or a
+ * path separator) is rejected so an {@link Id} received from a client can never point outside of the store.
  *
  * @author hohwille
  * @since 1.0.0
@@ -63,11 +66,30 @@ public class BlobId extends StringVersionId<DataResource> {
    */
   private BlobId(String partition, String folder, String copy, Long version, String id) {
     super(DataResource.class, id, version);
+    if (!isSegment(partition) || ((folder != null) && !isSegment(folder)) || ((copy != null) && !isSegment(copy))) {
+      throw new IllegalArgumentException("Invalid BLOB ID: " + id);
+    }
     this.partition = partition;
     this.folder = folder;
     this.copy = copy;
   }
 
+  private static boolean isSegment(String segment) {
+
+    if ((segment == null) || segment.isEmpty()) {
+      return false;
+    }
+    for (int i = 0; i < segment.length(); i++) {
+      char c = segment.charAt(i);
+      boolean valid = ((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z')) || ((c >= '0') && (c <= '9'))
+          || (c == '-') || (c == '_');
+      if (!valid) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   private static String createId(String partition, String folder, String copy) {
 
     if ((folder == null) && (copy == null)) {
@@ -123,6 +145,7 @@ public class BlobId extends StringVersionId<DataResource> {
   /**
    * @param id the {@link #getId() ID} {@link String}.
    * @return the new {@link BlobId} instance.
+   * @throws IllegalArgumentException if the given {@code id} does not match the format of a {@link BlobId}.
    */
   public static BlobId of(String id) {
 
@@ -133,6 +156,7 @@ public class BlobId extends StringVersionId<DataResource> {
    * @param id the {@link #getId() ID} {@link String}.
    * @param version the {@link #getVersion() version}.
    * @return the new {@link BlobId} instance.
+   * @throws IllegalArgumentException if the given {@code id} does not match the format of a {@link BlobId}.
    */
   public static BlobId of(String id, Long version) {
 
@@ -0,0 +1,163 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import net.sf.mmm.util.data.api.id.Id;
+import net.sf.mmm.util.resource.api.DataResource;
+
+/**
+ * This is the {@link Spliterator} for {@link AbstractBlobStoreFs#ids(String)}. It traverses the
+ * {@link BlobVolume#getDataDirectory() data directories} depth-first and lazily so only the pending sibling directories
+ * are held in memory. It {@link #trySplit() splits} by handing over half of the pending directories, what are the
+ * highest (and therefore largest) subtrees. Directories that can not contain an {@link Id} with the requested prefix
+ * are skipped without being listed.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+class BlobIdSpliterator implements Spliterator<Id<DataResource>> {
+
+  private final AbstractBlobStoreFs store;
+
+  private final String prefix;
+
+  private final String partitionPrefix;
+
+  private final Deque<Directory> directories;
+
+  private final Deque<BlobId> ids;
+
+  /**
+   * The constructor.
+   *
+   * @param store the {@link AbstractBlobStoreFs} to traverse.
+   * @param prefix the prefix of the {@link BlobId#getId() IDs} to list. May be {@code null}.
+   */
+  BlobIdSpliterator(AbstractBlobStoreFs store, String prefix) {
+    this(store, prefix, new ArrayDeque<>());
+    for (BlobVolume volume : store.getVolumes()) {
+      this.directories.addLast(new Directory(volume.getDataDirectory(), ""));
+    }
+  }
+
+  private BlobIdSpliterator(AbstractBlobStoreFs store, String prefix, Deque<Directory> directories) {
+    super();
+    this.store = store;
+    if (prefix == null) {
+      this.prefix = "";
+    } else {
+      this.prefix = prefix;
+    }
+    // the path of the directories only contains the partition and the folder without separators
+    int end = this.prefix.length();
+    for (int i = 0; i < end; i++) {
+      char c = this.prefix.charAt(i);
+      if ((c == '/') || (c == '#')) {
+        end = i;
+        break;
+      }
+    }
+    this.partitionPrefix = this.prefix.substring(0, end);
+    this.directories = directories;
+    this.ids = new ArrayDeque<>();
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super Id<DataResource>> action) {
+
+    while (this.ids.isEmpty()) {
+      Directory directory = this.directories.pollFirst();
+      if (directory == null) {
+        return false;
+      }
+      scan(directory);
+    }
+    action.accept(this.ids.pollFirst());
+    return true;
+  }
+
+  private void scan(Directory directory) {
+
+    File[] children = directory.file.listFiles();
+    if (children == null) {
+      // deleted concurrently
+      return;
+    }
+    for (File child : children) {
+      String name = child.getName();
+      if (name.equals(AbstractBlobStoreFs.FILE_BLOB)) {
+        this.store.collectIds(child, directory.path, this::collect);
+      } else if (child.isDirectory()) {
+        String path = directory.path + name;
+        if (isCandidate(path)) {
+          this.directories.addFirst(new Directory(child, path));
+        }
+      }
+    }
+  }
+
+  private boolean isCandidate(String path) {
+
+    int length = Math.min(path.length(), this.partitionPrefix.length());
+    return path.regionMatches(0, this.partitionPrefix, 0, length);
+  }
+
+  private void collect(BlobId id) {
+
+    if (id.getId().startsWith(this.prefix)) {
+      this.ids.addLast(id);
+    }
+  }
+
+  @Override
+  public Spliterator<Id<DataResource>> trySplit() {
+
+    if (this.directories.size() == 1) {
+      scan(this.directories.pollFirst());
+    }
+    int size = this.directories.size();
+    if (size < 2) {
+      return null;
+    }
+    Deque<Directory> split = new ArrayDeque<>();
+    for (int i = size / 2; i > 0; i--) {
+      split.addFirst(this.directories.pollLast());
+    }
+    return new BlobIdSpliterator(this.store, this.prefix, split);
+  }
+
+  @Override
+  public long estimateSize() {
+
+    return Long.MAX_VALUE;
+  }
+
+  @Override
+  public int characteristics() {
+
+    return DISTINCT | NONNULL;
+  }
+
+  /**
+   * A directory pending to be traversed.
+   */
+  private static class Directory {
+
+    private final File file;
+
+    private final String path;
+
+    private Directory(File file, String path) {
+      super();
+      this.file = file;
+      this.path = path;
+    }
+  }
+
+}
@@ -0,0 +1,217 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+
+import net.sf.mmm.blob.api.BlobMapping;
+import net.sf.mmm.util.io.api.IoMode;
+import net.sf.mmm.util.io.api.RuntimeIoException;
+
+/**
+ * This class memory-maps BLOB files for {@link AbstractBlobStoreFs#map(net.sf.mmm.util.data.api.id.Id)}. Concurrent
+ * {@link BlobMapping}s of the same file share a single mapping that is reference counted. When the last
+ * {@link BlobMapping} is {@link BlobMapping#close() closed}, the mapping is unmapped immediately instead of waiting for
+ * the garbage collector (what can keep deleted files occupying disc space and exhaust the virtual address space).
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+class BlobMappingCache {
+
+  private static final Unmapper UNMAPPER = createUnmapper();
+
+  private final Logger logger;
+
+  private final Map<Object, SharedMapping> mappings;
+
+  /**
+   * The constructor.
+   *
+   * @param logger the {@link Logger} of the owning store.
+   */
+  BlobMappingCache(Logger logger) {
+    super();
+    this.logger = logger;
+    this.mappings = new HashMap<>();
+  }
+
+  /**
+   * @param blobFile the BLOB {@link File} to map.
+   * @return a new {@link BlobMapping} for the given {@link File}.
+   * @throws NoSuchFileException if the {@link File} does not exist.
+   */
+  BlobMapping acquire(File blobFile) throws NoSuchFileException {
+
+    Path path = blobFile.toPath();
+    try {
+      BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+      // file key identifies the physical file so a BLOB deleted and restored under the same path is mapped again
+      Object key = attributes.fileKey();
+      if (key == null) {
+        key = path;
+      }
+      SharedMapping mapping;
+      synchronized (this) {
+        mapping = this.mappings.get(key);
+        if (mapping == null) {
+          mapping = new SharedMapping(key, attributes.size(), map(path, attributes.size()));
+          this.mappings.put(key, mapping);
+        }
+        mapping.references++;
+      }
+      return new Handle(mapping);
+    } catch (NoSuchFileException e) {
+      throw e;
+    } catch (IOException e) {
+      throw new RuntimeIoException(e, IoMode.READ);
+    }
+  }
+
+  /**
+   * @return the number of files currently mapped.
+   */
+  synchronized int size() {
+
+    return this.mappings.size();
+  }
+
+  private ByteBuffer[] map(Path path, long size) throws IOException {
+
+    int count = Math.max(1, (int) ((size + BlobMapping.SEGMENT_SIZE - 1) / BlobMapping.SEGMENT_SIZE));
+    ByteBuffer[] segments = new ByteBuffer[count];
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long position = 0;
+      for (int i = 0; i < count; i++) {
+        long length = Math.min(size - position, BlobMapping.SEGMENT_SIZE);
+        segments[i] = channel.map(MapMode.READ_ONLY, position, length);
+        position += length;
+      }
+    } catch (IOException | RuntimeException e) {
+      unmap(segments);
+      throw e;
+    }
+    // the mapping stays valid after the channel is closed
+    return segments;
+  }
+
+  private synchronized void release(SharedMapping mapping) {
+
+    mapping.references--;
+    if (mapping.references == 0) {
+      this.mappings.remove(mapping.key);
+      unmap(mapping.segments);
+    }
+  }
+
+  private void unmap(ByteBuffer[] segments) {
+
+    if (UNMAPPER == null) {
+      this.logger.debug("Unmapping is not supported by this JVM - leaving it to garbage collection");
+      return;
+    }
+    for (ByteBuffer segment : segments) {
+      if (segment instanceof MappedByteBuffer) {
+        try {
+          UNMAPPER.unmap(segment);
+        } catch (Exception e) {
+          this.logger.debug("Failed to unmap buffer - leaving it to garbage collection", e);
+        }
+      }
+    }
+  }
+
+  private static Unmapper createUnmapper() {
+
+    try {
+      // Java 9+
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      Field field = unsafeClass.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      Object unsafe = field.get(null);
+      return buffer -> invokeCleaner.invoke(unsafe, buffer);
+    } catch (NoSuchMethodException e) {
+      // Java 8
+    } catch (Exception | LinkageError e) {
+      return null;
+    }
+    try {
+      Method cleanerMethod = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+      Method cleanMethod = Class.forName("sun.misc.Cleaner").getMethod("clean");
+      return buffer -> {
+        Object cleaner = cleanerMethod.invoke(buffer);
+        if (cleaner != null) {
+          cleanMethod.invoke(cleaner);
+        }
+      };
+    } catch (Exception | LinkageError e) {
+      return null;
+    }
+  }
+
+  /**
+   * Unmaps a {@link MappedByteBuffer}.
+   */
+  private interface Unmapper {
+
+    void unmap(ByteBuffer buffer) throws Exception;
+  }
+
+  /**
+   * A mapping of a BLOB file shared by all its {@link Handle}s.
+   */
+  private static class SharedMapping {
+
+    private final Object key;
+
+    private final long size;
+
+    private final ByteBuffer[] segments;
+
+    private int references;
+
+    private SharedMapping(Object key, long size, ByteBuffer[] segments) {
+      super();
+      this.key = key;
+      this.size = size;
+      this.segments = segments;
+    }
+  }
+
+  /**
+   * The {@link BlobMapping} handed out for a {@link SharedMapping}.
+   */
+  private class Handle extends BlobMapping {
+
+    private final SharedMapping mapping;
+
+    private Handle(SharedMapping mapping) {
+      super(mapping.size, mapping.segments);
+      this.mapping = mapping;
+    }
+
+    @Override
+    protected void release() {
+
+      BlobMappingCache.this.release(this.mapping);
+    }
+  }
+
+}
@@ -0,0 +1,119 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import net.sf.mmm.blob.api.BlobOutputStream;
+import net.sf.mmm.util.data.api.id.Id;
+import net.sf.mmm.util.resource.api.DataResource;
+
+/**
+ * This is the implementation of {@link BlobOutputStream} for {@link AbstractBlobStoreFs}. The data is written directly
+ * to the {@link AbstractBlobStoreFs.BlobContext#getIncomeFile() income file} that is
+ * {@link AbstractBlobStoreFs.BlobContext#commit() committed} on {@link #close()}.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+class BlobOutputStreamImplFs extends BlobOutputStream {
+
+  private final AbstractBlobStoreFs store;
+
+  private final AbstractBlobStoreFs.BlobContext context;
+
+  private final OutputStream out;
+
+  private BlobId id;
+
+  private boolean closed;
+
+  /**
+   * The constructor.
+   *
+   * @param store the owning {@link AbstractBlobStoreFs}.
+   * @param context the {@link AbstractBlobStoreFs.BlobContext} of the BLOB to write.
+   * @param out the {@link OutputStream} to the {@link AbstractBlobStoreFs.BlobContext#getIncomeFile() income file}.
+   */
+  BlobOutputStreamImplFs(AbstractBlobStoreFs store, AbstractBlobStoreFs.BlobContext context, OutputStream out) {
+    super();
+    this.store = store;
+    this.context = context;
+    this.out = out;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+
+    verifyOpen();
+    this.out.write(b);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+
+    verifyOpen();
+    this.out.write(b, off, len);
+  }
+
+  @Override
+  public void flush() throws IOException {
+
+    this.out.flush();
+  }
+
+  private void verifyOpen() throws IOException {
+
+    if (this.closed) {
+      throw new IOException("Stream closed");
+    }
+  }
+
+  @Override
+  public Id<DataResource> getId() {
+
+    return this.id;
+  }
+
+  @Override
+  public void abort() {
+
+    if (this.closed) {
+      return;
+    }
+    this.closed = true;
+    File incomeFile = this.context.getIncomeFile();
+    try {
+      this.out.close();
+    } catch (IOException e) {
+      this.store.getLogger().debug("Failed to close aborted BLOB {}", incomeFile, e);
+    }
+    this.store.getFileUtil().delete(incomeFile);
+    this.context.endOperation();
+  }
+
+  @Override
+  public void close() throws IOException {
+
+    if (this.closed) {
+      return;
+    }
+    this.closed = true;
+    File incomeFile = this.context.getIncomeFile();
+    boolean success = false;
+    try {
+      this.out.close();
+      this.id = this.context.commit();
+      this.store.getLogger().debug("Saved {} bytes written to {}", Long.valueOf(incomeFile.length()), incomeFile);
+      success = true;
+    } finally {
+      if (!success && incomeFile.exists()) {
+        this.store.getFileUtil().delete(incomeFile);
+      }
+      this.context.endOperation();
+    }
+  }
+
+}
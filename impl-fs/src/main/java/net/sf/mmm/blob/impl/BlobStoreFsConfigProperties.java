@@ -2,6 +2,10 @@
  * http://www.apache.org/licenses/LICENSE-2.0 */
 package net.sf.mmm.blob.impl;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 import net.sf.mmm.util.file.api.FileUtilLimited;
@@ -17,8 +21,26 @@ public class BlobStoreFsConfigProperties {
 
   private String directory = System.getProperty(FileUtilLimited.PROPERTY_USER_HOME) + "/.mmm/blobstore";
 
+  private List<String> directories = new ArrayList<>();
+
   private String digest = "MD5";
 
+  private DigestMode digestMode = DigestMode.STREAM;
+
+  private int digestChunkSize = 1024 * 1024;
+
+  private int digestThreads = Runtime.getRuntime().availableProcessors();
+
+  private Duration expiryBucket = Duration.ofHours(1);
+
+  private Duration reaperInterval = Duration.ofMinutes(1);
+
+  private Duration pruneInterval = Duration.ofSeconds(10);
+
+  private boolean journalSync;
+
+  private boolean dedupVerify;
+
   /**
    * The constructor.
    */
@@ -42,6 +64,26 @@ public class BlobStoreFsConfigProperties {
     this.directory = directory;
   }
 
+  /**
+   * @return the {@link List} of root directories (typically on different discs) where the BLOBs are stored on the
+   *         filesystem. Each BLOB is placed in exactly one of these directories that is determined from its
+   *         {@link BlobId#getPartition() partition}. If empty (default), only {@link #getDirectory()} is used. Otherwise
+   *         {@link #getDirectory()} is ignored. <b>ATTENTION:</b> Directories may be appended to an existing store but
+   *         must never be reordered or removed.
+   */
+  public List<String> getDirectories() {
+
+    return this.directories;
+  }
+
+  /**
+   * @param directories the new value of {@link #getDirectories()}.
+   */
+  public void setDirectories(List<String> directories) {
+
+    this.directories = directories;
+  }
+
   /**
    * @return the name of the {@link java.security.MessageDigest} used to calculate a hash of each BLOB. The default is
    *         MD5. Algorithms like SHA-256 will cause less collisions and are preferred for cryptographic use. However,
@@ -62,4 +104,146 @@ public class BlobStoreFsConfigProperties {
     this.digest = digest;
   }
 
+  /**
+   * @return the {@link DigestMode} how the {@link #getDigest() digest} is calculated. The default is
+   *         {@link DigestMode#STREAM}. Use {@link DigestMode#PIPELINED} or {@link DigestMode#TREE} to utilize multiple
+   *         cores for very large BLOBs.
+   */
+  public DigestMode getDigestMode() {
+
+    return this.digestMode;
+  }
+
+  /**
+   * @param digestMode the new value of {@link #getDigestMode()}.
+   */
+  public void setDigestMode(DigestMode digestMode) {
+
+    this.digestMode = digestMode;
+  }
+
+  /**
+   * @return the size of the chunks in bytes handed over to the hash workers if the {@link #getDigestMode() digest
+   *         mode} is not {@link DigestMode#STREAM}. For {@link DigestMode#TREE} this value is part of the hash and may
+   *         not be changed for an existing store. The default is 1 MiB.
+   */
+  public int getDigestChunkSize() {
+
+    return this.digestChunkSize;
+  }
+
+  /**
+   * @param digestChunkSize the new value of {@link #getDigestChunkSize()}.
+   */
+  public void setDigestChunkSize(int digestChunkSize) {
+
+    this.digestChunkSize = digestChunkSize;
+  }
+
+  /**
+   * @return the number of worker threads used to calculate hashes if the {@link #getDigestMode() digest mode} is not
+   *         {@link DigestMode#STREAM}. The default is the number of available processors.
+   */
+  public int getDigestThreads() {
+
+    return this.digestThreads;
+  }
+
+  /**
+   * @param digestThreads the new value of {@link #getDigestThreads()}.
+   */
+  public void setDigestThreads(int digestThreads) {
+
+    this.digestThreads = digestThreads;
+  }
+
+  /**
+   * @return the time span of a bucket of the expiry index for BLOBs
+   *         {@link AbstractBlobStoreFs#save(net.sf.mmm.util.resource.api.DataResource, Duration) saved with a
+   *         time-to-live}. Expired BLOBs are deleted when their bucket is over. The default is one hour.
+   */
+  public Duration getExpiryBucket() {
+
+    return this.expiryBucket;
+  }
+
+  /**
+   * @param expiryBucket the new value of {@link #getExpiryBucket()}.
+   */
+  public void setExpiryBucket(Duration expiryBucket) {
+
+    this.expiryBucket = expiryBucket;
+  }
+
+  /**
+   * @return the interval in which the reaper checks for expired BLOBs. The default is one minute.
+   */
+  public Duration getReaperInterval() {
+
+    return this.reaperInterval;
+  }
+
+  /**
+   * @param reaperInterval the new value of {@link #getReaperInterval()}.
+   */
+  public void setReaperInterval(Duration reaperInterval) {
+
+    this.reaperInterval = reaperInterval;
+  }
+
+  /**
+   * @return the interval in which the directories left empty by deleted BLOBs are pruned in the background. Deletions
+   *         are collected and pruned as batch so the latency of a delete does not grow. A value that is not positive
+   *         disables pruning. The default is ten seconds.
+   */
+  public Duration getPruneInterval() {
+
+    return this.pruneInterval;
+  }
+
+  /**
+   * @param pruneInterval the new value of {@link #getPruneInterval()}.
+   */
+  public void setPruneInterval(Duration pruneInterval) {
+
+    this.pruneInterval = pruneInterval;
+  }
+
+  /**
+   * @return {@code true} if every record of the intent journal and every update of the tenant usage is forced to the
+   *         disc so operations interrupted by a power failure can also be reconciled, {@code false} otherwise (only
+   *         process crashes are covered). The default is {@code false}.
+   */
+  public boolean isJournalSync() {
+
+    return this.journalSync;
+  }
+
+  /**
+   * @param journalSync the new value of {@link #isJournalSync()}.
+   */
+  public void setJournalSync(boolean journalSync) {
+
+    this.journalSync = journalSync;
+  }
+
+  /**
+   * @return {@code true} if a BLOB detected as duplicate by its {@link #getDigest() hash} and size is also compared
+   *         byte by byte with the existing BLOB before it is de-duplicated, {@code false} otherwise. This rules out
+   *         data loss by hash collisions (e.g. for MD5) at the cost of reading the existing BLOB. The default is
+   *         {@code false}.
+   */
+  public boolean isDedupVerify() {
+
+    return this.dedupVerify;
+  }
+
+  /**
+   * @param dedupVerify the new value of {@link #isDedupVerify()}.
+   */
+  public void setDedupVerify(boolean dedupVerify) {
+
+    this.dedupVerify = dedupVerify;
+  }
+
 }
@@ -3,32 +3,200 @@
 package net.sf.mmm.blob.impl;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.security.DigestInputStream;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.io.OutputStream;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 import net.sf.mmm.blob.api.BlobStore;
+import net.sf.mmm.util.io.api.IoMode;
+import net.sf.mmm.util.io.api.RuntimeIoException;
 import net.sf.mmm.util.resource.api.DataResource;
 
 /**
  * This is an implementation of {@link BlobStore} that writes the BLOBs into the local file-system. For general
  * limitations see {@link AbstractBlobStoreFs}. Additionally this implementation calculates a hash of the file on the
  * fly when writing to disk. It will then check if the file is already in the store and in that case avoid to create a
- * physical duplicate on the disc.
+ * physical duplicate on the disc. Via {@link BlobStoreFsConfigProperties#getDigestMode()} the hash can also be calculated
+ * by worker threads concurrently to the write what speeds up saving of very large BLOBs on multi-core machines. With
+ * {@link BlobStoreFsConfigProperties#isDedupVerify()} duplicates are also verified by comparing their content.
  *
  * @author hohwille
  * @since 1.0.0
  */
 public class BlobStoreImplDeduplicatingFs extends AbstractBlobStoreFs {
 
+  private static final int COMMIT_LOCKS = 64;
+
+  private final Object[] commitLocks;
+
+  private ExecutorService digestExecutor;
+
   /**
    * The constructor.
    */
   public BlobStoreImplDeduplicatingFs() {
     super();
+    this.commitLocks = new Object[COMMIT_LOCKS];
+    for (int i = 0; i < COMMIT_LOCKS; i++) {
+      this.commitLocks[i] = new Object();
+    }
+  }
+
+  @Override
+  protected void doInitialize() {
+
+    super.doInitialize();
+    BlobStoreFsConfigProperties config = getConfig();
+    DigestMode digestMode = config.getDigestMode();
+    if ((digestMode != null) && (digestMode != DigestMode.STREAM)) {
+      this.digestExecutor = Executors.newFixedThreadPool(config.getDigestThreads(), r -> {
+        Thread thread = new Thread(r, "blob-digest");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+
+  @Override
+  public void close() {
+
+    if (this.digestExecutor != null) {
+      this.digestExecutor.shutdown();
+    }
+    super.close();
+  }
+
+  /**
+   * {@inheritDoc} As identical BLOBs share the same {@link Id} this is {@code false} unless references are counted.
+   */
+  @Override
+  protected boolean isExpirySupported() {
+
+    return false;
+  }
+
+  /**
+   * {@inheritDoc} The {@link Id} of a BLOB is its hash.
+   */
+  @Override
+  public boolean isContentAddressed() {
+
+    return true;
+  }
+
+  @Override
+  protected String getHash(BlobId id) {
+
+    return id.getPartition();
+  }
+
+  @Override
+  protected File getPartitionDirectory(File blobFile) {
+
+    return blobFile.getParentFile().getParentFile();
+  }
+
+  @Override
+  protected void collectIds(File blobFile, String path, Consumer<BlobId> ids) {
+
+    String folder = blobFile.getParentFile().getName();
+    String partition = path.substring(0, path.length() - folder.length());
+    collectIds(blobFile, partition, folder, ids);
+  }
+
+  /**
+   * @param blobFile the {@link #getBlobFile(BlobId) BLOB file}.
+   * @param partition the {@link BlobId#getPartition() partition}.
+   * @param folder the {@link BlobId#getFolder() folder}.
+   * @param ids the {@link Consumer} that receives the {@link BlobId}s of the given {@code blobFile}.
+   * @see #collectIds(File, String, Consumer)
+   */
+  protected void collectIds(File blobFile, String partition, String folder, Consumer<BlobId> ids) {
+
+    ids.accept(new BlobId(partition, folder, null));
+  }
+
+  /**
+   * {@inheritDoc} As the {@link BlobId#getPartition() partition} is the hash of the BLOB that is unknown before the BLOB
+   * has been written, this implementation selects the {@link BlobVolume} with the least {@link BlobVolume#getActiveWrites()
+   * active writes} and in case of a tie the most usable space.
+   *
+   * @see #selectDataVolume(String, BlobVolume)
+   */
+  @Override
+  protected BlobVolume selectIncomeVolume(String incomeId) {
+
+    List<BlobVolume> volumes = getVolumes();
+    if (volumes.size() == 1) {
+      return volumes.get(0);
+    }
+    BlobVolume result = null;
+    int minWrites = 0;
+    long maxSpace = 0;
+    for (BlobVolume volume : volumes) {
+      int writes = volume.getActiveWrites();
+      if ((result == null) || (writes < minWrites)) {
+        result = volume;
+        minWrites = writes;
+        maxSpace = -1;
+      } else if (writes == minWrites) {
+        if (maxSpace < 0) {
+          maxSpace = result.getRootDirectory().getUsableSpace();
+        }
+        long space = volume.getRootDirectory().getUsableSpace();
+        if (space > maxSpace) {
+          result = volume;
+          maxSpace = space;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * {@inheritDoc} This implementation keeps a new BLOB on the {@code incomeVolume} so it is never copied across
+   * filesystems. Only if the {@link BlobId#getPartition() hash} already exists on a {@link BlobVolume}, that volume is
+   * used so duplicates are detected.
+   */
+  @Override
+  protected BlobVolume selectDataVolume(String partition, BlobVolume incomeVolume) {
+
+    if ((incomeVolume == null) || (getVolumes().size() == 1)) {
+      return getVolume(partition);
+    }
+    BlobVolume volume = findVolume(partition);
+    if (volume == null) {
+      return incomeVolume;
+    }
+    return volume;
+  }
+
+  /**
+   * @param hash the {@link BlobId#getPartition() hash} of a BLOB.
+   * @return the lock to serialize commits of the given {@code hash} so concurrent saves of the same new content can not
+   *         create its partition on different {@link BlobVolume}s.
+   */
+  private Object getCommitLock(String hash) {
+
+    return this.commitLocks[(hash.hashCode() & Integer.MAX_VALUE) % this.commitLocks.length];
+  }
+
+  /**
+   * @return a new {@link BlobHasher} according to the {@link BlobStoreFsConfigProperties#getDigestMode() digest
+   *         mode}.
+   */
+  BlobHasher createHasher() {
+
+    BlobStoreFsConfigProperties config = getConfig();
+    return BlobHasher.of(config.getDigest(), config.getDigestMode(), config.getDigestChunkSize(),
+        config.getDigestThreads(), this.digestExecutor);
   }
 
   @Override
@@ -42,7 +210,7 @@ public class BlobStoreImplDeduplicatingFs extends AbstractBlobStoreFs {
    */
   protected class DeduplicatingBlobContext extends BlobContext {
 
-    private final MessageDigest digest;
+    private final BlobHasher hasher;
 
     private String folder;
 
@@ -56,24 +224,46 @@ public class BlobStoreImplDeduplicatingFs extends AbstractBlobStoreFs {
     public DeduplicatingBlobContext(DataResource blob) {
       super(blob);
       this.folder = "1";
-      try {
-        this.digest = MessageDigest.getInstance(getConfig().getDigest());
-      } catch (NoSuchAlgorithmException e) {
-        throw new IllegalStateException(e);
-      }
+      this.hasher = createHasher();
     }
 
     @Override
     public InputStream openStream() {
 
-      return new DigestInputStream(super.openStream(), this.digest);
+      return this.hasher.wrap(super.openStream());
+    }
+
+    @Override
+    public OutputStream wrapOutputStream(OutputStream out) {
+
+      return this.hasher.wrap(super.wrapOutputStream(out));
+    }
+
+    @Override
+    protected void digestIncomeFile() {
+
+      byte[] buffer = new byte[64 * 1024];
+      try (InputStream in = new FileInputStream(getIncomeFile())) {
+        int count = in.read(buffer);
+        while (count >= 0) {
+          this.hasher.update(buffer, 0, count);
+          count = in.read(buffer);
+        }
+      } catch (IOException e) {
+        throw new RuntimeIoException(e, IoMode.READ);
+      }
     }
 
     @Override
     public BlobId commit() {
 
-      this.hash = getStringUtil().toHex(this.digest.digest());
-      return super.commit();
+      this.hash = getStringUtil().toHex(this.hasher.digest());
+      if (getVolumes().size() == 1) {
+        return super.commit();
+      }
+      synchronized (getCommitLock(this.hash)) {
+        return super.commit();
+      }
     }
 
     @Override
@@ -138,11 +328,19 @@ public class BlobStoreImplDeduplicatingFs extends AbstractBlobStoreFs {
      */
     protected boolean areFilesEqual(File incomeFile, File blobFile) {
 
-      // currently we assume that hash collision has extremely low probability if files have the same size...
-      // in theory you can find two different files of the same size with the same hash for algorithms like md5 or sha2
-      // but for real (multimedia) files this will never happen. Hence, for performance and simplicity we assume
-      // equality without checking. Feel free to extend and override if you prefer 100% guarantees.
-      return true;
+      if (!getConfig().isDedupVerify()) {
+        // by default we assume that hash collision has extremely low probability if files have the same size...
+        // in theory you can find two different files of the same size with the same hash for algorithms like md5 or
+        // sha2 but for real (multimedia) files this will never happen. Hence, for performance and simplicity we assume
+        // equality without checking unless verification is configured.
+        return true;
+      }
+      boolean equal = isContentEqual(incomeFile, blobFile);
+      if (!equal) {
+        getLogger().warn("BLOB {} has the same hash and size as {} but different content", this.blob.getName(),
+            blobFile);
+      }
+      return equal;
     }
 
     private File findDuplicate(File[] children, long size, File incomeFile) {
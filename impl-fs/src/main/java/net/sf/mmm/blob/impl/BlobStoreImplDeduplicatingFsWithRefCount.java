@@ -3,6 +3,7 @@
 package net.sf.mmm.blob.impl;
 
 import java.io.File;
+import java.util.function.Consumer;
 
 import net.sf.mmm.util.data.api.id.Id;
 import net.sf.mmm.util.resource.api.DataResource;
@@ -11,7 +12,11 @@ import net.sf.mmm.util.resource.api.DataResource;
  * This class extends {@link BlobStoreImplDeduplicatingFs} with a reference count mechanism. It creates {@link Id}s
  * including a reference counter (copy index). Further, it ensures that if {@code N} duplicates of a file have been
  * saved then only after all {@code N} of them have been deleted, the actual BLOB will be deleted physically from the
- * disc.
+ * disc.<br>
+ * If saved {@link #forTenant(String) for a tenant}, the tenant is written into the copy reference file. Each reference
+ * is charged as one object but the bytes of the BLOB are charged only once per tenant referencing it. So a tenant
+ * saving the same content multiple times pays its size once and the usage of a tenant never depends on the BLOBs of
+ * other tenants.
  *
  * @author hohwille
  * @since 1.0.0
@@ -31,6 +36,24 @@ public class BlobStoreImplDeduplicatingFsWithRefCount extends BlobStoreImplDedup
     return new DeduplicatingBlobContextWithRefCount(blob);
   }
 
+  /**
+   * {@inheritDoc} As each reference gets its own {@link Id}, BLOBs may expire individually.
+   */
+  @Override
+  protected boolean isExpirySupported() {
+
+    return true;
+  }
+
+  /**
+   * {@inheritDoc} Each reference gets its own {@link Id} so saving the same data twice results in different {@link Id}s.
+   */
+  @Override
+  public boolean isContentAddressed() {
+
+    return false;
+  }
+
   @Override
   public boolean delete(Id<DataResource> id) {
 
@@ -45,8 +68,37 @@ public class BlobStoreImplDeduplicatingFsWithRefCount extends BlobStoreImplDedup
       throw new IllegalArgumentException(id.toString());
     }
     File referenceFile = new File(blobDirectory, copy);
+    String tenant = readTenant(referenceFile);
+    IntentJournal journal = getJournal();
+    long operation = journal.begin();
+    long bytes = 0;
+    long sequence = 0;
+    try {
+      // if interrupted, the BLOB may be left without references and will be removed by reconcilePartition
+      journal.record(operation, IntentJournal.TYPE_PARTITION, getPartitionDirectory(blobFile));
+      if (tenant != null) {
+        // the bytes are only discharged with the last reference of the tenant
+        if (!isReferencedBy(blobDirectory.listFiles(), tenant, referenceFile)) {
+          bytes = blobFile.length();
+        }
+        // if interrupted, recovery discharges the tenant if and only if the reference has been deleted
+        sequence = recordQuotaIntent(operation, tenant, -bytes, -1, referenceFile);
+      }
+      return delete(blobFile, referenceFile, tenant, bytes, sequence);
+    } finally {
+      endQuotaIntent(sequence);
+      journal.end(operation);
+    }
+  }
+
+  private boolean delete(File blobFile, File referenceFile, String tenant, long bytes, long sequence) {
+
+    File blobDirectory = blobFile.getParentFile();
     boolean deleted = getFileUtil().delete(referenceFile);
     File[] children = blobDirectory.listFiles();
+    if (deleted && (tenant != null)) {
+      discharge(tenant, bytes, 1, sequence);
+    }
     if (children.length > 1) {
       return deleted;
     }
@@ -62,16 +114,62 @@ public class BlobStoreImplDeduplicatingFsWithRefCount extends BlobStoreImplDedup
       }
     }
     boolean success = getFileUtil().delete(blobDirectory);
-    if (!success) {
-      if (blobDirectory.exists()) {
-        getLogger().warn("BLOB directory could not be deleted as expected at {}", blobDirectory);
-      } else {
-        getLogger().info("BLOB directory was already deleted at {}", blobDirectory);
-      }
+    if (success) {
+      prune(blobDirectory.getParentFile());
+    } else if (blobDirectory.exists()) {
+      getLogger().warn("BLOB directory could not be deleted as expected at {}", blobDirectory);
+    } else {
+      getLogger().info("BLOB directory was already deleted at {}", blobDirectory);
     }
     return deleted;
   }
 
+  private boolean isReferencedBy(File[] children, String tenant, File excludedReference) {
+
+    if (children != null) {
+      for (File child : children) {
+        if (!child.getName().equals(FILE_BLOB) && !child.equals(excludedReference) && tenant.equals(readTenant(child))) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * {@inheritDoc} This implementation also deletes BLOBs without any copy reference as they have been left by an
+   * interrupted save or delete.
+   */
+  @Override
+  protected void reconcilePartition(File partitionDirectory) {
+
+    File[] blobDirectories = partitionDirectory.listFiles();
+    if (blobDirectories != null) {
+      for (File blobDirectory : blobDirectories) {
+        String[] children = blobDirectory.list();
+        if ((children != null) && (children.length == 1) && FILE_BLOB.equals(children[0])) {
+          getLogger().info("Deleting unreferenced BLOB in {}", blobDirectory);
+          getFileUtil().delete(new File(blobDirectory, FILE_BLOB));
+        }
+      }
+    }
+    super.reconcilePartition(partitionDirectory);
+  }
+
+  @Override
+  protected void collectIds(File blobFile, String partition, String folder, Consumer<BlobId> ids) {
+
+    String[] children = blobFile.getParentFile().list();
+    if (children == null) {
+      return;
+    }
+    for (String child : children) {
+      if (!child.equals(FILE_BLOB)) {
+        ids.accept(new BlobId(partition, folder, child));
+      }
+    }
+  }
+
   @Override
   protected File getBlobFile(File blobDirectory, BlobId id) {
 
@@ -85,6 +183,27 @@ public class BlobStoreImplDeduplicatingFsWithRefCount extends BlobStoreImplDedup
     return super.getBlobFile(blobDirectory, id);
   }
 
+  @Override
+  protected int getReferenceCount(File blobFile, BlobId id) {
+
+    String[] children = blobFile.getParentFile().list();
+    if (children == null) {
+      return 0;
+    }
+    // all files except the BLOB itself are copy references
+    return children.length - 1;
+  }
+
+  @Override
+  protected void restoreReference(File blobFile, BlobId id) {
+
+    String copy = id.getCopy();
+    if (copy == null) {
+      throw new IllegalArgumentException(id.toString());
+    }
+    getFileUtil().ensureFileExists(new File(blobFile.getParentFile(), copy));
+  }
+
   /**
    * Sublcass of {@link BlobStoreImplDeduplicatingFs.DeduplicatingBlobContext} that manages unique {@link BlobId}s with
    * individual {@link BlobId#getCopy() copy identifiers}.
@@ -115,23 +234,72 @@ public class BlobStoreImplDeduplicatingFsWithRefCount extends BlobStoreImplDedup
     protected void doCommit(File blobFile) {
 
       super.doCommit(blobFile);
-      File copyReference = new File(blobFile.getParentFile(), DEFAULT_COPY_REFERENCE);
+      File copyReference;
+      if (getTimeToLive() == null) {
+        copyReference = new File(blobFile.getParentFile(), DEFAULT_COPY_REFERENCE);
+      } else {
+        copyReference = createExpiringCopyReference(blobFile.getParentFile());
+      }
       createCopyReferenceFile(copyReference);
     }
 
+    @Override
+    protected void recordExpiring(File blobFile) {
+
+      // the BLOB may be shared so only the copy reference is recorded what is always done
+    }
+
     @Override
     protected void deduplicate(File incomeFile, File blobFile) {
 
       File blobDirectory = blobFile.getParentFile();
-      File copyReference = findUniqueFilename(blobDirectory);
+      File copyReference;
+      if (getTimeToLive() == null) {
+        copyReference = findUniqueFilename(blobDirectory);
+      } else {
+        copyReference = createExpiringCopyReference(blobDirectory);
+      }
       createCopyReferenceFile(copyReference);
       super.deduplicate(incomeFile, blobFile);
     }
 
+    /**
+     * @param blobDirectory the directory containing the BLOB and its copy references.
+     * @return the new copy reference {@link File} for a BLOB saved with a {@link #getTimeToLive() time-to-live}. Unlike
+     *         {@link #findUniqueFilename(File) numbered} copy references its name is never reused after the BLOB has
+     *         been deleted so the entry left in the {@link ExpiryIndex} can not delete a later BLOB.
+     */
+    private File createExpiringCopyReference(File blobDirectory) {
+
+      File copyReference = new File(blobDirectory, createUniqueId());
+      while (copyReference.exists()) {
+        copyReference = new File(blobDirectory, createUniqueId());
+      }
+      return copyReference;
+    }
+
+    @Override
+    protected void assignTenant(File blobFile) {
+
+      // the tenant is assigned to the copy reference file instead
+    }
+
     private void createCopyReferenceFile(File copyReference) {
 
-      boolean created = getFileUtil().ensureFileExists(copyReference);
-      assert (created);
+      recordIntent(IntentJournal.TYPE_REFERENCE, copyReference);
+      String tenant = getTenant();
+      if (tenant == null) {
+        boolean created = getFileUtil().ensureFileExists(copyReference);
+        assert (created);
+      } else {
+        File blobDirectory = copyReference.getParentFile();
+        long bytes = 0;
+        if (!isReferencedBy(blobDirectory.listFiles(), tenant, null)) {
+          bytes = new File(blobDirectory, FILE_BLOB).length();
+        }
+        charge(bytes, 1, copyReference);
+        writeTenant(copyReference, tenant);
+      }
       this.copy = copyReference.getName();
     }
 
@@ -0,0 +1,189 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * The {@link ConfigurationProperties} for the {@link IoScheduler} of an {@link AbstractBlobStoreFs}. A bandwidth or
+ * concurrency of {@code 0} means unlimited. By default nothing is limited.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+@ConfigurationProperties(prefix = "blob.store.io")
+public class BlobStoreIoConfigProperties {
+
+  private long readBandwidth;
+
+  private int readConcurrency;
+
+  private long saveBandwidth;
+
+  private int saveConcurrency;
+
+  private long maintenanceBandwidth;
+
+  private int maintenanceConcurrency;
+
+  private long prefetchBandwidth;
+
+  private int prefetchConcurrency = 4;
+
+  private double backgroundShare = 0.25;
+
+  /**
+   * The constructor.
+   */
+  public BlobStoreIoConfigProperties() {
+    super();
+  }
+
+  /**
+   * @return the maximum bandwidth in bytes per second for {@link IoClass#INTERACTIVE_READ}.
+   */
+  public long getReadBandwidth() {
+
+    return this.readBandwidth;
+  }
+
+  /**
+   * @param readBandwidth the new value of {@link #getReadBandwidth()}.
+   */
+  public void setReadBandwidth(long readBandwidth) {
+
+    this.readBandwidth = readBandwidth;
+  }
+
+  /**
+   * @return the maximum number of concurrently open streams for {@link IoClass#INTERACTIVE_READ}.
+   */
+  public int getReadConcurrency() {
+
+    return this.readConcurrency;
+  }
+
+  /**
+   * @param readConcurrency the new value of {@link #getReadConcurrency()}.
+   */
+  public void setReadConcurrency(int readConcurrency) {
+
+    this.readConcurrency = readConcurrency;
+  }
+
+  /**
+   * @return the maximum bandwidth in bytes per second for {@link IoClass#BULK_SAVE}.
+   */
+  public long getSaveBandwidth() {
+
+    return this.saveBandwidth;
+  }
+
+  /**
+   * @param saveBandwidth the new value of {@link #getSaveBandwidth()}.
+   */
+  public void setSaveBandwidth(long saveBandwidth) {
+
+    this.saveBandwidth = saveBandwidth;
+  }
+
+  /**
+   * @return the maximum number of concurrent operations for {@link IoClass#BULK_SAVE}.
+   */
+  public int getSaveConcurrency() {
+
+    return this.saveConcurrency;
+  }
+
+  /**
+   * @param saveConcurrency the new value of {@link #getSaveConcurrency()}.
+   */
+  public void setSaveConcurrency(int saveConcurrency) {
+
+    this.saveConcurrency = saveConcurrency;
+  }
+
+  /**
+   * @return the maximum bandwidth in bytes per second for {@link IoClass#MAINTENANCE}.
+   */
+  public long getMaintenanceBandwidth() {
+
+    return this.maintenanceBandwidth;
+  }
+
+  /**
+   * @param maintenanceBandwidth the new value of {@link #getMaintenanceBandwidth()}.
+   */
+  public void setMaintenanceBandwidth(long maintenanceBandwidth) {
+
+    this.maintenanceBandwidth = maintenanceBandwidth;
+  }
+
+  /**
+   * @return the maximum number of concurrent operations for {@link IoClass#MAINTENANCE}.
+   */
+  public int getMaintenanceConcurrency() {
+
+    return this.maintenanceConcurrency;
+  }
+
+  /**
+   * @param maintenanceConcurrency the new value of {@link #getMaintenanceConcurrency()}.
+   */
+  public void setMaintenanceConcurrency(int maintenanceConcurrency) {
+
+    this.maintenanceConcurrency = maintenanceConcurrency;
+  }
+
+  /**
+   * @return the maximum bandwidth in bytes per second for {@link IoClass#PREFETCH}.
+   */
+  public long getPrefetchBandwidth() {
+
+    return this.prefetchBandwidth;
+  }
+
+  /**
+   * @param prefetchBandwidth the new value of {@link #getPrefetchBandwidth()}.
+   */
+  public void setPrefetchBandwidth(long prefetchBandwidth) {
+
+    this.prefetchBandwidth = prefetchBandwidth;
+  }
+
+  /**
+   * @return the maximum number of BLOBs read concurrently for {@link IoClass#PREFETCH} what is also the number of
+   *         threads used for prefetching. The default is {@code 4}.
+   */
+  public int getPrefetchConcurrency() {
+
+    return this.prefetchConcurrency;
+  }
+
+  /**
+   * @param prefetchConcurrency the new value of {@link #getPrefetchConcurrency()}.
+   */
+  public void setPrefetchConcurrency(int prefetchConcurrency) {
+
+    this.prefetchConcurrency = prefetchConcurrency;
+  }
+
+  /**
+   * @return the share of their bandwidth that {@link IoClass#BULK_SAVE}, {@link IoClass#MAINTENANCE} and
+   *         {@link IoClass#PREFETCH} may use while {@link IoClass#INTERACTIVE_READ interactive reads} are in progress.
+   *         Only applies to classes with a limited bandwidth. The default is {@code 0.25}.
+   */
+  public double getBackgroundShare() {
+
+    return this.backgroundShare;
+  }
+
+  /**
+   * @param backgroundShare the new value of {@link #getBackgroundShare()}.
+   */
+  public void setBackgroundShare(double backgroundShare) {
+
+    this.backgroundShare = backgroundShare;
+  }
+
+}
@@ -0,0 +1,309 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+
+import net.sf.mmm.util.component.base.AbstractLoggableComponent;
+import net.sf.mmm.util.data.api.id.Id;
+import net.sf.mmm.util.io.api.IoMode;
+import net.sf.mmm.util.io.api.RuntimeIoException;
+import net.sf.mmm.util.resource.api.DataResource;
+
+/**
+ * This class migrates all BLOBs of an existing {@link AbstractBlobStoreFs} into another {@link AbstractBlobStoreFs}
+ * with a different layout (e.g. from {@link BlobStoreImplSimpleFs} to {@link BlobStoreImplDeduplicatingFsWithRefCount})
+ * what also removes the duplicates. It is intended to run offline (while no other process modifies the source store).
+ * <ul>
+ * <li>The source is {@link AbstractBlobStoreFs#ids() traversed} as parallel stream so the BLOBs are hashed by
+ * {@link BlobStoreMigrationConfigProperties#getThreads() multiple threads}.</li>
+ * <li>Each BLOB is hard-linked into the {@link BlobVolume#getIncomeDirectory() income directory} of the target and
+ * then committed what moves the link to its final location. Hence no data is copied if both stores are on the same
+ * filesystem. Otherwise the BLOB is copied.</li>
+ * <li>For each migrated BLOB a line with the old and the new {@link Id} separated by a space is appended to a mapping
+ * file that can be used to update references to the BLOBs (e.g. in a database).</li>
+ * <li>The migration is resumable: BLOBs already contained in the mapping file are skipped.</li>
+ * <li>The bandwidth and concurrency are throttled via the {@link IoClass#MAINTENANCE maintenance budget} of the target
+ * store (see {@link BlobStoreIoConfigProperties#getMaintenanceBandwidth()}).</li>
+ * </ul>
+ * <b>ATTENTION:</b> If the migration is interrupted after a BLOB has been committed but before its mapping has been
+ * written, it is migrated again when resumed. For a {@link BlobStoreImplDeduplicatingFsWithRefCount reference counting}
+ * target this leaves an additional reference that is never deleted.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+public class BlobStoreMigration extends AbstractLoggableComponent {
+
+  private final AbstractBlobStoreFs source;
+
+  private final AbstractBlobStoreFs target;
+
+  private final AtomicLong migrated;
+
+  private final AtomicLong linked;
+
+  private final AtomicLong failed;
+
+  private BlobStoreMigrationConfigProperties config;
+
+  private Writer mappingWriter;
+
+  /**
+   * The constructor.
+   *
+   * @param source the initialized {@link AbstractBlobStoreFs} to migrate from.
+   * @param target the initialized {@link AbstractBlobStoreFs} to migrate to.
+   */
+  public BlobStoreMigration(AbstractBlobStoreFs source, AbstractBlobStoreFs target) {
+    super();
+    this.source = source;
+    this.target = target;
+    this.migrated = new AtomicLong();
+    this.linked = new AtomicLong();
+    this.failed = new AtomicLong();
+  }
+
+  /**
+   * @param config the {@link BlobStoreMigrationConfigProperties} to {@link Inject}.
+   */
+  @Inject
+  public void setConfig(BlobStoreMigrationConfigProperties config) {
+
+    this.config = config;
+  }
+
+  @Override
+  protected void doInitialize() {
+
+    super.doInitialize();
+    if (this.config == null) {
+      this.config = new BlobStoreMigrationConfigProperties();
+    }
+  }
+
+  /**
+   * Migrates all BLOBs that are not yet contained in the given {@code mappingFile}.
+   *
+   * @param mappingFile the {@link File} where to append the mapping from old to new {@link Id}s. If it already exists,
+   *        the migration is resumed.
+   * @return the number of BLOBs migrated by this invocation.
+   * @throws IllegalStateException if some BLOBs failed to migrate. Invoke again to resume and retry them.
+   */
+  public synchronized long migrate(File mappingFile) {
+
+    this.migrated.set(0);
+    this.linked.set(0);
+    this.failed.set(0);
+    Set<String> done = new HashSet<>();
+    boolean torn = readMapping(mappingFile, done);
+    if (!done.isEmpty()) {
+      getLogger().info("Resuming migration with {} BLOBs already migrated", Integer.valueOf(done.size()));
+    }
+    ForkJoinPool pool = new ForkJoinPool(this.config.getThreads(), p -> {
+      ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+      thread.setName("blob-migrate-" + thread.getPoolIndex());
+      thread.setDaemon(true);
+      return thread;
+    }, null, false);
+    try (Writer writer = new OutputStreamWriter(new FileOutputStream(mappingFile, true), StandardCharsets.UTF_8)) {
+      if (torn) {
+        // terminate incomplete last line of a crash
+        writer.write('\n');
+      }
+      this.mappingWriter = writer;
+      // parallel stream runs in the pool that submitted it so the number of threads is limited
+      pool.submit(() -> this.source.ids().parallel().filter(id -> !done.contains(id.getId().toString()))
+          .forEach(this::migrate)).get();
+    } catch (IOException e) {
+      throw new RuntimeIoException(e, IoMode.WRITE);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while migrating", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Migration failed", e.getCause());
+    } finally {
+      this.mappingWriter = null;
+      pool.shutdownNow();
+    }
+    long count = this.migrated.get();
+    long links = this.linked.get();
+    getLogger().info("Migrated {} BLOBs ({} hard-linked, {} copied) to {}", Long.valueOf(count), Long.valueOf(links),
+        Long.valueOf(count - links), this.target.getRootDirectory());
+    if (this.failed.get() > 0) {
+      throw new IllegalStateException(this.failed + " BLOBs failed to migrate - run again to resume.");
+    }
+    return count;
+  }
+
+  private static boolean readMapping(File mappingFile, Set<String> done) {
+
+    byte[] data;
+    try {
+      data = Files.readAllBytes(mappingFile.toPath());
+    } catch (NoSuchFileException e) {
+      return false;
+    } catch (IOException e) {
+      throw new RuntimeIoException(e, IoMode.READ);
+    }
+    String content = new String(data, StandardCharsets.UTF_8);
+    int start = 0;
+    int end = content.indexOf('\n');
+    // a last line without newline is incomplete (torn write during crash) and has to be ignored
+    while (end >= 0) {
+      int space = content.indexOf(' ', start);
+      if ((space > start) && (space < end)) {
+        done.add(content.substring(start, space));
+      }
+      start = end + 1;
+      end = content.indexOf('\n', start);
+    }
+    return (start < content.length());
+  }
+
+  private void migrate(Id<DataResource> id) {
+
+    BlobId blobId = this.source.asBlobId(id);
+    File blobFile = this.source.getBlobFile(blobId);
+    if ((blobFile == null) || !blobFile.isFile()) {
+      return;
+    }
+    IoScheduler scheduler = this.target.getIoScheduler();
+    File incomeFile = null;
+    try {
+      scheduler.begin(IoClass.MAINTENANCE);
+      try {
+        // the BLOB is read once for hashing - also if it is only linked
+        scheduler.consume(IoClass.MAINTENANCE, blobFile.length());
+        incomeFile = this.target.createIncomeFile();
+        transfer(blobFile, incomeFile);
+        BlobId newId = this.target.commitIncomeFile(incomeFile);
+        incomeFile = null;
+        writeMapping(blobId, newId);
+      } finally {
+        scheduler.end(IoClass.MAINTENANCE);
+      }
+      this.migrated.incrementAndGet();
+      if (this.config.isDeleteSource()) {
+        this.source.delete(id);
+      }
+    } catch (IOException | RuntimeException e) {
+      this.failed.incrementAndGet();
+      getLogger().warn("Failed to migrate BLOB {}", blobId, e);
+      if ((incomeFile != null) && incomeFile.exists()) {
+        incomeFile.delete();
+      }
+    }
+  }
+
+  private void transfer(File blobFile, File incomeFile) throws IOException {
+
+    try {
+      Files.createLink(incomeFile.toPath(), blobFile.toPath());
+      this.linked.incrementAndGet();
+    } catch (UnsupportedOperationException | IOException e) {
+      // different filesystem or hard-links not supported
+      getLogger().debug("Copying {} as it can not be linked", blobFile, e);
+      Files.copy(blobFile.toPath(), incomeFile.toPath());
+    }
+  }
+
+  private void writeMapping(BlobId oldId, BlobId newId) throws IOException {
+
+    synchronized (this.mappingWriter) {
+      this.mappingWriter.write(oldId.getId() + " " + newId.getId() + "\n");
+      this.mappingWriter.flush();
+    }
+  }
+
+  /**
+   * Migrates a BLOB store from the command-line.
+   *
+   * @param args the command-line arguments: the type of the source store ({@code simple}, {@code dedup}, or
+   *        {@code refcount}), its directory, the type and directory of the target store, the mapping file and optional
+   *        {@code threads=<count>}, {@code delete-source=true}, {@code bandwidth=<bytes per second>}.
+   */
+  public static void main(String[] args) {
+
+    if (args.length < 5) {
+      System.err.println("Usage: BlobStoreMigration (simple|dedup|refcount) <source-directory> (dedup|refcount) "
+          + "<target-directory> <mapping-file> [threads=<count>] [delete-source=true] [bandwidth=<bytes/s>]");
+      return;
+    }
+    BlobStoreMigrationConfigProperties config = new BlobStoreMigrationConfigProperties();
+    BlobStoreIoConfigProperties ioConfig = new BlobStoreIoConfigProperties();
+    for (int i = 5; i < args.length; i++) {
+      String arg = args[i];
+      int equals = arg.indexOf('=');
+      if (equals <= 0) {
+        throw new IllegalArgumentException(arg);
+      }
+      String value = arg.substring(equals + 1);
+      switch (arg.substring(0, equals)) {
+        case "threads":
+          config.setThreads(Integer.parseInt(value));
+          break;
+        case "delete-source":
+          config.setDeleteSource(Boolean.parseBoolean(value));
+          break;
+        case "bandwidth":
+          ioConfig.setMaintenanceBandwidth(Long.parseLong(value));
+          break;
+        default:
+          throw new IllegalArgumentException(arg);
+      }
+    }
+    AbstractBlobStoreFs source = createStore(args[0], args[1], new BlobStoreIoConfigProperties());
+    AbstractBlobStoreFs target = createStore(args[2], args[3], ioConfig);
+    BlobStoreMigration migration = new BlobStoreMigration(source, target);
+    migration.setConfig(config);
+    migration.initialize();
+    System.out.println("Migrated " + migration.migrate(new File(args[4])) + " BLOBs.");
+  }
+
+  /**
+   * @param type the type of the store ({@code simple}, {@code dedup}, or {@code refcount}).
+   * @param directory the {@link BlobStoreFsConfigProperties#getDirectory() directory} of the store.
+   * @param ioConfig the {@link BlobStoreIoConfigProperties}.
+   * @return the initialized {@link AbstractBlobStoreFs}.
+   */
+  static AbstractBlobStoreFs createStore(String type, String directory, BlobStoreIoConfigProperties ioConfig) {
+
+    AbstractBlobStoreFs store;
+    switch (type) {
+      case "simple":
+        store = new BlobStoreImplSimpleFs();
+        break;
+      case "dedup":
+        store = new BlobStoreImplDeduplicatingFs();
+        break;
+      case "refcount":
+        store = new BlobStoreImplDeduplicatingFsWithRefCount();
+        break;
+      default:
+        throw new IllegalArgumentException(type);
+    }
+    BlobStoreFsConfigProperties storeConfig = new BlobStoreFsConfigProperties();
+    storeConfig.setDirectory(directory);
+    store.setConfig(storeConfig);
+    store.setIoConfig(ioConfig);
+    store.initialize();
+    return store;
+  }
+
+}
@@ -0,0 +1,63 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * The {@link ConfigurationProperties} for {@link BlobStoreMigration}. The bandwidth and concurrency of the migration
+ * are limited by the {@link BlobStoreIoConfigProperties#getMaintenanceBandwidth() maintenance budget} of the target
+ * store.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+@ConfigurationProperties(prefix = "blob.store.migration")
+public class BlobStoreMigrationConfigProperties {
+
+  private int threads = Runtime.getRuntime().availableProcessors();
+
+  private boolean deleteSource;
+
+  /**
+   * The constructor.
+   */
+  public BlobStoreMigrationConfigProperties() {
+    super();
+  }
+
+  /**
+   * @return the number of threads that migrate (and hash) BLOBs concurrently. The default is the number of available
+   *         processors.
+   */
+  public int getThreads() {
+
+    return this.threads;
+  }
+
+  /**
+   * @param threads the new value of {@link #getThreads()}.
+   */
+  public void setThreads(int threads) {
+
+    this.threads = threads;
+  }
+
+  /**
+   * @return {@code true} if each BLOB is deleted from the source store after it has been migrated, {@code false}
+   *         otherwise. The default is {@code false}.
+   */
+  public boolean isDeleteSource() {
+
+    return this.deleteSource;
+  }
+
+  /**
+   * @param deleteSource the new value of {@link #isDeleteSource()}.
+   */
+  public void setDeleteSource(boolean deleteSource) {
+
+    this.deleteSource = deleteSource;
+  }
+
+}
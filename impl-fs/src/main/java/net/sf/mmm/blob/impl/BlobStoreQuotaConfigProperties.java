@@ -0,0 +1,124 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * The {@link ConfigurationProperties} for the tenant quotas of an {@link AbstractBlobStoreFs}. By default nothing is
+ * limited.
+ *
+ * @see AbstractBlobStoreFs#forTenant(String)
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+@ConfigurationProperties(prefix = "blob.store.quota")
+public class BlobStoreQuotaConfigProperties {
+
+  private Map<String, Long> maxBytes = new HashMap<>();
+
+  private Map<String, Long> maxObjects = new HashMap<>();
+
+  private long defaultMaxBytes = Long.MAX_VALUE;
+
+  private long defaultMaxObjects = Long.MAX_VALUE;
+
+  private int checkpointInterval = 10000;
+
+  /**
+   * The constructor.
+   */
+  public BlobStoreQuotaConfigProperties() {
+    super();
+  }
+
+  /**
+   * @return the {@link Map} with the names of the tenants mapped to the maximum number of bytes they may use. Tenants
+   *         not contained use {@link #getDefaultMaxBytes()}.
+   */
+  public Map<String, Long> getMaxBytes() {
+
+    return this.maxBytes;
+  }
+
+  /**
+   * @param maxBytes the new value of {@link #getMaxBytes()}.
+   */
+  public void setMaxBytes(Map<String, Long> maxBytes) {
+
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * @return the {@link Map} with the names of the tenants mapped to the maximum number of BLOBs they may own. Tenants
+   *         not contained use {@link #getDefaultMaxObjects()}.
+   */
+  public Map<String, Long> getMaxObjects() {
+
+    return this.maxObjects;
+  }
+
+  /**
+   * @param maxObjects the new value of {@link #getMaxObjects()}.
+   */
+  public void setMaxObjects(Map<String, Long> maxObjects) {
+
+    this.maxObjects = maxObjects;
+  }
+
+  /**
+   * @return the maximum number of bytes of a tenant not configured in {@link #getMaxBytes()}. The default is
+   *         unlimited.
+   */
+  public long getDefaultMaxBytes() {
+
+    return this.defaultMaxBytes;
+  }
+
+  /**
+   * @param defaultMaxBytes the new value of {@link #getDefaultMaxBytes()}.
+   */
+  public void setDefaultMaxBytes(long defaultMaxBytes) {
+
+    this.defaultMaxBytes = defaultMaxBytes;
+  }
+
+  /**
+   * @return the maximum number of BLOBs of a tenant not configured in {@link #getMaxObjects()}. The default is
+   *         unlimited.
+   */
+  public long getDefaultMaxObjects() {
+
+    return this.defaultMaxObjects;
+  }
+
+  /**
+   * @param defaultMaxObjects the new value of {@link #getDefaultMaxObjects()}.
+   */
+  public void setDefaultMaxObjects(long defaultMaxObjects) {
+
+    this.defaultMaxObjects = defaultMaxObjects;
+  }
+
+  /**
+   * @return the number of usage updates after which the counters of all tenants are written as checkpoint and the
+   *         update log is truncated. The default is 10000.
+   */
+  public int getCheckpointInterval() {
+
+    return this.checkpointInterval;
+  }
+
+  /**
+   * @param checkpointInterval the new value of {@link #getCheckpointInterval()}.
+   */
+  public void setCheckpointInterval(int checkpointInterval) {
+
+    this.checkpointInterval = checkpointInterval;
+  }
+
+}
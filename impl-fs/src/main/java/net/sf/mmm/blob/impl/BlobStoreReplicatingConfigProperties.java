@@ -0,0 +1,103 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * The {@link ConfigurationProperties} for {@link ReplicatingBlobStore}.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+@ConfigurationProperties(prefix = "blob.store.replicating")
+public class BlobStoreReplicatingConfigProperties {
+
+  private int writeQuorum;
+
+  private Duration hedgeDelay = Duration.ofMillis(20);
+
+  private Duration replicaTimeout = Duration.ofSeconds(30);
+
+  private Duration lagTimeout = Duration.ofMillis(100);
+
+  /**
+   * The constructor.
+   */
+  public BlobStoreReplicatingConfigProperties() {
+    super();
+  }
+
+  /**
+   * @return the number of replicas that have to acknowledge a write before it is considered successful. Replicas that
+   *         failed are repaired in the background. The default is {@code 0} what means the majority of the replicas.
+   */
+  public int getWriteQuorum() {
+
+    return this.writeQuorum;
+  }
+
+  /**
+   * @param writeQuorum the new value of {@link #getWriteQuorum()}.
+   */
+  public void setWriteQuorum(int writeQuorum) {
+
+    this.writeQuorum = writeQuorum;
+  }
+
+  /**
+   * @return the latency after which a read is additionally sent to the next replica if the previous one did not yet
+   *         respond (hedged request). The default is 20 milliseconds.
+   */
+  public Duration getHedgeDelay() {
+
+    return this.hedgeDelay;
+  }
+
+  /**
+   * @param hedgeDelay the new value of {@link #getHedgeDelay()}.
+   */
+  public void setHedgeDelay(Duration hedgeDelay) {
+
+    this.hedgeDelay = hedgeDelay;
+  }
+
+  /**
+   * @return the maximum time to wait for a replica that is required for the {@link #getWriteQuorum() write quorum}
+   *         while it does not accept further data or has not yet acknowledged the write. A replica that is not required
+   *         for the quorum is only waited for the {@link #getLagTimeout() lag timeout}. The default is 30 seconds.
+   */
+  public Duration getReplicaTimeout() {
+
+    return this.replicaTimeout;
+  }
+
+  /**
+   * @param replicaTimeout the new value of {@link #getReplicaTimeout()}.
+   */
+  public void setReplicaTimeout(Duration replicaTimeout) {
+
+    this.replicaTimeout = replicaTimeout;
+  }
+
+  /**
+   * @return the maximum time to wait for a replica that is not required for the {@link #getWriteQuorum() write quorum}
+   *         while its buffer is full. If it does not catch up within this time, it is detached from the write and
+   *         repaired in the background. The default is 100 milliseconds.
+   */
+  public Duration getLagTimeout() {
+
+    return this.lagTimeout;
+  }
+
+  /**
+   * @param lagTimeout the new value of {@link #getLagTimeout()}.
+   */
+  public void setLagTimeout(Duration lagTimeout) {
+
+    this.lagTimeout = lagTimeout;
+  }
+
+}
@@ -0,0 +1,397 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import javax.inject.Inject;
+
+import net.sf.mmm.blob.api.BlobStore;
+import net.sf.mmm.util.component.base.AbstractLoggableComponent;
+import net.sf.mmm.util.data.api.id.Id;
+import net.sf.mmm.util.io.api.IoMode;
+import net.sf.mmm.util.io.api.RuntimeIoException;
+import net.sf.mmm.util.resource.api.DataResource;
+import net.sf.mmm.util.resource.base.StreamResource;
+
+/**
+ * This class exports incremental snapshots of an {@link AbstractBlobStoreFs} and restores them. A snapshot with a
+ * given name consists of two files in the snapshot directory:
+ * <ul>
+ * <li>{@code <name>.manifest} - a line {@code <id> <hash> <size> <archive> <offset>} for each BLOB {@link Id} of the
+ * store. The {@code hash} is {@code -} if the store does not hash its BLOBs.</li>
+ * <li>{@code <name>.blobs} - the archive with the plain content of all BLOBs written by this snapshot concatenated
+ * without any framing.</li>
+ * </ul>
+ * The content of a BLOB is identified by its {@link BlobId} without {@link BlobId#getCopy() copy}. For deduplicating
+ * stores this is the content address so all references share the same content and BLOBs already contained in the
+ * previous snapshot are only referenced in the manifest instead of being written again. Hence the snapshot directory
+ * has to keep the archives of older snapshots as long as a manifest refers to them.<br>
+ * {@link #restore(File, String) Restore} runs with {@link BlobStoreSnapshotConfigProperties#getThreads() multiple
+ * threads} via {@link BlobStore#restore(Id, DataResource)} so all {@link Id}s remain stable. It is idempotent and can
+ * therefore be resumed. {@link TenantUsage Tenant} assignments are not part of a snapshot.<br>
+ * Reading and writing BLOBs is throttled via the {@link IoClass#MAINTENANCE maintenance budget} of the store.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+public class BlobStoreSnapshot extends AbstractLoggableComponent {
+
+  /** The suffix of the manifest file of a snapshot. */
+  public static final String SUFFIX_MANIFEST = ".manifest";
+
+  /** The suffix of the archive file of a snapshot. */
+  public static final String SUFFIX_ARCHIVE = ".blobs";
+
+  private static final String SUFFIX_TMP = ".tmp";
+
+  private static final String NO_HASH = "-";
+
+  private final AbstractBlobStoreFs store;
+
+  private BlobStoreSnapshotConfigProperties config;
+
+  /**
+   * The constructor.
+   *
+   * @param store the initialized {@link AbstractBlobStoreFs} to export or restore.
+   */
+  public BlobStoreSnapshot(AbstractBlobStoreFs store) {
+    super();
+    this.store = store;
+  }
+
+  /**
+   * @param config the {@link BlobStoreSnapshotConfigProperties} to {@link Inject}.
+   */
+  @Inject
+  public void setConfig(BlobStoreSnapshotConfigProperties config) {
+
+    this.config = config;
+  }
+
+  @Override
+  protected void doInitialize() {
+
+    super.doInitialize();
+    if (this.config == null) {
+      this.config = new BlobStoreSnapshotConfigProperties();
+    }
+  }
+
+  /**
+   * Exports a new snapshot of all BLOBs currently in the store.
+   *
+   * @param directory the snapshot directory.
+   * @param name the name of the new snapshot.
+   * @param previous the name of the previous snapshot in the same {@code directory} or {@code null} for a full
+   *        snapshot.
+   * @return the number of BLOBs whose content has been written to the archive of the new snapshot.
+   */
+  public synchronized long export(File directory, String name, String previous) {
+
+    verifyName(name);
+    Map<String, Entry> contents = new HashMap<>();
+    if (previous != null) {
+      for (Entry entry : readManifest(directory, previous)) {
+        contents.put(getContentKey(this.store.asBlobId(this.store.createId(entry.id))), entry);
+      }
+    }
+    File manifestFile = new File(directory, name + SUFFIX_MANIFEST);
+    if (manifestFile.exists()) {
+      throw new IllegalArgumentException("Snapshot " + name + " already exists in " + directory);
+    }
+    this.store.getFileUtil().mkdirs(directory);
+    File tmpFile = new File(directory, name + SUFFIX_MANIFEST + SUFFIX_TMP);
+    long count = 0;
+    long written = 0;
+    try (FileChannel archive = FileChannel.open(new File(directory, name + SUFFIX_ARCHIVE).toPath(),
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        Writer manifest = new BufferedWriter(
+            new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8));
+        Stream<Id<DataResource>> ids = this.store.ids()) {
+      Iterator<Id<DataResource>> iterator = ids.iterator();
+      while (iterator.hasNext()) {
+        BlobId blobId = this.store.asBlobId(iterator.next());
+        File blobFile = this.store.getBlobFile(blobId);
+        if (blobFile == null) {
+          continue;
+        }
+        String key = getContentKey(blobId);
+        Entry entry = contents.get(key);
+        if ((entry == null) || (entry.size != blobFile.length())) {
+          entry = append(blobId, blobFile, archive, name);
+          if (entry == null) {
+            continue;
+          }
+          contents.put(key, entry);
+          written++;
+        }
+        manifest.write(blobId.getId() + " " + entry.hash + " " + entry.size + " " + entry.archive + " "
+            + entry.offset + "\n");
+        count++;
+      }
+      archive.force(true);
+    } catch (IOException e) {
+      throw new RuntimeIoException(e, IoMode.WRITE);
+    }
+    try {
+      Files.move(tmpFile.toPath(), manifestFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new RuntimeIoException(e, IoMode.WRITE);
+    }
+    getLogger().info("Exported snapshot {} with {} BLOBs ({} written) to {}", name, Long.valueOf(count),
+        Long.valueOf(written), directory);
+    return written;
+  }
+
+  private Entry append(BlobId blobId, File blobFile, FileChannel archive, String name) throws IOException {
+
+    IoScheduler scheduler = this.store.getIoScheduler();
+    try (FileChannel in = FileChannel.open(blobFile.toPath(), StandardOpenOption.READ)) {
+      long size = in.size();
+      scheduler.begin(IoClass.MAINTENANCE);
+      try {
+        scheduler.consume(IoClass.MAINTENANCE, size);
+        long offset = archive.position();
+        long position = 0;
+        while (position < size) {
+          position += in.transferTo(position, size - position, archive);
+        }
+        String hash = this.store.getHash(blobId);
+        if (hash == null) {
+          hash = NO_HASH;
+        }
+        return new Entry(blobId.getId().toString(), hash, size, name, offset);
+      } finally {
+        scheduler.end(IoClass.MAINTENANCE);
+      }
+    } catch (NoSuchFileException e) {
+      getLogger().debug("BLOB {} has been deleted concurrently", blobId);
+      return null;
+    }
+  }
+
+  /**
+   * Restores all BLOBs of a snapshot that are missing in the store.
+   *
+   * @param directory the snapshot directory.
+   * @param name the name of the snapshot to restore.
+   * @return the number of BLOBs restored by this invocation.
+   * @throws IllegalStateException if some BLOBs failed to restore. Invoke again to resume and retry them.
+   */
+  public synchronized long restore(File directory, String name) {
+
+    List<Entry> entries = readManifest(directory, name);
+    // read each archive sequentially within the chunks of the parallel stream
+    entries.sort(Comparator.comparing((Entry e) -> e.archive).thenComparingLong(e -> e.offset));
+    AtomicLong restored = new AtomicLong();
+    AtomicLong failed = new AtomicLong();
+    ForkJoinPool pool = new ForkJoinPool(this.config.getThreads(), p -> {
+      ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+      thread.setName("blob-restore-" + thread.getPoolIndex());
+      thread.setDaemon(true);
+      return thread;
+    }, null, false);
+    try {
+      pool.submit(() -> entries.parallelStream().forEach(entry -> {
+        if (restore(directory, entry, failed)) {
+          restored.incrementAndGet();
+        }
+      })).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while restoring", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Restore failed", e.getCause());
+    } finally {
+      pool.shutdownNow();
+    }
+    getLogger().info("Restored {} of {} BLOBs from snapshot {}", Long.valueOf(restored.get()),
+        Integer.valueOf(entries.size()), name);
+    if (failed.get() > 0) {
+      throw new IllegalStateException(failed + " BLOBs failed to restore - run again to resume.");
+    }
+    return restored.get();
+  }
+
+  private boolean restore(File directory, Entry entry, AtomicLong failed) {
+
+    File archiveFile = new File(directory, entry.archive + SUFFIX_ARCHIVE);
+    try (FileChannel channel = FileChannel.open(archiveFile.toPath(), StandardOpenOption.READ)) {
+      InputStream in = new RangeInputStream(channel, entry.offset, entry.size);
+      return this.store.restore(this.store.createId(entry.id), new StreamResource(in, entry.id, entry.size));
+    } catch (IOException | RuntimeException e) {
+      failed.incrementAndGet();
+      getLogger().warn("Failed to restore BLOB {} from {}", entry.id, archiveFile, e);
+      return false;
+    }
+  }
+
+  private static List<Entry> readManifest(File directory, String name) {
+
+    verifyName(name);
+    File manifestFile = new File(directory, name + SUFFIX_MANIFEST);
+    List<String> lines;
+    try {
+      lines = Files.readAllLines(manifestFile.toPath(), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new RuntimeIoException(e, IoMode.READ);
+    }
+    List<Entry> entries = new ArrayList<>(lines.size());
+    for (String line : lines) {
+      String[] segments = line.split(" ");
+      if (segments.length != 5) {
+        throw new IllegalStateException("Invalid line in " + manifestFile + ": " + line);
+      }
+      entries.add(new Entry(segments[0], segments[1], Long.parseLong(segments[2]), segments[3],
+          Long.parseLong(segments[4])));
+    }
+    return entries;
+  }
+
+  private static void verifyName(String name) {
+
+    if (name.isEmpty() || (name.indexOf(' ') >= 0) || (name.indexOf('/') >= 0)
+        || (name.indexOf(File.separatorChar) >= 0)) {
+      throw new IllegalArgumentException(name);
+    }
+  }
+
+  private static String getContentKey(BlobId id) {
+
+    return new BlobId(id.getPartition(), id.getFolder(), null).getId();
+  }
+
+  /**
+   * Exports or restores a snapshot from the command-line.
+   *
+   * @param args the command-line arguments: the type of the store ({@code simple}, {@code dedup}, or {@code refcount}),
+   *        its directory, the action ({@code export} or {@code restore}), the snapshot directory, the name of the
+   *        snapshot and for {@code export} optionally the name of the previous snapshot.
+   */
+  public static void main(String[] args) {
+
+    if (args.length < 5) {
+      System.err.println("Usage: BlobStoreSnapshot (simple|dedup|refcount) <store-directory> (export|restore) "
+          + "<snapshot-directory> <name> [<previous>]");
+      return;
+    }
+    AbstractBlobStoreFs store = BlobStoreMigration.createStore(args[0], args[1], new BlobStoreIoConfigProperties());
+    BlobStoreSnapshot snapshot = new BlobStoreSnapshot(store);
+    snapshot.initialize();
+    File directory = new File(args[3]);
+    switch (args[2]) {
+      case "export":
+        String previous = null;
+        if (args.length > 5) {
+          previous = args[5];
+        }
+        System.out.println("Exported " + snapshot.export(directory, args[4], previous) + " BLOBs.");
+        break;
+      case "restore":
+        System.out.println("Restored " + snapshot.restore(directory, args[4]) + " BLOBs.");
+        break;
+      default:
+        throw new IllegalArgumentException(args[2]);
+    }
+  }
+
+  /**
+   * A line of the manifest.
+   */
+  private static class Entry {
+
+    private final String id;
+
+    private final String hash;
+
+    private final long size;
+
+    private final String archive;
+
+    private final long offset;
+
+    private Entry(String id, String hash, long size, String archive, long offset) {
+      super();
+      this.id = id;
+      this.hash = hash;
+      this.size = size;
+      this.archive = archive;
+      this.offset = offset;
+    }
+
+  }
+
+  /**
+   * {@link InputStream} on a range of an archive that reads with absolute positions.
+   */
+  private static class RangeInputStream extends InputStream {
+
+    private final FileChannel channel;
+
+    private final long end;
+
+    private long position;
+
+    private RangeInputStream(FileChannel channel, long offset, long size) {
+      super();
+      this.channel = channel;
+      this.position = offset;
+      this.end = offset + size;
+    }
+
+    @Override
+    public int read() throws IOException {
+
+      byte[] buffer = new byte[1];
+      int count = read(buffer, 0, 1);
+      if (count < 0) {
+        return -1;
+      }
+      return buffer[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+
+      if (this.position >= this.end) {
+        return -1;
+      }
+      int max = (int) Math.min(length, this.end - this.position);
+      int count = this.channel.read(ByteBuffer.wrap(buffer, offset, max), this.position);
+      if (count < 0) {
+        throw new EOFException("Archive truncated at " + this.position);
+      }
+      this.position += count;
+      return count;
+    }
+
+  }
+
+}
@@ -0,0 +1,42 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * The {@link ConfigurationProperties} for {@link BlobStoreSnapshot}. The bandwidth of export and restore is limited by
+ * the {@link BlobStoreIoConfigProperties#getMaintenanceBandwidth() maintenance budget} of the store.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+@ConfigurationProperties(prefix = "blob.store.snapshot")
+public class BlobStoreSnapshotConfigProperties {
+
+  private int threads = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * The constructor.
+   */
+  public BlobStoreSnapshotConfigProperties() {
+    super();
+  }
+
+  /**
+   * @return the number of threads that restore BLOBs concurrently. The default is the number of available processors.
+   */
+  public int getThreads() {
+
+    return this.threads;
+  }
+
+  /**
+   * @param threads the new value of {@link #getThreads()}.
+   */
+  public void setThreads(int threads) {
+
+    this.threads = threads;
+  }
+
+}
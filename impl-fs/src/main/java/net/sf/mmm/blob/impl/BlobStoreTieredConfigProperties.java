@@ -0,0 +1,102 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * The {@link ConfigurationProperties} for {@link TieredBlobStore}.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+@ConfigurationProperties(prefix = "blob.store.tiered")
+public class BlobStoreTieredConfigProperties {
+
+  private Duration demoteAfter = Duration.ofDays(7);
+
+  private int promoteThreshold = 4;
+
+  private Duration moverInterval = Duration.ofMinutes(10);
+
+  private int sketchWidth = 64 * 1024;
+
+  /**
+   * The constructor.
+   */
+  public BlobStoreTieredConfigProperties() {
+    super();
+  }
+
+  /**
+   * @return the minimum time since a BLOB on the fast tier has last been read or written before it gets demoted to
+   *         the capacity tier. The default is 7 days.
+   */
+  public Duration getDemoteAfter() {
+
+    return this.demoteAfter;
+  }
+
+  /**
+   * @param demoteAfter the new value of {@link #getDemoteAfter()}.
+   */
+  public void setDemoteAfter(Duration demoteAfter) {
+
+    this.demoteAfter = demoteAfter;
+  }
+
+  /**
+   * @return the estimated number of recent reads of a BLOB on the capacity tier that causes its promotion to the fast
+   *         tier. The default is 4.
+   */
+  public int getPromoteThreshold() {
+
+    return this.promoteThreshold;
+  }
+
+  /**
+   * @param promoteThreshold the new value of {@link #getPromoteThreshold()}.
+   */
+  public void setPromoteThreshold(int promoteThreshold) {
+
+    this.promoteThreshold = promoteThreshold;
+  }
+
+  /**
+   * @return the interval of the background mover that promotes and demotes BLOBs. Also the read statistics are aged
+   *         (halved) with each run. A {@link Duration#isZero() zero} duration disables the background mover. The
+   *         default is 10 minutes.
+   */
+  public Duration getMoverInterval() {
+
+    return this.moverInterval;
+  }
+
+  /**
+   * @param moverInterval the new value of {@link #getMoverInterval()}.
+   */
+  public void setMoverInterval(Duration moverInterval) {
+
+    this.moverInterval = moverInterval;
+  }
+
+  /**
+   * @return the number of counters per row of the sketch used to estimate the read frequency of BLOBs. Determines the
+   *         memory usage ({@code 16} bytes per column) and the accuracy. The default is 65536.
+   */
+  public int getSketchWidth() {
+
+    return this.sketchWidth;
+  }
+
+  /**
+   * @param sketchWidth the new value of {@link #getSketchWidth()}.
+   */
+  public void setSketchWidth(int sketchWidth) {
+
+    this.sketchWidth = sketchWidth;
+  }
+
+}
@@ -0,0 +1,250 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import net.sf.mmm.blob.api.BlobRange;
+import net.sf.mmm.blob.api.BlobUpload;
+import net.sf.mmm.util.data.api.id.Id;
+import net.sf.mmm.util.file.api.FileCreationFailedException;
+import net.sf.mmm.util.io.api.IoMode;
+import net.sf.mmm.util.io.api.RuntimeIoException;
+import net.sf.mmm.util.resource.api.DataResource;
+
+/**
+ * This is the implementation of {@link BlobUpload} for {@link AbstractBlobStoreFs}. The parts are written directly to
+ * an {@link AbstractBlobStoreFs#getIncomeDirectory() income file} while the {@link #getReceivedRanges() received
+ * ranges} are tracked in a small file next to it so the upload can be resumed after a restart. Like all income files,
+ * uploads that have not been modified for 24 hours are discarded on startup.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+class BlobUploadImplFs implements BlobUpload {
+
+  private static final String SUFFIX_RANGES = ".ranges";
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final AbstractBlobStoreFs store;
+
+  private final File incomeFile;
+
+  private final File rangesFile;
+
+  /** The received ranges as mapping from start to end. */
+  private final TreeMap<Long, Long> ranges;
+
+  private volatile boolean done;
+
+  /**
+   * The constructor.
+   *
+   * @param store the owning {@link AbstractBlobStoreFs}.
+   * @param incomeFile the {@link File} in the {@link AbstractBlobStoreFs#getIncomeDirectory() income directory} where
+   *        to write the BLOB to.
+   */
+  BlobUploadImplFs(AbstractBlobStoreFs store, File incomeFile) {
+    super();
+    this.store = store;
+    this.incomeFile = incomeFile;
+    this.rangesFile = new File(incomeFile.getParentFile(), incomeFile.getName() + SUFFIX_RANGES);
+    this.ranges = new TreeMap<>();
+    loadRanges();
+  }
+
+  /**
+   * @param uploadId the {@link #getId() upload ID} to validate.
+   * @return {@code true} if the given {@code uploadId} is syntactically valid, {@code false} otherwise.
+   */
+  static boolean isValidId(String uploadId) {
+
+    if ((uploadId == null) || uploadId.isEmpty()) {
+      return false;
+    }
+    for (int i = 0; i < uploadId.length(); i++) {
+      char c = uploadId.charAt(i);
+      boolean hex = ((c >= '0') && (c <= '9')) || ((c >= 'a') && (c <= 'f')) || (c == '-');
+      if (!hex) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Creates the {@link File}s for this upload.
+   */
+  void create() {
+
+    try {
+      if (!this.incomeFile.createNewFile()) {
+        throw new FileCreationFailedException(this.incomeFile);
+      }
+    } catch (IOException e) {
+      throw new FileCreationFailedException(e, this.incomeFile);
+    }
+    saveRanges();
+  }
+
+  @Override
+  public String getId() {
+
+    return this.incomeFile.getName();
+  }
+
+  @Override
+  public long write(long offset, InputStream data) {
+
+    if (offset < 0) {
+      throw new IllegalArgumentException(Long.toString(offset));
+    }
+    verifyNotDone();
+    long position = offset;
+    try (FileChannel channel = FileChannel.open(this.incomeFile.toPath(), StandardOpenOption.WRITE)) {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+      int count = data.read(buffer);
+      while (count >= 0) {
+        byteBuffer.clear();
+        byteBuffer.limit(count);
+        while (byteBuffer.hasRemaining()) {
+          position += channel.write(byteBuffer, position);
+        }
+        count = data.read(buffer);
+      }
+    } catch (IOException e) {
+      throw new RuntimeIoException(e, IoMode.WRITE);
+    } finally {
+      // also keep what has been received if the connection broke
+      if (position > offset) {
+        addRange(offset, position);
+      }
+    }
+    return position - offset;
+  }
+
+  private synchronized void addRange(long start, long end) {
+
+    long newStart = start;
+    long newEnd = end;
+    Entry<Long, Long> floor = this.ranges.floorEntry(Long.valueOf(start));
+    if ((floor != null) && (floor.getValue().longValue() >= start)) {
+      newStart = floor.getKey().longValue();
+      newEnd = Math.max(newEnd, floor.getValue().longValue());
+    }
+    Entry<Long, Long> next = this.ranges.ceilingEntry(Long.valueOf(newStart));
+    while ((next != null) && (next.getKey().longValue() <= newEnd)) {
+      newEnd = Math.max(newEnd, next.getValue().longValue());
+      this.ranges.remove(next.getKey());
+      next = this.ranges.higherEntry(next.getKey());
+    }
+    this.ranges.put(Long.valueOf(newStart), Long.valueOf(newEnd));
+    saveRanges();
+  }
+
+  @Override
+  public synchronized List<BlobRange> getReceivedRanges() {
+
+    List<BlobRange> result = new ArrayList<>(this.ranges.size());
+    for (Entry<Long, Long> entry : this.ranges.entrySet()) {
+      result.add(new BlobRange(entry.getKey().longValue(), entry.getValue().longValue()));
+    }
+    return result;
+  }
+
+  @Override
+  public synchronized Id<DataResource> commit() {
+
+    verifyNotDone();
+    long size = 0;
+    if (!this.ranges.isEmpty()) {
+      Entry<Long, Long> first = this.ranges.firstEntry();
+      if ((this.ranges.size() > 1) || (first.getKey().longValue() != 0)) {
+        throw new IllegalStateException("Upload " + getId() + " is incomplete: " + getReceivedRanges());
+      }
+      size = first.getValue().longValue();
+    }
+    if (this.incomeFile.length() != size) {
+      throw new IllegalStateException("Upload " + getId() + " has unexpected size " + this.incomeFile.length());
+    }
+    // prevents further writes while committing
+    this.done = true;
+    Id<DataResource> id;
+    try {
+      id = this.store.commitIncomeFile(this.incomeFile);
+    } catch (RuntimeException e) {
+      // the upload can still be resumed
+      this.done = false;
+      throw e;
+    }
+    // deleted after the commit so the upload can be resumed if the commit fails or is interrupted by a crash
+    this.store.getFileUtil().delete(this.rangesFile);
+    this.store.endUpload(this);
+    return id;
+  }
+
+  @Override
+  public synchronized void abort() {
+
+    this.done = true;
+    this.store.getFileUtil().delete(this.incomeFile);
+    this.store.getFileUtil().delete(this.rangesFile);
+    this.store.endUpload(this);
+  }
+
+  private void verifyNotDone() {
+
+    if (this.done) {
+      throw new IllegalStateException("Upload " + getId() + " has already been completed.");
+    }
+  }
+
+  private void loadRanges() {
+
+    if (!this.rangesFile.isFile()) {
+      return;
+    }
+    try {
+      for (String line : Files.readAllLines(this.rangesFile.toPath(), StandardCharsets.UTF_8)) {
+        int separator = line.indexOf('-');
+        if (separator > 0) {
+          this.ranges.put(Long.valueOf(line.substring(0, separator)), Long.valueOf(line.substring(separator + 1)));
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeIoException(e, IoMode.READ);
+    }
+  }
+
+  private void saveRanges() {
+
+    StringBuilder sb = new StringBuilder();
+    for (Entry<Long, Long> entry : this.ranges.entrySet()) {
+      sb.append(entry.getKey()).append('-').append(entry.getValue()).append('\n');
+    }
+    File tmpFile = new File(this.rangesFile.getParentFile(), this.rangesFile.getName() + ".tmp");
+    try {
+      Files.write(tmpFile.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+      if (!tmpFile.renameTo(this.rangesFile)) {
+        Files.write(this.rangesFile.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+        tmpFile.delete();
+      }
+    } catch (IOException e) {
+      throw new RuntimeIoException(e, IoMode.WRITE);
+    }
+  }
+
+}
@@ -0,0 +1,117 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class represents a single root directory (typically a disc) of an {@link AbstractBlobStoreFs}. Each
+ * {@link BlobVolume} has its own {@link #getIncomeDirectory() income} and {@link #getDataDirectory() data} directory.
+ *
+ * @see BlobStoreFsConfigProperties#getDirectories()
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+public final class BlobVolume {
+
+  private final int index;
+
+  private final File rootDirectory;
+
+  private final File incomeDirectory;
+
+  private final File dataDirectory;
+
+  private final AtomicInteger activeWrites;
+
+  /**
+   * The constructor.
+   *
+   * @param index - see {@link #getIndex()}.
+   * @param rootDirectory - see {@link #getRootDirectory()}.
+   */
+  BlobVolume(int index, File rootDirectory) {
+    super();
+    this.index = index;
+    this.rootDirectory = rootDirectory;
+    this.incomeDirectory = new File(rootDirectory, AbstractBlobStoreFs.FOLDER_INCOME);
+    this.dataDirectory = new File(rootDirectory, AbstractBlobStoreFs.FOLDER_DATA);
+    this.activeWrites = new AtomicInteger();
+  }
+
+  /**
+   * @return the index of this {@link BlobVolume} in the configured {@link BlobStoreFsConfigProperties#getDirectories()
+   *         directories}.
+   */
+  public int getIndex() {
+
+    return this.index;
+  }
+
+  /**
+   * @return the {@link File} pointing to the root directory of this volume.
+   */
+  public File getRootDirectory() {
+
+    return this.rootDirectory;
+  }
+
+  /**
+   * @return the {@link File} pointing to the folder for incoming BLOBs of this volume.
+   */
+  public File getIncomeDirectory() {
+
+    return this.incomeDirectory;
+  }
+
+  /**
+   * @return the {@link File} pointing to the folder for the persistent data of this volume.
+   */
+  public File getDataDirectory() {
+
+    return this.dataDirectory;
+  }
+
+  /**
+   * @return the number of BLOBs currently written to this volume (queue depth).
+   */
+  public int getActiveWrites() {
+
+    return this.activeWrites.get();
+  }
+
+  /**
+   * Increments the {@link #getActiveWrites() active writes}.
+   */
+  void beginWrite() {
+
+    this.activeWrites.incrementAndGet();
+  }
+
+  /**
+   * Decrements the {@link #getActiveWrites() active writes}.
+   */
+  void endWrite() {
+
+    this.activeWrites.decrementAndGet();
+  }
+
+  /**
+   * @param file the {@link File} to check.
+   * @return {@code true} if the given {@link File} is {@link File#getParentFile() located} directly in the
+   *         {@link #getIncomeDirectory() income directory} of this volume.
+   */
+  boolean isIncomeFile(File file) {
+
+    return this.incomeDirectory.equals(file.getParentFile());
+  }
+
+  @Override
+  public String toString() {
+
+    return this.rootDirectory.toString();
+  }
+
+}
@@ -0,0 +1,34 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+/**
+ * Enum with the available modes how {@link BlobStoreImplDeduplicatingFs} calculates the hash of a BLOB.
+ *
+ * @see BlobStoreFsConfigProperties#getDigestMode()
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+public enum DigestMode {
+
+  /**
+   * The hash is calculated in the thread writing the BLOB as the data is streamed to the disc. This is the default.
+   */
+  STREAM,
+
+  /**
+   * The hash is calculated by a worker thread concurrently to the thread writing the BLOB. The resulting hash is
+   * identical to {@link #STREAM} so both modes can be switched for an existing store.
+   */
+  PIPELINED,
+
+  /**
+   * The BLOB is split into {@link BlobStoreFsConfigProperties#getDigestChunkSize() chunks} that are hashed in parallel
+   * by multiple worker threads. The final hash is the hash of the concatenated chunk hashes (tree hash). The hash
+   * differs from {@link #STREAM} and depends on the chunk size. Hence neither the mode nor the chunk size may be changed
+   * for an existing store.
+   */
+  TREE;
+
+}
@@ -0,0 +1,141 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.mmm.util.io.api.IoMode;
+import net.sf.mmm.util.io.api.RuntimeIoException;
+
+/**
+ * This class is the index of BLOBs that have been saved with a time-to-live. The index is bucketed by time: each bucket
+ * is an append-only file containing one line with the expiry time and ID per BLOB. The name of the file is the number
+ * of the bucket since the epoch. Hence a reaper only needs to read the buckets that are {@link #takeDue(long) due}
+ * instead of scanning the entire store.<br>
+ * A BLOB that is deleted before it expires keeps its entry as finding it would require to read all buckets. Such stale
+ * entry is a harmless miss when its bucket is reaped as the {@link BlobId}s of BLOBs saved with a time-to-live are
+ * never reused.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+class ExpiryIndex {
+
+  private static final String SUFFIX_REAPING = ".reaping";
+
+  private final File directory;
+
+  private final long bucketMillis;
+
+  /**
+   * The constructor.
+   *
+   * @param directory the directory containing the bucket files.
+   * @param bucketMillis the duration of a bucket in milliseconds.
+   */
+  ExpiryIndex(File directory, long bucketMillis) {
+    super();
+    this.directory = directory;
+    this.bucketMillis = bucketMillis;
+  }
+
+  /**
+   * @return {@code true} if this index contains no buckets, {@code false} otherwise.
+   */
+  boolean isEmpty() {
+
+    String[] names = this.directory.list();
+    return (names == null) || (names.length == 0);
+  }
+
+  /**
+   * @param id the {@link BlobId#getId() ID} of the BLOB.
+   * @param expiry the point in time in milliseconds since the epoch when the BLOB expires.
+   */
+  synchronized void add(String id, long expiry) {
+
+    File bucket = new File(this.directory, Long.toString(expiry / this.bucketMillis));
+    String line = expiry + " " + id + "\n";
+    try (OutputStream out = new FileOutputStream(bucket, true)) {
+      out.write(line.getBytes(StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      throw new RuntimeIoException(e, IoMode.WRITE);
+    }
+  }
+
+  /**
+   * Takes all buckets that have completely expired at the given point in time. Each taken bucket is renamed so that no
+   * further entries are appended. Buckets that have been taken before but not {@link #remove(File) removed} (e.g.
+   * because of a crash) are also returned.
+   *
+   * @param now the current point in time in milliseconds since the epoch.
+   * @return the {@link List} of the taken bucket {@link File}s.
+   */
+  synchronized List<File> takeDue(long now) {
+
+    List<File> due = new ArrayList<>();
+    File[] buckets = this.directory.listFiles();
+    if (buckets == null) {
+      return due;
+    }
+    long currentBucket = now / this.bucketMillis;
+    for (File bucket : buckets) {
+      String name = bucket.getName();
+      if (name.endsWith(SUFFIX_REAPING)) {
+        due.add(bucket);
+      } else {
+        long number;
+        try {
+          number = Long.parseLong(name);
+        } catch (NumberFormatException e) {
+          continue;
+        }
+        if (number < currentBucket) {
+          File reaping = new File(this.directory, name + SUFFIX_REAPING);
+          if (bucket.renameTo(reaping)) {
+            due.add(reaping);
+          }
+        }
+      }
+    }
+    return due;
+  }
+
+  /**
+   * @param bucket the {@link #takeDue(long) taken} bucket {@link File}.
+   * @return the {@link List} with the {@link BlobId#getId() IDs} of the BLOBs in the given bucket.
+   */
+  static List<String> read(File bucket) {
+
+    List<String> ids = new ArrayList<>();
+    try {
+      for (String line : Files.readAllLines(bucket.toPath(), StandardCharsets.UTF_8)) {
+        int space = line.indexOf(' ');
+        if (space > 0) {
+          ids.add(line.substring(space + 1));
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeIoException(e, IoMode.READ);
+    }
+    return ids;
+  }
+
+  /**
+   * @param bucket the {@link #takeDue(long) taken} bucket {@link File} that has been processed.
+   */
+  void remove(File bucket) {
+
+    if (!bucket.delete() && bucket.exists()) {
+      throw new IllegalStateException("Failed to delete expiry bucket " + bucket);
+    }
+  }
+
+}
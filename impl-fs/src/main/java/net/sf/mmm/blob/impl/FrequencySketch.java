@@ -0,0 +1,94 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * This is a compact and thread-safe count-min sketch to estimate how often a key has been accessed. It uses a fixed
+ * amount of memory independent of the number of keys. To prefer recent accesses, all counters are {@link #age() aged}
+ * (halved) periodically.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+class FrequencySketch {
+
+  private static final int DEPTH = 4;
+
+  private static final int[] SEEDS = { 0x97cb3127, 0xa0761d65, 0xe7037ed1, 0x8ebc6af0 };
+
+  private final AtomicIntegerArray counters;
+
+  private final int mask;
+
+  /**
+   * The constructor.
+   *
+   * @param width the number of counters per row. Will be rounded up to the next power of two.
+   */
+  FrequencySketch(int width) {
+    super();
+    int size = Integer.highestOneBit(Math.max(width, 16) - 1) << 1;
+    this.counters = new AtomicIntegerArray(DEPTH * size);
+    this.mask = size - 1;
+  }
+
+  private int index(int hash, int row) {
+
+    int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+    h ^= (h >>> 16);
+    return (row * (this.mask + 1)) + (h & this.mask);
+  }
+
+  /**
+   * @param key the key that has been accessed.
+   */
+  void increment(String key) {
+
+    int hash = key.hashCode();
+    int min = estimate(hash);
+    for (int row = 0; row < DEPTH; row++) {
+      int i = index(hash, row);
+      // conservative update: only increment the counters that are at the minimum
+      if (this.counters.get(i) == min) {
+        this.counters.incrementAndGet(i);
+      }
+    }
+  }
+
+  /**
+   * @param key the key to estimate.
+   * @return the estimated number of accesses of the given key since the last {@link #age() agings}.
+   */
+  int estimate(String key) {
+
+    return estimate(key.hashCode());
+  }
+
+  private int estimate(int hash) {
+
+    int min = Integer.MAX_VALUE;
+    for (int row = 0; row < DEPTH; row++) {
+      int count = this.counters.get(index(hash, row));
+      if (count < min) {
+        min = count;
+      }
+    }
+    return min;
+  }
+
+  /**
+   * Halves all counters so accesses in the past lose their weight over time.
+   */
+  void age() {
+
+    for (int i = 0; i < this.counters.length(); i++) {
+      int count = this.counters.get(i);
+      while ((count > 0) && !this.counters.compareAndSet(i, count, count >> 1)) {
+        count = this.counters.get(i);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,86 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * This class writes the data of a BLOB to its income file according to the size class of its size hint:
+ * <ul>
+ * <li>Small BLOBs are read completely into a buffer of their exact size and written with a single write.</li>
+ * <li>Large BLOBs are copied with a large buffer to reduce the number of system calls and let the filesystem allocate
+ * few large extents.</li>
+ * <li>BLOBs of unknown size are copied with a medium buffer.</li>
+ * </ul>
+ * If the size is known, the data has to match it exactly. Otherwise writing fails as soon as the deviation is detected.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+class IncomeWriter {
+
+  /** The maximum size of a small BLOB that is written with a single write. */
+  static final int SMALL_SIZE = 64 * 1024;
+
+  /** The minimum size of a large BLOB. */
+  static final long LARGE_SIZE = 16 * 1024 * 1024;
+
+  private static final int MEDIUM_BUFFER_SIZE = 64 * 1024;
+
+  private static final int LARGE_BUFFER_SIZE = 1024 * 1024;
+
+  private IncomeWriter() {
+    super();
+  }
+
+  /**
+   * @param in the {@link InputStream} to read the BLOB from.
+   * @param out the {@link OutputStream} to the income file.
+   * @param sizeHint the expected size of the BLOB or a negative value if unknown.
+   * @return the number of bytes written.
+   * @throws IOException on error or if the data does not match the {@code sizeHint}.
+   */
+  static long write(InputStream in, OutputStream out, long sizeHint) throws IOException {
+
+    int bufferSize;
+    if (sizeHint < 0) {
+      bufferSize = MEDIUM_BUFFER_SIZE;
+    } else if (sizeHint <= SMALL_SIZE) {
+      // one extra byte to detect excess data with the same read
+      bufferSize = (int) sizeHint + 1;
+    } else if (sizeHint < LARGE_SIZE) {
+      bufferSize = MEDIUM_BUFFER_SIZE;
+    } else {
+      bufferSize = LARGE_BUFFER_SIZE;
+    }
+    byte[] buffer = new byte[bufferSize];
+    long size = 0;
+    int fill = 0;
+    while (true) {
+      int count = in.read(buffer, fill, bufferSize - fill);
+      if (count < 0) {
+        break;
+      }
+      fill += count;
+      size += count;
+      if ((sizeHint >= 0) && (size > sizeHint)) {
+        throw new IOException("BLOB exceeds its size of " + sizeHint + " bytes");
+      }
+      if (fill == bufferSize) {
+        out.write(buffer, 0, fill);
+        fill = 0;
+      }
+    }
+    if (fill > 0) {
+      out.write(buffer, 0, fill);
+    }
+    if ((sizeHint >= 0) && (size < sizeHint)) {
+      throw new EOFException("BLOB has only " + size + " of " + sizeHint + " bytes");
+    }
+    return size;
+  }
+
+}
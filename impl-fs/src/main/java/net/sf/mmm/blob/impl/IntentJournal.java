@@ -0,0 +1,220 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.mmm.util.io.api.IoMode;
+import net.sf.mmm.util.io.api.RuntimeIoException;
+
+/**
+ * This class is an append-only write-ahead journal of the intents of an {@link AbstractBlobStoreFs}. Before a
+ * non-atomic operation modifies the disc, each step is recorded with the affected {@link File}. After the operation
+ * completed, its {@link #end(long) end} is recorded. After a crash, only the operations without end have to be
+ * {@link #readPending(File) reconciled} instead of scanning the entire store. The journal is truncated whenever no
+ * operation is in progress and it has grown beyond a threshold.<br>
+ * Each line has the format {@code <operation> <type> [<path>]} or {@code <operation> <type> <value>} for intents that
+ * do not refer to a single {@link File}.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+class IntentJournal {
+
+  /** Type of an intent for an income file that has to be deleted if the operation did not complete. */
+  static final char TYPE_INCOME = 'I';
+
+  /** Type of an intent for a partition directory that has to be reconciled if the operation did not complete. */
+  static final char TYPE_PARTITION = 'P';
+
+  /** Type of an intent for a reference file that has to be deleted if the operation did not complete. */
+  static final char TYPE_REFERENCE = 'R';
+
+  /**
+   * Type of an intent for the {@link QuotaLedger} with the value {@code <sequence> <tenant> <bytes> <objects> <path>}.
+   * If the operation did not complete, the delta is applied or undone so that it is charged if and only if the
+   * {@link File} of the given path exists for a positive delta or does not exist for a negative delta.
+   */
+  static final char TYPE_QUOTA = 'Q';
+
+  private static final char TYPE_END = 'E';
+
+  private static final long COMPACT_SIZE = 1024 * 1024;
+
+  private final File file;
+
+  private final boolean sync;
+
+  private FileChannel channel;
+
+  private long counter;
+
+  private int active;
+
+  /**
+   * The constructor.
+   *
+   * @param file the journal {@link File}.
+   * @param sync - {@code true} to force every record to the disc, {@code false} otherwise.
+   */
+  IntentJournal(File file, boolean sync) {
+    super();
+    this.file = file;
+    this.sync = sync;
+  }
+
+  /**
+   * @return the journal {@link File}.
+   */
+  File getFile() {
+
+    return this.file;
+  }
+
+  /**
+   * Opens this journal and discards all previous records. Has to be called after the {@link #readPending(File) pending
+   * operations} have been reconciled.
+   */
+  synchronized void open() {
+
+    try {
+      this.channel = FileChannel.open(this.file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING);
+    } catch (IOException e) {
+      throw new RuntimeIoException(e, IoMode.OPEN);
+    }
+  }
+
+  /**
+   * Closes this journal. Operations still in progress remain pending and are reconciled on the next startup.
+   */
+  synchronized void close() {
+
+    if (this.channel != null) {
+      try {
+        this.channel.close();
+      } catch (IOException e) {
+        throw new RuntimeIoException(e, IoMode.CLOSE);
+      }
+    }
+  }
+
+  /**
+   * @return the number of a new operation.
+   */
+  synchronized long begin() {
+
+    this.active++;
+    return ++this.counter;
+  }
+
+  /**
+   * @param operation the {@link #begin() operation}.
+   * @param type the type of the intent.
+   * @param path the affected {@link File}.
+   */
+  synchronized void record(long operation, char type, File path) {
+
+    record(operation, type, path.getPath());
+  }
+
+  /**
+   * @param operation the {@link #begin() operation}.
+   * @param type the type of the intent.
+   * @param value the value of the intent. Must not contain a newline.
+   */
+  synchronized void record(long operation, char type, String value) {
+
+    write(operation + " " + type + " " + value + "\n");
+  }
+
+  /**
+   * @param operation the {@link #begin() operation} that has completed (successfully or rolled back).
+   */
+  synchronized void end(long operation) {
+
+    write(operation + " " + TYPE_END + "\n");
+    this.active--;
+    if (this.active == 0) {
+      try {
+        if (this.channel.size() > COMPACT_SIZE) {
+          this.channel.truncate(0);
+        }
+      } catch (IOException e) {
+        throw new RuntimeIoException(e, IoMode.WRITE);
+      }
+    }
+  }
+
+  private void write(String line) {
+
+    ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+    try {
+      // FileChannel.position is at the end as it is only appended or truncated
+      while (buffer.hasRemaining()) {
+        this.channel.write(buffer);
+      }
+      if (this.sync) {
+        this.channel.force(false);
+      }
+    } catch (IOException e) {
+      throw new RuntimeIoException(e, IoMode.WRITE);
+    }
+  }
+
+  /**
+   * @param file the journal {@link File}.
+   * @return the {@link Map} with the intents of all operations that have been {@link #begin() begun} but not
+   *         {@link #end(long) ended}. Each intent is a {@link String} starting with the type character followed by the
+   *         path or value.
+   */
+  static Map<Long, List<String>> readPending(File file) {
+
+    Map<Long, List<String>> pending = new LinkedHashMap<>();
+    String content;
+    try {
+      content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    } catch (NoSuchFileException e) {
+      return pending;
+    } catch (IOException e) {
+      throw new RuntimeIoException(e, IoMode.READ);
+    }
+    int start = 0;
+    int end = content.indexOf('\n');
+    // a last line without newline is incomplete (torn write during crash) and has to be ignored
+    while (end >= 0) {
+      String line = content.substring(start, end);
+      start = end + 1;
+      end = content.indexOf('\n', start);
+      int space = line.indexOf(' ');
+      if ((space <= 0) || (line.length() < space + 2)) {
+        continue;
+      }
+      Long operation;
+      try {
+        operation = Long.valueOf(line.substring(0, space));
+      } catch (NumberFormatException e) {
+        continue;
+      }
+      char type = line.charAt(space + 1);
+      if (type == TYPE_END) {
+        pending.remove(operation);
+      } else if (line.length() > space + 3) {
+        pending.computeIfAbsent(operation, k -> new ArrayList<>()).add(type + line.substring(space + 3));
+      }
+    }
+    return pending;
+  }
+
+}
@@ -0,0 +1,39 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+/**
+ * Enum with the classes of disc I/O that are scheduled independently by the {@link IoScheduler}.
+ *
+ * @see BlobStoreIoConfigProperties
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+public enum IoClass {
+
+  /**
+   * Reads of BLOBs that have been {@link AbstractBlobStoreFs#find(net.sf.mmm.util.data.api.id.Id) found} typically on
+   * behalf of an interactive user. These have priority over the other classes.
+   */
+  INTERACTIVE_READ,
+
+  /**
+   * Writes of new BLOBs via {@link AbstractBlobStoreFs#save(net.sf.mmm.util.resource.api.DataResource)} or
+   * {@link AbstractBlobStoreFs#openForWrite()} (e.g. bulk imports).
+   */
+  BULK_SAVE,
+
+  /**
+   * Background work such as restoring BLOBs for repair or migration as well as moving partitions between tiers or
+   * shards.
+   */
+  MAINTENANCE,
+
+  /**
+   * Reads of BLOBs ahead of their use requested via
+   * {@link AbstractBlobStoreFs#prefetch(java.util.Collection) prefetch}.
+   */
+  PREFETCH;
+
+}
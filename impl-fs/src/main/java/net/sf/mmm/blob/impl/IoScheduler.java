@@ -0,0 +1,341 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class schedules the disc I/O of an {@link AbstractBlobStoreFs} per {@link IoClass}. Each {@link IoClass} has
+ * its own concurrency budget (a {@link Semaphore}) and bandwidth budget (a token bucket). While
+ * {@link IoClass#INTERACTIVE_READ interactive reads} are in progress, the bandwidth of the other classes is reduced to
+ * the {@link BlobStoreIoConfigProperties#getBackgroundShare() background share} so that read latency stays stable
+ * during imports or maintenance. Classes without any budget are not throttled at all and cause no overhead.
+ *
+ * @see BlobStoreIoConfigProperties
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+public class IoScheduler {
+
+  private final Lane[] lanes;
+
+  private final double backgroundShare;
+
+  private final boolean backgroundThrottled;
+
+  /**
+   * The constructor.
+   *
+   * @param config the {@link BlobStoreIoConfigProperties}.
+   */
+  public IoScheduler(BlobStoreIoConfigProperties config) {
+    super();
+    this.lanes = new Lane[IoClass.values().length];
+    this.lanes[IoClass.INTERACTIVE_READ.ordinal()] = new Lane(config.getReadBandwidth(), config.getReadConcurrency());
+    this.lanes[IoClass.BULK_SAVE.ordinal()] = new Lane(config.getSaveBandwidth(), config.getSaveConcurrency());
+    this.lanes[IoClass.MAINTENANCE.ordinal()] = new Lane(config.getMaintenanceBandwidth(),
+        config.getMaintenanceConcurrency());
+    this.lanes[IoClass.PREFETCH.ordinal()] = new Lane(config.getPrefetchBandwidth(), config.getPrefetchConcurrency());
+    this.backgroundShare = config.getBackgroundShare();
+    boolean throttled = false;
+    if (this.backgroundShare < 1) {
+      for (IoClass ioClass : IoClass.values()) {
+        if ((ioClass != IoClass.INTERACTIVE_READ) && (getLane(ioClass).bucket != null)) {
+          throttled = true;
+        }
+      }
+    }
+    this.backgroundThrottled = throttled;
+  }
+
+  /**
+   * @param ioClass the {@link IoClass}.
+   * @return {@code true} if the given {@link IoClass} has a budget for bandwidth or concurrency, {@code false}
+   *         otherwise.
+   */
+  public boolean isLimited(IoClass ioClass) {
+
+    Lane lane = getLane(ioClass);
+    return (lane.bucket != null) || (lane.permits != null);
+  }
+
+  /**
+   * @param ioClass the {@link IoClass}.
+   * @return {@code true} if the operations of the given {@link IoClass} have to be
+   *         {@link #schedule(IoClass, InputStream) scheduled}, {@code false} otherwise. This is the case if the
+   *         {@link IoClass} is {@link #isLimited(IoClass) limited}. {@link IoClass#INTERACTIVE_READ Interactive reads}
+   *         are also scheduled if only the bandwidth of another {@link IoClass} is limited so they are
+   *         {@link #getActive(IoClass) counted} to reduce that bandwidth to the background share.
+   */
+  public boolean isScheduled(IoClass ioClass) {
+
+    if (isLimited(ioClass)) {
+      return true;
+    }
+    return (ioClass == IoClass.INTERACTIVE_READ) && this.backgroundThrottled;
+  }
+
+  /**
+   * @param ioClass the {@link IoClass}.
+   * @return the number of operations of the given {@link IoClass} currently in progress.
+   */
+  public int getActive(IoClass ioClass) {
+
+    return getLane(ioClass).active.get();
+  }
+
+  private Lane getLane(IoClass ioClass) {
+
+    return this.lanes[ioClass.ordinal()];
+  }
+
+  /**
+   * Begins an operation of the given {@link IoClass}. Blocks until the concurrency budget allows the operation. Each
+   * call has to be followed by {@link #end(IoClass)}.
+   *
+   * @param ioClass the {@link IoClass} of the operation.
+   * @throws InterruptedIOException if interrupted while waiting.
+   */
+  public void begin(IoClass ioClass) throws InterruptedIOException {
+
+    Lane lane = getLane(ioClass);
+    if (lane.permits != null) {
+      try {
+        lane.permits.acquire();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for " + ioClass);
+      }
+    }
+    lane.active.incrementAndGet();
+  }
+
+  /**
+   * Ends an operation that has been {@link #begin(IoClass) begun} before.
+   *
+   * @param ioClass the {@link IoClass} of the operation.
+   */
+  public void end(IoClass ioClass) {
+
+    Lane lane = getLane(ioClass);
+    lane.active.decrementAndGet();
+    if (lane.permits != null) {
+      lane.permits.release();
+    }
+  }
+
+  /**
+   * Blocks until the bandwidth budget of the given {@link IoClass} allows to transfer the given number of bytes.
+   *
+   * @param ioClass the {@link IoClass}.
+   * @param bytes the number of bytes to transfer.
+   * @throws InterruptedIOException if interrupted while waiting.
+   */
+  public void consume(IoClass ioClass, long bytes) throws InterruptedIOException {
+
+    Lane lane = getLane(ioClass);
+    if ((lane.bucket == null) || (bytes <= 0)) {
+      return;
+    }
+    double factor = 1;
+    if ((ioClass != IoClass.INTERACTIVE_READ) && (getActive(IoClass.INTERACTIVE_READ) > 0)) {
+      factor = this.backgroundShare;
+    }
+    long wait = lane.bucket.take(bytes, factor);
+    if (wait > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(wait);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while throttling " + ioClass);
+      }
+    }
+  }
+
+  /**
+   * @param ioClass the {@link IoClass}.
+   * @param in the {@link InputStream} to schedule.
+   * @return the given {@link InputStream} if the {@link IoClass} is not {@link #isScheduled(IoClass) scheduled},
+   *         otherwise a wrapper that has {@link #begin(IoClass) begun} the operation and throttles the bandwidth. The
+   *         operation {@link #end(IoClass) ends} when the stream is closed.
+   * @throws InterruptedIOException if interrupted while waiting.
+   */
+  public InputStream schedule(IoClass ioClass, InputStream in) throws InterruptedIOException {
+
+    if (!isScheduled(ioClass)) {
+      return in;
+    }
+    try {
+      begin(ioClass);
+    } catch (InterruptedIOException e) {
+      close(in, e);
+      throw e;
+    }
+    return new ScheduledInputStream(ioClass, in);
+  }
+
+  /**
+   * @param ioClass the {@link IoClass}.
+   * @param out the {@link OutputStream} to schedule.
+   * @return the given {@link OutputStream} if the {@link IoClass} is not {@link #isScheduled(IoClass) scheduled},
+   *         otherwise a wrapper that has {@link #begin(IoClass) begun} the operation and throttles the bandwidth. The
+   *         operation {@link #end(IoClass) ends} when the stream is closed.
+   * @throws InterruptedIOException if interrupted while waiting.
+   */
+  public OutputStream schedule(IoClass ioClass, OutputStream out) throws InterruptedIOException {
+
+    if (!isScheduled(ioClass)) {
+      return out;
+    }
+    try {
+      begin(ioClass);
+    } catch (InterruptedIOException e) {
+      close(out, e);
+      throw e;
+    }
+    return new ScheduledOutputStream(ioClass, out);
+  }
+
+  private static void close(Closeable stream, Exception error) {
+
+    try {
+      stream.close();
+    } catch (IOException e) {
+      error.addSuppressed(e);
+    }
+  }
+
+  /**
+   * The budgets of an {@link IoClass}.
+   */
+  private static class Lane {
+
+    private final TokenBucket bucket;
+
+    private final Semaphore permits;
+
+    private final AtomicInteger active;
+
+    private Lane(long bandwidth, int concurrency) {
+      super();
+      if (bandwidth > 0) {
+        this.bucket = new TokenBucket(bandwidth);
+      } else {
+        this.bucket = null;
+      }
+      if (concurrency > 0) {
+        this.permits = new Semaphore(concurrency, true);
+      } else {
+        this.permits = null;
+      }
+      this.active = new AtomicInteger();
+    }
+  }
+
+  /**
+   * {@link InputStream} scheduled by this {@link IoScheduler}.
+   */
+  private class ScheduledInputStream extends FilterInputStream {
+
+    private final IoClass ioClass;
+
+    private boolean closed;
+
+    private ScheduledInputStream(IoClass ioClass, InputStream in) {
+      super(in);
+      this.ioClass = ioClass;
+    }
+
+    @Override
+    public int read() throws IOException {
+
+      int b = super.read();
+      if (b >= 0) {
+        consume(this.ioClass, 1);
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+
+      int count = super.read(b, off, len);
+      consume(this.ioClass, count);
+      return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+
+      return this.in.skip(n);
+    }
+
+    @Override
+    public void close() throws IOException {
+
+      if (this.closed) {
+        return;
+      }
+      this.closed = true;
+      try {
+        super.close();
+      } finally {
+        end(this.ioClass);
+      }
+    }
+  }
+
+  /**
+   * {@link OutputStream} scheduled by this {@link IoScheduler}.
+   */
+  private class ScheduledOutputStream extends FilterOutputStream {
+
+    private final IoClass ioClass;
+
+    private boolean closed;
+
+    private ScheduledOutputStream(IoClass ioClass, OutputStream out) {
+      super(out);
+      this.ioClass = ioClass;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+
+      consume(this.ioClass, 1);
+      this.out.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+
+      consume(this.ioClass, len);
+      this.out.write(b, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+
+      if (this.closed) {
+        return;
+      }
+      this.closed = true;
+      try {
+        super.close();
+      } finally {
+        end(this.ioClass);
+      }
+    }
+  }
+
+}
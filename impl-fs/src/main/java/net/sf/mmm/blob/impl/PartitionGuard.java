@@ -0,0 +1,27 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.util.function.Supplier;
+
+/**
+ * This is the interface for a callback that guards operations on a {@link BlobId#getPartition() partition} of an
+ * {@link AbstractBlobStoreFs}. It is used by composed stores (e.g. {@link TieredBlobStore}) that relocate partitions
+ * between {@link AbstractBlobStoreFs stores} to serialize such relocation with the commit of new BLOBs and to make the
+ * partition available before the commit checks it for duplicates.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+@FunctionalInterface
+interface PartitionGuard {
+
+  /**
+   * @param <T> the type of the result.
+   * @param partition the {@link BlobId#getPartition() partition} to guard.
+   * @param operation the operation on the {@link BlobId#getPartition() partition} to perform.
+   * @return the result of the {@code operation}.
+   */
+  <T> T guard(String partition, Supplier<T> operation);
+
+}
@@ -0,0 +1,259 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.sf.mmm.util.io.api.IoMode;
+import net.sf.mmm.util.io.api.RuntimeIoException;
+
+/**
+ * This class persists the {@link TenantUsage}s of an {@link AbstractBlobStoreFs}. Every change of a counter is appended
+ * to an update log with a sequence number. After a configurable number of updates, all counters are written to a
+ * checkpoint file (atomically replaced) that also contains the sequence number of the last update it includes. Then
+ * the update log is truncated. On startup the checkpoint is read and only the updates of the log with a higher
+ * sequence number are replayed. The usage is never recomputed by scanning the store: an operation that changes a
+ * counter {@link #begin() allocates} the sequence number of its update in advance and records it together with the
+ * delta as {@link IntentJournal#TYPE_QUOTA quota intent}. If the operation is interrupted by a crash, the update log
+ * tells if that delta has been applied so recovery only has to apply or undo it. Therefore no checkpoint is written
+ * while such operation is in progress.<br>
+ * Each line of the log has the format {@code <sequence> <tenant> <bytes> <objects>}.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+class QuotaLedger {
+
+  private static final String SUFFIX_LOG = ".log";
+
+  private static final String SUFFIX_TMP = ".tmp";
+
+  private final File checkpointFile;
+
+  private final File logFile;
+
+  private final BlobStoreQuotaConfigProperties config;
+
+  private final boolean sync;
+
+  private final Map<String, TenantUsage> usages;
+
+  private FileChannel channel;
+
+  private long sequence;
+
+  private int updates;
+
+  private int active;
+
+  /**
+   * The constructor.
+   *
+   * @param checkpointFile the checkpoint {@link File}. The update log is placed next to it.
+   * @param config the {@link BlobStoreQuotaConfigProperties}.
+   * @param sync - {@code true} to force every update to the disc, {@code false} otherwise.
+   */
+  QuotaLedger(File checkpointFile, BlobStoreQuotaConfigProperties config, boolean sync) {
+    super();
+    this.checkpointFile = checkpointFile;
+    this.logFile = new File(checkpointFile.getPath() + SUFFIX_LOG);
+    this.config = config;
+    this.sync = sync;
+    this.usages = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Reads the checkpoint, replays the update log and writes a new checkpoint.
+   *
+   * @return the {@link Set} with the sequence numbers of the updates replayed from the log.
+   */
+  synchronized Set<Long> open() {
+
+    Set<Long> replayed = new HashSet<>();
+    long checkpoint = 0;
+    for (String line : readLines(this.checkpointFile)) {
+      String[] fields = line.split(" ");
+      try {
+        if (fields.length == 1) {
+          checkpoint = Long.parseLong(fields[0]);
+        } else if (fields.length == 3) {
+          get(fields[0]).add(Long.parseLong(fields[1]), Long.parseLong(fields[2]));
+        }
+      } catch (NumberFormatException e) {
+        continue;
+      }
+    }
+    this.sequence = checkpoint;
+    for (String line : readLines(this.logFile)) {
+      String[] fields = line.split(" ");
+      if (fields.length == 4) {
+        try {
+          long number = Long.parseLong(fields[0]);
+          // updates up to the checkpoint have been logged before a crash prevented the log from being truncated
+          if (number > checkpoint) {
+            get(fields[1]).add(Long.parseLong(fields[2]), Long.parseLong(fields[3]));
+            this.sequence = Math.max(this.sequence, number);
+            replayed.add(Long.valueOf(number));
+          }
+        } catch (NumberFormatException e) {
+          continue;
+        }
+      }
+    }
+    try {
+      this.channel = FileChannel.open(this.logFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+          StandardOpenOption.APPEND);
+    } catch (IOException e) {
+      throw new RuntimeIoException(e, IoMode.OPEN);
+    }
+    checkpoint();
+    return replayed;
+  }
+
+  /**
+   * Closes the update log. As every update has already been appended, no checkpoint is written.
+   */
+  synchronized void close() {
+
+    if (this.channel != null) {
+      try {
+        this.channel.close();
+      } catch (IOException e) {
+        throw new RuntimeIoException(e, IoMode.CLOSE);
+      }
+    }
+  }
+
+  /**
+   * @param tenant the name of the tenant.
+   * @return the {@link TenantUsage} of the given {@code tenant}. Will be created if it does not yet exist.
+   */
+  TenantUsage get(String tenant) {
+
+    return this.usages.computeIfAbsent(tenant, t -> new TenantUsage(t,
+        this.config.getMaxBytes().getOrDefault(t, Long.valueOf(this.config.getDefaultMaxBytes())).longValue(),
+        this.config.getMaxObjects().getOrDefault(t, Long.valueOf(this.config.getDefaultMaxObjects())).longValue()));
+  }
+
+  /**
+   * @param usage the {@link TenantUsage} to update.
+   * @param deltaBytes the number of bytes to charge (positive) or discharge (negative).
+   * @param deltaObjects the number of BLOBs to charge (positive) or discharge (negative).
+   */
+  synchronized void update(TenantUsage usage, long deltaBytes, long deltaObjects) {
+
+    if ((deltaBytes == 0) && (deltaObjects == 0)) {
+      return;
+    }
+    this.sequence++;
+    update(usage, deltaBytes, deltaObjects, this.sequence);
+  }
+
+  /**
+   * Begins an operation that will {@link #update(TenantUsage, long, long, long) update} a counter with the returned
+   * sequence number. Has to be followed by {@link #end()}.
+   *
+   * @return the sequence number of the update.
+   */
+  synchronized long begin() {
+
+    this.active++;
+    return ++this.sequence;
+  }
+
+  /**
+   * @param usage the {@link TenantUsage} to update.
+   * @param deltaBytes the number of bytes to charge (positive) or discharge (negative).
+   * @param deltaObjects the number of BLOBs to charge (positive) or discharge (negative).
+   * @param number the sequence number {@link #begin() allocated} for this update.
+   */
+  synchronized void update(TenantUsage usage, long deltaBytes, long deltaObjects, long number) {
+
+    usage.add(deltaBytes, deltaObjects);
+    write(number + " " + usage.getTenant() + " " + deltaBytes + " " + deltaObjects + "\n");
+    this.updates++;
+    if ((this.active == 0) && (this.updates >= this.config.getCheckpointInterval())) {
+      checkpoint();
+    }
+  }
+
+  /**
+   * Ends an operation that has been {@link #begin() begun} no matter if it has done its update.
+   */
+  synchronized void end() {
+
+    this.active--;
+    if ((this.active == 0) && (this.updates >= this.config.getCheckpointInterval())) {
+      checkpoint();
+    }
+  }
+
+  private void write(String line) {
+
+    ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+    try {
+      while (buffer.hasRemaining()) {
+        this.channel.write(buffer);
+      }
+      if (this.sync) {
+        this.channel.force(false);
+      }
+    } catch (IOException e) {
+      throw new RuntimeIoException(e, IoMode.WRITE);
+    }
+  }
+
+  /**
+   * Writes the counters of all {@link TenantUsage}s to the checkpoint and truncates the update log.
+   */
+  synchronized void checkpoint() {
+
+    StringBuilder sb = new StringBuilder();
+    sb.append(this.sequence).append('\n');
+    for (TenantUsage usage : this.usages.values()) {
+      sb.append(usage.getTenant()).append(' ').append(usage.getBytes()).append(' ').append(usage.getObjects())
+          .append('\n');
+    }
+    File tmpFile = new File(this.checkpointFile.getPath() + SUFFIX_TMP);
+    try {
+      Files.write(tmpFile.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+      Files.move(tmpFile.toPath(), this.checkpointFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+      this.channel.truncate(0);
+    } catch (IOException e) {
+      throw new RuntimeIoException(e, IoMode.WRITE);
+    }
+    this.updates = 0;
+  }
+
+  private static String[] readLines(File file) {
+
+    String content;
+    try {
+      content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    } catch (NoSuchFileException e) {
+      return new String[0];
+    } catch (IOException e) {
+      throw new RuntimeIoException(e, IoMode.READ);
+    }
+    // a last line without newline is incomplete (torn write during crash) and has to be ignored
+    int end = content.lastIndexOf('\n');
+    if (end <= 0) {
+      return new String[0];
+    }
+    return content.substring(0, end).split("\n");
+  }
+
+}
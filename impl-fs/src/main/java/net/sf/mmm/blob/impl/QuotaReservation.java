@@ -0,0 +1,119 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import net.sf.mmm.util.exception.api.ValueOutOfRangeException;
+
+/**
+ * This class represents the quota {@link TenantUsage#reserve(long, long) reserved} for a single BLOB that is saved for a
+ * tenant. Initially the size hint is reserved so oversize BLOBs are rejected before any byte is written. If more bytes
+ * are {@link #wrap(OutputStream) written} than hinted, the reservation grows and the write fails as soon as the quota
+ * is exceeded. After the BLOB has been committed, the reservation is {@link #settle(long, long, long) settled} with the
+ * actual charge.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+class QuotaReservation {
+
+  private final QuotaLedger ledger;
+
+  private final TenantUsage usage;
+
+  private long bytes;
+
+  private long objects;
+
+  /**
+   * The constructor.
+   *
+   * @param ledger the {@link QuotaLedger}.
+   * @param usage the {@link TenantUsage} of the tenant.
+   * @param sizeHint the expected size of the BLOB in bytes.
+   * @throws ValueOutOfRangeException if a quota would be exceeded.
+   */
+  QuotaReservation(QuotaLedger ledger, TenantUsage usage, long sizeHint) throws ValueOutOfRangeException {
+    super();
+    this.ledger = ledger;
+    this.usage = usage;
+    usage.reserve(sizeHint, 1);
+    this.bytes = sizeHint;
+    this.objects = 1;
+  }
+
+  /**
+   * @param size the number of bytes written so far.
+   * @throws ValueOutOfRangeException if a quota would be exceeded.
+   */
+  void ensure(long size) throws ValueOutOfRangeException {
+
+    if (size > this.bytes) {
+      this.usage.reserve(size - this.bytes, 0);
+      this.bytes = size;
+    }
+  }
+
+  /**
+   * @param out the {@link OutputStream} to the income file.
+   * @return the wrapped {@link OutputStream} that {@link #ensure(long) ensures} the reservation for all bytes written.
+   */
+  OutputStream wrap(OutputStream out) {
+
+    return new FilterOutputStream(out) {
+
+      private long size;
+
+      @Override
+      public void write(int b) throws IOException {
+
+        ensure(this.size + 1);
+        this.out.write(b);
+        this.size++;
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+
+        ensure(this.size + len);
+        this.out.write(b, off, len);
+        this.size += len;
+      }
+    };
+  }
+
+  /**
+   * Replaces the reservation with the actual charge.
+   *
+   * @param chargedBytes the number of bytes to charge.
+   * @param chargedObjects the number of BLOBs to charge.
+   * @param sequence the sequence number {@link QuotaLedger#begin() allocated} for the charge or {@code 0} if nothing
+   *        has been charged.
+   */
+  void settle(long chargedBytes, long chargedObjects, long sequence) {
+
+    // charged before released so concurrent reservations never see the quota temporarily freed
+    try {
+      if (sequence != 0) {
+        this.ledger.update(this.usage, chargedBytes, chargedObjects, sequence);
+      }
+    } finally {
+      release();
+    }
+  }
+
+  /**
+   * Releases the reservation without charge (e.g. if the save failed). Has no effect if already released or
+   * {@link #settle(long, long, long) settled}.
+   */
+  void release() {
+
+    this.usage.release(this.bytes, this.objects);
+    this.bytes = 0;
+    this.objects = 0;
+  }
+
+}
@@ -0,0 +1,885 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BiFunction;
+
+import javax.inject.Inject;
+
+import net.sf.mmm.blob.api.BlobStat;
+import net.sf.mmm.blob.api.BlobStore;
+import net.sf.mmm.util.component.base.AbstractComponent;
+import net.sf.mmm.util.component.base.AbstractLoggableComponent;
+import net.sf.mmm.util.data.api.id.Id;
+import net.sf.mmm.util.data.base.id.StringVersionId;
+import net.sf.mmm.util.io.api.IoMode;
+import net.sf.mmm.util.io.api.RuntimeIoException;
+import net.sf.mmm.util.resource.api.DataResource;
+import net.sf.mmm.util.resource.base.StreamResource;
+import net.sf.mmm.util.resource.base.UnavailableResource;
+
+/**
+ * This is an implementation of {@link BlobStore} that replicates all BLOBs to multiple underlying {@link BlobStore}s
+ * (e.g. {@link AbstractBlobStoreFs} instances on different discs). A {@link #save(DataResource) save} reads the given
+ * BLOB only once and writes it to all replicas in parallel. Each replica is fed from its own buffer so a slow replica
+ * does not delay the others. It succeeds as soon as the configured
+ * {@link BlobStoreReplicatingConfigProperties#getWriteQuorum() write quorum} of replicas acknowledged the write. A
+ * replica that is not required to reach the quorum is detached if it falls behind for longer than the
+ * {@link BlobStoreReplicatingConfigProperties#getLagTimeout() lag timeout} and gets repaired instead. A
+ * {@link #find(Id) read} is sent to the replica with the lowest recent latency (of opening and reading the BLOB) and
+ * additionally to the next replica if no response arrived within the
+ * {@link BlobStoreReplicatingConfigProperties#getHedgeDelay() hedge delay}. Replicas
+ * that failed to write a BLOB or where a BLOB was found missing are repaired in the background via
+ * {@link BlobStore#restore(Id, DataResource)}.<br>
+ * If all replicas create the same {@link Id} for a BLOB (what is typically the case for de-duplicating stores) that
+ * {@link Id} is used as is. Otherwise the {@link Id} is composed of the individual {@link Id}s of all replicas.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+public class ReplicatingBlobStore extends AbstractLoggableComponent implements BlobStore, AutoCloseable {
+
+  private static final char SEPARATOR = ',';
+
+  private static final int CHUNK_SIZE = 64 * 1024;
+
+  /** The number of chunks buffered per replica. */
+  private static final int BUFFER_CHUNKS = 16;
+
+  private static final int PROBE_SIZE = 4 * 1024;
+
+  private final List<BlobStore> replicas;
+
+  private final AtomicLongArray latencies;
+
+  private final Set<String> pendingRepairs;
+
+  private BlobStoreReplicatingConfigProperties config;
+
+  private int writeQuorum;
+
+  private ExecutorService executor;
+
+  private ExecutorService repairExecutor;
+
+  /**
+   * The constructor.
+   *
+   * @param replicas the {@link BlobStore}s to replicate to. Should all be of the same type.
+   */
+  public ReplicatingBlobStore(BlobStore... replicas) {
+
+    this(Arrays.asList(replicas));
+  }
+
+  /**
+   * The constructor.
+   *
+   * @param replicas the {@link List} of {@link BlobStore}s to replicate to. Should all be of the same type.
+   */
+  public ReplicatingBlobStore(List<BlobStore> replicas) {
+    super();
+    if (replicas.isEmpty()) {
+      throw new IllegalArgumentException("At least one replica is required.");
+    }
+    this.replicas = Collections.unmodifiableList(new ArrayList<>(replicas));
+    this.latencies = new AtomicLongArray(replicas.size());
+    this.pendingRepairs = ConcurrentHashMap.newKeySet();
+  }
+
+  /**
+   * @return the {@link BlobStoreReplicatingConfigProperties}.
+   */
+  protected BlobStoreReplicatingConfigProperties getConfig() {
+
+    return this.config;
+  }
+
+  /**
+   * @param config the {@link BlobStoreReplicatingConfigProperties} to {@link Inject}.
+   */
+  @Inject
+  public void setConfig(BlobStoreReplicatingConfigProperties config) {
+
+    this.config = config;
+  }
+
+  @Override
+  protected void doInitialize() {
+
+    super.doInitialize();
+    if (this.config == null) {
+      this.config = new BlobStoreReplicatingConfigProperties();
+    }
+    int count = this.replicas.size();
+    int quorum = this.config.getWriteQuorum();
+    if (quorum <= 0) {
+      quorum = (count / 2) + 1;
+    } else if (quorum > count) {
+      throw new IllegalStateException("Write quorum " + quorum + " exceeds number of replicas " + count);
+    }
+    this.writeQuorum = quorum;
+    for (BlobStore replica : this.replicas) {
+      if (replica instanceof AbstractComponent) {
+        ((AbstractComponent) replica).initialize();
+      }
+    }
+    this.executor = Executors.newCachedThreadPool(createThreadFactory("blob-replica"));
+    this.repairExecutor = Executors.newSingleThreadExecutor(createThreadFactory("blob-repair"));
+  }
+
+  /**
+   * Stops the background threads for the replica operations and repairs. Pending repairs are completed if possible
+   * within the {@link BlobStoreReplicatingConfigProperties#getReplicaTimeout() replica timeout}. Afterwards the replicas
+   * that are {@link AutoCloseable} are closed as they have been initialized by this store.
+   */
+  @Override
+  public void close() {
+
+    if (this.executor != null) {
+      this.executor.shutdown();
+      this.repairExecutor.shutdown();
+      try {
+        if (!this.repairExecutor.awaitTermination(this.config.getReplicaTimeout().toNanos(), TimeUnit.NANOSECONDS)) {
+          getLogger().warn("Discarding {} pending repairs", Integer.valueOf(this.pendingRepairs.size()));
+          this.repairExecutor.shutdownNow();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        this.repairExecutor.shutdownNow();
+      }
+    }
+    for (BlobStore replica : this.replicas) {
+      if (replica instanceof AutoCloseable) {
+        try {
+          ((AutoCloseable) replica).close();
+        } catch (Exception e) {
+          getLogger().warn("Failed to close replica {}", replica, e);
+        }
+      }
+    }
+  }
+
+  private static ThreadFactory createThreadFactory(String name) {
+
+    return r -> {
+      Thread thread = new Thread(r, name);
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /**
+   * @return the {@link List} of the replicas.
+   */
+  protected List<BlobStore> getReplicas() {
+
+    return this.replicas;
+  }
+
+  /**
+   * @return the number of repairs that are scheduled or currently in progress.
+   */
+  public int getPendingRepairs() {
+
+    return this.pendingRepairs.size();
+  }
+
+  @Override
+  public Id<DataResource> save(DataResource blob) {
+
+    if (this.replicas.size() == 1) {
+      return this.replicas.get(0).save(blob);
+    }
+    ReplicaPipes pipes = createPipes();
+    List<CompletableFuture<Id<DataResource>>> futures = write(blob, pipes,
+        (i, data) -> this.replicas.get(i).save(data));
+    int primary = awaitQuorum(futures, pipes);
+    int count = futures.size();
+    String primaryId = futures.get(primary).join().getId().toString();
+    String[] ids = new String[count];
+    boolean identical = true;
+    for (int i = 0; i < count; i++) {
+      CompletableFuture<Id<DataResource>> future = futures.get(i);
+      if (isSuccess(future)) {
+        ids[i] = future.join().getId().toString();
+        identical = identical && ids[i].equals(primaryId);
+      } else {
+        // unknown yet - the replica has to use the ID of the primary replica
+        ids[i] = primaryId;
+        if (!future.isDone() && !this.replicas.get(i).isContentAddressed()) {
+          // would create a different ID so it had to be deleted and repaired after completion
+          pipes.detach(i);
+        }
+      }
+    }
+    for (int i = 0; i < count; i++) {
+      int index = i;
+      String expectedId = ids[i];
+      futures.get(i).whenComplete((id, error) -> {
+        if (error != null) {
+          if (pipes.isDetached(index)) {
+            getLogger().debug("Detached replica {} from save of BLOB {}", Integer.valueOf(index), expectedId);
+          } else {
+            getLogger().warn("Failed to save BLOB {} to replica {}", expectedId, Integer.valueOf(index), error);
+          }
+          scheduleRepair(index, expectedId, primary, primaryId, null);
+        } else if (!id.getId().toString().equals(expectedId)) {
+          // replica completed after the ID was determined
+          scheduleRepair(index, expectedId, primary, primaryId, id);
+        }
+      });
+    }
+    if (identical) {
+      return createId(primaryId);
+    }
+    StringBuilder sb = new StringBuilder();
+    for (String id : ids) {
+      if (sb.length() > 0) {
+        sb.append(SEPARATOR);
+      }
+      sb.append(id);
+    }
+    return createId(sb.toString());
+  }
+
+  @Override
+  public boolean restore(Id<DataResource> id, DataResource blob) {
+
+    String[] ids = split(id);
+    ReplicaPipes pipes = createPipes();
+    List<CompletableFuture<Boolean>> futures = write(blob, pipes, (i, data) -> {
+      BlobStore replica = this.replicas.get(i);
+      return Boolean.valueOf(replica.restore(replica.createId(ids[i]), data));
+    });
+    int primary = awaitQuorum(futures, pipes);
+    boolean restored = false;
+    for (int i = 0; i < ids.length; i++) {
+      int index = i;
+      CompletableFuture<Boolean> future = futures.get(i);
+      if (isSuccess(future)) {
+        restored = restored || future.join().booleanValue();
+      }
+      future.whenComplete((result, error) -> {
+        if (error != null) {
+          getLogger().warn("Failed to restore BLOB {} to replica {}", ids[index], Integer.valueOf(index), error);
+          scheduleRepair(index, ids[index], primary, ids[primary], null);
+        }
+      });
+    }
+    return restored;
+  }
+
+  private static boolean isSuccess(CompletableFuture<?> future) {
+
+    return future.isDone() && !future.isCompletedExceptionally();
+  }
+
+  private ReplicaPipes createPipes() {
+
+    return new ReplicaPipes(this.replicas.size(), this.writeQuorum, this.config.getReplicaTimeout().toNanos(),
+        this.config.getLagTimeout().toNanos());
+  }
+
+  /**
+   * Reads the given {@code blob} once and writes it to all replicas in parallel.
+   *
+   * @param blob the {@link DataResource} to write.
+   * @param pipes the {@link ReplicaPipes} feeding the replicas.
+   * @param operation the {@link BiFunction} performing the write for the replica with the given index.
+   * @return the {@link List} with the {@link CompletableFuture}s of the replicas.
+   */
+  private <R> List<CompletableFuture<R>> write(DataResource blob, ReplicaPipes pipes,
+      BiFunction<Integer, DataResource, R> operation) {
+
+    int count = this.replicas.size();
+    String name = blob.getName();
+    long size = blob.getSize();
+    List<CompletableFuture<R>> futures = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      Integer index = Integer.valueOf(i);
+      InputStream in = pipes.getInput(i);
+      futures.add(CompletableFuture.supplyAsync(() -> {
+        try (InputStream stream = in) {
+          return operation.apply(index, new StreamResource(stream, name, size));
+        } catch (IOException e) {
+          throw new RuntimeIoException(e, IoMode.CLOSE);
+        }
+      }, this.executor));
+    }
+    try (InputStream in = blob.openStream()) {
+      pipes.transfer(in);
+    } catch (IOException e) {
+      pipes.fail();
+      throw new RuntimeIoException(e, IoMode.READ);
+    } catch (RuntimeException e) {
+      pipes.fail();
+      throw e;
+    }
+    return futures;
+  }
+
+  /**
+   * @param futures the {@link CompletableFuture}s of the replica writes.
+   * @param pipes the {@link ReplicaPipes} feeding the replicas.
+   * @return the index of the first replica that completed successfully.
+   */
+  private <R> int awaitQuorum(List<CompletableFuture<R>> futures, ReplicaPipes pipes) {
+
+    int count = futures.size();
+    BlockingQueue<Integer> completed = new LinkedBlockingQueue<>();
+    for (int i = 0; i < count; i++) {
+      Integer index = Integer.valueOf(i);
+      futures.get(i).whenComplete((result, error) -> completed.add(index));
+    }
+    int primary = -1;
+    int success = 0;
+    Throwable error = null;
+    long timeout = this.config.getReplicaTimeout().toNanos();
+    long deadline = System.nanoTime() + timeout;
+    try {
+      for (int done = 0; done < count; done++) {
+        Integer completedIndex = completed.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        if (completedIndex == null) {
+          pipes.fail();
+          throw new IllegalStateException("Only " + success + " of " + count + " replicas succeeded within "
+              + this.config.getReplicaTimeout() + " but write quorum is " + this.writeQuorum + ".");
+        }
+        int index = completedIndex.intValue();
+        CompletableFuture<R> future = futures.get(index);
+        if (future.isCompletedExceptionally()) {
+          try {
+            future.join();
+          } catch (RuntimeException e) {
+            error = e.getCause();
+          }
+        } else {
+          if (primary < 0) {
+            primary = index;
+          }
+          success++;
+          if (success >= this.writeQuorum) {
+            return primary;
+          }
+        }
+        int failures = done + 1 - success;
+        if (failures > count - this.writeQuorum) {
+          break;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for replicas.", e);
+    }
+    throw new IllegalStateException("Only " + success + " of " + count + " replicas succeeded but write quorum is "
+        + this.writeQuorum + ".", error);
+  }
+
+  @Override
+  public DataResource find(Id<DataResource> id) {
+
+    String[] ids = split(id);
+    int count = this.replicas.size();
+    if (count == 1) {
+      BlobStore replica = this.replicas.get(0);
+      return replica.find(replica.createId(ids[0]));
+    }
+    Integer[] order = getReplicasByLatency();
+    long hedgeDelay = this.config.getHedgeDelay().toNanos();
+    CompletionService<DataResource> service = new ExecutorCompletionService<>(this.executor);
+    Map<Future<DataResource>, Integer> pending = new HashMap<>();
+    List<Integer> missing = new ArrayList<>();
+    DataResource result = null;
+    int source = -1;
+    int next = 0;
+    try {
+      pending.put(submitFind(service, order[next], ids), order[next++]);
+      while (!pending.isEmpty()) {
+        Future<DataResource> future;
+        if (next < count) {
+          future = service.poll(hedgeDelay, TimeUnit.NANOSECONDS);
+          if (future == null) {
+            // hedged request
+            pending.put(submitFind(service, order[next], ids), order[next++]);
+            continue;
+          }
+        } else {
+          future = service.take();
+        }
+        Integer index = pending.remove(future);
+        try {
+          DataResource blob = future.get();
+          if (blob.isAvailable()) {
+            result = blob;
+            source = index.intValue();
+            break;
+          }
+          missing.add(index);
+        } catch (ExecutionException e) {
+          getLogger().warn("Failed to find BLOB {} on replica {}", ids[index.intValue()], index, e.getCause());
+        }
+        if (pending.isEmpty() && (next < count)) {
+          pending.put(submitFind(service, order[next], ids), order[next++]);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for replicas.", e);
+    } finally {
+      for (Future<DataResource> future : pending.keySet()) {
+        future.cancel(false);
+      }
+    }
+    if (result == null) {
+      return UnavailableResource.INSTANCE;
+    }
+    for (Integer index : missing) {
+      int target = index.intValue();
+      scheduleRepair(target, ids[target], source, ids[source], null);
+    }
+    return result;
+  }
+
+  private Future<DataResource> submitFind(CompletionService<DataResource> service, Integer index, String[] ids) {
+
+    int i = index.intValue();
+    BlobStore replica = this.replicas.get(i);
+    return service.submit(() -> {
+      long start = System.nanoTime();
+      try {
+        Id<DataResource> id = replica.createId(ids[i]);
+        DataResource blob = replica.find(id);
+        if (blob.isAvailable()) {
+          // finding a BLOB is cheap, the latency of the replica only shows when the data is read
+          probe(replica.find(id));
+        }
+        return blob;
+      } finally {
+        updateLatency(i, System.nanoTime() - start);
+      }
+    });
+  }
+
+  /**
+   * Opens the given {@code blob} and reads its first bytes. They will be in the page cache when the BLOB is read
+   * afterwards. As a {@link DataResource} returned by {@link BlobStore#find(Id)} may not be reusable, the {@code blob}
+   * has to be found separately from the one returned to the caller.
+   *
+   * @param blob the {@link DataResource} to probe.
+   * @throws IOException on error.
+   */
+  private static void probe(DataResource blob) throws IOException {
+
+    try (InputStream in = blob.openStream()) {
+      in.read(new byte[PROBE_SIZE]);
+    }
+  }
+
+  private void updateLatency(int index, long latency) {
+
+    // exponentially weighted moving average
+    long average = this.latencies.get(index);
+    this.latencies.set(index, average + ((latency - average) >> 3));
+  }
+
+  private Integer[] getReplicasByLatency() {
+
+    int count = this.replicas.size();
+    Integer[] order = new Integer[count];
+    long[] snapshot = new long[count];
+    for (int i = 0; i < count; i++) {
+      order[i] = Integer.valueOf(i);
+      snapshot[i] = this.latencies.get(i);
+    }
+    Arrays.sort(order, (a, b) -> Long.compare(snapshot[a.intValue()], snapshot[b.intValue()]));
+    return order;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The BLOBs are only read ahead from the replica with the lowest latency as that is read first by
+   * {@link #find(Id)}.
+   */
+  @Override
+  public CompletableFuture<Void> prefetch(Collection<? extends Id<DataResource>> ids) {
+
+    int index = getReplicasByLatency()[0].intValue();
+    BlobStore replica = this.replicas.get(index);
+    List<Id<DataResource>> replicaIds = new ArrayList<>(ids.size());
+    for (Id<DataResource> id : ids) {
+      replicaIds.add(replica.createId(split(id)[index]));
+    }
+    return replica.prefetch(replicaIds);
+  }
+
+  @Override
+  public BlobStat stat(Id<DataResource> id) {
+
+    String[] ids = split(id);
+    RuntimeException error = null;
+    for (Integer index : getReplicasByLatency()) {
+      int i = index.intValue();
+      BlobStore replica = this.replicas.get(i);
+      try {
+        BlobStat stat = replica.stat(replica.createId(ids[i]));
+        if (stat != null) {
+          return stat;
+        }
+      } catch (RuntimeException e) {
+        getLogger().warn("Failed to stat BLOB {} on replica {}", ids[i], index, e);
+        error = e;
+      }
+    }
+    if (error != null) {
+      throw error;
+    }
+    return null;
+  }
+
+  @Override
+  public boolean delete(Id<DataResource> id) {
+
+    String[] ids = split(id);
+    boolean deleted = false;
+    RuntimeException error = null;
+    for (int i = 0; i < ids.length; i++) {
+      BlobStore replica = this.replicas.get(i);
+      try {
+        deleted = replica.delete(replica.createId(ids[i])) || deleted;
+      } catch (RuntimeException e) {
+        getLogger().warn("Failed to delete BLOB {} from replica {}", ids[i], Integer.valueOf(i), e);
+        error = e;
+      }
+    }
+    if (!deleted && (error != null)) {
+      throw error;
+    }
+    return deleted;
+  }
+
+  /**
+   * @param id the {@link Id} of this store.
+   * @return the {@link Id#getId() ID}s of the individual replicas.
+   */
+  private String[] split(Id<DataResource> id) {
+
+    String idString = id.getId().toString();
+    int count = this.replicas.size();
+    String[] ids;
+    if (idString.indexOf(SEPARATOR) < 0) {
+      ids = new String[count];
+      Arrays.fill(ids, idString);
+    } else {
+      ids = idString.split(String.valueOf(SEPARATOR));
+      if (ids.length != count) {
+        throw new IllegalArgumentException(idString);
+      }
+    }
+    return ids;
+  }
+
+  @Override
+  public Id<DataResource> createId(String id) {
+
+    return StringVersionId.of(DataResource.class, id);
+  }
+
+  /**
+   * Schedules the repair of a missing BLOB in the background.
+   *
+   * @param target the index of the replica to repair.
+   * @param targetId the {@link Id#getId() ID} of the BLOB in the {@code target} replica.
+   * @param source the index of the replica that has the BLOB.
+   * @param sourceId the {@link Id#getId() ID} of the BLOB in the {@code source} replica.
+   * @param obsoleteId the {@link Id} of an obsolete copy of the BLOB in the {@code target} replica that shall be
+   *        {@link BlobStore#delete(Id) deleted} or {@code null}.
+   */
+  private void scheduleRepair(int target, String targetId, int source, String sourceId, Id<DataResource> obsoleteId) {
+
+    String key = target + ":" + targetId;
+    if (!this.pendingRepairs.add(key)) {
+      return;
+    }
+    this.repairExecutor.execute(() -> {
+      try {
+        BlobStore targetReplica = this.replicas.get(target);
+        if (obsoleteId != null) {
+          targetReplica.delete(obsoleteId);
+        }
+        BlobStore sourceReplica = this.replicas.get(source);
+        DataResource blob = sourceReplica.find(sourceReplica.createId(sourceId));
+        if (!blob.isAvailable()) {
+          getLogger().warn("Can not repair BLOB {} on replica {} as it is missing on replica {}", targetId,
+              Integer.valueOf(target), Integer.valueOf(source));
+        } else if (targetReplica.restore(targetReplica.createId(targetId), blob)) {
+          getLogger().info("Repaired BLOB {} on replica {}", targetId, Integer.valueOf(target));
+        }
+      } catch (RuntimeException e) {
+        getLogger().error("Failed to repair BLOB {} on replica {}", targetId, Integer.valueOf(target), e);
+      } finally {
+        this.pendingRepairs.remove(key);
+      }
+    });
+  }
+
+  /**
+   * Distributes the data read once from the source to one {@link ReplicaBuffer} per replica. If the source fails, the
+   * replicas will receive an {@link IOException} instead of the end of the stream so no truncated BLOB gets committed.
+   * A replica whose buffer is full is detached if it does not catch up within the
+   * {@link BlobStoreReplicatingConfigProperties#getLagTimeout() lag timeout} while enough other replicas keep up to
+   * reach the write quorum. Otherwise it is waited for up to the
+   * {@link BlobStoreReplicatingConfigProperties#getReplicaTimeout() replica timeout}. The end of the stream never
+   * blocks nor detaches a replica as it does not need a free slot in the buffer.
+   */
+  private static class ReplicaPipes {
+
+    private final ReplicaBuffer[] buffers;
+
+    private final int quorum;
+
+    private final long timeout;
+
+    private final long lagTimeout;
+
+    private ReplicaPipes(int count, int quorum, long timeout, long lagTimeout) {
+      super();
+      this.buffers = new ReplicaBuffer[count];
+      for (int i = 0; i < count; i++) {
+        this.buffers[i] = new ReplicaBuffer();
+      }
+      this.quorum = quorum;
+      this.timeout = timeout;
+      this.lagTimeout = lagTimeout;
+    }
+
+    private InputStream getInput(int index) {
+
+      return this.buffers[index];
+    }
+
+    private boolean isDetached(int index) {
+
+      return this.buffers[index].isDetached();
+    }
+
+    /**
+     * Detaches the replica with the given index so its write fails as soon as it reads its next chunk.
+     *
+     * @param index the index of the replica.
+     */
+    private void detach(int index) {
+
+      this.buffers[index].detach();
+    }
+
+    private void transfer(InputStream in) throws IOException {
+
+      byte[] chunk = new byte[CHUNK_SIZE];
+      int length = in.read(chunk);
+      int alive = this.buffers.length;
+      while ((length >= 0) && (alive > 0)) {
+        if (length > 0) {
+          if (length < CHUNK_SIZE) {
+            chunk = Arrays.copyOf(chunk, length);
+          }
+          alive = distribute(chunk);
+          // the chunk is shared by the buffers and must not be reused
+          chunk = new byte[CHUNK_SIZE];
+        }
+        length = in.read(chunk);
+      }
+      for (ReplicaBuffer buffer : this.buffers) {
+        buffer.finish();
+      }
+    }
+
+    private int distribute(byte[] chunk) throws IOException {
+
+      int alive = 0;
+      List<ReplicaBuffer> lagging = null;
+      for (ReplicaBuffer buffer : this.buffers) {
+        if (buffer.offer(chunk)) {
+          alive++;
+        } else if (buffer.isAttached()) {
+          if (lagging == null) {
+            lagging = new ArrayList<>();
+          }
+          lagging.add(buffer);
+        }
+      }
+      if (lagging != null) {
+        long lagDeadline = System.nanoTime() + this.lagTimeout;
+        for (ReplicaBuffer buffer : lagging) {
+          long wait;
+          if (alive >= this.quorum) {
+            // others keep up, only give this one a short chance to catch up
+            wait = Math.max(0, lagDeadline - System.nanoTime());
+          } else {
+            wait = this.timeout;
+          }
+          if (buffer.offer(chunk, wait)) {
+            alive++;
+          } else {
+            buffer.detach();
+          }
+        }
+      }
+      return alive;
+    }
+
+    private void fail() {
+
+      for (ReplicaBuffer buffer : this.buffers) {
+        buffer.detach();
+      }
+    }
+  }
+
+  /**
+   * The {@link InputStream} of a single replica reading the chunks from a bounded queue. The replica receives an
+   * {@link IOException} instead of the next chunk when it has been {@link #detach() detached}.
+   */
+  private static class ReplicaBuffer extends InputStream {
+
+    /** Marker for the end of the stream. */
+    private static final byte[] END = new byte[0];
+
+    private final BlockingQueue<byte[]> queue;
+
+    private volatile boolean detached;
+
+    private volatile boolean closed;
+
+    private volatile boolean finished;
+
+    private byte[] chunk;
+
+    private int position;
+
+    private ReplicaBuffer() {
+      super();
+      this.queue = new ArrayBlockingQueue<>(BUFFER_CHUNKS);
+    }
+
+    private boolean isDetached() {
+
+      return this.detached;
+    }
+
+    private boolean isAttached() {
+
+      return !this.detached && !this.closed;
+    }
+
+    private boolean offer(byte[] data) {
+
+      return isAttached() && this.queue.offer(data);
+    }
+
+    private boolean offer(byte[] data, long timeoutNanos) throws IOException {
+
+      try {
+        return isAttached() && this.queue.offer(data, timeoutNanos, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      }
+    }
+
+    /**
+     * Marks the end of the stream. If the buffer is full, the replica reaches the end after reading the queued chunks.
+     */
+    private void finish() {
+
+      this.finished = true;
+      this.queue.offer(END);
+    }
+
+    private void detach() {
+
+      this.detached = true;
+      this.queue.clear();
+      // wakes up the replica if it waits for the next chunk
+      this.queue.offer(END);
+    }
+
+    @Override
+    public int read() throws IOException {
+
+      byte[] b = new byte[1];
+      int count = read(b, 0, 1);
+      if (count < 0) {
+        return -1;
+      }
+      return b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+
+      if (this.detached) {
+        throw new IOException("Replica has been detached.");
+      }
+      if (this.chunk == END) {
+        return -1;
+      }
+      if ((this.chunk == null) || (this.position >= this.chunk.length)) {
+        try {
+          this.chunk = this.queue.poll();
+          if (this.chunk == null) {
+            // if finished while the buffer was full, END may not have been queued
+            this.chunk = this.finished ? END : this.queue.take();
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException();
+        }
+        this.position = 0;
+        if (this.detached) {
+          throw new IOException("Replica has been detached.");
+        } else if (this.chunk == END) {
+          return -1;
+        }
+      }
+      int count = Math.min(len, this.chunk.length - this.position);
+      System.arraycopy(this.chunk, this.position, b, off, count);
+      this.position += count;
+      return count;
+    }
+
+    @Override
+    public void close() {
+
+      // the replica does not read any further (e.g. as it failed)
+      this.closed = true;
+      this.queue.clear();
+    }
+  }
+
+}
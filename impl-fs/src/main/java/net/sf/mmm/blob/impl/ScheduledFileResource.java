@@ -0,0 +1,46 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+import net.sf.mmm.util.io.api.IoMode;
+import net.sf.mmm.util.io.api.RuntimeIoException;
+import net.sf.mmm.util.resource.base.FileResource;
+
+/**
+ * This is a {@link FileResource} for a BLOB whose {@link #openStream() stream} is scheduled by an {@link IoScheduler}
+ * as {@link IoClass#INTERACTIVE_READ}. It is still a {@link FileResource} so consumers can access the {@link File}
+ * directly (e.g. for zero-copy transfer) what bypasses the {@link IoScheduler}.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+class ScheduledFileResource extends FileResource {
+
+  private final IoScheduler scheduler;
+
+  /**
+   * The constructor.
+   *
+   * @param file the BLOB {@link File}.
+   * @param scheduler the {@link IoScheduler}.
+   */
+  ScheduledFileResource(File file, IoScheduler scheduler) {
+    super(file);
+    this.scheduler = scheduler;
+  }
+
+  @Override
+  public InputStream openStream() {
+
+    try {
+      return this.scheduler.schedule(IoClass.INTERACTIVE_READ, super.openStream());
+    } catch (InterruptedIOException e) {
+      throw new RuntimeIoException(e, IoMode.READ);
+    }
+  }
+
+}
@@ -0,0 +1,437 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import net.sf.mmm.blob.api.BlobMapping;
+import net.sf.mmm.blob.api.BlobOutputStream;
+import net.sf.mmm.blob.api.BlobStat;
+import net.sf.mmm.blob.api.BlobStore;
+import net.sf.mmm.blob.api.BlobUpload;
+import net.sf.mmm.util.component.base.AbstractLoggableComponent;
+import net.sf.mmm.util.data.api.id.Id;
+import net.sf.mmm.util.exception.api.ObjectNotFoundException;
+import net.sf.mmm.util.resource.api.DataResource;
+
+/**
+ * This is an implementation of {@link BlobStore} that distributes the BLOBs across multiple shards. Each shard is an
+ * {@link AbstractBlobStoreFs} of the same type (e.g. on a different disc or mount). The shard owning a BLOB is derived
+ * from the {@link BlobId#getPartition() partition} of its {@link BlobId} via consistent hashing so {@link #find(Id)}
+ * and {@link #delete(Id)} go straight to the right shard without any lookup table. As a de-duplicating store uses the
+ * hash of the BLOB as partition, identical content is always committed to the same shard so de-duplication works
+ * across all shards. Otherwise the partition is generated before the BLOB is written and chosen so that it is owned by
+ * the shard that writes it. Only a content addressed BLOB may have to be moved to its owner on commit what is done by
+ * copying it into the income directory of the owner and renaming it from there atomically.<br>
+ * A new shard can be {@link #addShard(AbstractBlobStoreFs) added} at any time. Then only the partitions now owned by
+ * the new shard are moved there incrementally in the background. Until a partition has been moved, it is still found
+ * and extended at its previous location.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+public class ShardedBlobStore extends AbstractLoggableComponent implements BlobStore, AutoCloseable {
+
+  private static final int VIRTUAL_NODES = 128;
+
+  private static final int LOCK_COUNT = 64;
+
+  private final List<AbstractBlobStoreFs> shards;
+
+  private final Object[] locks;
+
+  private final AtomicInteger counter;
+
+  private volatile NavigableMap<Long, AbstractBlobStoreFs> ring;
+
+  private ExecutorService rebalancer;
+
+  /**
+   * The constructor.
+   *
+   * @param shards the initial shards. Have to be of the same type.
+   */
+  public ShardedBlobStore(AbstractBlobStoreFs... shards) {
+
+    this(Arrays.asList(shards));
+  }
+
+  /**
+   * The constructor.
+   *
+   * @param shards the {@link List} with the initial shards. Have to be of the same type.
+   */
+  public ShardedBlobStore(List<AbstractBlobStoreFs> shards) {
+    super();
+    if (shards.isEmpty()) {
+      throw new IllegalArgumentException("At least one shard is required.");
+    }
+    this.shards = new CopyOnWriteArrayList<>(shards);
+    this.locks = new Object[LOCK_COUNT];
+    for (int i = 0; i < LOCK_COUNT; i++) {
+      this.locks[i] = new Object();
+    }
+    this.counter = new AtomicInteger();
+  }
+
+  @Override
+  protected void doInitialize() {
+
+    super.doInitialize();
+    for (AbstractBlobStoreFs shard : this.shards) {
+      attach(shard);
+    }
+    this.ring = createRing();
+    this.rebalancer = Executors.newSingleThreadExecutor(r -> {
+      Thread thread = new Thread(r, "blob-rebalance");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Stops the background thread for {@link #rebalance() rebalancing} and closes all shards. A rebalancing in progress
+   * is interrupted and can be continued by calling {@link #rebalance()} after a restart.
+   */
+  @Override
+  public void close() {
+
+    if (this.rebalancer != null) {
+      this.rebalancer.shutdownNow();
+    }
+    for (AbstractBlobStoreFs shard : this.shards) {
+      shard.close();
+    }
+  }
+
+  private void attach(AbstractBlobStoreFs shard) {
+
+    Class<?> type = this.shards.get(0).getClass();
+    if (shard.getClass() != type) {
+      throw new IllegalStateException(
+          "Shards have to be of the same type but found " + type.getName() + " and " + shard.getClass().getName());
+    }
+    shard.initialize();
+    shard.setPartitionGuard(this::guardCommit);
+    shard.setCommitLocator(partition -> locate(partition).getVolume(partition));
+    if (!(shard instanceof BlobStoreImplDeduplicatingFs)) {
+      shard.setPartitionFilter(partition -> (getOwner(partition) == shard));
+    }
+    shard.setOwner(this);
+  }
+
+  private NavigableMap<Long, AbstractBlobStoreFs> createRing() {
+
+    NavigableMap<Long, AbstractBlobStoreFs> newRing = new TreeMap<>();
+    for (int i = 0; i < this.shards.size(); i++) {
+      AbstractBlobStoreFs shard = this.shards.get(i);
+      for (int node = 0; node < VIRTUAL_NODES; node++) {
+        newRing.put(Long.valueOf(hash("shard-" + i + "#" + node)), shard);
+      }
+    }
+    return newRing;
+  }
+
+  private static long hash(String key) {
+
+    // FNV-1a with final avalanche
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < key.length(); i++) {
+      h ^= key.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    h ^= (h >>> 33);
+    h *= 0xff51afd7ed558ccdL;
+    h ^= (h >>> 33);
+    return h;
+  }
+
+  /**
+   * @return the {@link List} of all shards.
+   */
+  protected List<AbstractBlobStoreFs> getShards() {
+
+    return this.shards;
+  }
+
+  /**
+   * @param partition the {@link BlobId#getPartition() partition}.
+   * @return the shard that owns the given {@code partition} according to consistent hashing.
+   */
+  protected AbstractBlobStoreFs getOwner(String partition) {
+
+    Entry<Long, AbstractBlobStoreFs> entry = this.ring.ceilingEntry(Long.valueOf(hash(partition)));
+    if (entry == null) {
+      entry = this.ring.firstEntry();
+    }
+    return entry.getValue();
+  }
+
+  /**
+   * @param partition the {@link BlobId#getPartition() partition}.
+   * @return the shard where the given {@code partition} is currently located. This is the {@link #getOwner(String)
+   *         owner} unless the partition has not yet been moved there after a new shard has been added.
+   */
+  protected AbstractBlobStoreFs locate(String partition) {
+
+    AbstractBlobStoreFs owner = getOwner(partition);
+    if ((this.shards.size() == 1) || owner.getPartitionDirectory(partition).isDirectory()) {
+      return owner;
+    }
+    for (AbstractBlobStoreFs shard : this.shards) {
+      if ((shard != owner) && shard.getPartitionDirectory(partition).isDirectory()) {
+        return shard;
+      }
+    }
+    return owner;
+  }
+
+  private Object getLock(String partition) {
+
+    return this.locks[(partition.hashCode() & 0x7fffffff) % LOCK_COUNT];
+  }
+
+  private <T> T guardCommit(String partition, Supplier<T> operation) {
+
+    synchronized (getLock(partition)) {
+      return operation.get();
+    }
+  }
+
+  /**
+   * @return the shard to receive the next new BLOB. The shard only generates {@link BlobId#getPartition() partitions}
+   *         it owns so the BLOB is committed where it has been written. Only for content addressed shards the owner is
+   *         determined on commit by the hash of the BLOB.
+   */
+  private AbstractBlobStoreFs nextShard() {
+
+    int index = (this.counter.getAndIncrement() & Integer.MAX_VALUE) % this.shards.size();
+    return this.shards.get(index);
+  }
+
+  @Override
+  public Id<DataResource> save(DataResource blob) {
+
+    return nextShard().save(blob);
+  }
+
+  @Override
+  public Id<DataResource> save(DataResource blob, Duration ttl) {
+
+    return nextShard().save(blob, ttl);
+  }
+
+  @Override
+  public Id<DataResource> ingest(File file) {
+
+    return nextShard().ingest(file);
+  }
+
+  @Override
+  public BlobOutputStream openForWrite() {
+
+    return nextShard().openForWrite();
+  }
+
+  @Override
+  public BlobUpload beginUpload() {
+
+    return nextShard().beginUpload();
+  }
+
+  @Override
+  public BlobUpload resumeUpload(String uploadId) throws ObjectNotFoundException {
+
+    for (AbstractBlobStoreFs shard : this.shards) {
+      try {
+        return shard.resumeUpload(uploadId);
+      } catch (ObjectNotFoundException e) {
+        // try next shard
+      }
+    }
+    throw new ObjectNotFoundException(BlobUpload.class.getSimpleName(), uploadId);
+  }
+
+  @Override
+  public boolean restore(Id<DataResource> id, DataResource blob) {
+
+    BlobId blobId = this.shards.get(0).asBlobId(id);
+    String partition = blobId.getPartition();
+    synchronized (getLock(partition)) {
+      return locate(partition).restore(blobId, blob);
+    }
+  }
+
+  @Override
+  public DataResource find(Id<DataResource> id) {
+
+    BlobId blobId = this.shards.get(0).asBlobId(id);
+    String partition = blobId.getPartition();
+    AbstractBlobStoreFs shard = locate(partition);
+    DataResource blob = shard.find(blobId);
+    if (!blob.isAvailable()) {
+      // partition may have been moved concurrently
+      AbstractBlobStoreFs newShard = locate(partition);
+      if (newShard != shard) {
+        blob = newShard.find(blobId);
+      }
+    }
+    return blob;
+  }
+
+  @Override
+  public BlobMapping map(Id<DataResource> id) throws ObjectNotFoundException {
+
+    BlobId blobId = this.shards.get(0).asBlobId(id);
+    String partition = blobId.getPartition();
+    AbstractBlobStoreFs shard = locate(partition);
+    try {
+      return shard.map(blobId);
+    } catch (ObjectNotFoundException e) {
+      AbstractBlobStoreFs newShard = locate(partition);
+      if (newShard == shard) {
+        throw e;
+      }
+      return newShard.map(blobId);
+    }
+  }
+
+  @Override
+  public CompletableFuture<Void> prefetch(Collection<? extends Id<DataResource>> ids) {
+
+    Map<AbstractBlobStoreFs, List<Id<DataResource>>> idsByShard = new LinkedHashMap<>();
+    for (Id<DataResource> id : ids) {
+      BlobId blobId = this.shards.get(0).asBlobId(id);
+      idsByShard.computeIfAbsent(locate(blobId.getPartition()), s -> new ArrayList<>()).add(blobId);
+    }
+    List<CompletableFuture<Void>> futures = new ArrayList<>(idsByShard.size());
+    for (Entry<AbstractBlobStoreFs, List<Id<DataResource>>> entry : idsByShard.entrySet()) {
+      futures.add(entry.getKey().prefetch(entry.getValue()));
+    }
+    if (futures.isEmpty()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return AbstractBlobStoreFs.prefetchAll(futures);
+  }
+
+  @Override
+  public BlobStat stat(Id<DataResource> id) {
+
+    BlobId blobId = this.shards.get(0).asBlobId(id);
+    String partition = blobId.getPartition();
+    AbstractBlobStoreFs shard = locate(partition);
+    BlobStat stat = shard.stat(blobId);
+    if (stat == null) {
+      AbstractBlobStoreFs newShard = locate(partition);
+      if (newShard != shard) {
+        stat = newShard.stat(blobId);
+      }
+    }
+    return stat;
+  }
+
+  @Override
+  public boolean delete(Id<DataResource> id) {
+
+    BlobId blobId = this.shards.get(0).asBlobId(id);
+    String partition = blobId.getPartition();
+    synchronized (getLock(partition)) {
+      return locate(partition).delete(blobId);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * A BLOB moved to another shard during the traversal (e.g. by {@link #rebalance()}) may be listed twice or not at
+   * all.
+   */
+  @Override
+  public Stream<Id<DataResource>> ids(String prefix) {
+
+    Stream<Id<DataResource>> ids = Stream.empty();
+    for (AbstractBlobStoreFs shard : this.shards) {
+      ids = Stream.concat(ids, shard.ids(prefix));
+    }
+    return ids;
+  }
+
+  @Override
+  public Id<DataResource> createId(String id) {
+
+    return BlobId.of(id);
+  }
+
+  /**
+   * Adds a new shard and starts to move the partitions now owned by that shard in the background.
+   *
+   * @param shard the new shard. Has to be of the same type as the existing shards.
+   * @return the {@link Future} of the {@link #rebalance() rebalancing}.
+   */
+  public synchronized Future<Integer> addShard(AbstractBlobStoreFs shard) {
+
+    if (this.shards.contains(shard)) {
+      throw new IllegalArgumentException("Duplicate shard " + shard);
+    }
+    attach(shard);
+    this.shards.add(shard);
+    this.ring = createRing();
+    getLogger().info("Added shard {}", shard.getRootDirectory());
+    return this.rebalancer.submit(this::rebalance);
+  }
+
+  /**
+   * Moves all partitions that are not located at their {@link #getOwner(String) owner} to that owner. This method is
+   * called in the background when a shard has been {@link #addShard(AbstractBlobStoreFs) added} but may also be invoked
+   * manually (e.g. if rebalancing was interrupted by a restart).
+   *
+   * @return the number of moved partitions.
+   */
+  public Integer rebalance() {
+
+    int count = 0;
+    for (AbstractBlobStoreFs shard : this.shards) {
+      for (BlobVolume volume : shard.getVolumes()) {
+        for (String partition : shard.scanPartitions(volume).keySet()) {
+          if (Thread.currentThread().isInterrupted()) {
+            getLogger().info("Rebalancing interrupted after moving {} partitions", Integer.valueOf(count));
+            return Integer.valueOf(count);
+          }
+          AbstractBlobStoreFs owner = getOwner(partition);
+          if (owner != shard) {
+            synchronized (getLock(partition)) {
+              try {
+                if (shard.movePartition(partition, owner)) {
+                  count++;
+                }
+              } catch (RuntimeException e) {
+                getLogger().warn("Failed to move partition {} to {}", partition, owner.getRootDirectory(), e);
+              }
+            }
+          }
+        }
+      }
+    }
+    getLogger().info("Rebalancing moved {} partitions", Integer.valueOf(count));
+    return Integer.valueOf(count);
+  }
+
+}
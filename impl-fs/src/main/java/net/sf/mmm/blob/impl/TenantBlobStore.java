@@ -0,0 +1,105 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+
+import net.sf.mmm.blob.api.BlobMapping;
+import net.sf.mmm.blob.api.BlobStat;
+import net.sf.mmm.blob.api.BlobStore;
+import net.sf.mmm.util.data.api.id.Id;
+import net.sf.mmm.util.exception.api.ObjectNotFoundException;
+import net.sf.mmm.util.resource.api.DataResource;
+
+/**
+ * This is the view of an {@link AbstractBlobStoreFs} for a single tenant. BLOBs {@link #save(DataResource) saved} via
+ * this view are charged to the {@link TenantUsage} of the tenant. All other operations are delegated to the underlying
+ * store. Listing the {@link #ids() IDs} is not supported as it would expose the BLOBs of other tenants.
+ *
+ * @see AbstractBlobStoreFs#forTenant(String)
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+class TenantBlobStore implements BlobStore {
+
+  private final AbstractBlobStoreFs store;
+
+  private final String tenant;
+
+  /**
+   * The constructor.
+   *
+   * @param store the underlying {@link AbstractBlobStoreFs}.
+   * @param tenant the name of the tenant.
+   */
+  TenantBlobStore(AbstractBlobStoreFs store, String tenant) {
+    super();
+    this.store = store;
+    this.tenant = tenant;
+  }
+
+  @Override
+  public Id<DataResource> save(DataResource blob) {
+
+    return this.store.save(blob, this.tenant);
+  }
+
+  @Override
+  public Id<DataResource> save(DataResource blob, Duration ttl) {
+
+    return this.store.save(blob, ttl, this.tenant);
+  }
+
+  @Override
+  public Id<DataResource> ingest(File file) {
+
+    return this.store.ingest(file, this.tenant);
+  }
+
+  @Override
+  public DataResource find(Id<DataResource> id) {
+
+    return this.store.find(id);
+  }
+
+  @Override
+  public BlobMapping map(Id<DataResource> id) throws ObjectNotFoundException {
+
+    return this.store.map(id);
+  }
+
+  @Override
+  public BlobStat stat(Id<DataResource> id) {
+
+    return this.store.stat(id);
+  }
+
+  @Override
+  public Map<Id<DataResource>, BlobStat> stat(Collection<? extends Id<DataResource>> ids) {
+
+    return this.store.stat(ids);
+  }
+
+  @Override
+  public boolean delete(Id<DataResource> id) {
+
+    return this.store.delete(id);
+  }
+
+  @Override
+  public Id<DataResource> createId(String id) {
+
+    return this.store.createId(id);
+  }
+
+  @Override
+  public String toString() {
+
+    return this.tenant + "@" + this.store;
+  }
+
+}
@@ -0,0 +1,136 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import net.sf.mmm.util.exception.api.ValueOutOfRangeException;
+
+/**
+ * This class holds the running usage counters of a single tenant of an {@link AbstractBlobStoreFs} together with its
+ * quotas. The counters are maintained incrementally on every save and delete so reading them is {@code O(1)}. Bytes
+ * and objects of uploads in progress are {@link #reserve(long, long) reserved} so concurrent saves can not exceed the
+ * quota together.
+ *
+ * @see AbstractBlobStoreFs#forTenant(String)
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+public final class TenantUsage {
+
+  private final String tenant;
+
+  private final long maxBytes;
+
+  private final long maxObjects;
+
+  private long bytes;
+
+  private long objects;
+
+  private long reservedBytes;
+
+  private long reservedObjects;
+
+  /**
+   * The constructor.
+   *
+   * @param tenant - see {@link #getTenant()}.
+   * @param maxBytes - see {@link #getMaxBytes()}.
+   * @param maxObjects - see {@link #getMaxObjects()}.
+   */
+  TenantUsage(String tenant, long maxBytes, long maxObjects) {
+    super();
+    this.tenant = tenant;
+    this.maxBytes = maxBytes;
+    this.maxObjects = maxObjects;
+  }
+
+  /**
+   * @return the name of the tenant.
+   */
+  public String getTenant() {
+
+    return this.tenant;
+  }
+
+  /**
+   * @return the number of bytes charged to the tenant.
+   */
+  public synchronized long getBytes() {
+
+    return this.bytes;
+  }
+
+  /**
+   * @return the number of BLOBs charged to the tenant.
+   */
+  public synchronized long getObjects() {
+
+    return this.objects;
+  }
+
+  /**
+   * @return the maximum number of {@link #getBytes() bytes} the tenant may use.
+   */
+  public long getMaxBytes() {
+
+    return this.maxBytes;
+  }
+
+  /**
+   * @return the maximum number of {@link #getObjects() BLOBs} the tenant may own.
+   */
+  public long getMaxObjects() {
+
+    return this.maxObjects;
+  }
+
+  /**
+   * @param additionalBytes the number of bytes to reserve.
+   * @param additionalObjects the number of BLOBs to reserve.
+   * @throws ValueOutOfRangeException if the reservation would exceed a quota.
+   */
+  synchronized void reserve(long additionalBytes, long additionalObjects) throws ValueOutOfRangeException {
+
+    long totalObjects = this.objects + this.reservedObjects + additionalObjects;
+    if (totalObjects > this.maxObjects) {
+      throw new ValueOutOfRangeException(Long.valueOf(totalObjects), Long.valueOf(0), Long.valueOf(this.maxObjects),
+          "objects of tenant " + this.tenant);
+    }
+    long totalBytes = this.bytes + this.reservedBytes + additionalBytes;
+    if (totalBytes > this.maxBytes) {
+      throw new ValueOutOfRangeException(Long.valueOf(totalBytes), Long.valueOf(0), Long.valueOf(this.maxBytes),
+          "bytes of tenant " + this.tenant);
+    }
+    this.reservedBytes += additionalBytes;
+    this.reservedObjects += additionalObjects;
+  }
+
+  /**
+   * @param releasedBytes the number of {@link #reserve(long, long) reserved} bytes to release.
+   * @param releasedObjects the number of {@link #reserve(long, long) reserved} BLOBs to release.
+   */
+  synchronized void release(long releasedBytes, long releasedObjects) {
+
+    this.reservedBytes -= releasedBytes;
+    this.reservedObjects -= releasedObjects;
+  }
+
+  /**
+   * @param deltaBytes the number of bytes to charge (positive) or discharge (negative).
+   * @param deltaObjects the number of BLOBs to charge (positive) or discharge (negative).
+   */
+  synchronized void add(long deltaBytes, long deltaObjects) {
+
+    this.bytes += deltaBytes;
+    this.objects += deltaObjects;
+  }
+
+  @Override
+  public String toString() {
+
+    return this.tenant + "[" + getBytes() + "/" + this.maxBytes + " bytes, " + getObjects() + "/" + this.maxObjects
+        + " objects]";
+  }
+
+}
@@ -0,0 +1,418 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import javax.inject.Inject;
+
+import net.sf.mmm.blob.api.BlobMapping;
+import net.sf.mmm.blob.api.BlobOutputStream;
+import net.sf.mmm.blob.api.BlobStat;
+import net.sf.mmm.blob.api.BlobStore;
+import net.sf.mmm.blob.api.BlobUpload;
+import net.sf.mmm.util.component.base.AbstractLoggableComponent;
+import net.sf.mmm.util.data.api.id.Id;
+import net.sf.mmm.util.exception.api.ObjectNotFoundException;
+import net.sf.mmm.util.resource.api.DataResource;
+
+/**
+ * This is an implementation of {@link BlobStore} composed of a fast tier (e.g. on SSD) and a capacity tier (e.g. on
+ * HDD). Both tiers are {@link AbstractBlobStoreFs} instances of the same type so BLOBs can be relocated between them
+ * while their {@link BlobId}s remain stable. New BLOBs are always saved to the fast tier. A background mover demotes
+ * BLOBs that have not been read {@link BlobStoreTieredConfigProperties#getDemoteAfter() for a while} and promotes
+ * BLOBs that are {@link BlobStoreTieredConfigProperties#getPromoteThreshold() frequently read} from the capacity tier.
+ * The read frequency is estimated in memory using a compact sketch. The time of the last read is also collected in
+ * memory and written to the BLOB files by the mover instead of writing to the disc on every read.<br>
+ * BLOBs are relocated per {@link BlobId#getPartition() partition} so all de-duplicated references of a BLOB always
+ * reside in the same tier. If a BLOB is saved whose partition has been demoted, that partition is promoted before the
+ * commit so de-duplication works across tiers.<br>
+ * The tiers are initialized and {@link #close() closed} together with this store.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+public class TieredBlobStore extends AbstractLoggableComponent implements BlobStore, AutoCloseable {
+
+  private static final int LOCK_COUNT = 64;
+
+  private final AbstractBlobStoreFs fastTier;
+
+  private final AbstractBlobStoreFs capacityTier;
+
+  private final Object[] locks;
+
+  private final Set<String> promotionCandidates;
+
+  private final Map<String, Long> accessTimes;
+
+  private BlobStoreTieredConfigProperties config;
+
+  private FrequencySketch sketch;
+
+  private ScheduledExecutorService mover;
+
+  /**
+   * The constructor.
+   *
+   * @param fastTier the {@link AbstractBlobStoreFs} for the fast tier.
+   * @param capacityTier the {@link AbstractBlobStoreFs} for the capacity tier. Has to be of the same type as
+   *        {@code fastTier}.
+   */
+  public TieredBlobStore(AbstractBlobStoreFs fastTier, AbstractBlobStoreFs capacityTier) {
+    super();
+    this.fastTier = fastTier;
+    this.capacityTier = capacityTier;
+    this.locks = new Object[LOCK_COUNT];
+    for (int i = 0; i < LOCK_COUNT; i++) {
+      this.locks[i] = new Object();
+    }
+    this.promotionCandidates = ConcurrentHashMap.newKeySet();
+    this.accessTimes = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * @return the {@link BlobStoreTieredConfigProperties}.
+   */
+  protected BlobStoreTieredConfigProperties getConfig() {
+
+    return this.config;
+  }
+
+  /**
+   * @param config the {@link BlobStoreTieredConfigProperties} to {@link Inject}.
+   */
+  @Inject
+  public void setConfig(BlobStoreTieredConfigProperties config) {
+
+    this.config = config;
+  }
+
+  @Override
+  protected void doInitialize() {
+
+    super.doInitialize();
+    if (this.config == null) {
+      this.config = new BlobStoreTieredConfigProperties();
+    }
+    if (this.fastTier.getClass() != this.capacityTier.getClass()) {
+      throw new IllegalStateException("Tiers have to be of the same type but found " + this.fastTier.getClass().getName()
+          + " and " + this.capacityTier.getClass().getName());
+    }
+    this.fastTier.initialize();
+    this.capacityTier.initialize();
+    this.fastTier.setPartitionGuard(this::guardCommit);
+    this.fastTier.setOwner(this);
+    this.capacityTier.setOwner(this);
+    this.sketch = new FrequencySketch(this.config.getSketchWidth());
+    long interval = this.config.getMoverInterval().toMillis();
+    if (interval > 0) {
+      this.mover = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "blob-tier-mover");
+        thread.setDaemon(true);
+        return thread;
+      });
+      this.mover.scheduleWithFixedDelay(this::relocateSafely, interval, interval, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Stops the background mover and {@link AbstractBlobStoreFs#close() closes} both tiers.
+   */
+  @Override
+  public void close() {
+
+    if (this.mover != null) {
+      this.mover.shutdown();
+    }
+    this.fastTier.close();
+    this.capacityTier.close();
+  }
+
+  /**
+   * @return the {@link AbstractBlobStoreFs} of the fast tier.
+   */
+  protected AbstractBlobStoreFs getFastTier() {
+
+    return this.fastTier;
+  }
+
+  /**
+   * @return the {@link AbstractBlobStoreFs} of the capacity tier.
+   */
+  protected AbstractBlobStoreFs getCapacityTier() {
+
+    return this.capacityTier;
+  }
+
+  private Object getLock(String partition) {
+
+    return this.locks[(partition.hashCode() & 0x7fffffff) % LOCK_COUNT];
+  }
+
+  private <T> T guardCommit(String partition, Supplier<T> operation) {
+
+    synchronized (getLock(partition)) {
+      if (this.capacityTier.movePartition(partition, this.fastTier)) {
+        getLogger().debug("Promoted partition {} on write", partition);
+      }
+      return operation.get();
+    }
+  }
+
+  @Override
+  public Id<DataResource> save(DataResource blob) {
+
+    return this.fastTier.save(blob);
+  }
+
+  @Override
+  public Id<DataResource> save(DataResource blob, Duration ttl) {
+
+    return this.fastTier.save(blob, ttl);
+  }
+
+  @Override
+  public Id<DataResource> ingest(File file) {
+
+    return this.fastTier.ingest(file);
+  }
+
+  @Override
+  public BlobOutputStream openForWrite() {
+
+    return this.fastTier.openForWrite();
+  }
+
+  @Override
+  public BlobUpload beginUpload() {
+
+    return this.fastTier.beginUpload();
+  }
+
+  @Override
+  public BlobUpload resumeUpload(String uploadId) throws ObjectNotFoundException {
+
+    return this.fastTier.resumeUpload(uploadId);
+  }
+
+  @Override
+  public boolean restore(Id<DataResource> id, DataResource blob) {
+
+    BlobId blobId = this.fastTier.asBlobId(id);
+    String partition = blobId.getPartition();
+    synchronized (getLock(partition)) {
+      if (this.capacityTier.getPartitionDirectory(partition).isDirectory()) {
+        return this.capacityTier.restore(blobId, blob);
+      }
+      return this.fastTier.restore(blobId, blob);
+    }
+  }
+
+  @Override
+  public DataResource find(Id<DataResource> id) {
+
+    BlobId blobId = this.fastTier.asBlobId(id);
+    String partition = blobId.getPartition();
+    recordAccess(partition);
+    DataResource blob = this.fastTier.find(blobId);
+    if (blob.isAvailable()) {
+      return blob;
+    }
+    blob = this.capacityTier.find(blobId);
+    if (blob.isAvailable()) {
+      if (this.sketch.estimate(partition) >= this.config.getPromoteThreshold()) {
+        this.promotionCandidates.add(partition);
+      }
+      return blob;
+    }
+    // partition may have been promoted concurrently
+    return this.fastTier.find(blobId);
+  }
+
+  private void recordAccess(String partition) {
+
+    this.sketch.increment(partition);
+    this.accessTimes.put(partition, Long.valueOf(System.currentTimeMillis()));
+  }
+
+  @Override
+  public BlobMapping map(Id<DataResource> id) throws ObjectNotFoundException {
+
+    BlobId blobId = this.fastTier.asBlobId(id);
+    recordAccess(blobId.getPartition());
+    try {
+      return this.fastTier.map(blobId);
+    } catch (ObjectNotFoundException e) {
+      try {
+        return this.capacityTier.map(blobId);
+      } catch (ObjectNotFoundException e2) {
+        // partition may have been promoted concurrently
+        return this.fastTier.map(blobId);
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * Each BLOB is read ahead from the tier where it currently resides without counting as read for promotion.
+   */
+  @Override
+  public CompletableFuture<Void> prefetch(Collection<? extends Id<DataResource>> ids) {
+
+    List<Id<DataResource>> fastIds = new ArrayList<>();
+    List<Id<DataResource>> capacityIds = new ArrayList<>();
+    for (Id<DataResource> id : ids) {
+      BlobId blobId = this.fastTier.asBlobId(id);
+      if (this.fastTier.getPartitionDirectory(blobId.getPartition()).isDirectory()) {
+        fastIds.add(blobId);
+      } else {
+        capacityIds.add(blobId);
+      }
+    }
+    return AbstractBlobStoreFs
+        .prefetchAll(Arrays.asList(this.fastTier.prefetch(fastIds), this.capacityTier.prefetch(capacityIds)));
+  }
+
+  @Override
+  public BlobStat stat(Id<DataResource> id) {
+
+    BlobId blobId = this.fastTier.asBlobId(id);
+    BlobStat stat = this.fastTier.stat(blobId);
+    if (stat == null) {
+      stat = this.capacityTier.stat(blobId);
+      if (stat == null) {
+        // partition may have been promoted concurrently
+        stat = this.fastTier.stat(blobId);
+      }
+    }
+    return stat;
+  }
+
+  @Override
+  public boolean delete(Id<DataResource> id) {
+
+    BlobId blobId = this.fastTier.asBlobId(id);
+    String partition = blobId.getPartition();
+    synchronized (getLock(partition)) {
+      if (this.fastTier.getPartitionDirectory(partition).isDirectory()) {
+        return this.fastTier.delete(blobId);
+      }
+      return this.capacityTier.delete(blobId);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * A BLOB relocated between the tiers during the traversal may be listed twice or not at all.
+   */
+  @Override
+  public Stream<Id<DataResource>> ids(String prefix) {
+
+    return Stream.concat(this.fastTier.ids(prefix), this.capacityTier.ids(prefix));
+  }
+
+  @Override
+  public Id<DataResource> createId(String id) {
+
+    return this.fastTier.createId(id);
+  }
+
+  private void relocateSafely() {
+
+    try {
+      relocate();
+    } catch (RuntimeException e) {
+      getLogger().error("Failed to relocate BLOBs between tiers.", e);
+    }
+  }
+
+  /**
+   * Promotes the frequently read BLOBs from the capacity tier to the fast tier and demotes the BLOBs that have not been
+   * read recently from the fast tier to the capacity tier. The access times collected since the last invocation are
+   * written to the BLOB files before. Finally the read frequencies are aged. This method is called
+   * periodically by the background mover according to {@link BlobStoreTieredConfigProperties#getMoverInterval()} but
+   * may also be invoked manually.
+   *
+   * @return the number of relocated partitions.
+   */
+  public int relocate() {
+
+    int count = 0;
+    Iterator<String> iterator = this.promotionCandidates.iterator();
+    while (iterator.hasNext()) {
+      String partition = iterator.next();
+      iterator.remove();
+      synchronized (getLock(partition)) {
+        if (this.capacityTier.movePartition(partition, this.fastTier)) {
+          count++;
+        }
+      }
+    }
+    recordAccessTimes();
+    long threshold = System.currentTimeMillis() - this.config.getDemoteAfter().toMillis();
+    for (BlobVolume volume : this.fastTier.getVolumes()) {
+      count += demote(volume, threshold);
+    }
+    this.sketch.age();
+    getLogger().debug("Relocated {} partitions between tiers", Integer.valueOf(count));
+    return count;
+  }
+
+  private void recordAccessTimes() {
+
+    for (Entry<String, Long> entry : this.accessTimes.entrySet()) {
+      String partition = entry.getKey();
+      Long accessTime = entry.getValue();
+      synchronized (getLock(partition)) {
+        this.fastTier.touchPartition(partition, accessTime.longValue());
+        this.capacityTier.touchPartition(partition, accessTime.longValue());
+      }
+      // kept if read again in the meantime
+      this.accessTimes.remove(partition, accessTime);
+    }
+  }
+
+  private int demote(BlobVolume volume, long threshold) {
+
+    Map<String, Long> partitions = this.fastTier.scanPartitions(volume);
+    int count = 0;
+    for (Entry<String, Long> entry : partitions.entrySet()) {
+      String partition = entry.getKey();
+      // read after the access times have been recorded
+      Long accessTime = this.accessTimes.get(partition);
+      long lastUse = Math.max(entry.getValue().longValue(), (accessTime == null) ? 0 : accessTime.longValue());
+      if (lastUse <= threshold) {
+        synchronized (getLock(partition)) {
+          try {
+            if (this.fastTier.movePartition(partition, this.capacityTier)) {
+              count++;
+            }
+          } catch (RuntimeException e) {
+            getLogger().warn("Failed to demote partition {}", partition, e);
+          }
+        }
+      }
+    }
+    return count;
+  }
+
+}
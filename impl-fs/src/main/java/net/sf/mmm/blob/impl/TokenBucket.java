@@ -0,0 +1,52 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+/**
+ * A token bucket that limits a bandwidth. It holds up to one second of tokens as burst. Consumers may overdraw the
+ * bucket and then have to wait until the debt has been refilled so large requests do not starve.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+class TokenBucket {
+
+  private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+  private final long rate;
+
+  private double tokens;
+
+  private long lastRefill;
+
+  /**
+   * The constructor.
+   *
+   * @param rate the number of tokens (bytes) refilled per second.
+   */
+  TokenBucket(long rate) {
+    super();
+    this.rate = rate;
+    this.tokens = rate;
+    this.lastRefill = System.nanoTime();
+  }
+
+  /**
+   * @param amount the number of tokens to take.
+   * @param factor the factor for the refill rate (e.g. to reduce the bandwidth temporarily).
+   * @return the number of nanoseconds to wait before the tokens may be used.
+   */
+  synchronized long take(long amount, double factor) {
+
+    double effectiveRate = this.rate * factor;
+    long now = System.nanoTime();
+    this.tokens = Math.min(this.rate, this.tokens + ((now - this.lastRefill) * effectiveRate / NANOS_PER_SECOND));
+    this.lastRefill = now;
+    this.tokens -= amount;
+    if (this.tokens >= 0) {
+      return 0;
+    }
+    return (long) (-this.tokens * NANOS_PER_SECOND / effectiveRate);
+  }
+
+}
@@ -2,15 +2,40 @@
  * http://www.apache.org/licenses/LICENSE-2.0 */
 package net.sf.mmm.blob.impl;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import org.assertj.core.api.Assertions;
 import org.junit.Test;
 
+import net.sf.mmm.blob.api.BlobMapping;
+import net.sf.mmm.blob.api.BlobOutputStream;
+import net.sf.mmm.blob.api.BlobRange;
+import net.sf.mmm.blob.api.BlobStat;
+import net.sf.mmm.blob.api.BlobStore;
+import net.sf.mmm.blob.api.BlobUpload;
 import net.sf.mmm.util.data.api.id.Id;
+import net.sf.mmm.util.exception.api.ObjectNotFoundException;
+import net.sf.mmm.util.exception.api.ValueOutOfRangeException;
 import net.sf.mmm.util.file.api.FileUtil;
 import net.sf.mmm.util.file.api.FileUtilLimited;
 import net.sf.mmm.util.file.base.FileUtilImpl;
@@ -19,6 +44,8 @@ import net.sf.mmm.util.io.api.RuntimeIoException;
 import net.sf.mmm.util.io.base.StreamUtilImpl;
 import net.sf.mmm.util.resource.api.DataResource;
 import net.sf.mmm.util.resource.base.ClasspathResource;
+import net.sf.mmm.util.resource.base.FileResource;
+import net.sf.mmm.util.resource.base.StreamResource;
 
 /**
  * The base class for a test-case of {@link AbstractBlobStoreFs}.
@@ -43,12 +70,24 @@ public abstract class AbstractBlobStoreFsTest extends Assertions {
    */
   protected AbstractBlobStoreFs getBlobStore() {
 
+    return getBlobStore(null);
+  }
+
+  /**
+   * @param quotaConfig the {@link BlobStoreQuotaConfigProperties} or {@code null} for the defaults.
+   * @return the initialized {@link AbstractBlobStoreFs} to test.
+   */
+  protected AbstractBlobStoreFs getBlobStore(BlobStoreQuotaConfigProperties quotaConfig) {
+
     AbstractBlobStoreFs store = createBlobStore();
     store.setConfig(getConfig());
+    store.setQuotaConfig(quotaConfig);
     store.initialize();
     FileUtil fileUtil = FileUtilImpl.getInstance();
-    fileUtil.deleteChildren(store.getIncomeDirectory());
-    fileUtil.deleteChildren(store.getDataDirectory());
+    for (BlobVolume volume : store.getVolumes()) {
+      fileUtil.deleteChildren(volume.getIncomeDirectory());
+      fileUtil.deleteChildren(volume.getDataDirectory());
+    }
     return store;
   }
 
@@ -128,6 +167,612 @@ public abstract class AbstractBlobStoreFsTest extends Assertions {
     assertThat(deleted).isTrue();
   }
 
+  /**
+   * Test of {@link AbstractBlobStoreFs#stat(Id)} and its bulk variant.
+   */
+  @Test
+  public void testStat() {
+
+    AbstractBlobStoreFs store = getBlobStore();
+    ClasspathResource resource = new ClasspathResource(AbstractBlobStoreFs.class, ".class", true);
+    Id<DataResource> id = store.save(resource);
+    Id<DataResource> id2 = store.save(resource);
+
+    BlobStat stat = store.stat(id);
+    assertThat(stat.getSize()).isEqualTo(resource.getSize());
+    assertThat(stat.getCreationTime()).isNotNull();
+    if (isDeduplicating()) {
+      assertThat(stat.getHash()).isEqualTo(((BlobId) id).getPartition());
+    } else {
+      assertThat(stat.getHash()).isNull();
+    }
+    if (isReferenceCounting()) {
+      assertThat(stat.getReferenceCount()).isEqualTo(2);
+    } else {
+      assertThat(stat.getReferenceCount()).isEqualTo(1);
+    }
+
+    Id<DataResource> id3 = store.save(new ClasspathResource(AbstractBlobStoreFsTest.class, ".class", true));
+    assertThat(store.delete(id3)).isTrue();
+    Map<Id<DataResource>, BlobStat> stats = store.stat(Arrays.asList(id3, id2));
+    assertThat(stats.keySet()).containsExactly(id2);
+    assertThat(stats.get(id2).getSize()).isEqualTo(resource.getSize());
+    store.delete(id2);
+    if (isReferenceCounting()) {
+      assertThat(store.stat(id).getReferenceCount()).isEqualTo(1);
+    }
+    if (!isDeduplicating() || isReferenceCounting()) {
+      store.delete(id);
+    }
+    assertThat(store.stat(id)).isNull();
+  }
+
+  /**
+   * Test of {@link AbstractBlobStoreFs#save(DataResource, Duration)} and {@link AbstractBlobStoreFs#reapExpired()}.
+   */
+  @Test
+  public void testSaveWithTtl() {
+
+    AbstractBlobStoreFs store = getBlobStore();
+    ClasspathResource resource = new ClasspathResource(AbstractBlobStoreFs.class, ".class", true);
+    if (isDeduplicating() && !isReferenceCounting()) {
+      // the expiry of a shared ID would delete BLOBs saved without time-to-live
+      assertThatThrownBy(() -> store.save(resource, Duration.ofMinutes(1)))
+          .isInstanceOf(UnsupportedOperationException.class);
+      return;
+    }
+    Id<DataResource> id = store.save(resource, Duration.ofMinutes(1));
+    Id<DataResource> id2 = store.save(resource);
+    assertThatThrownBy(() -> store.save(resource, Duration.ZERO)).isInstanceOf(IllegalArgumentException.class);
+
+    long now = System.currentTimeMillis();
+    assertThat(store.reapExpired(now)).isZero();
+    assertThat(store.find(id).isAvailable()).isTrue();
+    assertThat(store.reapExpired(now + Duration.ofHours(3).toMillis())).isEqualTo(1);
+    assertThat(store.reapExpired(now + Duration.ofHours(3).toMillis())).isZero();
+    if (!isDeduplicating()) {
+      assertThat(store.find(id).isAvailable()).isFalse();
+    }
+    assertThat(store.find(id2).isAvailable()).isTrue();
+    assertThat(store.delete(id2)).isTrue();
+    assertThat(store.find(id2).isAvailable()).isFalse();
+  }
+
+  /**
+   * Test that the expiry of a BLOB that has been deleted manually does not delete a BLOB saved afterwards.
+   */
+  @Test
+  public void testDeleteBeforeExpiry() {
+
+    AbstractBlobStoreFs store = getBlobStore();
+    if (isDeduplicating() && !isReferenceCounting()) {
+      return;
+    }
+    ClasspathResource resource = new ClasspathResource(BlobId.class, ".class", true);
+    Id<DataResource> id = store.save(resource, Duration.ofMinutes(1));
+    assertThat(store.delete(id)).isTrue();
+    Id<DataResource> id2 = store.save(resource);
+    assertThat(id2).isNotEqualTo(id);
+
+    assertThat(store.reapExpired(System.currentTimeMillis() + Duration.ofHours(3).toMillis())).isZero();
+    assertThat(store.find(id2).isAvailable()).isTrue();
+    assertThat(store.delete(id2)).isTrue();
+  }
+
+  /**
+   * Test that a BLOB saved with a time-to-live is not kept if its expiry can not be recorded.
+   */
+  @Test
+  public void testSaveWithTtlFailingExpiry() {
+
+    AbstractBlobStoreFs store = getBlobStore();
+    if (isDeduplicating() && !isReferenceCounting()) {
+      return;
+    }
+    ClasspathResource resource = new ClasspathResource(AbstractBlobStoreFs.class, ".class", true);
+    long count = store.ids().count();
+    FileUtil fileUtil = FileUtilImpl.getInstance();
+    File expiryDirectory = new File(store.getRootDirectory(), AbstractBlobStoreFs.FOLDER_EXPIRY);
+    fileUtil.deleteRecursive(expiryDirectory);
+    fileUtil.ensureFileExists(expiryDirectory);
+    try {
+      assertThatThrownBy(() -> store.save(resource, Duration.ofMinutes(1))).isInstanceOf(RuntimeIoException.class);
+    } finally {
+      fileUtil.delete(expiryDirectory);
+      fileUtil.mkdirs(expiryDirectory);
+    }
+    assertThat(store.ids().count()).isEqualTo(count);
+  }
+
+  /**
+   * Test of {@link AbstractBlobStoreFs#ids(String)}.
+   */
+  @Test
+  public void testIds() {
+
+    AbstractBlobStoreFs store = getBlobStore();
+    ClasspathResource resource = new ClasspathResource(AbstractBlobStoreFs.class, ".class", true);
+    Set<String> expected = new HashSet<>();
+    for (int i = 0; i < 20; i++) {
+      expected.add(store.save(resource).getId().toString());
+    }
+    Id<DataResource> id = store.save(new ClasspathResource(AbstractBlobStoreFsTest.class, ".class", true));
+    expected.add(id.getId().toString());
+
+    assertThat(store.ids().map(i -> i.getId().toString()).collect(Collectors.toSet())).isEqualTo(expected);
+    assertThat(store.ids().parallel().map(i -> i.getId().toString()).collect(Collectors.toList()))
+        .containsOnlyElementsOf(expected).hasSameSizeAs(expected);
+    String idString = id.getId().toString();
+    assertThat(store.ids(idString).map(i -> i.getId().toString())).containsExactly(idString);
+    String prefix = idString.substring(0, 3);
+    assertThat(store.ids(prefix).map(i -> i.getId().toString())).contains(idString).allMatch(i -> i.startsWith(prefix));
+    assertThat(store.ids("xyz")).isEmpty();
+  }
+
+  /**
+   * Test of {@link AbstractBlobStoreFs#forTenant(String)} with {@link TenantUsage} and quotas.
+   */
+  @Test
+  public void testTenantQuota() {
+
+    ClasspathResource resource = new ClasspathResource(AbstractBlobStoreFs.class, ".class", true);
+    long size = resource.getSize();
+    // the usage is persisted in the root directory so it has to be reset
+    resetDirectories();
+    String tenant = "tenant";
+    String other = "other";
+    BlobStoreQuotaConfigProperties quotaConfig = new BlobStoreQuotaConfigProperties();
+    quotaConfig.getMaxBytes().put(tenant, Long.valueOf(3 * size));
+    AbstractBlobStoreFs store = getBlobStore(quotaConfig);
+    BlobStore tenantStore = store.forTenant(tenant);
+    TenantUsage usage = store.getUsage(tenant);
+    TenantUsage otherUsage = store.getUsage(other);
+    assertThat(usage.getMaxBytes()).isEqualTo(3 * size);
+    assertThat(otherUsage.getMaxBytes()).isEqualTo(Long.MAX_VALUE);
+
+    Id<DataResource> id = tenantStore.save(resource);
+    assertThat(usage.getBytes()).isEqualTo(size);
+    assertThat(usage.getObjects()).isEqualTo(1);
+    Id<DataResource> id2 = tenantStore.save(resource);
+    Id<DataResource> otherId = store.forTenant(other).save(resource);
+    if (isReferenceCounting()) {
+      // duplicate is charged as object but its bytes only once per tenant
+      assertThat(usage.getBytes()).isEqualTo(size);
+      assertThat(usage.getObjects()).isEqualTo(2);
+      assertThat(otherUsage.getBytes()).isEqualTo(size);
+      assertThat(otherUsage.getObjects()).isEqualTo(1);
+    } else if (isDeduplicating()) {
+      // duplicate is the same BLOB owned by the first tenant
+      assertThat(usage.getBytes()).isEqualTo(size);
+      assertThat(usage.getObjects()).isEqualTo(1);
+      assertThat(otherUsage.getObjects()).isZero();
+    } else {
+      assertThat(usage.getBytes()).isEqualTo(2 * size);
+      assertThat(usage.getObjects()).isEqualTo(2);
+      assertThat(otherUsage.getObjects()).isEqualTo(1);
+    }
+
+    // rejected by size hint before anything is written to the income directory
+    long usedBytes = usage.getBytes();
+    byte[] data = new byte[(int) (3 * size)];
+    assertThatThrownBy(() -> tenantStore.save(new StreamResource(new ByteArrayInputStream(data), "big", data.length)))
+        .isInstanceOf(ValueOutOfRangeException.class);
+    // rejected while written as the size is unknown
+    assertThatThrownBy(() -> tenantStore.save(new StreamResource(new ByteArrayInputStream(data), "big", -1)))
+        .isInstanceOf(ValueOutOfRangeException.class);
+    for (BlobVolume volume : store.getVolumes()) {
+      assertThat(volume.getIncomeDirectory().list()).isEmpty();
+    }
+    assertThat(usage.getBytes()).isEqualTo(usedBytes);
+
+    // usage is restored from the ledger
+    store.close();
+    AbstractBlobStoreFs restarted = createBlobStore();
+    restarted.setConfig(getConfig());
+    restarted.setQuotaConfig(quotaConfig);
+    restarted.initialize();
+    BlobStore restartedTenantStore = restarted.forTenant(tenant);
+    TenantUsage restoredUsage = restarted.getUsage(tenant);
+    TenantUsage restoredOtherUsage = restarted.getUsage(other);
+    assertThat(restoredUsage.getBytes()).isEqualTo(usedBytes);
+    assertThat(restoredUsage.getObjects()).isEqualTo(usage.getObjects());
+    assertThat(restoredOtherUsage.getBytes()).isEqualTo(otherUsage.getBytes());
+    assertThat(restoredOtherUsage.getObjects()).isEqualTo(otherUsage.getObjects());
+
+    assertThat(restartedTenantStore.delete(id)).isTrue();
+    if (isReferenceCounting()) {
+      assertThat(restoredUsage.getBytes()).isEqualTo(size);
+      assertThat(restoredUsage.getObjects()).isEqualTo(1);
+      assertThat(restartedTenantStore.delete(id2)).isTrue();
+      assertThat(restoredOtherUsage.getBytes()).isEqualTo(size);
+    } else if (!isDeduplicating()) {
+      assertThat(restoredUsage.getBytes()).isEqualTo(size);
+      assertThat(restartedTenantStore.delete(id2)).isTrue();
+    }
+    assertThat(restoredUsage.getBytes()).isZero();
+    assertThat(restoredUsage.getObjects()).isZero();
+    restarted.delete(otherId);
+    assertThat(restoredOtherUsage.getBytes()).isZero();
+    assertThat(restoredOtherUsage.getObjects()).isZero();
+    restarted.close();
+  }
+
+  private void resetDirectories() {
+
+    BlobStoreFsConfigProperties config = getConfig();
+    List<String> directories = config.getDirectories();
+    if (directories.isEmpty()) {
+      directories = Collections.singletonList(config.getDirectory());
+    }
+    for (String directory : directories) {
+      FileUtilImpl.getInstance().deleteRecursive(new File(directory));
+    }
+  }
+
+  /**
+   * Test of {@link BlobStoreFsConfigProperties#isDedupVerify()} with a simulated hash collision.
+   *
+   * @throws Exception on error.
+   */
+  @Test
+  public void testDedupVerify() throws Exception {
+
+    if (!isDeduplicating()) {
+      return;
+    }
+    AbstractBlobStoreFs store = createBlobStore();
+    BlobStoreFsConfigProperties config = getConfig();
+    config.setDedupVerify(true);
+    store.setConfig(config);
+    store.initialize();
+    // unique content so previous runs do not interfere
+    byte[] data = ("collision test " + System.nanoTime()).getBytes(StandardCharsets.UTF_8);
+    Id<DataResource> id = store.save(new StreamResource(new ByteArrayInputStream(data), "blob", data.length));
+    Id<DataResource> duplicate = store.save(new StreamResource(new ByteArrayInputStream(data), "blob", data.length));
+    File blobFile = store.getBlobFile(store.asBlobId(id));
+    assertThat(store.getBlobFile(store.asBlobId(duplicate))).isEqualTo(blobFile);
+
+    // tamper the stored BLOB keeping its size so the next save has the same hash and size but different content
+    byte[] tampered = data.clone();
+    tampered[data.length - 1]++;
+    Files.write(blobFile.toPath(), tampered);
+    Id<DataResource> id2 = store.save(new StreamResource(new ByteArrayInputStream(data), "blob", data.length));
+    File blobFile2 = store.getBlobFile(store.asBlobId(id2));
+    assertThat(blobFile2).isNotEqualTo(blobFile);
+    assertThat(Files.readAllBytes(blobFile2.toPath())).isEqualTo(data);
+  }
+
+  /**
+   * Test of {@link AbstractBlobStoreFs#ingest(File)} for files on the same filesystem.
+   *
+   * @throws Exception on error.
+   */
+  @Test
+  public void testIngest() throws Exception {
+
+    AbstractBlobStoreFs store = getBlobStore();
+    // unique content so previous runs do not interfere
+    byte[] data = ("ingest test " + System.nanoTime()).getBytes(StandardCharsets.UTF_8);
+    File file = new File(store.getRootDirectory(), "ingest.tmp");
+    Files.write(file.toPath(), data);
+    Object fileKey = Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+    Id<DataResource> id = store.ingest(file);
+    assertThat(file).doesNotExist();
+    File blobFile = store.getBlobFile(store.asBlobId(id));
+    assertThat(Files.readAllBytes(blobFile.toPath())).isEqualTo(data);
+    if (fileKey != null) {
+      // moved via hard-link instead of copied
+      assertThat(Files.readAttributes(blobFile.toPath(), BasicFileAttributes.class).fileKey()).isEqualTo(fileKey);
+    }
+
+    // saved file still owned by the caller is copied so modifying it does not change the BLOB
+    byte[] data2 = ("ingest copy test " + System.nanoTime()).getBytes(StandardCharsets.UTF_8);
+    Files.write(file.toPath(), data2);
+    Id<DataResource> id2 = store.save(new FileResource(file));
+    assertThat(file).exists();
+    File blobFile2 = store.getBlobFile(store.asBlobId(id2));
+    assertThat(Files.isSameFile(file.toPath(), blobFile2.toPath())).isFalse();
+    Files.write(file.toPath(), data, StandardOpenOption.TRUNCATE_EXISTING);
+    assertThat(Files.readAllBytes(blobFile2.toPath())).isEqualTo(data2);
+    Files.delete(file.toPath());
+  }
+
+  /**
+   * Test of {@link AbstractBlobStoreFs#prefetch(java.util.Collection)}.
+   *
+   * @throws Exception on error.
+   */
+  @Test
+  public void testPrefetch() throws Exception {
+
+    AbstractBlobStoreFs store = getBlobStore();
+    List<Id<DataResource>> ids = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      byte[] data = ("prefetch test " + i + " " + System.nanoTime()).getBytes(StandardCharsets.UTF_8);
+      ids.add(store.save(new StreamResource(new ByteArrayInputStream(data), "blob", data.length)));
+    }
+    // missing BLOBs are ignored
+    Id<DataResource> deleted = ids.get(9);
+    assertThat(store.delete(deleted)).isTrue();
+    assertThat(store.prefetch(ids).get(10, TimeUnit.SECONDS)).isNull();
+    assertThat(store.prefetch(Collections.emptyList()).isDone()).isTrue();
+
+    CompletableFuture<Void> future = store.prefetch(ids);
+    future.cancel(false);
+    assertThat(future.isCancelled()).isTrue();
+    // remaining prefetches are skipped and release the I/O scheduler
+    for (int i = 0; (i < 100) && (store.getIoScheduler().getActive(IoClass.PREFETCH) > 0); i++) {
+      Thread.sleep(10);
+    }
+    assertThat(store.getIoScheduler().getActive(IoClass.PREFETCH)).isZero();
+
+    // failure of a single prefetch completes the future
+    CompletableFuture<Void> failed = store.prefetch(Arrays.asList(ids.get(0), null));
+    assertThatThrownBy(() -> failed.get(10, TimeUnit.SECONDS)).hasCauseInstanceOf(NullPointerException.class);
+
+    store.close();
+    assertThatThrownBy(() -> store.prefetch(ids).get(10, TimeUnit.SECONDS))
+        .hasCauseInstanceOf(IllegalStateException.class);
+  }
+
+  /**
+   * Test of {@link AbstractBlobStoreFs#pruneEmptyDirectories()}.
+   *
+   * @throws Exception on error.
+   */
+  @Test
+  public void testPruneEmptyDirectories() throws Exception {
+
+    AbstractBlobStoreFs store = getBlobStore();
+    byte[] data1 = ("prune test 1 " + System.nanoTime()).getBytes(StandardCharsets.UTF_8);
+    Id<DataResource> id1 = store.save(new StreamResource(new ByteArrayInputStream(data1), "blob1", data1.length));
+    byte[] data2 = ("prune test 2 " + System.nanoTime()).getBytes(StandardCharsets.UTF_8);
+    Id<DataResource> id2 = store.save(new StreamResource(new ByteArrayInputStream(data2), "blob2", data2.length));
+    File blobDirectory1 = store.getBlobFile(store.asBlobId(id1)).getParentFile();
+    assertThat(store.delete(id1)).isTrue();
+    assertThat(store.pruneEmptyDirectories()).isPositive();
+    assertThat(blobDirectory1).doesNotExist();
+    assertEquals(store.load(id2), new StreamResource(new ByteArrayInputStream(data2), "blob2", data2.length));
+    assertThat(store.delete(id2)).isTrue();
+    assertThat(store.pruneEmptyDirectories()).isPositive();
+    for (BlobVolume volume : store.getVolumes()) {
+      assertThat(volume.getDataDirectory()).isDirectory();
+      assertThat(volume.getDataDirectory().list()).isEmpty();
+    }
+    // directories of a pruned chain are created again
+    id1 = store.save(new StreamResource(new ByteArrayInputStream(data1), "blob1", data1.length));
+    assertThat(loadResource(store.load(id1))).isEqualTo(data1);
+    assertThat(store.pruneEmptyDirectories()).isZero();
+  }
+
+  /**
+   * Test of the recovery from the {@link IntentJournal} after a crash.
+   *
+   * @throws Exception on error.
+   */
+  @Test
+  public void testRecoverFromJournal() throws Exception {
+
+    AbstractBlobStoreFs store = getBlobStore();
+    ClasspathResource resource = new ClasspathResource(AbstractBlobStoreFs.class, ".class", true);
+    Id<DataResource> id = store.save(resource);
+    File blobFile = store.getBlobFile(store.asBlobId(id));
+    File partitionDirectory = store.getPartitionDirectory(blobFile);
+
+    // simulate a crash of an operation that wrote an income file and left an inconsistent partition
+    File incomeFile = new File(store.getIncomeDirectory(), "crashed");
+    FileUtilImpl.getInstance().ensureFileExists(incomeFile);
+    File orphan = new File(partitionDirectory, "orphan");
+    orphan.mkdirs();
+    if (isReferenceCounting()) {
+      FileUtilImpl.getInstance().ensureFileExists(new File(orphan, AbstractBlobStoreFs.FILE_BLOB));
+    }
+    File journalFile = store.getJournal().getFile();
+    String intents = "999 I " + incomeFile.getPath() + "\n999 P " + partitionDirectory.getPath() + "\n1000 I";
+    Files.write(journalFile.toPath(), intents.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    assertThat(IntentJournal.readPending(journalFile)).containsOnlyKeys(Long.valueOf(999));
+
+    AbstractBlobStoreFs restarted = createBlobStore();
+    restarted.setConfig(getConfig());
+    restarted.initialize();
+    assertThat(incomeFile).doesNotExist();
+    assertThat(orphan).doesNotExist();
+    assertThat(restarted.find(id).isAvailable()).isTrue();
+    assertThat(IntentJournal.readPending(journalFile)).isEmpty();
+    restarted.close();
+  }
+
+  /**
+   * Test of {@link AbstractBlobStoreFs#initialize()} applying or undoing the deltas of operations interrupted by a crash
+   * while updating the {@link QuotaLedger}.
+   */
+  @Test
+  public void testRecoverQuotaFromJournal() throws Exception {
+
+    resetDirectories();
+    AbstractBlobStoreFs store = getBlobStore();
+    ClasspathResource resource = new ClasspathResource(AbstractBlobStoreFs.class, ".class", true);
+    long size = resource.getSize();
+    String tenant = "tenant";
+    // charged with sequence number 1 of the fresh ledger
+    store.forTenant(tenant).save(resource);
+    store.forTenant(tenant).save(new StreamResource(new ByteArrayInputStream(new byte[] { 1, 2, 3 }), "other", 3));
+    TenantUsage usage = store.getUsage(tenant);
+    long bytes = usage.getBytes();
+    long objects = usage.getObjects();
+    store.close();
+
+    File journalFile = store.getJournal().getFile();
+    File missing = new File(journalFile.getParentFile(), "missing");
+    // 1: charge in the ledger whose file did not survive the crash has to be undone
+    // 2: charge whose file exists but the crash prevented the ledger update has to be applied
+    // 3: discharge whose file still exists and that did not update the ledger has to be ignored
+    String intents = "997 Q 1 " + tenant + " " + size + " 1 " + missing.getPath() + "\n" //
+        + "998 Q 1000 " + tenant + " 5 1 " + journalFile.getPath() + "\n" //
+        + "999 Q 1001 other -7 -1 " + journalFile.getPath() + "\n";
+    Files.write(journalFile.toPath(), intents.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+    AbstractBlobStoreFs restarted = createBlobStore();
+    restarted.setConfig(getConfig());
+    restarted.initialize();
+    TenantUsage recoveredUsage = restarted.getUsage(tenant);
+    assertThat(recoveredUsage.getBytes()).isEqualTo(bytes - size + 5);
+    assertThat(recoveredUsage.getObjects()).isEqualTo(objects);
+    assertThat(restarted.getUsage("other").getBytes()).isZero();
+    assertThat(restarted.getUsage("other").getObjects()).isZero();
+    assertThat(IntentJournal.readPending(journalFile)).isEmpty();
+    restarted.close();
+
+    // the recovered deltas have been persisted in the ledger
+    AbstractBlobStoreFs restartedAgain = createBlobStore();
+    restartedAgain.setConfig(getConfig());
+    restartedAgain.initialize();
+    assertThat(restartedAgain.getUsage(tenant).getBytes()).isEqualTo(bytes - size + 5);
+    assertThat(restartedAgain.getUsage(tenant).getObjects()).isEqualTo(objects);
+    restartedAgain.close();
+  }
+
+  /**
+   * Test of {@link AbstractBlobStoreFs#save(DataResource)} with a large BLOB of known size that is preallocated.
+   */
+  @Test
+  public void testSavePreallocated() {
+
+    AbstractBlobStoreFs store = getBlobStore();
+    byte[] data = new byte[3 * IncomeWriter.SMALL_SIZE + 17];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) (i * 31);
+    }
+    Id<DataResource> id = store.save(new StreamResource(new ByteArrayInputStream(data), "large", data.length));
+    DataResource blob = store.load(id);
+    assertThat(blob.getSize()).isEqualTo(data.length);
+    assertThat(loadResource(blob)).isEqualTo(data);
+    assertThat(store.delete(id)).isTrue();
+
+    // stream ends before the preallocated size is reached
+    byte[] truncated = Arrays.copyOf(data, 2 * IncomeWriter.SMALL_SIZE);
+    assertThatThrownBy(() -> store.save(new StreamResource(new ByteArrayInputStream(truncated), "large", data.length)))
+        .isInstanceOf(RuntimeIoException.class);
+    for (BlobVolume volume : store.getVolumes()) {
+      assertThat(volume.getIncomeDirectory().list()).isEmpty();
+    }
+  }
+
+  /**
+   * Test of {@link AbstractBlobStoreFs#map(Id)}.
+   */
+  @Test
+  public void testMap() {
+
+    AbstractBlobStoreFs store = getBlobStore();
+    ClasspathResource resource = new ClasspathResource(AbstractBlobStoreFs.class, ".class", true);
+    byte[] data = loadResource(resource);
+    Id<DataResource> id = store.save(resource);
+
+    BlobMapping mapping = store.map(id);
+    BlobMapping mapping2 = store.map(id);
+    assertThat(mapping.getSize()).isEqualTo(data.length);
+    assertThat(mapping.getSegmentCount()).isEqualTo(1);
+    ByteBuffer buffer = mapping.asByteBuffer();
+    assertThat(buffer.isReadOnly()).isTrue();
+    byte[] mapped = new byte[buffer.remaining()];
+    buffer.get(mapped);
+    assertThat(mapped).isEqualTo(data);
+    assertThat(mapping.get(data.length - 1)).isEqualTo(data[data.length - 1]);
+
+    mapping.close();
+    assertThat(mapping.isClosed()).isTrue();
+    assertThatThrownBy(() -> mapping.asByteBuffer()).isInstanceOf(IllegalStateException.class);
+    // shared mapping still valid for other handles
+    assertThat(mapping2.get(0)).isEqualTo(data[0]);
+    mapping2.close();
+    mapping2.close();
+
+    store.delete(id);
+    if (!isDeduplicating() || isReferenceCounting()) {
+      assertThatThrownBy(() -> store.map(id)).isInstanceOf(ObjectNotFoundException.class);
+    }
+  }
+
+  /**
+   * Test of {@link AbstractBlobStoreFs#beginUpload()} with parts written in parallel and a resumed upload.
+   */
+  @Test
+  public void testUpload() throws Exception {
+
+    AbstractBlobStoreFs store = getBlobStore();
+    ClasspathResource resource = new ClasspathResource(AbstractBlobStoreFs.class, ".class", true);
+    byte[] data = loadResource(resource);
+    int half = data.length / 2;
+
+    BlobUpload upload = store.beginUpload();
+    assertThat(upload.getReceivedRanges()).isEmpty();
+    Thread thread = new Thread(() -> upload.write(half, new ByteArrayInputStream(data, half, data.length - half)));
+    thread.start();
+    upload.write(0, new ByteArrayInputStream(data, 0, 10));
+    thread.join();
+    assertThat(upload.getReceivedRanges()).containsExactly(new BlobRange(0, 10), new BlobRange(half, data.length));
+    assertThatThrownBy(() -> upload.commit()).isInstanceOf(IllegalStateException.class);
+
+    BlobUpload resumed = store.resumeUpload(upload.getId());
+    // concurrent resumes share the session of the upload
+    assertThat(resumed).isSameAs(upload);
+    assertThat(resumed.getReceivedRanges()).isEqualTo(upload.getReceivedRanges());
+    resumed.write(10, new ByteArrayInputStream(data, 10, half - 10));
+    assertThat(resumed.getReceivedRanges()).containsExactly(new BlobRange(0, data.length));
+    Id<DataResource> id = resumed.commit();
+    assertEquals(store.load(id), resource);
+    assertThat(store.getIncomeDirectory().list()).isEmpty();
+    assertThatThrownBy(() -> store.resumeUpload(upload.getId())).isInstanceOf(ObjectNotFoundException.class);
+
+    Id<DataResource> id2 = store.save(resource);
+    if (isDeduplicating()) {
+      assertThat(store.load(id2).getUri()).isEqualTo(store.load(id).getUri());
+    } else {
+      assertThat(store.load(id2).getUri()).isNotEqualTo(store.load(id).getUri());
+    }
+
+    BlobUpload aborted = store.beginUpload();
+    aborted.write(0, new ByteArrayInputStream(data));
+    aborted.abort();
+    assertThat(store.getIncomeDirectory().list()).isEmpty();
+  }
+
+  /**
+   * Test of {@link AbstractBlobStoreFs#openForWrite()}.
+   */
+  @Test
+  public void testOpenForWrite() throws Exception {
+
+    AbstractBlobStoreFs store = getBlobStore();
+    ClasspathResource resource = new ClasspathResource(AbstractBlobStoreFs.class, ".class", true);
+    byte[] data = loadResource(resource);
+
+    BlobOutputStream out = store.openForWrite();
+    out.write(data, 0, 100);
+    out.write(data, 100, data.length - 100);
+    assertThat(out.getId()).isNull();
+    out.close();
+    Id<DataResource> id = out.getId();
+    assertThat(id).isNotNull();
+    assertEquals(store.load(id), resource);
+    assertThat(store.getIncomeDirectory().list()).isEmpty();
+
+    Id<DataResource> id2 = store.save(resource);
+    if (isDeduplicating()) {
+      assertThat(store.load(id2).getUri()).isEqualTo(store.load(id).getUri());
+    } else {
+      assertThat(store.load(id2).getUri()).isNotEqualTo(store.load(id).getUri());
+    }
+
+    BlobOutputStream aborted = store.openForWrite();
+    aborted.write(data);
+    aborted.abort();
+    aborted.close();
+    assertThat(aborted.getId()).isNull();
+    assertThat(store.getIncomeDirectory().list()).isEmpty();
+  }
+
   private void assertEquals(DataResource resource, DataResource expected) {
 
     assertThat(resource).isNotNull();
@@ -0,0 +1,66 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import net.sf.mmm.blob.api.BlobMapping;
+
+/**
+ * This is the test-case for {@link BlobComparator}.
+ *
+ * @author hohwille
+ */
+public class BlobComparatorTest extends Assertions {
+
+  /**
+   * Test of {@link BlobComparator#mismatch(ByteBuffer, ByteBuffer, int, int)}.
+   */
+  @Test
+  public void testMismatch() {
+
+    byte[] data = new byte[1027];
+    new Random(42).nextBytes(data);
+    ByteBuffer buffer = ByteBuffer.wrap(data);
+    assertThat(BlobComparator.mismatch(buffer, ByteBuffer.wrap(data.clone()), 0, data.length)).isEqualTo(-1);
+    // differences in the long stride, in the tail and at the very end
+    for (int index : new int[] { 0, 7, 8, 500, 1023, 1024, 1026 }) {
+      byte[] other = data.clone();
+      other[index]++;
+      assertThat(BlobComparator.mismatch(buffer, ByteBuffer.wrap(other), 0, data.length)).isEqualTo(index);
+      assertThat(BlobComparator.mismatch(buffer, ByteBuffer.wrap(other), index + 1, data.length)).isEqualTo(-1);
+    }
+    assertThat(BlobComparator.mismatch(buffer, ByteBuffer.wrap(data, 0, 100).slice(), 0, data.length)).isEqualTo(100);
+  }
+
+  /**
+   * Test of {@link BlobComparator#isEqual(BlobMapping, BlobMapping)}.
+   */
+  @Test
+  public void testIsEqual() {
+
+    byte[] data = new byte[(int) BlobComparator.SAMPLE_THRESHOLD + 13];
+    new Random(42).nextBytes(data);
+    BlobMapping mapping = map(data);
+    assertThat(BlobComparator.isEqual(mapping, map(data.clone()))).isTrue();
+    // difference outside of any sample block only found by full comparison
+    byte[] other = data.clone();
+    other[BlobComparator.SAMPLE_SIZE + 1]++;
+    assertThat(BlobComparator.isEqual(mapping, map(other))).isFalse();
+    other = data.clone();
+    other[data.length - 1]++;
+    assertThat(BlobComparator.isEqual(mapping, map(other))).isFalse();
+    assertThat(BlobComparator.isEqual(mapping, map(new byte[data.length - 1]))).isFalse();
+    assertThat(BlobComparator.isEqual(map(new byte[0]), map(new byte[0]))).isTrue();
+  }
+
+  private static BlobMapping map(byte[] data) {
+
+    return new BlobMapping(data.length, new ByteBuffer[] { ByteBuffer.wrap(data) });
+  }
+
+}
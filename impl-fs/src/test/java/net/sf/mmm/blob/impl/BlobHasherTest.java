@@ -0,0 +1,92 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+/**
+ * This is the test-case for {@link BlobHasher}.
+ *
+ * @author hohwille
+ */
+public class BlobHasherTest extends Assertions {
+
+  private static final String ALGORITHM = "MD5";
+
+  private static final int CHUNK_SIZE = 1000;
+
+  private static byte[] createData(int size) {
+
+    byte[] data = new byte[size];
+    new Random(size).nextBytes(data);
+    return data;
+  }
+
+  private static byte[] hash(BlobHasher hasher, byte[] data) throws IOException {
+
+    try (InputStream in = hasher.wrap(new ByteArrayInputStream(data))) {
+      byte[] buffer = new byte[333];
+      while (in.read(buffer) >= 0) {
+        // consume stream
+      }
+    }
+    return hasher.digest();
+  }
+
+  /**
+   * Test of {@link DigestMode#STREAM} and {@link DigestMode#PIPELINED} that have to produce the same hash.
+   */
+  @Test
+  public void testStreamAndPipelined() throws Exception {
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      for (int size : new int[] { 0, 1, CHUNK_SIZE - 1, CHUNK_SIZE, 10 * CHUNK_SIZE + 7 }) {
+        byte[] data = createData(size);
+        byte[] expected = MessageDigest.getInstance(ALGORITHM).digest(data);
+        BlobHasher stream = BlobHasher.of(ALGORITHM, DigestMode.STREAM, CHUNK_SIZE, 2, null);
+        assertThat(hash(stream, data)).isEqualTo(expected);
+        BlobHasher pipelined = BlobHasher.of(ALGORITHM, DigestMode.PIPELINED, CHUNK_SIZE, 2, executor);
+        assertThat(hash(pipelined, data)).isEqualTo(expected);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Test of {@link DigestMode#TREE} that has to produce the hash of the chunk hashes.
+   */
+  @Test
+  public void testTree() throws Exception {
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      byte[] data = createData(3 * CHUNK_SIZE + 42);
+      MessageDigest root = MessageDigest.getInstance(ALGORITHM);
+      for (int start = 0; start < data.length; start += CHUNK_SIZE) {
+        MessageDigest chunk = MessageDigest.getInstance(ALGORITHM);
+        chunk.update(data, start, Math.min(CHUNK_SIZE, data.length - start));
+        root.update(chunk.digest());
+      }
+      byte[] expected = root.digest();
+      BlobHasher tree = BlobHasher.of(ALGORITHM, DigestMode.TREE, CHUNK_SIZE, 4, executor);
+      assertThat(hash(tree, data)).isEqualTo(expected);
+      // the hash has to be stable
+      tree = BlobHasher.of(ALGORITHM, DigestMode.TREE, CHUNK_SIZE, 4, executor);
+      assertThat(hash(tree, data)).isEqualTo(expected);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+}
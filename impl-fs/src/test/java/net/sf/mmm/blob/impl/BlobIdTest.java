@@ -0,0 +1,50 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+/**
+ * This is the test-case for {@link BlobId}.
+ *
+ * @author hohwille
+ */
+@SuppressWarnings("javadoc")
+public class BlobIdTest extends Assertions {
+
+  /**
+   * Test of {@link BlobId#of(String)} with valid IDs.
+   */
+  @Test
+  public void testOf() {
+
+    BlobId id = BlobId.of("0f1e2d3c4b5a6978");
+    assertThat(id.getPartition()).isEqualTo("0f1e2d3c4b5a6978");
+    assertThat(id.getFolder()).isNull();
+    assertThat(id.getCopy()).isNull();
+    id = BlobId.of("0f1e2d3c/2#13");
+    assertThat(id.getPartition()).isEqualTo("0f1e2d3c");
+    assertThat(id.getFolder()).isEqualTo("2");
+    assertThat(id.getCopy()).isEqualTo("13");
+    assertThat(id.getId()).isEqualTo("0f1e2d3c/2#13");
+    id = BlobId.of("-5a6978#1");
+    assertThat(id.getPartition()).isEqualTo("-5a6978");
+    assertThat(id.getFolder()).isNull();
+    assertThat(id.getCopy()).isEqualTo("1");
+  }
+
+  /**
+   * Test of {@link BlobId#of(String)} with IDs that could point outside of the store.
+   */
+  @Test
+  public void testOfInvalid() {
+
+    for (String id : new String[] { "", "..", "../../../pwned", "..%2Fpwned", "a/../b", "a/b/c", "a//b", "a/",
+        "a#", "#1", "a#../..", "a#1/2", "a\\..\\b", "a.b", "a b", "\u00e4" }) {
+      assertThatThrownBy(() -> BlobId.of(id)).as(id).isInstanceOf(IllegalArgumentException.class);
+    }
+    assertThatThrownBy(() -> new BlobId("a", "..", null)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+}
@@ -0,0 +1,47 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import net.sf.mmm.util.file.api.FileUtil;
+import net.sf.mmm.util.file.api.FileUtilLimited;
+import net.sf.mmm.util.file.base.FileUtilImpl;
+
+/**
+ * Factory for empty {@link AbstractBlobStoreFs} instances used as members (tiers, replicas, shards) of composed
+ * {@link net.sf.mmm.blob.api.BlobStore}s in tests.
+ *
+ * @author hohwille
+ */
+final class BlobStoreFsFixture {
+
+  private BlobStoreFsFixture() {
+  }
+
+  /**
+   * @param name the unique name of the store used for its directory.
+   * @return a new initialized and empty {@link BlobStoreImplDeduplicatingFsWithRefCount}.
+   */
+  static AbstractBlobStoreFs create(String name) {
+
+    return create(new BlobStoreImplDeduplicatingFsWithRefCount(), name);
+  }
+
+  /**
+   * @param <S> the type of the store.
+   * @param store the new {@link AbstractBlobStoreFs} to configure and initialize.
+   * @param name the unique name of the store used for its directory.
+   * @return the given {@code store} initialized and emptied.
+   */
+  static <S extends AbstractBlobStoreFs> S create(S store, String name) {
+
+    BlobStoreFsConfigProperties config = new BlobStoreFsConfigProperties();
+    config.setDirectory(System.getProperty(FileUtilLimited.PROPERTY_TMP_DIR) + "/.blobs-" + name);
+    store.setConfig(config);
+    store.initialize();
+    FileUtil fileUtil = FileUtilImpl.getInstance();
+    fileUtil.deleteChildren(store.getIncomeDirectory());
+    fileUtil.deleteChildren(store.getDataDirectory());
+    return store;
+  }
+
+}
@@ -0,0 +1,88 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.sf.mmm.util.data.api.id.Id;
+import net.sf.mmm.util.file.api.FileUtilLimited;
+import net.sf.mmm.util.resource.api.DataResource;
+import net.sf.mmm.util.resource.base.ClasspathResource;
+
+/**
+ * The test-case for {@link BlobStoreImplDeduplicatingFsWithRefCount} striped across multiple
+ * {@link BlobStoreFsConfigProperties#getDirectories() directories}.
+ *
+ * @author hohwille
+ */
+public class BlobStoreImplDeduplicatingFsStripedTest extends BlobStoreImplDeduplicatingFsWithRefCountTest {
+
+  @Override
+  protected BlobStoreFsConfigProperties getConfig() {
+
+    BlobStoreFsConfigProperties config = super.getConfig();
+    String directory = System.getProperty(FileUtilLimited.PROPERTY_TMP_DIR) + "/.blobs-striped-";
+    config.setDirectories(Arrays.asList(directory + "1", directory + "2", directory + "3"));
+    return config;
+  }
+
+  /**
+   * Test that new BLOBs are committed on the {@link BlobVolume} they have been written to and that duplicates are
+   * detected on any {@link AbstractBlobStoreFs#getVolumes() volume}.
+   */
+  @Test
+  public void testStriping() {
+
+    AbstractBlobStoreFs store = getBlobStore();
+    List<BlobVolume> volumes = store.getVolumes();
+    assertThat(volumes).hasSize(3);
+    Class<?>[] types = { AbstractBlobStoreFs.class, BlobId.class, BlobVolume.class, Util.class, BlobHasher.class,
+        DigestMode.class, BlobStoreFsConfigProperties.class, BlobStoreImplSimpleFs.class };
+    BlobVolume income = volumes.get(2);
+    List<Id<DataResource>> ids = new ArrayList<>();
+    // make the other volumes busy so the income file is written to the last one
+    volumes.get(0).beginWrite();
+    volumes.get(1).beginWrite();
+    try {
+      for (Class<?> type : types) {
+        ClasspathResource resource = new ClasspathResource(type, ".class", true);
+        Id<DataResource> id = store.save(resource);
+        ids.add(id);
+        String path = Util.toPath(((BlobId) id).getPartition());
+        for (BlobVolume volume : volumes) {
+          assertThat(new File(volume.getDataDirectory(), path).isDirectory()).as(type + " on " + volume)
+              .isEqualTo(volume == income);
+        }
+        assertThat(store.load(id).getSize()).isEqualTo(resource.getSize());
+      }
+    } finally {
+      volumes.get(0).endWrite();
+      volumes.get(1).endWrite();
+    }
+    // now save duplicates while the volume holding them is busy
+    income.beginWrite();
+    try {
+      for (int i = 0; i < types.length; i++) {
+        Id<DataResource> id = store.save(new ClasspathResource(types[i], ".class", true));
+        BlobId blobId = (BlobId) id;
+        assertThat(blobId.getPartition()).isEqualTo(((BlobId) ids.get(i)).getPartition());
+        String path = Util.toPath(blobId.getPartition());
+        for (BlobVolume volume : volumes) {
+          assertThat(new File(volume.getDataDirectory(), path).isDirectory()).as(types[i] + " on " + volume)
+              .isEqualTo(volume == income);
+        }
+      }
+    } finally {
+      income.endWrite();
+    }
+    for (BlobVolume volume : volumes) {
+      assertThat(volume.getIncomeDirectory().list()).isEmpty();
+    }
+  }
+
+}
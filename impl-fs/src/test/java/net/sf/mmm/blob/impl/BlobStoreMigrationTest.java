@@ -0,0 +1,103 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import net.sf.mmm.util.data.api.id.Id;
+import net.sf.mmm.util.file.api.FileUtilLimited;
+import net.sf.mmm.util.file.base.FileUtilImpl;
+import net.sf.mmm.util.io.base.StreamUtilImpl;
+import net.sf.mmm.util.resource.api.DataResource;
+import net.sf.mmm.util.resource.base.StreamResource;
+
+/**
+ * This is the test-case for {@link BlobStoreMigration}.
+ *
+ * @author hohwille
+ */
+public class BlobStoreMigrationTest extends Assertions {
+
+  private static AbstractBlobStoreFs createStore(AbstractBlobStoreFs store, String name) {
+
+    String directory = System.getProperty(FileUtilLimited.PROPERTY_TMP_DIR) + "/.blobs-migration/" + name;
+    BlobStoreFsConfigProperties config = new BlobStoreFsConfigProperties();
+    config.setDirectory(directory);
+    store.setConfig(config);
+    store.initialize();
+    return store;
+  }
+
+  private static Id<DataResource> save(AbstractBlobStoreFs store, String content) {
+
+    byte[] data = content.getBytes(StandardCharsets.UTF_8);
+    return store.save(new StreamResource(new ByteArrayInputStream(data), content, data.length));
+  }
+
+  private static String load(AbstractBlobStoreFs store, Id<DataResource> id) {
+
+    return StreamUtilImpl.getInstance().read(new InputStreamReader(store.load(id).openStream(), StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Test of {@link BlobStoreMigration#migrate(File)} from {@link BlobStoreImplSimpleFs} to
+   * {@link BlobStoreImplDeduplicatingFsWithRefCount} including resume.
+   *
+   * @throws Exception on error.
+   */
+  @Test
+  public void testMigrate() throws Exception {
+
+    File root = new File(System.getProperty(FileUtilLimited.PROPERTY_TMP_DIR), ".blobs-migration");
+    FileUtilImpl.getInstance().deleteRecursive(root);
+    AbstractBlobStoreFs source = createStore(new BlobStoreImplSimpleFs(), "source");
+    AbstractBlobStoreFs target = createStore(new BlobStoreImplDeduplicatingFsWithRefCount(), "target");
+    Map<String, String> contents = new HashMap<>();
+    for (String content : new String[] { "alpha", "beta", "alpha", "gamma", "alpha" }) {
+      contents.put(save(source, content).getId().toString(), content);
+    }
+    File mappingFile = new File(root, "mapping.txt");
+    // simulate a previous run interrupted while writing a line
+    Files.write(mappingFile.toPath(), "torn".getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE);
+
+    BlobStoreMigrationConfigProperties config = new BlobStoreMigrationConfigProperties();
+    config.setThreads(3);
+    BlobStoreMigration migration = new BlobStoreMigration(source, target);
+    migration.setConfig(config);
+    migration.initialize();
+    assertThat(migration.migrate(mappingFile)).isEqualTo(5);
+
+    List<String> lines = Files.readAllLines(mappingFile.toPath(), StandardCharsets.UTF_8);
+    Map<String, String> mapping = lines.stream().filter(l -> l.contains(" "))
+        .collect(Collectors.toMap(l -> l.substring(0, l.indexOf(' ')), l -> l.substring(l.indexOf(' ') + 1)));
+    assertThat(mapping.keySet()).isEqualTo(contents.keySet());
+    for (Map.Entry<String, String> entry : mapping.entrySet()) {
+      assertThat(load(target, target.createId(entry.getValue()))).isEqualTo(contents.get(entry.getKey()));
+    }
+    // duplicates are only stored once but referenced individually
+    assertThat(target.ids().count()).isEqualTo(5);
+    assertThat(target.ids().map(id -> target.getBlobFile(target.asBlobId(id))).distinct().count()).isEqualTo(3);
+    // source remains untouched
+    assertThat(source.ids().count()).isEqualTo(5);
+
+    // resume: only new BLOBs are migrated
+    Id<DataResource> id = save(source, "delta");
+    config.setDeleteSource(true);
+    assertThat(migration.migrate(mappingFile)).isEqualTo(1);
+    assertThat(source.find(id).isAvailable()).isFalse();
+    assertThat(target.ids().count()).isEqualTo(6);
+  }
+
+}
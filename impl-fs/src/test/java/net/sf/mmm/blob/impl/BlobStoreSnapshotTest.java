@@ -0,0 +1,100 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import net.sf.mmm.util.data.api.id.Id;
+import net.sf.mmm.util.file.api.FileUtilLimited;
+import net.sf.mmm.util.file.base.FileUtilImpl;
+import net.sf.mmm.util.io.base.StreamUtilImpl;
+import net.sf.mmm.util.resource.api.DataResource;
+import net.sf.mmm.util.resource.base.StreamResource;
+
+/**
+ * This is the test-case for {@link BlobStoreSnapshot}.
+ *
+ * @author hohwille
+ */
+public class BlobStoreSnapshotTest extends Assertions {
+
+  private static final File ROOT = new File(System.getProperty(FileUtilLimited.PROPERTY_TMP_DIR), ".blobs-snapshot");
+
+  private static AbstractBlobStoreFs createStore(String name) {
+
+    BlobStoreFsConfigProperties config = new BlobStoreFsConfigProperties();
+    config.setDirectory(new File(ROOT, name).getPath());
+    AbstractBlobStoreFs store = new BlobStoreImplDeduplicatingFsWithRefCount();
+    store.setConfig(config);
+    store.initialize();
+    return store;
+  }
+
+  private static void save(AbstractBlobStoreFs store, String content, Map<String, String> contents) {
+
+    byte[] data = content.getBytes(StandardCharsets.UTF_8);
+    Id<DataResource> id = store.save(new StreamResource(new ByteArrayInputStream(data), content, data.length));
+    contents.put(id.getId().toString(), content);
+  }
+
+  private static BlobStoreSnapshot createSnapshot(AbstractBlobStoreFs store) {
+
+    BlobStoreSnapshotConfigProperties config = new BlobStoreSnapshotConfigProperties();
+    config.setThreads(3);
+    BlobStoreSnapshot snapshot = new BlobStoreSnapshot(store);
+    snapshot.setConfig(config);
+    snapshot.initialize();
+    return snapshot;
+  }
+
+  /**
+   * Test of {@link BlobStoreSnapshot#export(File, String, String)} with a full and an incremental snapshot and
+   * {@link BlobStoreSnapshot#restore(File, String)} into an empty store.
+   *
+   * @throws Exception on error.
+   */
+  @Test
+  public void testExportAndRestore() throws Exception {
+
+    FileUtilImpl.getInstance().deleteRecursive(ROOT);
+    AbstractBlobStoreFs store = createStore("source");
+    Map<String, String> contents = new HashMap<>();
+    save(store, "alpha", contents);
+    save(store, "beta", contents);
+    save(store, "alpha", contents);
+    File directory = new File(ROOT, "snapshots");
+    BlobStoreSnapshot snapshot = createSnapshot(store);
+    // duplicates are only written once
+    assertThat(snapshot.export(directory, "s1", null)).isEqualTo(2);
+    save(store, "gamma", contents);
+    save(store, "alpha", contents);
+    // only new content is written
+    assertThat(snapshot.export(directory, "s2", "s1")).isEqualTo(1);
+    assertThat(Files.readAllLines(new File(directory, "s2" + BlobStoreSnapshot.SUFFIX_MANIFEST).toPath())).hasSize(5);
+    assertThat(new File(directory, "s2" + BlobStoreSnapshot.SUFFIX_ARCHIVE).length()).isEqualTo("gamma".length());
+    assertThatThrownBy(() -> snapshot.export(directory, "s2", "s1")).isInstanceOf(IllegalArgumentException.class);
+
+    AbstractBlobStoreFs target = createStore("target");
+    BlobStoreSnapshot restore = createSnapshot(target);
+    assertThat(restore.restore(directory, "s2")).isEqualTo(5);
+    for (Map.Entry<String, String> entry : contents.entrySet()) {
+      DataResource blob = target.load(target.createId(entry.getKey()));
+      assertThat(StreamUtilImpl.getInstance().read(new InputStreamReader(blob.openStream(), StandardCharsets.UTF_8)))
+          .isEqualTo(entry.getValue());
+    }
+    assertThat(target.ids().count()).isEqualTo(5);
+    assertThat(target.stat(target.createId(contents.keySet().iterator().next())).getHash()).isNotNull();
+    // restore is idempotent
+    assertThat(restore.restore(directory, "s2")).isEqualTo(0);
+  }
+
+}
@@ -0,0 +1,60 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Random;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+/**
+ * This is the test-case for {@link IncomeWriter}.
+ *
+ * @author hohwille
+ */
+public class IncomeWriterTest extends Assertions {
+
+  /**
+   * Test of {@link IncomeWriter#write(java.io.InputStream, java.io.OutputStream, long)} for the different size classes.
+   *
+   * @throws Exception on error.
+   */
+  @Test
+  public void testWrite() throws Exception {
+
+    for (int size : new int[] { 0, 1, IncomeWriter.SMALL_SIZE, IncomeWriter.SMALL_SIZE + 1,
+        (int) IncomeWriter.LARGE_SIZE + 3 }) {
+      byte[] data = new byte[size];
+      new Random(size).nextBytes(data);
+      assertThat(write(data, size)).as("size " + size).isEqualTo(data);
+      assertThat(write(data, -1)).as("unknown size " + size).isEqualTo(data);
+    }
+  }
+
+  /**
+   * Test of {@link IncomeWriter#write(java.io.InputStream, java.io.OutputStream, long)} with data deviating from the
+   * size hint.
+   */
+  @Test
+  public void testWriteSizeMismatch() {
+
+    byte[] data = new byte[1000];
+    assertThatThrownBy(() -> write(data, 999)).isInstanceOf(IOException.class).hasMessageContaining("exceeds");
+    assertThatThrownBy(() -> write(data, 1001)).isInstanceOf(EOFException.class);
+    assertThatThrownBy(() -> write(new byte[100000], 99999)).isInstanceOf(IOException.class);
+    assertThatThrownBy(() -> write(new byte[100000], 100001)).isInstanceOf(EOFException.class);
+  }
+
+  private static byte[] write(byte[] data, long sizeHint) throws IOException {
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    long size = IncomeWriter.write(new ByteArrayInputStream(data), out, sizeHint);
+    assertThat(size).isEqualTo(data.length);
+    return out.toByteArray();
+  }
+
+}
@@ -0,0 +1,157 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import net.sf.mmm.util.data.api.id.Id;
+import net.sf.mmm.util.file.api.FileUtilLimited;
+import net.sf.mmm.util.file.base.FileUtilImpl;
+import net.sf.mmm.util.resource.api.DataResource;
+import net.sf.mmm.util.resource.base.ClasspathResource;
+
+/**
+ * The test-case for {@link IoScheduler}.
+ *
+ * @author hohwille
+ */
+public class IoSchedulerTest extends Assertions {
+
+  private static long measure(IoScheduler scheduler, IoClass ioClass, long bytes) throws Exception {
+
+    long start = System.nanoTime();
+    scheduler.consume(ioClass, bytes);
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+  }
+
+  /**
+   * Test of the bandwidth budget and the priority of {@link IoClass#INTERACTIVE_READ}.
+   *
+   * @throws Exception on error.
+   */
+  @Test
+  public void testBandwidth() throws Exception {
+
+    BlobStoreIoConfigProperties config = new BlobStoreIoConfigProperties();
+    config.setSaveBandwidth(1_000_000);
+    IoScheduler scheduler = new IoScheduler(config);
+    assertThat(scheduler.isLimited(IoClass.BULK_SAVE)).isTrue();
+    assertThat(scheduler.isLimited(IoClass.INTERACTIVE_READ)).isFalse();
+    assertThat(scheduler.isScheduled(IoClass.INTERACTIVE_READ)).isTrue();
+
+    // burst of one second is available immediately
+    assertThat(measure(scheduler, IoClass.BULK_SAVE, 1_000_000)).isLessThan(100);
+    assertThat(measure(scheduler, IoClass.BULK_SAVE, 200_000)).isBetween(150L, 1000L);
+    assertThat(measure(scheduler, IoClass.INTERACTIVE_READ, 10_000_000)).isLessThan(100);
+
+    // while reading the background bandwidth is reduced to 25%
+    scheduler.begin(IoClass.INTERACTIVE_READ);
+    assertThat(measure(scheduler, IoClass.BULK_SAVE, 100_000)).isBetween(300L, 2000L);
+    scheduler.end(IoClass.INTERACTIVE_READ);
+    assertThat(scheduler.getActive(IoClass.INTERACTIVE_READ)).isZero();
+  }
+
+  /**
+   * Test of the concurrency budget.
+   *
+   * @throws Exception on error.
+   */
+  @Test
+  public void testConcurrency() throws Exception {
+
+    BlobStoreIoConfigProperties config = new BlobStoreIoConfigProperties();
+    config.setMaintenanceConcurrency(1);
+    IoScheduler scheduler = new IoScheduler(config);
+    scheduler.begin(IoClass.MAINTENANCE);
+    Thread thread = new Thread(() -> {
+      try {
+        scheduler.begin(IoClass.MAINTENANCE);
+        scheduler.end(IoClass.MAINTENANCE);
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    thread.start();
+    thread.join(200);
+    assertThat(thread.isAlive()).isTrue();
+    scheduler.end(IoClass.MAINTENANCE);
+    thread.join(5000);
+    assertThat(thread.isAlive()).isFalse();
+    assertThat(scheduler.getActive(IoClass.MAINTENANCE)).isZero();
+  }
+
+  /**
+   * Test of {@link AbstractBlobStoreFs} with an {@link IoScheduler}.
+   *
+   * @throws Exception on error.
+   */
+  @Test
+  public void testStore() throws Exception {
+
+    BlobStoreFsConfigProperties config = new BlobStoreFsConfigProperties();
+    String directory = System.getProperty(FileUtilLimited.PROPERTY_TMP_DIR) + "/.blobs-io";
+    config.setDirectory(directory);
+    FileUtilImpl.getInstance().deleteRecursive(new File(directory));
+    BlobStoreIoConfigProperties ioConfig = new BlobStoreIoConfigProperties();
+    ioConfig.setReadConcurrency(2);
+    ioConfig.setSaveBandwidth(10_000_000);
+    BlobStoreImplSimpleFs store = new BlobStoreImplSimpleFs();
+    store.setConfig(config);
+    store.setIoConfig(ioConfig);
+    store.initialize();
+
+    ClasspathResource resource = new ClasspathResource(AbstractBlobStoreFs.class, ".class", true);
+    Id<DataResource> id = store.save(resource);
+    assertThat(store.getIoScheduler().getActive(IoClass.BULK_SAVE)).isZero();
+    DataResource blob = store.load(id);
+    assertThat(blob).isInstanceOf(ScheduledFileResource.class);
+    try (InputStream in = blob.openStream()) {
+      assertThat(store.getIoScheduler().getActive(IoClass.INTERACTIVE_READ)).isEqualTo(1);
+      long size = 0;
+      byte[] buffer = new byte[4096];
+      for (int count = in.read(buffer); count >= 0; count = in.read(buffer)) {
+        size += count;
+      }
+      assertThat(size).isEqualTo(resource.getSize());
+    }
+    assertThat(store.getIoScheduler().getActive(IoClass.INTERACTIVE_READ)).isZero();
+  }
+
+  /**
+   * Test that {@link IoClass#INTERACTIVE_READ interactive reads} are counted if only the bandwidth of saving is limited
+   * so the {@link BlobStoreIoConfigProperties#getBackgroundShare() background share} applies.
+   *
+   * @throws Exception on error.
+   */
+  @Test
+  public void testStoreWithThrottledSaveOnly() throws Exception {
+
+    BlobStoreFsConfigProperties config = new BlobStoreFsConfigProperties();
+    String directory = System.getProperty(FileUtilLimited.PROPERTY_TMP_DIR) + "/.blobs-io-save";
+    config.setDirectory(directory);
+    FileUtilImpl.getInstance().deleteRecursive(new File(directory));
+    BlobStoreIoConfigProperties ioConfig = new BlobStoreIoConfigProperties();
+    ioConfig.setSaveBandwidth(10_000_000);
+    BlobStoreImplSimpleFs store = new BlobStoreImplSimpleFs();
+    store.setConfig(config);
+    store.setIoConfig(ioConfig);
+    store.initialize();
+
+    ClasspathResource resource = new ClasspathResource(AbstractBlobStoreFs.class, ".class", true);
+    Id<DataResource> id = store.save(resource);
+    IoScheduler scheduler = store.getIoScheduler();
+    assertThat(scheduler.isLimited(IoClass.INTERACTIVE_READ)).isFalse();
+    try (InputStream in = store.load(id).openStream()) {
+      assertThat(scheduler.getActive(IoClass.INTERACTIVE_READ)).isEqualTo(1);
+      assertThat(in.read()).isGreaterThanOrEqualTo(0);
+    }
+    assertThat(scheduler.getActive(IoClass.INTERACTIVE_READ)).isZero();
+    store.close();
+  }
+
+}
@@ -0,0 +1,135 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import net.sf.mmm.util.data.api.id.Id;
+import net.sf.mmm.util.resource.api.DataResource;
+import net.sf.mmm.util.resource.base.ClasspathResource;
+
+/**
+ * The test-case for {@link ReplicatingBlobStore}.
+ *
+ * @author hohwille
+ */
+public class ReplicatingBlobStoreTest extends Assertions {
+
+  private static void awaitRepairs(ReplicatingBlobStore store) throws InterruptedException {
+
+    for (int i = 0; (i < 100) && (store.getPendingRepairs() > 0); i++) {
+      Thread.sleep(50);
+    }
+    assertThat(store.getPendingRepairs()).isZero();
+  }
+
+  /**
+   * Test of replication with de-duplicating replicas that create identical {@link Id}s including repair of a missing
+   * replica.
+   *
+   * @throws Exception on error.
+   */
+  @Test
+  public void testDeduplicatingReplicas() throws Exception {
+
+    AbstractBlobStoreFs replica1 = BlobStoreFsFixture.create(new BlobStoreImplDeduplicatingFsWithRefCount(), "replica-1");
+    AbstractBlobStoreFs replica2 = BlobStoreFsFixture.create(new BlobStoreImplDeduplicatingFsWithRefCount(), "replica-2");
+    ReplicatingBlobStore store = new ReplicatingBlobStore(replica1, replica2);
+    store.initialize();
+
+    ClasspathResource resource = new ClasspathResource(ReplicatingBlobStore.class, ".class", true);
+    Id<DataResource> id = store.save(resource);
+    assertThat(id.getId().toString()).doesNotContain(",");
+    assertThat(replica1.find(id).getSize()).isEqualTo(resource.getSize());
+    assertThat(replica2.find(id).getSize()).isEqualTo(resource.getSize());
+
+    // lose replica and repair it on read
+    assertThat(replica2.delete(id)).isTrue();
+    assertThat(replica2.find(id).isAvailable()).isFalse();
+    for (int i = 0; i < 3; i++) {
+      assertThat(store.load(id).getSize()).isEqualTo(resource.getSize());
+    }
+    awaitRepairs(store);
+    assertThat(replica2.find(id).getSize()).isEqualTo(resource.getSize());
+
+    assertThat(store.delete(id)).isTrue();
+    assertThat(store.find(id).isAvailable()).isFalse();
+    assertThat(replica1.find(id).isAvailable()).isFalse();
+    assertThat(replica2.find(id).isAvailable()).isFalse();
+    store.close();
+  }
+
+  /**
+   * Test of replication with replicas that create individual {@link Id}s.
+   */
+  @Test
+  public void testSimpleReplicas() {
+
+    AbstractBlobStoreFs replica1 = BlobStoreFsFixture.create(new BlobStoreImplSimpleFs(), "replica-3");
+    AbstractBlobStoreFs replica2 = BlobStoreFsFixture.create(new BlobStoreImplSimpleFs(), "replica-4");
+    AbstractBlobStoreFs replica3 = BlobStoreFsFixture.create(new BlobStoreImplSimpleFs(), "replica-5");
+    ReplicatingBlobStore store = new ReplicatingBlobStore(replica1, replica2, replica3);
+    BlobStoreReplicatingConfigProperties config = new BlobStoreReplicatingConfigProperties();
+    config.setWriteQuorum(3);
+    store.setConfig(config);
+    store.initialize();
+
+    ClasspathResource resource = new ClasspathResource(ReplicatingBlobStore.class, ".class", true);
+    Id<DataResource> id = store.save(resource);
+    Id<DataResource> id2 = store.createId(id.getId().toString());
+    assertThat(store.load(id2).getSize()).isEqualTo(resource.getSize());
+    assertThat(store.delete(id2)).isTrue();
+    assertThat(store.find(id).isAvailable()).isFalse();
+    assertThat(store.delete(id)).isFalse();
+    store.close();
+  }
+
+  /**
+   * Test that a slow replica does not delay a save once the write quorum is reached and is repaired instead.
+   *
+   * @throws Exception on error.
+   */
+  @Test
+  public void testSlowReplica() throws Exception {
+
+    CountDownLatch latch = new CountDownLatch(1);
+    AbstractBlobStoreFs replica1 = BlobStoreFsFixture.create(new BlobStoreImplSimpleFs(), "replica-6");
+    AbstractBlobStoreFs replica2 = BlobStoreFsFixture.create(new BlobStoreImplSimpleFs(), "replica-7");
+    AbstractBlobStoreFs slowReplica = BlobStoreFsFixture.create(new BlobStoreImplSimpleFs() {
+
+      @Override
+      public Id<DataResource> save(DataResource blob) {
+
+        try {
+          latch.await();
+        } catch (InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+        return super.save(blob);
+      }
+    }, "replica-8");
+    ReplicatingBlobStore store = new ReplicatingBlobStore(replica1, replica2, slowReplica);
+    store.initialize();
+
+    ClasspathResource resource = new ClasspathResource(ReplicatingBlobStore.class, ".class", true);
+    Id<DataResource> id = store.save(resource);
+    String[] ids = id.getId().toString().split(",");
+    assertThat(ids).hasSize(3);
+    assertThat(slowReplica.find(slowReplica.createId(ids[2])).isAvailable()).isFalse();
+
+    // the slow replica has been detached and is repaired with the expected ID instead of saving its own copy
+    latch.countDown();
+    for (int i = 0; (i < 100) && !slowReplica.find(slowReplica.createId(ids[2])).isAvailable(); i++) {
+      Thread.sleep(50);
+    }
+    awaitRepairs(store);
+    assertThat(slowReplica.find(slowReplica.createId(ids[2])).getSize()).isEqualTo(resource.getSize());
+    assertThat(slowReplica.ids("").count()).isEqualTo(1);
+    assertThat(store.delete(id)).isTrue();
+    store.close();
+  }
+
+}
@@ -0,0 +1,118 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import net.sf.mmm.util.data.api.id.Id;
+import net.sf.mmm.util.resource.api.DataResource;
+import net.sf.mmm.util.resource.base.StreamResource;
+
+/**
+ * The test-case for {@link ShardedBlobStore}.
+ *
+ * @author hohwille
+ */
+public class ShardedBlobStoreTest extends Assertions {
+
+  private static DataResource createBlob(int i) {
+
+    byte[] data = ("BLOB number " + i).getBytes(StandardCharsets.UTF_8);
+    return new StreamResource(new ByteArrayInputStream(data), "blob" + i, data.length);
+  }
+
+  private static int countShards(List<AbstractBlobStoreFs> shards, Id<DataResource> id) {
+
+    int count = 0;
+    for (AbstractBlobStoreFs shard : shards) {
+      if (shard.find(id).isAvailable()) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Test of distribution, de-duplication across shards and rebalancing after adding a shard.
+   *
+   * @throws Exception on error.
+   */
+  @Test
+  public void testShardingAndRebalancing() throws Exception {
+
+    AbstractBlobStoreFs shard1 = BlobStoreFsFixture.create("shard-1");
+    AbstractBlobStoreFs shard2 = BlobStoreFsFixture.create("shard-2");
+    ShardedBlobStore store = new ShardedBlobStore(shard1, shard2);
+    store.initialize();
+
+    List<Id<DataResource>> ids = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      ids.add(store.save(createBlob(i)));
+    }
+    List<AbstractBlobStoreFs> shards = store.getShards();
+    for (Id<DataResource> id : ids) {
+      assertThat(countShards(shards, id)).isEqualTo(1);
+      String partition = ((BlobId) id).getPartition();
+      assertThat(store.getOwner(partition).find(id).isAvailable()).isTrue();
+    }
+    assertThat(shard1.scanPartitions(shard1.getVolumes().get(0))).isNotEmpty();
+    assertThat(shard2.scanPartitions(shard2.getVolumes().get(0))).isNotEmpty();
+
+    // identical content is routed to the same shard no matter which shard received it
+    Id<DataResource> duplicate1 = store.save(createBlob(0));
+    Id<DataResource> duplicate2 = store.save(createBlob(0));
+    assertThat(((BlobId) duplicate1).getPartition()).isEqualTo(((BlobId) ids.get(0)).getPartition());
+    assertThat(((BlobId) duplicate2).getPartition()).isEqualTo(((BlobId) ids.get(0)).getPartition());
+    assertThat(countShards(shards, duplicate1)).isEqualTo(1);
+    assertThat(countShards(shards, duplicate2)).isEqualTo(1);
+
+    // add shard
+    AbstractBlobStoreFs shard3 = BlobStoreFsFixture.create("shard-3");
+    int moved = store.addShard(shard3).get().intValue();
+    assertThat(moved).isPositive();
+    assertThat(shard3.scanPartitions(shard3.getVolumes().get(0))).hasSize(moved);
+    for (Id<DataResource> id : ids) {
+      assertThat(store.find(id).isAvailable()).isTrue();
+      assertThat(countShards(shards, id)).isEqualTo(1);
+    }
+    assertThat(store.rebalance()).isEqualTo(0);
+    assertThat(store.ids().parallel().count()).isEqualTo(ids.size() + 2);
+
+    for (Id<DataResource> id : ids) {
+      assertThat(store.delete(id)).isTrue();
+      assertThat(store.find(id).isAvailable()).isFalse();
+    }
+    assertThat(store.delete(duplicate1)).isTrue();
+    assertThat(store.delete(duplicate2)).isTrue();
+    store.close();
+  }
+
+  /**
+   * Test that a shard of a store that is not content addressed only generates partitions it owns so the BLOBs never
+   * have to be moved on commit.
+   */
+  @Test
+  public void testShardOwnsGeneratedPartitions() {
+
+    AbstractBlobStoreFs shard1 = BlobStoreFsFixture.create(new BlobStoreImplSimpleFs(), "shard-simple-1");
+    AbstractBlobStoreFs shard2 = BlobStoreFsFixture.create(new BlobStoreImplSimpleFs(), "shard-simple-2");
+    ShardedBlobStore store = new ShardedBlobStore(shard1, shard2);
+    store.initialize();
+
+    for (int i = 0; i < 20; i++) {
+      Id<DataResource> id = shard1.save(createBlob(i));
+      String partition = ((BlobId) id).getPartition();
+      assertThat(store.getOwner(partition)).isSameAs(shard1);
+      assertThat(shard1.find(id).isAvailable()).isTrue();
+      assertThat(store.delete(id)).isTrue();
+    }
+    store.close();
+  }
+
+}
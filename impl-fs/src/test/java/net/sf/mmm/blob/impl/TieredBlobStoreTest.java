@@ -0,0 +1,79 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl;
+
+import java.time.Duration;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import net.sf.mmm.util.data.api.id.Id;
+import net.sf.mmm.util.resource.api.DataResource;
+import net.sf.mmm.util.resource.base.ClasspathResource;
+
+/**
+ * The test-case for {@link TieredBlobStore}.
+ *
+ * @author hohwille
+ */
+public class TieredBlobStoreTest extends Assertions {
+
+  /**
+   * Test of demotion and promotion with stable {@link Id}s.
+   */
+  @Test
+  public void testDemoteAndPromote() {
+
+    AbstractBlobStoreFs fast = BlobStoreFsFixture.create("tier-fast");
+    AbstractBlobStoreFs capacity = BlobStoreFsFixture.create("tier-capacity");
+    TieredBlobStore store = new TieredBlobStore(fast, capacity);
+    BlobStoreTieredConfigProperties config = new BlobStoreTieredConfigProperties();
+    config.setDemoteAfter(Duration.ZERO);
+    config.setMoverInterval(Duration.ZERO);
+    config.setPromoteThreshold(2);
+    store.setConfig(config);
+    store.initialize();
+
+    ClasspathResource resource = new ClasspathResource(TieredBlobStore.class, ".class", true);
+    Id<DataResource> id = store.save(resource);
+    assertThat(fast.find(id).isAvailable()).isTrue();
+    assertThat(capacity.find(id).isAvailable()).isFalse();
+
+    // not read, hence demoted
+    assertThat(store.relocate()).isEqualTo(1);
+    assertThat(fast.find(id).isAvailable()).isFalse();
+    assertThat(capacity.find(id).isAvailable()).isTrue();
+    assertThat(store.load(id).getSize()).isEqualTo(resource.getSize());
+
+    // frequently read, hence promoted
+    store.load(id);
+    store.load(id);
+    config.setDemoteAfter(Duration.ofDays(1));
+    assertThat(store.relocate()).isEqualTo(1);
+    assertThat(fast.find(id).isAvailable()).isTrue();
+    assertThat(capacity.find(id).isAvailable()).isFalse();
+
+    // recently read, hence not demoted even if written long ago
+    assertThat(fast.getBlobFile((BlobId) id).setLastModified(System.currentTimeMillis() - Duration.ofDays(2).toMillis()))
+        .isTrue();
+    assertThat(store.relocate()).isEqualTo(0);
+    assertThat(fast.find(id).isAvailable()).isTrue();
+
+    // save of duplicate promotes demoted partition
+    config.setDemoteAfter(Duration.ZERO);
+    assertThat(store.relocate()).isEqualTo(1);
+    assertThat(capacity.find(id).isAvailable()).isTrue();
+    Id<DataResource> id2 = store.save(resource);
+    assertThat(((BlobId) id2).getPartition()).isEqualTo(((BlobId) id).getPartition());
+    assertThat(id2).isNotEqualTo(id);
+    assertThat(fast.find(id).isAvailable()).isTrue();
+    assertThat(fast.find(id2).isAvailable()).isTrue();
+    assertThat(capacity.find(id).isAvailable()).isFalse();
+
+    assertThat(store.delete(id)).isTrue();
+    assertThat(store.delete(id2)).isTrue();
+    assertThat(store.find(id).isAvailable()).isFalse();
+    store.close();
+  }
+
+}
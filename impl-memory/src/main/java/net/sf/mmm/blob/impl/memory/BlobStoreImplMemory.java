@@ -0,0 +1,491 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl.memory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import javax.inject.Inject;
+
+import net.sf.mmm.blob.api.BlobOutputStream;
+import net.sf.mmm.blob.api.BlobStat;
+import net.sf.mmm.blob.api.BlobStore;
+import net.sf.mmm.blob.impl.memory.SlabAllocator.Chunk;
+import net.sf.mmm.util.component.base.AbstractLoggableComponent;
+import net.sf.mmm.util.data.api.id.Id;
+import net.sf.mmm.util.exception.api.ValueOutOfRangeException;
+import net.sf.mmm.util.io.api.IoMode;
+import net.sf.mmm.util.io.api.RuntimeIoException;
+import net.sf.mmm.util.lang.api.StringUtil;
+import net.sf.mmm.util.lang.base.StringUtilImpl;
+import net.sf.mmm.util.resource.api.DataResource;
+import net.sf.mmm.util.resource.api.ResourceNotAvailableException;
+import net.sf.mmm.util.resource.base.UnavailableResource;
+
+/**
+ * This is an implementation of {@link BlobStore} that keeps the BLOBs in off-heap memory. The memory is managed by a
+ * {@link SlabAllocator} with size classes so BLOBs of any size can be stored without fragmenting the heap or putting
+ * pressure on the garbage collector.<br>
+ * Like {@code BlobStoreImplDeduplicatingFsWithRefCount} BLOBs are de-duplicated by their
+ * {@link BlobStoreMemoryConfigProperties#getDigest() hash} and size and each {@link #save(DataResource) save} returns
+ * an individual {@link Id} in the form {@code <hash>/<folder>#<copy>}. The data is only removed when all copies have
+ * been {@link #delete(Id) deleted}.<br>
+ * The memory is bounded by the {@link BlobStoreMemoryConfigProperties#getCapacity() capacity}. When it is exhausted,
+ * the least recently used BLOBs are {@link BlobStoreMemoryConfigProperties#isEvict() evicted} with all their copies.
+ * Data that is currently read via an open stream is freed after that stream has been closed.<br>
+ * <b>ATTENTION:</b><br>
+ * All BLOBs are lost when the JVM terminates. Use this implementation for data that can be regenerated (e.g. preview
+ * renders) or as fast stand-in for tests.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+public class BlobStoreImplMemory extends AbstractLoggableComponent implements BlobStore {
+
+  private static final char SEPARATOR_FOLDER = '/';
+
+  private static final char SEPARATOR_COPY = '#';
+
+  private final Map<String, MemoryBlob> contents;
+
+  private BlobStoreMemoryConfigProperties config;
+
+  private SlabAllocator allocator;
+
+  private StringUtil stringUtil;
+
+  private long evictions;
+
+  /**
+   * The constructor.
+   */
+  public BlobStoreImplMemory() {
+    super();
+    // access order for eviction of the least recently used BLOBs
+    this.contents = new LinkedHashMap<>(64, 0.75f, true);
+  }
+
+  /**
+   * @param config the {@link BlobStoreMemoryConfigProperties} to {@link Inject}.
+   */
+  @Inject
+  public void setConfig(BlobStoreMemoryConfigProperties config) {
+
+    this.config = config;
+  }
+
+  /**
+   * @param stringUtil the {@link StringUtil} to {@link Inject}.
+   */
+  @Inject
+  public void setStringUtil(StringUtil stringUtil) {
+
+    this.stringUtil = stringUtil;
+  }
+
+  @Override
+  protected void doInitialize() {
+
+    super.doInitialize();
+    if (this.config == null) {
+      this.config = new BlobStoreMemoryConfigProperties();
+    }
+    if (this.stringUtil == null) {
+      this.stringUtil = StringUtilImpl.getInstance();
+    }
+    this.allocator = new SlabAllocator(this.config.getCapacity(), this.config.getSlabSize(),
+        this.config.getMinChunkSize(), this.config.getMaxChunkSize());
+    // fail early on invalid configuration
+    createDigest();
+  }
+
+  private MessageDigest createDigest() {
+
+    try {
+      return MessageDigest.getInstance(this.config.getDigest());
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @return the number of bytes of off-heap memory occupied by the BLOBs (including the unused remainder of their last
+   *         chunk).
+   */
+  public long getUsedBytes() {
+
+    return this.allocator.getUsedBytes();
+  }
+
+  /**
+   * @return the number of bytes of off-heap memory allocated by this store. Will not exceed the
+   *         {@link BlobStoreMemoryConfigProperties#getCapacity() capacity}.
+   */
+  public long getAllocatedBytes() {
+
+    return this.allocator.getAllocatedBytes();
+  }
+
+  /**
+   * @return the total number of BLOBs (with all their copies) that have been evicted to free memory.
+   */
+  public long getEvictions() {
+
+    synchronized (this.contents) {
+      return this.evictions;
+    }
+  }
+
+  @Override
+  public Id<DataResource> save(DataResource blob) {
+
+    long sizeHint;
+    try {
+      sizeHint = blob.getSize();
+    } catch (ResourceNotAvailableException e) {
+      sizeHint = -1;
+    }
+    MemoryBlobOutputStream out = new MemoryBlobOutputStream(sizeHint);
+    try (InputStream in = blob.openStream()) {
+      int bufferSize = this.config.getMaxChunkSize();
+      if ((sizeHint >= 0) && (sizeHint < bufferSize)) {
+        // one extra byte to detect excess data
+        bufferSize = (int) sizeHint + 1;
+      }
+      byte[] buffer = new byte[bufferSize];
+      int count = in.read(buffer);
+      while (count >= 0) {
+        out.write(buffer, 0, count);
+        count = in.read(buffer);
+      }
+      out.close();
+    } catch (IOException e) {
+      out.abort();
+      throw new RuntimeIoException(e, IoMode.COPY);
+    } catch (RuntimeException e) {
+      out.abort();
+      throw e;
+    }
+    return out.getId();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * This implementation writes the data directly to off-heap memory.
+   */
+  @Override
+  public BlobOutputStream openForWrite() {
+
+    return new MemoryBlobOutputStream(-1);
+  }
+
+  private Chunk allocate(int size) {
+
+    while (true) {
+      Chunk chunk = this.allocator.allocate(size);
+      if (chunk != null) {
+        return chunk;
+      }
+      if (!this.config.isEvict() || !evict()) {
+        long capacity = this.allocator.getCapacity();
+        throw new ValueOutOfRangeException(Long.valueOf(this.allocator.getUsedBytes() + size), Long.valueOf(0),
+            Long.valueOf(capacity), "bytes of memory store");
+      }
+    }
+  }
+
+  private boolean evict() {
+
+    MemoryBlob blob;
+    synchronized (this.contents) {
+      Iterator<MemoryBlob> iterator = this.contents.values().iterator();
+      if (!iterator.hasNext()) {
+        return false;
+      }
+      blob = iterator.next();
+      iterator.remove();
+      this.evictions++;
+    }
+    getLogger().debug("Evicted BLOB {}", blob);
+    blob.remove();
+    return true;
+  }
+
+  private void free(List<Chunk> chunks) {
+
+    for (Chunk chunk : chunks) {
+      this.allocator.free(chunk);
+    }
+    chunks.clear();
+  }
+
+  private Id<DataResource> commit(String hash, long size, List<Chunk> chunkList) {
+
+    Chunk[] chunks = chunkList.toArray(new Chunk[chunkList.size()]);
+    String id;
+    boolean duplicate;
+    synchronized (this.contents) {
+      int folder = 1;
+      while (true) {
+        String key = hash + SEPARATOR_FOLDER + folder;
+        MemoryBlob blob = this.contents.get(key);
+        if (blob == null) {
+          blob = new MemoryBlob(key, hash, size, chunks, this.allocator);
+          this.contents.put(key, blob);
+          duplicate = false;
+        } else if ((blob.getSize() == size) && (!this.config.isDedupVerify() || blob.isContentEqual(chunks))) {
+          duplicate = true;
+        } else {
+          folder++;
+          continue;
+        }
+        id = key + SEPARATOR_COPY + blob.addCopy();
+        break;
+      }
+    }
+    if (duplicate) {
+      getLogger().debug("BLOB {} is a duplicate", id);
+      free(chunkList);
+    }
+    return createId(id);
+  }
+
+  private MemoryBlob get(String id) {
+
+    int copyStart = id.lastIndexOf(SEPARATOR_COPY);
+    if (copyStart < 0) {
+      return null;
+    }
+    String key = id.substring(0, copyStart);
+    String copy = id.substring(copyStart + 1);
+    synchronized (this.contents) {
+      MemoryBlob blob = this.contents.get(key);
+      if ((blob == null) || !blob.hasCopy(copy)) {
+        return null;
+      }
+      return blob;
+    }
+  }
+
+  @Override
+  public DataResource find(Id<DataResource> id) {
+
+    String idString = id.getId().toString();
+    MemoryBlob blob = get(idString);
+    if (blob == null) {
+      return UnavailableResource.INSTANCE;
+    }
+    return new MemoryBlobResource(blob, idString);
+  }
+
+  @Override
+  public BlobStat stat(Id<DataResource> id) {
+
+    MemoryBlob blob = get(id.getId().toString());
+    if (blob == null) {
+      return null;
+    }
+    int referenceCount;
+    synchronized (this.contents) {
+      referenceCount = blob.getCopies().size();
+    }
+    return new BlobStat(blob.getSize(), blob.getHash(), blob.getCreationTime(), referenceCount);
+  }
+
+  @Override
+  public boolean delete(Id<DataResource> id) {
+
+    String idString = id.getId().toString();
+    int copyStart = idString.lastIndexOf(SEPARATOR_COPY);
+    if (copyStart < 0) {
+      throw new IllegalArgumentException(idString);
+    }
+    String key = idString.substring(0, copyStart);
+    MemoryBlob blob;
+    synchronized (this.contents) {
+      blob = this.contents.get(key);
+      if ((blob == null) || !blob.removeCopy(idString.substring(copyStart + 1))) {
+        return false;
+      }
+      if (!blob.getCopies().isEmpty()) {
+        return true;
+      }
+      this.contents.remove(key);
+    }
+    blob.remove();
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * This implementation streams a snapshot of the {@link Id}s taken when this method is called.
+   */
+  @Override
+  public Stream<Id<DataResource>> ids(String prefix) {
+
+    List<String> ids = new ArrayList<>();
+    synchronized (this.contents) {
+      for (MemoryBlob blob : this.contents.values()) {
+        for (String copy : blob.getCopies()) {
+          String id = blob.getKey() + SEPARATOR_COPY + copy;
+          if ((prefix == null) || id.startsWith(prefix)) {
+            ids.add(id);
+          }
+        }
+      }
+    }
+    return ids.stream().map(this::createId);
+  }
+
+  /**
+   * The {@link BlobOutputStream} that writes the data to {@link Chunk}s and hashes it on the fly.
+   */
+  private class MemoryBlobOutputStream extends BlobOutputStream {
+
+    private final long sizeHint;
+
+    private final MessageDigest digest;
+
+    private final List<Chunk> chunks;
+
+    private ByteBuffer buffer;
+
+    private long size;
+
+    private Id<DataResource> id;
+
+    private boolean closed;
+
+    private MemoryBlobOutputStream(long sizeHint) {
+      super();
+      if (sizeHint > BlobStoreImplMemory.this.allocator.getCapacity()) {
+        // fail fast instead of evicting all BLOBs in vain
+        throw new ValueOutOfRangeException(Long.valueOf(sizeHint), Long.valueOf(0),
+            Long.valueOf(BlobStoreImplMemory.this.allocator.getCapacity()), "bytes of memory store");
+      }
+      this.sizeHint = sizeHint;
+      this.digest = createDigest();
+      this.chunks = new ArrayList<>();
+    }
+
+    private void nextChunk() {
+
+      int chunkSize = BlobStoreImplMemory.this.allocator.getMaxChunkSize();
+      if (this.sizeHint >= 0) {
+        // with a known size the last chunk is allocated from the size class that fits the remaining data
+        chunkSize = (int) Math.min(chunkSize, this.sizeHint - this.size);
+      }
+      Chunk chunk = allocate(chunkSize);
+      this.chunks.add(chunk);
+      this.buffer = chunk.getBuffer();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+
+      write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+
+      if (this.closed) {
+        throw new IOException("Stream closed");
+      }
+      if ((this.sizeHint >= 0) && (this.size + len > this.sizeHint)) {
+        throw new IOException("BLOB exceeds its size of " + this.sizeHint + " bytes");
+      }
+      this.digest.update(b, off, len);
+      int offset = off;
+      int remaining = len;
+      while (remaining > 0) {
+        if ((this.buffer == null) || !this.buffer.hasRemaining()) {
+          nextChunk();
+        }
+        int count = Math.min(remaining, this.buffer.remaining());
+        this.buffer.put(b, offset, count);
+        offset += count;
+        remaining -= count;
+        this.size += count;
+      }
+    }
+
+    /**
+     * Moves the data of the last {@link Chunk} to a {@link Chunk} of a smaller size class if possible. Only required
+     * if the size was unknown in advance.
+     */
+    private void shrink() {
+
+      if (this.buffer == null) {
+        return;
+      }
+      int used = this.buffer.position();
+      int last = this.chunks.size() - 1;
+      Chunk chunk = this.chunks.get(last);
+      SlabAllocator slabAllocator = BlobStoreImplMemory.this.allocator;
+      if (slabAllocator.getChunkSize(used) < chunk.getSize()) {
+        // no eviction as keeping the larger chunk is fine
+        Chunk smallChunk = slabAllocator.allocate(used);
+        if (smallChunk != null) {
+          ByteBuffer source = chunk.getBuffer();
+          source.limit(used);
+          smallChunk.getBuffer().put(source);
+          this.chunks.set(last, smallChunk);
+          slabAllocator.free(chunk);
+        }
+      }
+    }
+
+    @Override
+    public Id<DataResource> getId() {
+
+      return this.id;
+    }
+
+    @Override
+    public void abort() {
+
+      if (!this.closed) {
+        this.closed = true;
+        free(this.chunks);
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+
+      if (this.closed) {
+        return;
+      }
+      this.closed = true;
+      boolean success = false;
+      try {
+        if ((this.sizeHint >= 0) && (this.size < this.sizeHint)) {
+          throw new EOFException("BLOB has only " + this.size + " of " + this.sizeHint + " bytes");
+        }
+        shrink();
+        String hash = BlobStoreImplMemory.this.stringUtil.toHex(this.digest.digest());
+        this.id = commit(hash, this.size, this.chunks);
+        success = true;
+      } finally {
+        if (!success) {
+          free(this.chunks);
+        }
+      }
+    }
+
+  }
+
+}
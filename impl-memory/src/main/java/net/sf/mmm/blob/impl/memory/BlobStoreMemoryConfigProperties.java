@@ -0,0 +1,157 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl.memory;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * The {@link ConfigurationProperties} for {@link BlobStoreImplMemory}.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+@ConfigurationProperties(prefix = "blob.store.memory")
+public class BlobStoreMemoryConfigProperties {
+
+  private long capacity = 256 * 1024 * 1024;
+
+  private int slabSize = 1024 * 1024;
+
+  private int minChunkSize = 64;
+
+  private int maxChunkSize = 64 * 1024;
+
+  private String digest = "MD5";
+
+  private boolean dedupVerify;
+
+  private boolean evict = true;
+
+  /**
+   * The constructor.
+   */
+  public BlobStoreMemoryConfigProperties() {
+    super();
+  }
+
+  /**
+   * @return the maximum number of bytes of off-heap memory allocated for the BLOBs. The default is 256MiB. Please note
+   *         that the JVM also limits direct memory (see {@code -XX:MaxDirectMemorySize}).
+   */
+  public long getCapacity() {
+
+    return this.capacity;
+  }
+
+  /**
+   * @param capacity the new value of {@link #getCapacity()}.
+   */
+  public void setCapacity(long capacity) {
+
+    this.capacity = capacity;
+  }
+
+  /**
+   * @return the size of a slab in bytes. The memory is allocated in slabs that are split into chunks of a single size
+   *         class. Has to be a power of two. The default is 1MiB.
+   */
+  public int getSlabSize() {
+
+    return this.slabSize;
+  }
+
+  /**
+   * @param slabSize the new value of {@link #getSlabSize()}.
+   */
+  public void setSlabSize(int slabSize) {
+
+    this.slabSize = slabSize;
+  }
+
+  /**
+   * @return the size of the smallest size class in bytes. Has to be a power of two. The default is 64 bytes.
+   */
+  public int getMinChunkSize() {
+
+    return this.minChunkSize;
+  }
+
+  /**
+   * @param minChunkSize the new value of {@link #getMinChunkSize()}.
+   */
+  public void setMinChunkSize(int minChunkSize) {
+
+    this.minChunkSize = minChunkSize;
+  }
+
+  /**
+   * @return the size of the largest size class in bytes. BLOBs exceeding this size are stored in multiple chunks. Has
+   *         to be a power of two and must not exceed the {@link #getSlabSize() slab size}. The default is 64KiB.
+   */
+  public int getMaxChunkSize() {
+
+    return this.maxChunkSize;
+  }
+
+  /**
+   * @param maxChunkSize the new value of {@link #getMaxChunkSize()}.
+   */
+  public void setMaxChunkSize(int maxChunkSize) {
+
+    this.maxChunkSize = maxChunkSize;
+  }
+
+  /**
+   * @return the name of the {@link java.security.MessageDigest} algorithm used to hash the BLOBs for de-duplication.
+   *         The default is {@code MD5}.
+   */
+  public String getDigest() {
+
+    return this.digest;
+  }
+
+  /**
+   * @param digest the new value of {@link #getDigest()}.
+   */
+  public void setDigest(String digest) {
+
+    this.digest = digest;
+  }
+
+  /**
+   * @return {@code true} if a BLOB detected as duplicate by its {@link #getDigest() hash} and size is also compared
+   *         byte by byte with the existing BLOB before it is de-duplicated, {@code false} otherwise. The default is
+   *         {@code false}.
+   */
+  public boolean isDedupVerify() {
+
+    return this.dedupVerify;
+  }
+
+  /**
+   * @param dedupVerify the new value of {@link #isDedupVerify()}.
+   */
+  public void setDedupVerify(boolean dedupVerify) {
+
+    this.dedupVerify = dedupVerify;
+  }
+
+  /**
+   * @return {@code true} if the least recently used BLOBs are evicted (deleted with all their references) when the
+   *         {@link #getCapacity() capacity} is exhausted, {@code false} if saving a BLOB is rejected instead. The
+   *         default is {@code true}.
+   */
+  public boolean isEvict() {
+
+    return this.evict;
+  }
+
+  /**
+   * @param evict the new value of {@link #isEvict()}.
+   */
+  public void setEvict(boolean evict) {
+
+    this.evict = evict;
+  }
+
+}
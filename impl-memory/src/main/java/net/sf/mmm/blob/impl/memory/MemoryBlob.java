@@ -0,0 +1,233 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl.memory;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.mmm.blob.impl.memory.SlabAllocator.Chunk;
+
+/**
+ * The physical content of a BLOB in a {@link BlobStoreImplMemory} stored in {@link Chunk}s. All {@link Chunk}s except
+ * the last one have the {@link SlabAllocator#getMaxChunkSize() maximum chunk size}. As the content is de-duplicated, it
+ * is shared by all copies saved with the same data. Each copy is a reference that has its own ID.<br>
+ * The {@link Chunk}s are freed when the content has been {@link #remove() removed} and all streams reading it have
+ * been closed.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+final class MemoryBlob {
+
+  private final String key;
+
+  private final String hash;
+
+  private final long size;
+
+  private final Chunk[] chunks;
+
+  private final SlabAllocator allocator;
+
+  private final Instant creationTime;
+
+  private final Set<String> copies;
+
+  private final AtomicInteger pins;
+
+  private volatile boolean removed;
+
+  private int lastCopy;
+
+  /**
+   * The constructor.
+   *
+   * @param key the {@link #getKey() key}.
+   * @param hash the {@link #getHash() hash}.
+   * @param size the {@link #getSize() size}.
+   * @param chunks the {@link Chunk}s with the data.
+   * @param allocator the {@link SlabAllocator} that allocated the {@link Chunk}s.
+   */
+  MemoryBlob(String key, String hash, long size, Chunk[] chunks, SlabAllocator allocator) {
+    super();
+    this.key = key;
+    this.hash = hash;
+    this.size = size;
+    this.chunks = chunks;
+    this.allocator = allocator;
+    this.creationTime = Instant.now();
+    this.copies = new LinkedHashSet<>();
+    // initial pin is owned by the store until removed
+    this.pins = new AtomicInteger(1);
+  }
+
+  /**
+   * @return the key of the content in the form {@code <hash>/<folder>} where the folder distinguishes different content
+   *         with the same hash.
+   */
+  String getKey() {
+
+    return this.key;
+  }
+
+  /**
+   * @return the hash of the content as hexadecimal {@link String}.
+   */
+  String getHash() {
+
+    return this.hash;
+  }
+
+  /**
+   * @return the size of the content in bytes.
+   */
+  long getSize() {
+
+    return this.size;
+  }
+
+  /**
+   * @return the {@link Instant} when the content was saved.
+   */
+  Instant getCreationTime() {
+
+    return this.creationTime;
+  }
+
+  /**
+   * @param position the index of the byte to read.
+   * @return a new {@link ByteBuffer} positioned at the given {@code position} and limited to the data of its
+   *         {@link Chunk}.
+   */
+  ByteBuffer getBuffer(long position) {
+
+    int chunkSize = this.allocator.getMaxChunkSize();
+    int index = (int) (position / chunkSize);
+    ByteBuffer buffer = this.chunks[index].getBuffer();
+    buffer.limit((int) Math.min(chunkSize, this.size - ((long) index * chunkSize)));
+    buffer.position((int) (position % chunkSize));
+    return buffer;
+  }
+
+  /**
+   * @param otherChunks the {@link Chunk}s of other content with the same {@link #getSize() size}.
+   * @return {@code true} if the data of the given {@link Chunk}s is equal to this content, {@code false} otherwise.
+   */
+  boolean isContentEqual(Chunk[] otherChunks) {
+
+    int chunkSize = this.allocator.getMaxChunkSize();
+    for (int i = 0; i < this.chunks.length; i++) {
+      int limit = (int) Math.min(chunkSize, this.size - ((long) i * chunkSize));
+      ByteBuffer buffer = this.chunks[i].getBuffer();
+      buffer.limit(limit);
+      ByteBuffer otherBuffer = otherChunks[i].getBuffer();
+      otherBuffer.limit(limit);
+      if (!buffer.equals(otherBuffer)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Has to be called while the store is locked.
+   *
+   * @return the new copy reference.
+   */
+  String addCopy() {
+
+    String copy = Integer.toString(++this.lastCopy);
+    this.copies.add(copy);
+    return copy;
+  }
+
+  /**
+   * Has to be called while the store is locked.
+   *
+   * @param copy the copy reference.
+   * @return {@code true} if the given {@code copy} exists, {@code false} otherwise.
+   */
+  boolean hasCopy(String copy) {
+
+    return this.copies.contains(copy);
+  }
+
+  /**
+   * Has to be called while the store is locked.
+   *
+   * @param copy the copy reference to remove.
+   * @return {@code true} if removed, {@code false} if the given {@code copy} did not exist.
+   */
+  boolean removeCopy(String copy) {
+
+    return this.copies.remove(copy);
+  }
+
+  /**
+   * Has to be called while the store is locked.
+   *
+   * @return the {@link Collection} of the current copy references.
+   */
+  Collection<String> getCopies() {
+
+    return this.copies;
+  }
+
+  /**
+   * @return {@code true} if this content has been {@link #remove() removed} from the store, {@code false} otherwise.
+   */
+  boolean isRemoved() {
+
+    return this.removed;
+  }
+
+  /**
+   * Pins the data of this content so its {@link Chunk}s are not freed before {@link #release()} is called.
+   *
+   * @return {@code true} if pinned, {@code false} if the {@link Chunk}s have already been freed.
+   */
+  boolean retain() {
+
+    while (true) {
+      int count = this.pins.get();
+      if (count == 0) {
+        return false;
+      }
+      if (this.pins.compareAndSet(count, count + 1)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Releases a pin {@link #retain() retained} before. The {@link Chunk}s are freed when the last pin is released.
+   */
+  void release() {
+
+    if (this.pins.decrementAndGet() == 0) {
+      for (Chunk chunk : this.chunks) {
+        this.allocator.free(chunk);
+      }
+    }
+  }
+
+  /**
+   * Marks this content as removed from the store and releases the pin owned by the store.
+   */
+  void remove() {
+
+    this.removed = true;
+    release();
+  }
+
+  @Override
+  public String toString() {
+
+    return this.key;
+  }
+
+}
@@ -0,0 +1,110 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl.memory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * This is the {@link InputStream} to read a {@link MemoryBlob}. It holds a {@link MemoryBlob#retain() pin} on the
+ * {@link MemoryBlob} that is released when the stream is {@link #close() closed}.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+class MemoryBlobInputStream extends InputStream {
+
+  private final MemoryBlob blob;
+
+  private long position;
+
+  private ByteBuffer buffer;
+
+  private boolean closed;
+
+  /**
+   * The constructor.
+   *
+   * @param blob the {@link MemoryBlob} to read. Has to be {@link MemoryBlob#retain() retained} for this stream.
+   */
+  MemoryBlobInputStream(MemoryBlob blob) {
+    super();
+    this.blob = blob;
+  }
+
+  private boolean nextBuffer() throws IOException {
+
+    if (this.closed) {
+      throw new IOException("Stream closed");
+    }
+    if ((this.buffer == null) || !this.buffer.hasRemaining()) {
+      if (this.position >= this.blob.getSize()) {
+        return false;
+      }
+      this.buffer = this.blob.getBuffer(this.position);
+    }
+    return true;
+  }
+
+  @Override
+  public int read() throws IOException {
+
+    if (!nextBuffer()) {
+      return -1;
+    }
+    this.position++;
+    return this.buffer.get() & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+
+    if (len == 0) {
+      return 0;
+    }
+    int total = 0;
+    while ((total < len) && nextBuffer()) {
+      int count = Math.min(len - total, this.buffer.remaining());
+      this.buffer.get(b, off + total, count);
+      this.position += count;
+      total += count;
+    }
+    if (total == 0) {
+      return -1;
+    }
+    return total;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+
+    if (this.closed) {
+      throw new IOException("Stream closed");
+    }
+    long count = Math.max(0, Math.min(n, this.blob.getSize() - this.position));
+    this.position += count;
+    this.buffer = null;
+    return count;
+  }
+
+  @Override
+  public int available() throws IOException {
+
+    if (this.closed) {
+      throw new IOException("Stream closed");
+    }
+    return (int) Math.min(Integer.MAX_VALUE, this.blob.getSize() - this.position);
+  }
+
+  @Override
+  public void close() {
+
+    if (!this.closed) {
+      this.closed = true;
+      this.buffer = null;
+      this.blob.release();
+    }
+  }
+
+}
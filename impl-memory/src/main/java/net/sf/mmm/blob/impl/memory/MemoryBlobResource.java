@@ -0,0 +1,107 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl.memory;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Date;
+
+import net.sf.mmm.util.resource.api.DataResource;
+import net.sf.mmm.util.resource.api.ResourceNotAvailableException;
+import net.sf.mmm.util.resource.api.ResourceUriUndefinedException;
+import net.sf.mmm.util.resource.base.AbstractDataResource;
+
+/**
+ * This is the {@link DataResource} for a BLOB of a {@link BlobStoreImplMemory}. Each {@link #openStream() stream} is
+ * fresh and reads the data directly from the off-heap {@link MemoryBlob}. It becomes unavailable when the BLOB is
+ * deleted or evicted.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+class MemoryBlobResource extends AbstractDataResource {
+
+  /** The {@link #getSchemePrefix() scheme prefix} of a {@link MemoryBlobResource}. */
+  static final String SCHEME_PREFIX = "memory:";
+
+  private final MemoryBlob blob;
+
+  private final String id;
+
+  /**
+   * The constructor.
+   *
+   * @param blob the {@link MemoryBlob}.
+   * @param id the ID of the BLOB.
+   */
+  MemoryBlobResource(MemoryBlob blob, String id) {
+    super();
+    this.blob = blob;
+    this.id = id;
+  }
+
+  @Override
+  public String getSchemePrefix() {
+
+    return SCHEME_PREFIX;
+  }
+
+  @Override
+  public boolean isData() {
+
+    return !this.blob.isRemoved();
+  }
+
+  @Override
+  public String getPath() {
+
+    return this.id;
+  }
+
+  @Override
+  public String getName() {
+
+    return this.id;
+  }
+
+  @Override
+  public String getUri() {
+
+    return SCHEME_PREFIX + this.id;
+  }
+
+  @Override
+  public long getSize() throws ResourceNotAvailableException {
+
+    return this.blob.getSize();
+  }
+
+  @Override
+  public URL getUrl() throws ResourceNotAvailableException {
+
+    // there is no URL handler for BLOBs in memory
+    throw new ResourceNotAvailableException(getUri());
+  }
+
+  @Override
+  public InputStream openStream() {
+
+    if (this.blob.isRemoved() || !this.blob.retain()) {
+      throw new ResourceNotAvailableException(getUri());
+    }
+    return new MemoryBlobInputStream(this.blob);
+  }
+
+  @Override
+  public DataResource navigate(String resourcePath) throws ResourceUriUndefinedException {
+
+    throw new ResourceUriUndefinedException(resourcePath);
+  }
+
+  @Override
+  public Date getLastModificationDate() {
+
+    return Date.from(this.blob.getCreationTime());
+  }
+
+}
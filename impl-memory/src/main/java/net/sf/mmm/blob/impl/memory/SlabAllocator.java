@@ -0,0 +1,257 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl.memory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This is an allocator for off-heap memory based on size classes. The memory is allocated as direct {@link ByteBuffer}s
+ * of a fixed slab size. Each slab is split into {@link Chunk}s of a single size class (a power of two between the
+ * minimum and maximum chunk size). A request is served from a slab of the smallest size class that fits so the waste is
+ * less than half of a chunk. Slabs that become empty are recycled for any size class instead of being allocated again.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+final class SlabAllocator {
+
+  private final long capacity;
+
+  private final int slabSize;
+
+  private final int minChunkShift;
+
+  private final int maxChunkSize;
+
+  private final List<Set<Slab>> available;
+
+  private final Deque<ByteBuffer> emptySlabs;
+
+  private long allocatedBytes;
+
+  private long usedBytes;
+
+  /**
+   * The constructor.
+   *
+   * @param capacity the maximum number of bytes to allocate.
+   * @param slabSize the size of a slab.
+   * @param minChunkSize the size of the smallest size class.
+   * @param maxChunkSize the size of the largest size class.
+   */
+  SlabAllocator(long capacity, int slabSize, int minChunkSize, int maxChunkSize) {
+    super();
+    if ((Integer.bitCount(slabSize) != 1) || (Integer.bitCount(minChunkSize) != 1)
+        || (Integer.bitCount(maxChunkSize) != 1)) {
+      throw new IllegalArgumentException("Sizes of slabs and chunks have to be powers of two");
+    }
+    if ((minChunkSize > maxChunkSize) || (maxChunkSize > slabSize)) {
+      throw new IllegalArgumentException("Chunk sizes " + minChunkSize + "-" + maxChunkSize
+          + " do not fit into slab size " + slabSize);
+    }
+    this.capacity = capacity;
+    this.slabSize = slabSize;
+    this.minChunkShift = Integer.numberOfTrailingZeros(minChunkSize);
+    this.maxChunkSize = maxChunkSize;
+    int sizeClasses = Integer.numberOfTrailingZeros(maxChunkSize) - this.minChunkShift + 1;
+    this.available = new ArrayList<>(sizeClasses);
+    for (int i = 0; i < sizeClasses; i++) {
+      this.available.add(new LinkedHashSet<>());
+    }
+    this.emptySlabs = new ArrayDeque<>();
+  }
+
+  /**
+   * @return the maximum number of bytes to allocate.
+   */
+  long getCapacity() {
+
+    return this.capacity;
+  }
+
+  /**
+   * @return the size of the largest size class. Larger data has to be split into multiple {@link Chunk}s.
+   */
+  int getMaxChunkSize() {
+
+    return this.maxChunkSize;
+  }
+
+  /**
+   * @return the number of bytes allocated for slabs.
+   */
+  synchronized long getAllocatedBytes() {
+
+    return this.allocatedBytes;
+  }
+
+  /**
+   * @return the number of bytes of all {@link #allocate(int) allocated} {@link Chunk}s.
+   */
+  synchronized long getUsedBytes() {
+
+    return this.usedBytes;
+  }
+
+  /**
+   * @param size the number of bytes to store. Must not exceed the {@link #getMaxChunkSize() maximum chunk size}.
+   * @return the {@link Chunk#getSize() size} of the {@link Chunk} {@link #allocate(int) allocated} for the given
+   *         {@code size}.
+   */
+  int getChunkSize(int size) {
+
+    return 1 << (getSizeClass(size) + this.minChunkShift);
+  }
+
+  private int getSizeClass(int size) {
+
+    if ((size < 0) || (size > this.maxChunkSize)) {
+      throw new IllegalArgumentException("Size " + size + " exceeds maximum chunk size " + this.maxChunkSize);
+    }
+    int shift = 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1);
+    return Math.max(0, shift - this.minChunkShift);
+  }
+
+  /**
+   * @param size the number of bytes to store. Must not exceed the {@link #getMaxChunkSize() maximum chunk size}.
+   * @return the allocated {@link Chunk} or {@code null} if the {@link #getCapacity() capacity} is exhausted.
+   */
+  synchronized Chunk allocate(int size) {
+
+    int sizeClass = getSizeClass(size);
+    Set<Slab> slabs = this.available.get(sizeClass);
+    Slab slab;
+    if (slabs.isEmpty()) {
+      ByteBuffer buffer = this.emptySlabs.poll();
+      if (buffer == null) {
+        if (this.allocatedBytes + this.slabSize > this.capacity) {
+          return null;
+        }
+        buffer = ByteBuffer.allocateDirect(this.slabSize);
+        this.allocatedBytes += this.slabSize;
+      }
+      slab = new Slab(buffer, sizeClass, 1 << (sizeClass + this.minChunkShift));
+      slabs.add(slab);
+    } else {
+      slab = slabs.iterator().next();
+    }
+    int index = slab.take();
+    if (slab.isFull()) {
+      slabs.remove(slab);
+    }
+    this.usedBytes += slab.chunkSize;
+    return new Chunk(slab, index);
+  }
+
+  /**
+   * @param chunk the {@link Chunk} to free. Must not be used afterwards.
+   */
+  synchronized void free(Chunk chunk) {
+
+    Slab slab = chunk.slab;
+    boolean full = slab.isFull();
+    slab.give(chunk.index);
+    this.usedBytes -= slab.chunkSize;
+    if (slab.isEmpty()) {
+      this.available.get(slab.sizeClass).remove(slab);
+      this.emptySlabs.push(slab.buffer);
+    } else if (full) {
+      this.available.get(slab.sizeClass).add(slab);
+    }
+  }
+
+  /**
+   * A slab of memory split into chunks of the same size.
+   */
+  private static final class Slab {
+
+    private final ByteBuffer buffer;
+
+    private final int sizeClass;
+
+    private final int chunkSize;
+
+    private final int[] free;
+
+    private int freeCount;
+
+    private Slab(ByteBuffer buffer, int sizeClass, int chunkSize) {
+      super();
+      this.buffer = buffer;
+      this.sizeClass = sizeClass;
+      this.chunkSize = chunkSize;
+      int count = buffer.capacity() / chunkSize;
+      this.free = new int[count];
+      for (int i = 0; i < count; i++) {
+        // lowest index on top of the stack
+        this.free[i] = count - 1 - i;
+      }
+      this.freeCount = count;
+    }
+
+    private int take() {
+
+      return this.free[--this.freeCount];
+    }
+
+    private void give(int index) {
+
+      this.free[this.freeCount++] = index;
+    }
+
+    private boolean isFull() {
+
+      return (this.freeCount == 0);
+    }
+
+    private boolean isEmpty() {
+
+      return (this.freeCount == this.free.length);
+    }
+
+  }
+
+  /**
+   * A chunk of a slab {@link SlabAllocator#allocate(int) allocated} to store (a part of) a BLOB.
+   */
+  static final class Chunk {
+
+    private final Slab slab;
+
+    private final int index;
+
+    private Chunk(Slab slab, int index) {
+      super();
+      this.slab = slab;
+      this.index = index;
+    }
+
+    /**
+     * @return the size of this chunk in bytes.
+     */
+    int getSize() {
+
+      return this.slab.chunkSize;
+    }
+
+    /**
+     * @return a new {@link ByteBuffer} view of this chunk with its own position and limit.
+     */
+    ByteBuffer getBuffer() {
+
+      ByteBuffer buffer = this.slab.buffer.duplicate();
+      int offset = this.index * this.slab.chunkSize;
+      buffer.limit(offset + this.slab.chunkSize);
+      buffer.position(offset);
+      return buffer.slice();
+    }
+
+  }
+
+}
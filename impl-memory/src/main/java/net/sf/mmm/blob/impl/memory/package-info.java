@@ -0,0 +1,11 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+/**
+ * Provides an implementation of {@link net.sf.mmm.blob.api.BlobStore} in off-heap memory.
+ * <a name="documentation"></a><h2>BLOBs in Memory</h2>
+ * This package contains {@link net.sf.mmm.blob.impl.memory.BlobStoreImplMemory} that stores BLOBs in direct memory
+ * split into slabs of chunks with size classes. BLOBs are de-duplicated and reference counted just like in the
+ * de-duplicating file-system stores. The memory is bounded and the least recently used BLOBs are evicted when it is
+ * exhausted. This makes it a fast ephemeral store for data that can be regenerated and a fast stand-in for tests.
+ */
+package net.sf.mmm.blob.impl.memory;
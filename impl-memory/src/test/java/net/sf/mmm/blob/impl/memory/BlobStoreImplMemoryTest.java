@@ -0,0 +1,180 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl.memory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import net.sf.mmm.blob.api.BlobOutputStream;
+import net.sf.mmm.blob.api.BlobStat;
+import net.sf.mmm.util.data.api.id.Id;
+import net.sf.mmm.util.exception.api.ValueOutOfRangeException;
+import net.sf.mmm.util.io.api.RuntimeIoException;
+import net.sf.mmm.util.io.base.StreamUtilImpl;
+import net.sf.mmm.util.resource.api.DataResource;
+import net.sf.mmm.util.resource.api.ResourceNotAvailableException;
+import net.sf.mmm.util.resource.base.StreamResource;
+
+/**
+ * This is the test-case for {@link BlobStoreImplMemory}.
+ *
+ * @author hohwille
+ */
+public class BlobStoreImplMemoryTest extends Assertions {
+
+  private static BlobStoreImplMemory createStore(long capacity, boolean evict) {
+
+    BlobStoreMemoryConfigProperties config = new BlobStoreMemoryConfigProperties();
+    config.setCapacity(capacity);
+    config.setSlabSize(64 * 1024);
+    config.setMaxChunkSize(16 * 1024);
+    config.setEvict(evict);
+    BlobStoreImplMemory store = new BlobStoreImplMemory();
+    store.setConfig(config);
+    store.initialize();
+    return store;
+  }
+
+  private static byte[] createData(int size) {
+
+    byte[] data = new byte[size];
+    new Random(size).nextBytes(data);
+    return data;
+  }
+
+  private static Id<DataResource> save(BlobStoreImplMemory store, byte[] data, long size) {
+
+    return store.save(new StreamResource(new ByteArrayInputStream(data), "blob", size));
+  }
+
+  private static byte[] read(DataResource blob) throws IOException {
+
+    try (InputStream in = blob.openStream()) {
+      return read(in);
+    }
+  }
+
+  private static byte[] read(InputStream in) {
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    StreamUtilImpl.getInstance().transfer(in, out, false);
+    return out.toByteArray();
+  }
+
+  /**
+   * Test of save, load and delete with de-duplication and reference counting.
+   *
+   * @throws Exception on error.
+   */
+  @Test
+  public void testCrudWithReferenceCount() throws Exception {
+
+    BlobStoreImplMemory store = createStore(1024 * 1024, true);
+    byte[] data = "Hello World!".getBytes(StandardCharsets.UTF_8);
+    Id<DataResource> id1 = save(store, data, data.length);
+    Id<DataResource> id2 = save(store, data, -1);
+    assertThat(id1).isNotEqualTo(id2);
+    assertThat(store.createId(id1.getId().toString())).isEqualTo(id1);
+    assertThat(read(store.load(id1))).isEqualTo(data);
+    // physical data is shared
+    assertThat(store.getUsedBytes()).isEqualTo(64);
+    BlobStat stat = store.stat(id2);
+    assertThat(stat.getSize()).isEqualTo(data.length);
+    assertThat(stat.getHash()).isNotNull();
+    assertThat(stat.getReferenceCount()).isEqualTo(2);
+    assertThat(store.ids().collect(Collectors.toSet())).containsExactlyInAnyOrder(id1, id2);
+    assertThat(store.ids(id1.getId().toString()).collect(Collectors.toList())).containsExactly(id1);
+
+    DataResource blob = store.load(id2);
+    assertThat(store.delete(id1)).isTrue();
+    assertThat(store.delete(id1)).isFalse();
+    assertThat(store.find(id1).isAvailable()).isFalse();
+    assertThat(store.stat(id2).getReferenceCount()).isEqualTo(1);
+    // open stream keeps the data until closed
+    InputStream in = blob.openStream();
+    assertThat(store.delete(id2)).isTrue();
+    assertThat(blob.isAvailable()).isFalse();
+    assertThatThrownBy(() -> blob.openStream()).isInstanceOf(ResourceNotAvailableException.class);
+    assertThat(store.getUsedBytes()).isEqualTo(64);
+    assertThat(read(in)).isEqualTo(data);
+    in.close();
+    assertThat(store.getUsedBytes()).isZero();
+    assertThat(store.ids().count()).isZero();
+  }
+
+  /**
+   * Test of {@link BlobStoreImplMemory#save(DataResource)} and {@link BlobStoreImplMemory#openForWrite()} with BLOBs
+   * spanning multiple chunks.
+   *
+   * @throws Exception on error.
+   */
+  @Test
+  public void testLargeBlobs() throws Exception {
+
+    BlobStoreImplMemory store = createStore(1024 * 1024, true);
+    for (int size : new int[] { 0, 1, 16 * 1024, 16 * 1024 + 1, 100000 }) {
+      byte[] data = createData(size);
+      Id<DataResource> id = save(store, data, size);
+      assertThat(read(store.load(id))).as("size " + size).isEqualTo(data);
+      BlobOutputStream out = store.openForWrite();
+      out.write(data);
+      out.close();
+      assertThat(out.getId()).isNotEqualTo(id);
+      assertThat(read(store.load(out.getId()))).as("write size " + size).isEqualTo(data);
+      assertThat(store.stat(id).getReferenceCount()).isEqualTo(2);
+    }
+    // last chunk has been shrunk to its size class
+    long used = store.getUsedBytes();
+    byte[] data = createData(20 * 1024);
+    try (BlobOutputStream out = store.openForWrite()) {
+      out.write(data);
+    }
+    assertThat(store.getUsedBytes() - used).isEqualTo(16 * 1024 + 4 * 1024);
+    assertThatThrownBy(() -> save(store, createData(100), 99)).isInstanceOf(RuntimeIoException.class);
+    assertThatThrownBy(() -> save(store, createData(100), 101)).isInstanceOf(RuntimeIoException.class);
+    assertThat(store.getUsedBytes() - used).isEqualTo(20 * 1024);
+  }
+
+  /**
+   * Test of the eviction of BLOBs when the capacity is exhausted.
+   *
+   * @throws Exception on error.
+   */
+  @Test
+  public void testEviction() throws Exception {
+
+    // a single slab with space for two BLOBs
+    BlobStoreImplMemory store = createStore(64 * 1024, true);
+    byte[] data1 = createData(32 * 1024);
+    Id<DataResource> first = save(store, data1, data1.length);
+    byte[] data2 = createData(32 * 1024 - 1);
+    Id<DataResource> second = save(store, data2, data2.length);
+    // access makes first the most recently used
+    assertThat(read(store.load(first))).isEqualTo(data1);
+    byte[] data3 = createData(32 * 1024 - 2);
+    Id<DataResource> third = save(store, data3, data3.length);
+    assertThat(store.getAllocatedBytes()).isEqualTo(64 * 1024);
+    assertThat(store.getEvictions()).isEqualTo(1);
+    assertThat(store.find(second).isAvailable()).isFalse();
+    assertThat(read(store.load(first))).isEqualTo(data1);
+    assertThat(read(store.load(third))).isEqualTo(data3);
+    // fails fast without eviction
+    assertThatThrownBy(() -> save(store, createData(10), 200 * 1024)).isInstanceOf(ValueOutOfRangeException.class);
+    assertThat(store.getEvictions()).isEqualTo(1);
+
+    BlobStoreImplMemory bounded = createStore(64 * 1024, false);
+    save(bounded, createData(32 * 1024), 32 * 1024);
+    assertThatThrownBy(() -> save(bounded, createData(40 * 1024), 40 * 1024))
+        .isInstanceOf(ValueOutOfRangeException.class);
+    assertThat(bounded.getUsedBytes()).isEqualTo(32 * 1024);
+  }
+
+}
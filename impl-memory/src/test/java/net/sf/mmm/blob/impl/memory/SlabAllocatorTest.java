@@ -0,0 +1,66 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.impl.memory;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import net.sf.mmm.blob.impl.memory.SlabAllocator.Chunk;
+
+/**
+ * This is the test-case for {@link SlabAllocator}.
+ *
+ * @author hohwille
+ */
+public class SlabAllocatorTest extends Assertions {
+
+  /**
+   * Test of {@link SlabAllocator#getChunkSize(int)}.
+   */
+  @Test
+  public void testChunkSize() {
+
+    SlabAllocator allocator = new SlabAllocator(4096, 1024, 64, 512);
+    assertThat(allocator.getChunkSize(0)).isEqualTo(64);
+    assertThat(allocator.getChunkSize(1)).isEqualTo(64);
+    assertThat(allocator.getChunkSize(64)).isEqualTo(64);
+    assertThat(allocator.getChunkSize(65)).isEqualTo(128);
+    assertThat(allocator.getChunkSize(300)).isEqualTo(512);
+    assertThat(allocator.getChunkSize(512)).isEqualTo(512);
+    assertThatThrownBy(() -> allocator.getChunkSize(513)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new SlabAllocator(4096, 1000, 64, 512)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new SlabAllocator(4096, 256, 64, 512)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  /**
+   * Test of {@link SlabAllocator#allocate(int)} and {@link SlabAllocator#free(Chunk)} up to the capacity.
+   */
+  @Test
+  public void testAllocateAndFree() {
+
+    SlabAllocator allocator = new SlabAllocator(2048, 1024, 64, 512);
+    Chunk large1 = allocator.allocate(512);
+    Chunk large2 = allocator.allocate(400);
+    assertThat(large1.getSize()).isEqualTo(512);
+    assertThat(allocator.getAllocatedBytes()).isEqualTo(1024);
+    large1.getBuffer().put(0, (byte) 1);
+    large2.getBuffer().put(0, (byte) 2);
+    assertThat(large1.getBuffer().get(0)).isEqualTo((byte) 1);
+    assertThat(large2.getBuffer().capacity()).isEqualTo(512);
+    Chunk small = allocator.allocate(10);
+    assertThat(small.getSize()).isEqualTo(64);
+    assertThat(allocator.getAllocatedBytes()).isEqualTo(2048);
+    assertThat(allocator.getUsedBytes()).isEqualTo(1088);
+    // capacity exhausted for the large size class
+    assertThat(allocator.allocate(512)).isNull();
+    // empty slab is recycled for another size class
+    allocator.free(large1);
+    allocator.free(large2);
+    assertThat(allocator.getUsedBytes()).isEqualTo(64);
+    Chunk medium = allocator.allocate(200);
+    assertThat(medium.getSize()).isEqualTo(256);
+    assertThat(allocator.getAllocatedBytes()).isEqualTo(2048);
+    assertThat(allocator.allocate(512)).isNull();
+  }
+
+}
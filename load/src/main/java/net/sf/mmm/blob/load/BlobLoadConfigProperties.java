@@ -0,0 +1,337 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.load;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * The {@link ConfigurationProperties} for {@link BlobLoadGenerator}.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+@ConfigurationProperties(prefix = "blob.load")
+public class BlobLoadConfigProperties {
+
+  private int threads = 16;
+
+  private Duration duration = Duration.ofMinutes(1);
+
+  private Duration reportInterval = Duration.ofSeconds(10);
+
+  private int saveWeight = 30;
+
+  private int findWeight = 20;
+
+  private int loadWeight = 40;
+
+  private int deleteWeight = 10;
+
+  private SizeDistribution sizeDistribution = SizeDistribution.LOG_NORMAL;
+
+  private long sizeMedian = 64 * 1024;
+
+  private double sizeSigma = 1.5;
+
+  private long sizeMinimum = 4 * 1024;
+
+  private double sizeShape = 1.2;
+
+  private long sizeMaximum = 64 * 1024 * 1024;
+
+  private double duplicateRatio = 0.1;
+
+  private boolean verify = true;
+
+  private String histogramLog;
+
+  private long seed;
+
+  /**
+   * The constructor.
+   */
+  public BlobLoadConfigProperties() {
+    super();
+  }
+
+  /**
+   * @return the number of concurrent workers. The default is {@code 16}.
+   */
+  public int getThreads() {
+
+    return this.threads;
+  }
+
+  /**
+   * @param threads the new value of {@link #getThreads()}.
+   */
+  public void setThreads(int threads) {
+
+    this.threads = threads;
+  }
+
+  /**
+   * @return the duration of the load test. The default is one minute.
+   */
+  public Duration getDuration() {
+
+    return this.duration;
+  }
+
+  /**
+   * @param duration the new value of {@link #getDuration()}.
+   */
+  public void setDuration(Duration duration) {
+
+    this.duration = duration;
+  }
+
+  /**
+   * @return the interval in which throughput and latency percentiles are reported. The default is ten seconds.
+   */
+  public Duration getReportInterval() {
+
+    return this.reportInterval;
+  }
+
+  /**
+   * @param reportInterval the new value of {@link #getReportInterval()}.
+   */
+  public void setReportInterval(Duration reportInterval) {
+
+    this.reportInterval = reportInterval;
+  }
+
+  /**
+   * @return the relative weight of {@link LoadOperation#SAVE} in the operation mix. The default is {@code 30}.
+   */
+  public int getSaveWeight() {
+
+    return this.saveWeight;
+  }
+
+  /**
+   * @param saveWeight the new value of {@link #getSaveWeight()}.
+   */
+  public void setSaveWeight(int saveWeight) {
+
+    this.saveWeight = saveWeight;
+  }
+
+  /**
+   * @return the relative weight of {@link LoadOperation#FIND} in the operation mix. The default is {@code 20}.
+   */
+  public int getFindWeight() {
+
+    return this.findWeight;
+  }
+
+  /**
+   * @param findWeight the new value of {@link #getFindWeight()}.
+   */
+  public void setFindWeight(int findWeight) {
+
+    this.findWeight = findWeight;
+  }
+
+  /**
+   * @return the relative weight of {@link LoadOperation#LOAD} in the operation mix. The default is {@code 40}.
+   */
+  public int getLoadWeight() {
+
+    return this.loadWeight;
+  }
+
+  /**
+   * @param loadWeight the new value of {@link #getLoadWeight()}.
+   */
+  public void setLoadWeight(int loadWeight) {
+
+    this.loadWeight = loadWeight;
+  }
+
+  /**
+   * @return the relative weight of {@link LoadOperation#DELETE} in the operation mix. The default is {@code 10}.
+   */
+  public int getDeleteWeight() {
+
+    return this.deleteWeight;
+  }
+
+  /**
+   * @param deleteWeight the new value of {@link #getDeleteWeight()}.
+   */
+  public void setDeleteWeight(int deleteWeight) {
+
+    this.deleteWeight = deleteWeight;
+  }
+
+  /**
+   * @return the {@link SizeDistribution} of the saved BLOBs. The default is {@link SizeDistribution#LOG_NORMAL}.
+   */
+  public SizeDistribution getSizeDistribution() {
+
+    return this.sizeDistribution;
+  }
+
+  /**
+   * @param sizeDistribution the new value of {@link #getSizeDistribution()}.
+   */
+  public void setSizeDistribution(SizeDistribution sizeDistribution) {
+
+    this.sizeDistribution = sizeDistribution;
+  }
+
+  /**
+   * @return the median size in bytes for {@link SizeDistribution#LOG_NORMAL}. The default is 64KiB.
+   */
+  public long getSizeMedian() {
+
+    return this.sizeMedian;
+  }
+
+  /**
+   * @param sizeMedian the new value of {@link #getSizeMedian()}.
+   */
+  public void setSizeMedian(long sizeMedian) {
+
+    this.sizeMedian = sizeMedian;
+  }
+
+  /**
+   * @return the standard deviation of the logarithm of the size for {@link SizeDistribution#LOG_NORMAL}. The
+   *         default is {@code 1.5}.
+   */
+  public double getSizeSigma() {
+
+    return this.sizeSigma;
+  }
+
+  /**
+   * @param sizeSigma the new value of {@link #getSizeSigma()}.
+   */
+  public void setSizeSigma(double sizeSigma) {
+
+    this.sizeSigma = sizeSigma;
+  }
+
+  /**
+   * @return the minimum (scale) size in bytes for {@link SizeDistribution#PARETO}. The default is 4KiB.
+   */
+  public long getSizeMinimum() {
+
+    return this.sizeMinimum;
+  }
+
+  /**
+   * @param sizeMinimum the new value of {@link #getSizeMinimum()}.
+   */
+  public void setSizeMinimum(long sizeMinimum) {
+
+    this.sizeMinimum = sizeMinimum;
+  }
+
+  /**
+   * @return the shape (alpha) for {@link SizeDistribution#PARETO}. Smaller values mean a heavier tail. The
+   *         default is {@code 1.2}.
+   */
+  public double getSizeShape() {
+
+    return this.sizeShape;
+  }
+
+  /**
+   * @param sizeShape the new value of {@link #getSizeShape()}.
+   */
+  public void setSizeShape(double sizeShape) {
+
+    this.sizeShape = sizeShape;
+  }
+
+  /**
+   * @return the maximum size in bytes of a saved BLOB for any {@link SizeDistribution}. The default is 64MiB.
+   */
+  public long getSizeMaximum() {
+
+    return this.sizeMaximum;
+  }
+
+  /**
+   * @param sizeMaximum the new value of {@link #getSizeMaximum()}.
+   */
+  public void setSizeMaximum(long sizeMaximum) {
+
+    this.sizeMaximum = sizeMaximum;
+  }
+
+  /**
+   * @return the ratio of {@link LoadOperation#SAVE saves} that repeat the content of a previously saved BLOB. The
+   *         default is {@code 0.1}.
+   */
+  public double getDuplicateRatio() {
+
+    return this.duplicateRatio;
+  }
+
+  /**
+   * @param duplicateRatio the new value of {@link #getDuplicateRatio()}.
+   */
+  public void setDuplicateRatio(double duplicateRatio) {
+
+    this.duplicateRatio = duplicateRatio;
+  }
+
+  /**
+   * @return {@code true} to verify the content of each {@link LoadOperation#LOAD loaded} BLOB and to reconcile all
+   *         BLOBs of the store after the load test (requires a store that is not used otherwise), {@code false}
+   *         otherwise. The default is {@code true}.
+   */
+  public boolean isVerify() {
+
+    return this.verify;
+  }
+
+  /**
+   * @param verify the new value of {@link #isVerify()}.
+   */
+  public void setVerify(boolean verify) {
+
+    this.verify = verify;
+  }
+
+  /**
+   * @return the path of the file where the interval histograms of each {@link LoadOperation} are written in the
+   *         HdrHistogram log format (tagged with the {@link LoadOperation}) or {@code null} (default) for none.
+   */
+  public String getHistogramLog() {
+
+    return this.histogramLog;
+  }
+
+  /**
+   * @param histogramLog the new value of {@link #getHistogramLog()}.
+   */
+  public void setHistogramLog(String histogramLog) {
+
+    this.histogramLog = histogramLog;
+  }
+
+  /**
+   * @return the seed for the random generators so a load test can be repeated. The default is {@code 0}.
+   */
+  public long getSeed() {
+
+    return this.seed;
+  }
+
+  /**
+   * @param seed the new value of {@link #getSeed()}.
+   */
+  public void setSeed(long seed) {
+
+    this.seed = seed;
+  }
+
+}
@@ -0,0 +1,548 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.load;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import javax.inject.Inject;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+
+import net.sf.mmm.blob.api.BlobStore;
+import net.sf.mmm.blob.impl.AbstractBlobStoreFs;
+import net.sf.mmm.blob.impl.BlobStoreFsConfigProperties;
+import net.sf.mmm.blob.impl.BlobStoreImplDeduplicatingFs;
+import net.sf.mmm.blob.impl.BlobStoreImplDeduplicatingFsWithRefCount;
+import net.sf.mmm.blob.impl.BlobStoreImplSimpleFs;
+import net.sf.mmm.util.component.base.AbstractLoggableComponent;
+import net.sf.mmm.util.data.api.id.Id;
+import net.sf.mmm.util.exception.api.ObjectNotFoundException;
+import net.sf.mmm.util.io.api.IoMode;
+import net.sf.mmm.util.io.api.RuntimeIoException;
+import net.sf.mmm.util.resource.api.DataResource;
+import net.sf.mmm.util.resource.base.StreamResource;
+
+/**
+ * This is a load generator that drives a {@link BlobStore} with production-like traffic. A configurable number of
+ * workers executes a weighted mix of {@link LoadOperation}s. Saved BLOBs have sizes following a
+ * {@link SizeDistribution} and a configurable ratio repeats the content of a live BLOB to exercise de-duplication. The data is
+ * generated from a seed so it never has to be held in memory and can be verified when loaded.<br>
+ * Latencies are recorded per {@link LoadOperation} in HdrHistogram {@link Recorder}s. Throughput and percentiles are
+ * logged every {@link BlobLoadConfigProperties#getReportInterval() report interval} and optionally written to a
+ * {@link BlobLoadConfigProperties#getHistogramLog() histogram log}.<br>
+ * While measuring, {@link LoadAnomaly anomalies} of the store are detected: BLOBs that are lost or corrupt and, after
+ * the load test, BLOBs {@link BlobStore#ids() listed} by the store that have never been saved or already been deleted.
+ * Each live {@link BlobStore#save(DataResource) ID} is used exclusively by one worker at a time so races of the workers
+ * themselves can not cause false anomalies. This also holds if the store returns the same ID for duplicate content.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+public class BlobLoadGenerator extends AbstractLoggableComponent {
+
+  private static final long HIGHEST_LATENCY = TimeUnit.HOURS.toMicros(1);
+
+  private static final int MAX_LOGGED_ANOMALIES = 100;
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final BlobStore store;
+
+  private final Object reportLock;
+
+  private BlobLoadConfigProperties config;
+
+  private Recorder[] recorders;
+
+  private LivePool pool;
+
+  private LoadReport report;
+
+  private HistogramLogWriter histogramLog;
+
+  private long intervalStart;
+
+  /**
+   * The constructor.
+   *
+   * @param store the {@link BlobStore} to put under load.
+   */
+  public BlobLoadGenerator(BlobStore store) {
+    super();
+    this.store = store;
+    this.reportLock = new Object();
+  }
+
+  /**
+   * @return the {@link BlobLoadConfigProperties}.
+   */
+  public BlobLoadConfigProperties getConfig() {
+
+    return this.config;
+  }
+
+  /**
+   * @param config the {@link BlobLoadConfigProperties} to {@link Inject}.
+   */
+  @Inject
+  public void setConfig(BlobLoadConfigProperties config) {
+
+    this.config = config;
+  }
+
+  @Override
+  protected void doInitialize() {
+
+    super.doInitialize();
+    if (this.config == null) {
+      this.config = new BlobLoadConfigProperties();
+    }
+  }
+
+  /**
+   * Runs the load test for the configured {@link BlobLoadConfigProperties#getDuration() duration}.
+   *
+   * @return the {@link LoadReport}.
+   */
+  public synchronized LoadReport run() {
+
+    int weight = this.config.getSaveWeight() + this.config.getFindWeight() + this.config.getLoadWeight()
+        + this.config.getDeleteWeight();
+    if (weight <= 0) {
+      throw new IllegalStateException("Sum of operation weights has to be positive");
+    }
+    LoadOperation[] operations = LoadOperation.values();
+    this.recorders = new Recorder[operations.length];
+    for (LoadOperation operation : operations) {
+      this.recorders[operation.ordinal()] = new Recorder(HIGHEST_LATENCY, 3);
+    }
+    this.pool = new LivePool();
+    this.report = new LoadReport(HIGHEST_LATENCY);
+    openHistogramLog();
+    int threads = this.config.getThreads();
+    ExecutorService workers = Executors.newFixedThreadPool(threads, createThreadFactory("blob-load-"));
+    ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(createThreadFactory("blob-report-"));
+    long start = System.nanoTime();
+    long deadline = start + this.config.getDuration().toNanos();
+    this.intervalStart = start;
+    try {
+      long interval = this.config.getReportInterval().toMillis();
+      if (interval > 0) {
+        reporter.scheduleAtFixedRate(this::reportInterval, interval, interval, TimeUnit.MILLISECONDS);
+      }
+      List<Future<?>> futures = new ArrayList<>(threads);
+      for (int i = 0; i < threads; i++) {
+        long seed = this.config.getSeed() + i;
+        futures.add(workers.submit(() -> work(new Random(seed), deadline)));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for load test", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Load test failed", e.getCause());
+    } finally {
+      workers.shutdownNow();
+      reporter.shutdownNow();
+    }
+    try {
+      // a running interval report must complete before the final one
+      reporter.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    this.report.setDuration(Duration.ofNanos(System.nanoTime() - start));
+    reportInterval();
+    if (this.histogramLog != null) {
+      this.histogramLog.close();
+      this.histogramLog = null;
+    }
+    if (this.config.isVerify()) {
+      verify();
+    }
+    getLogger().info("Load test completed:\n{}", this.report);
+    return this.report;
+  }
+
+  private static ThreadFactory createThreadFactory(String prefix) {
+
+    AtomicInteger counter = new AtomicInteger();
+    return r -> {
+      Thread thread = new Thread(r, prefix + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  private void openHistogramLog() {
+
+    String path = this.config.getHistogramLog();
+    if ((path == null) || path.isEmpty()) {
+      return;
+    }
+    try {
+      this.histogramLog = new HistogramLogWriter(new File(path));
+    } catch (FileNotFoundException e) {
+      throw new RuntimeIoException(e, IoMode.OPEN);
+    }
+    this.histogramLog.outputLogFormatVersion();
+    long now = System.currentTimeMillis();
+    this.histogramLog.outputStartTime(now);
+    this.histogramLog.setBaseTime(now);
+    this.histogramLog.outputLegend();
+  }
+
+  private void reportInterval() {
+
+    // not synchronized on this as run() holds that monitor while the reporter is active
+    StringBuilder sb = new StringBuilder(LoadReport.formatHeader());
+    double seconds;
+    synchronized (this.reportLock) {
+      long now = System.nanoTime();
+      seconds = (now - this.intervalStart) / 1_000_000_000.0;
+      this.intervalStart = now;
+      for (LoadOperation operation : LoadOperation.values()) {
+        Histogram interval = this.recorders[operation.ordinal()].getIntervalHistogram();
+        interval.setTag(operation.name());
+        this.report.add(operation, interval);
+        if (this.histogramLog != null) {
+          this.histogramLog.outputIntervalHistogram(interval);
+        }
+        sb.append('\n').append(LoadReport.format(operation, interval, seconds));
+      }
+    }
+    getLogger().info("Load interval of {}s:\n{}", String.format(Locale.ROOT, "%.1f", Double.valueOf(seconds)), sb);
+  }
+
+  private void work(Random random, long deadline) {
+
+    int[] weights = { this.config.getSaveWeight(), this.config.getFindWeight(), this.config.getLoadWeight(),
+    this.config.getDeleteWeight() };
+    int total = 0;
+    for (int weight : weights) {
+      total += weight;
+    }
+    LoadOperation[] operations = LoadOperation.values();
+    while ((System.nanoTime() < deadline) && !Thread.currentThread().isInterrupted()) {
+      int value = random.nextInt(total);
+      int index = 0;
+      while (value >= weights[index]) {
+        value -= weights[index];
+        index++;
+      }
+      LoadOperation operation = operations[index];
+      try {
+        execute(operation, random);
+      } catch (RuntimeException e) {
+        this.report.addError(operation);
+        getLogger().debug("Failed to {} BLOB", operation, e);
+      }
+    }
+  }
+
+  private void execute(LoadOperation operation, Random random) {
+
+    if (operation == LoadOperation.SAVE) {
+      save(random);
+      return;
+    }
+    LiveBlob blob = this.pool.borrow(random);
+    if (blob == null) {
+      save(random);
+      return;
+    }
+    boolean live = true;
+    try {
+      switch (operation) {
+        case FIND:
+          live = find(blob);
+          break;
+        case LOAD:
+          live = load(blob);
+          break;
+        default:
+          delete(blob);
+          live = false;
+      }
+    } finally {
+      if (live) {
+        this.pool.giveBack(blob);
+      } else {
+        this.pool.remove(blob);
+      }
+    }
+  }
+
+  private void record(LoadOperation operation, long start) {
+
+    long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+    this.recorders[operation.ordinal()].recordValue(Math.min(micros, HIGHEST_LATENCY));
+  }
+
+  private void save(Random random) {
+
+    LiveBlob content = null;
+    if (random.nextDouble() < this.config.getDuplicateRatio()) {
+      // borrowed so it can not be deleted concurrently if the store returns the same ID for the duplicate
+      content = this.pool.borrow(random);
+    }
+    try {
+      long seed;
+      long size;
+      if (content == null) {
+        seed = random.nextLong();
+        size = this.config.getSizeDistribution().sample(random, this.config);
+      } else {
+        seed = content.getSeed();
+        size = content.getSize();
+      }
+      DataResource resource = new StreamResource(new GeneratedInputStream(seed, size),
+          "load-" + Long.toHexString(seed), size);
+      long start = System.nanoTime();
+      Id<DataResource> id = this.store.save(resource);
+      record(LoadOperation.SAVE, start);
+      this.pool.add(new LiveBlob(id, seed, size));
+    } finally {
+      if (content != null) {
+        this.pool.giveBack(content);
+      }
+    }
+  }
+
+  private boolean find(LiveBlob blob) {
+
+    long start = System.nanoTime();
+    DataResource resource = this.store.find(blob.getId());
+    boolean available = resource.isAvailable();
+    record(LoadOperation.FIND, start);
+    if (!available) {
+      anomaly(LoadAnomaly.LOST_REFERENCE, blob.getId());
+      return false;
+    }
+    if (this.config.isVerify() && (resource.getSize() != blob.getSize())) {
+      anomaly(LoadAnomaly.CORRUPT_CONTENT, blob.getId());
+    }
+    return true;
+  }
+
+  private boolean load(LiveBlob blob) {
+
+    long start = System.nanoTime();
+    boolean equal;
+    try (InputStream in = this.store.load(blob.getId()).openStream()) {
+      if (this.config.isVerify()) {
+        equal = isEqual(in, new GeneratedInputStream(blob.getSeed(), blob.getSize()));
+      } else {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        while (in.read(buffer) >= 0) {
+          // only read
+        }
+        equal = true;
+      }
+    } catch (ObjectNotFoundException e) {
+      anomaly(LoadAnomaly.LOST_REFERENCE, blob.getId());
+      return false;
+    } catch (IOException e) {
+      throw new RuntimeIoException(e, IoMode.READ);
+    }
+    record(LoadOperation.LOAD, start);
+    if (!equal) {
+      anomaly(LoadAnomaly.CORRUPT_CONTENT, blob.getId());
+    }
+    return true;
+  }
+
+  private static boolean isEqual(InputStream in, InputStream expected) throws IOException {
+
+    byte[] buffer = new byte[BUFFER_SIZE];
+    byte[] expectedBuffer = new byte[BUFFER_SIZE];
+    while (true) {
+      int count = in.read(buffer);
+      if (count < 0) {
+        return expected.read() < 0;
+      }
+      int offset = 0;
+      while (offset < count) {
+        int expectedCount = expected.read(expectedBuffer, offset, count - offset);
+        if (expectedCount < 0) {
+          return false;
+        }
+        offset += expectedCount;
+      }
+      for (int i = 0; i < count; i++) {
+        if (buffer[i] != expectedBuffer[i]) {
+          return false;
+        }
+      }
+    }
+  }
+
+  private void delete(LiveBlob blob) {
+
+    long start = System.nanoTime();
+    boolean deleted = this.store.delete(blob.getId());
+    record(LoadOperation.DELETE, start);
+    if (!deleted) {
+      anomaly(LoadAnomaly.LOST_REFERENCE, blob.getId());
+    }
+  }
+
+  private void anomaly(LoadAnomaly anomaly, Id<DataResource> id) {
+
+    long count = this.report.addAnomaly(anomaly);
+    if (count <= MAX_LOGGED_ANOMALIES) {
+      getLogger().warn("Detected {} for BLOB {}", anomaly, id);
+    }
+  }
+
+  /**
+   * Reconciles the BLOBs that should be live with the BLOBs {@link BlobStore#ids() listed} by the store.
+   */
+  private void verify() {
+
+    Set<String> expected = new HashSet<>();
+    for (LiveBlob blob : this.pool.getAll()) {
+      if (this.store.find(blob.getId()).isAvailable()) {
+        expected.add(blob.getId().getId().toString());
+      } else {
+        anomaly(LoadAnomaly.LOST_REFERENCE, blob.getId());
+      }
+    }
+    try (Stream<Id<DataResource>> ids = this.store.ids()) {
+      ids.filter(id -> !expected.contains(id.getId().toString()))
+          .forEach(id -> anomaly(LoadAnomaly.ORPHANED_BLOB, id));
+    } catch (UnsupportedOperationException e) {
+      getLogger().info("Store does not support listing - orphaned BLOBs are not detected.");
+    }
+  }
+
+  /**
+   * Runs a load test against a file-system {@link BlobStore} and logs the {@link LoadReport}.
+   *
+   * @param args the command-line arguments: the type of the store ({@code simple}, {@code dedup}, or
+   *        {@code refcount}), the directory of the store and optional {@code <property>=<value>} pairs with the
+   *        properties of {@link BlobLoadConfigProperties} (e.g. {@code threads=32}, {@code duration=PT5M},
+   *        {@code size-distribution=pareto}).
+   */
+  public static void main(String[] args) {
+
+    if (args.length < 2) {
+      System.err.println("Usage: BlobLoadGenerator (simple|dedup|refcount) <directory> [<property>=<value>]*");
+      return;
+    }
+    AbstractBlobStoreFs blobStore;
+    switch (args[0]) {
+      case "simple":
+        blobStore = new BlobStoreImplSimpleFs();
+        break;
+      case "dedup":
+        blobStore = new BlobStoreImplDeduplicatingFs();
+        break;
+      case "refcount":
+        blobStore = new BlobStoreImplDeduplicatingFsWithRefCount();
+        break;
+      default:
+        throw new IllegalArgumentException(args[0]);
+    }
+    BlobStoreFsConfigProperties storeConfig = new BlobStoreFsConfigProperties();
+    storeConfig.setDirectory(args[1]);
+    blobStore.setConfig(storeConfig);
+    blobStore.initialize();
+    BlobLoadConfigProperties loadConfig = new BlobLoadConfigProperties();
+    for (int i = 2; i < args.length; i++) {
+      String arg = args[i];
+      int equals = arg.indexOf('=');
+      if (equals <= 0) {
+        throw new IllegalArgumentException(arg);
+      }
+      configure(loadConfig, arg.substring(0, equals), arg.substring(equals + 1));
+    }
+    BlobLoadGenerator generator = new BlobLoadGenerator(blobStore);
+    generator.setConfig(loadConfig);
+    generator.initialize();
+    generator.run();
+  }
+
+  private static void configure(BlobLoadConfigProperties config, String property, String value) {
+
+    switch (property) {
+      case "threads":
+        config.setThreads(Integer.parseInt(value));
+        break;
+      case "duration":
+        config.setDuration(Duration.parse(value));
+        break;
+      case "report-interval":
+        config.setReportInterval(Duration.parse(value));
+        break;
+      case "save-weight":
+        config.setSaveWeight(Integer.parseInt(value));
+        break;
+      case "find-weight":
+        config.setFindWeight(Integer.parseInt(value));
+        break;
+      case "load-weight":
+        config.setLoadWeight(Integer.parseInt(value));
+        break;
+      case "delete-weight":
+        config.setDeleteWeight(Integer.parseInt(value));
+        break;
+      case "size-distribution":
+        config.setSizeDistribution(SizeDistribution.valueOf(value.toUpperCase(Locale.ROOT).replace('-', '_')));
+        break;
+      case "size-median":
+        config.setSizeMedian(Long.parseLong(value));
+        break;
+      case "size-sigma":
+        config.setSizeSigma(Double.parseDouble(value));
+        break;
+      case "size-minimum":
+        config.setSizeMinimum(Long.parseLong(value));
+        break;
+      case "size-shape":
+        config.setSizeShape(Double.parseDouble(value));
+        break;
+      case "size-maximum":
+        config.setSizeMaximum(Long.parseLong(value));
+        break;
+      case "duplicate-ratio":
+        config.setDuplicateRatio(Double.parseDouble(value));
+        break;
+      case "verify":
+        config.setVerify(Boolean.parseBoolean(value));
+        break;
+      case "histogram-log":
+        config.setHistogramLog(value);
+        break;
+      case "seed":
+        config.setSeed(Long.parseLong(value));
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown property " + property);
+    }
+  }
+
+}
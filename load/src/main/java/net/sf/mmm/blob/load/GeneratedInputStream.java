@@ -0,0 +1,84 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.load;
+
+import java.io.InputStream;
+
+/**
+ * An {@link InputStream} of pseudo-random data that is fully determined by a seed and a size. This allows to save
+ * BLOBs of arbitrary size without holding them in memory and to verify their content when loaded again.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+class GeneratedInputStream extends InputStream {
+
+  private final long size;
+
+  private long position;
+
+  private long state;
+
+  private long word;
+
+  /**
+   * The constructor.
+   *
+   * @param seed the seed that determines the data.
+   * @param size the number of bytes to generate.
+   */
+  GeneratedInputStream(long seed, long size) {
+    super();
+    this.size = size;
+    this.state = seed ^ 0x9E3779B97F4A7C15L;
+    if (this.state == 0) {
+      this.state = 1;
+    }
+  }
+
+  private int nextByte() {
+
+    int shift = (int) (this.position & 7);
+    if (shift == 0) {
+      // xorshift64*
+      this.state ^= (this.state >>> 12);
+      this.state ^= (this.state << 25);
+      this.state ^= (this.state >>> 27);
+      this.word = this.state * 0x2545F4914F6CDD1DL;
+    }
+    this.position++;
+    return (int) (this.word >>> (shift * 8)) & 0xFF;
+  }
+
+  @Override
+  public int read() {
+
+    if (this.position >= this.size) {
+      return -1;
+    }
+    return nextByte();
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) {
+
+    if (len == 0) {
+      return 0;
+    }
+    if (this.position >= this.size) {
+      return -1;
+    }
+    int count = (int) Math.min(len, this.size - this.position);
+    for (int i = 0; i < count; i++) {
+      b[off + i] = (byte) nextByte();
+    }
+    return count;
+  }
+
+  @Override
+  public int available() {
+
+    return (int) Math.min(Integer.MAX_VALUE, this.size - this.position);
+  }
+
+}
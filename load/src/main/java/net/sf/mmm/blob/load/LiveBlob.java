@@ -0,0 +1,61 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.load;
+
+import net.sf.mmm.util.data.api.id.Id;
+import net.sf.mmm.util.resource.api.DataResource;
+
+/**
+ * A BLOB saved by the {@link BlobLoadGenerator} together with the parameters of its {@link GeneratedInputStream
+ * content}.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+class LiveBlob {
+
+  private final Id<DataResource> id;
+
+  private final long seed;
+
+  private final long size;
+
+  /**
+   * The constructor.
+   *
+   * @param id the {@link Id} of the saved BLOB.
+   * @param seed the seed of the {@link GeneratedInputStream content}.
+   * @param size the size of the {@link GeneratedInputStream content}.
+   */
+  LiveBlob(Id<DataResource> id, long seed, long size) {
+    super();
+    this.id = id;
+    this.seed = seed;
+    this.size = size;
+  }
+
+  /**
+   * @return the {@link Id} of the saved BLOB.
+   */
+  Id<DataResource> getId() {
+
+    return this.id;
+  }
+
+  /**
+   * @return the seed of the {@link GeneratedInputStream content}.
+   */
+  long getSeed() {
+
+    return this.seed;
+  }
+
+  /**
+   * @return the size of the {@link GeneratedInputStream content}.
+   */
+  long getSize() {
+
+    return this.size;
+  }
+
+}
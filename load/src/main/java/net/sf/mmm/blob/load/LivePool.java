@@ -0,0 +1,96 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.load;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * The pool of {@link LiveBlob}s that have been saved and not deleted. A {@link LiveBlob} is {@link #borrow(Random)
+ * borrowed} exclusively by one worker so a BLOB is never deleted while another worker reads it. Otherwise the
+ * {@link BlobLoadGenerator} could not distinguish an anomaly of the store from a race of its own workers.<br>
+ * A store may return the {@link LiveBlob#getId() ID} of a live BLOB when its content is saved again (e.g. a
+ * de-duplicating store without reference counting). As a single delete removes the BLOB for all these saves, the pool
+ * contains at most one {@link LiveBlob} per ID.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+class LivePool {
+
+  private final List<LiveBlob> blobs;
+
+  private final Set<String> ids;
+
+  /**
+   * The constructor.
+   */
+  LivePool() {
+    super();
+    this.blobs = new ArrayList<>();
+    this.ids = new HashSet<>();
+  }
+
+  private static String getKey(LiveBlob blob) {
+
+    return blob.getId().getId().toString();
+  }
+
+  /**
+   * @param blob the {@link LiveBlob} that has been saved. Ignored if a {@link LiveBlob} with the same
+   *        {@link LiveBlob#getId() ID} is already live (in this pool or {@link #borrow(Random) borrowed}).
+   */
+  synchronized void add(LiveBlob blob) {
+
+    if (this.ids.add(getKey(blob))) {
+      this.blobs.add(blob);
+    }
+  }
+
+  /**
+   * @param blob the {@link #borrow(Random) borrowed} {@link LiveBlob} to return as it is still live.
+   */
+  synchronized void giveBack(LiveBlob blob) {
+
+    this.blobs.add(blob);
+  }
+
+  /**
+   * @param blob the {@link #borrow(Random) borrowed} {@link LiveBlob} that has been deleted or lost.
+   */
+  synchronized void remove(LiveBlob blob) {
+
+    this.ids.remove(getKey(blob));
+  }
+
+  /**
+   * @param random the {@link Random} to select the {@link LiveBlob}.
+   * @return a random {@link LiveBlob} that is removed from this pool until it is {@link #giveBack(LiveBlob) given
+   *         back} or {@link #remove(LiveBlob) removed} or {@code null} if this pool is empty.
+   */
+  synchronized LiveBlob borrow(Random random) {
+
+    int size = this.blobs.size();
+    if (size == 0) {
+      return null;
+    }
+    int index = random.nextInt(size);
+    LiveBlob last = this.blobs.remove(size - 1);
+    if (index == size - 1) {
+      return last;
+    }
+    return this.blobs.set(index, last);
+  }
+
+  /**
+   * @return a copy of all {@link LiveBlob}s currently in this pool.
+   */
+  synchronized List<LiveBlob> getAll() {
+
+    return new ArrayList<>(this.blobs);
+  }
+
+}
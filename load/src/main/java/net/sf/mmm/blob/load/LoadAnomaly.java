@@ -0,0 +1,28 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.load;
+
+import net.sf.mmm.blob.api.BlobStore;
+import net.sf.mmm.util.data.api.id.Id;
+
+/**
+ * The correctness anomalies detected by the {@link BlobLoadGenerator}.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+public enum LoadAnomaly {
+
+  /** A BLOB that has been saved and not deleted is not available (anymore). */
+  LOST_REFERENCE,
+
+  /** A BLOB has a different size or data than it has been saved with. */
+  CORRUPT_CONTENT,
+
+  /**
+   * The store {@link BlobStore#ids() lists} an {@link Id} that has never been saved or has already been deleted (e.g.
+   * a reference or folder left behind).
+   */
+  ORPHANED_BLOB
+
+}
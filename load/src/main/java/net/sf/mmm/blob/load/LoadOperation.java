@@ -0,0 +1,29 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.load;
+
+import net.sf.mmm.blob.api.BlobStore;
+import net.sf.mmm.util.data.api.id.Id;
+import net.sf.mmm.util.resource.api.DataResource;
+
+/**
+ * The operations performed by the {@link BlobLoadGenerator}.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+public enum LoadOperation {
+
+  /** {@link BlobStore#save(DataResource) Saves} a new BLOB. */
+  SAVE,
+
+  /** {@link BlobStore#find(Id) Finds} a BLOB without reading its data. */
+  FIND,
+
+  /** {@link BlobStore#load(Id) Loads} a BLOB and reads its entire data. */
+  LOAD,
+
+  /** {@link BlobStore#delete(Id) Deletes} a BLOB. */
+  DELETE
+
+}
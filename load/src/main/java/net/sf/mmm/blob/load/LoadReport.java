@@ -0,0 +1,197 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.load;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * The result of a {@link BlobLoadGenerator#run() load test}. Latencies are recorded in microseconds.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+public class LoadReport {
+
+  private final Histogram[] histograms;
+
+  private final AtomicLongArray errors;
+
+  private final AtomicLongArray anomalies;
+
+  private Duration duration;
+
+  /**
+   * The constructor.
+   *
+   * @param highestLatency the highest latency in microseconds that can be recorded.
+   */
+  LoadReport(long highestLatency) {
+    super();
+    LoadOperation[] operations = LoadOperation.values();
+    this.histograms = new Histogram[operations.length];
+    for (LoadOperation operation : operations) {
+      Histogram histogram = new Histogram(highestLatency, 3);
+      histogram.setTag(operation.name());
+      this.histograms[operation.ordinal()] = histogram;
+    }
+    this.errors = new AtomicLongArray(operations.length);
+    this.anomalies = new AtomicLongArray(LoadAnomaly.values().length);
+    this.duration = Duration.ZERO;
+  }
+
+  /**
+   * @param operation the {@link LoadOperation}.
+   * @return the {@link Histogram} with the latencies in microseconds of all successful executions of the given
+   *         {@link LoadOperation}.
+   */
+  public Histogram getHistogram(LoadOperation operation) {
+
+    return this.histograms[operation.ordinal()];
+  }
+
+  /**
+   * @param operation the {@link LoadOperation}.
+   * @return the number of successful executions of the given {@link LoadOperation}.
+   */
+  public long getCount(LoadOperation operation) {
+
+    return getHistogram(operation).getTotalCount();
+  }
+
+  /**
+   * @param operation the {@link LoadOperation}.
+   * @return the average number of successful executions of the given {@link LoadOperation} per second.
+   */
+  public double getThroughput(LoadOperation operation) {
+
+    long millis = this.duration.toMillis();
+    if (millis == 0) {
+      return 0;
+    }
+    return getCount(operation) * 1000.0 / millis;
+  }
+
+  /**
+   * @param operation the {@link LoadOperation}.
+   * @return the number of executions of the given {@link LoadOperation} that failed with an exception.
+   */
+  public long getErrors(LoadOperation operation) {
+
+    return this.errors.get(operation.ordinal());
+  }
+
+  /**
+   * @param anomaly the {@link LoadAnomaly}.
+   * @return the number of occurrences of the given {@link LoadAnomaly}.
+   */
+  public long getAnomalies(LoadAnomaly anomaly) {
+
+    return this.anomalies.get(anomaly.ordinal());
+  }
+
+  /**
+   * @return {@code true} if any {@link LoadAnomaly} has been detected, {@code false} otherwise.
+   */
+  public boolean hasAnomalies() {
+
+    for (LoadAnomaly anomaly : LoadAnomaly.values()) {
+      if (getAnomalies(anomaly) > 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the {@link Duration} of the load test.
+   */
+  public Duration getDuration() {
+
+    return this.duration;
+  }
+
+  /**
+   * @param duration the new value of {@link #getDuration()}.
+   */
+  void setDuration(Duration duration) {
+
+    this.duration = duration;
+  }
+
+  /**
+   * @param operation the {@link LoadOperation}.
+   * @param interval the {@link Histogram} of an interval to add to the {@link #getHistogram(LoadOperation) total}.
+   */
+  void add(LoadOperation operation, Histogram interval) {
+
+    getHistogram(operation).add(interval);
+  }
+
+  /**
+   * @param operation the {@link LoadOperation} that failed.
+   */
+  void addError(LoadOperation operation) {
+
+    this.errors.incrementAndGet(operation.ordinal());
+  }
+
+  /**
+   * @param anomaly the detected {@link LoadAnomaly}.
+   * @return the number of occurrences of the given {@link LoadAnomaly} including this one.
+   */
+  long addAnomaly(LoadAnomaly anomaly) {
+
+    return this.anomalies.incrementAndGet(anomaly.ordinal());
+  }
+
+  /**
+   * @param operation the {@link LoadOperation}.
+   * @param histogram the {@link Histogram} with the latencies.
+   * @param seconds the number of seconds measured by the {@link Histogram}.
+   * @return a single line with count, throughput and latency percentiles.
+   */
+  static String format(LoadOperation operation, Histogram histogram, double seconds) {
+
+    long count = histogram.getTotalCount();
+    double throughput = 0;
+    if (seconds > 0) {
+      throughput = count / seconds;
+    }
+    return String.format(Locale.ROOT, "%-6s %10d %10.1f %10d %10d %10d %10d", operation, Long.valueOf(count),
+        Double.valueOf(throughput), Long.valueOf(histogram.getValueAtPercentile(50)),
+        Long.valueOf(histogram.getValueAtPercentile(99)), Long.valueOf(histogram.getValueAtPercentile(99.9)),
+        Long.valueOf(histogram.getMaxValue()));
+  }
+
+  /**
+   * @return the header for the lines created by {@link #format(LoadOperation, Histogram, double)}.
+   */
+  static String formatHeader() {
+
+    return String.format(Locale.ROOT, "%-6s %10s %10s %10s %10s %10s %10s", "op", "count", "ops/s", "p50[us]",
+        "p99[us]", "p99.9[us]", "max[us]");
+  }
+
+  @Override
+  public String toString() {
+
+    StringBuilder sb = new StringBuilder();
+    sb.append("Duration: ").append(this.duration).append('\n');
+    sb.append(formatHeader()).append(" errors\n");
+    double seconds = this.duration.toMillis() / 1000.0;
+    for (LoadOperation operation : LoadOperation.values()) {
+      sb.append(format(operation, getHistogram(operation), seconds));
+      sb.append(' ').append(getErrors(operation)).append('\n');
+    }
+    sb.append("Anomalies:");
+    for (LoadAnomaly anomaly : LoadAnomaly.values()) {
+      sb.append(' ').append(anomaly).append('=').append(getAnomalies(anomaly));
+    }
+    return sb.toString();
+  }
+
+}
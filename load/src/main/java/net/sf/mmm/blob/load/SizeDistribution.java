@@ -0,0 +1,57 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.load;
+
+import java.util.Random;
+
+/**
+ * The statistical distribution of the sizes of the BLOBs saved by the {@link BlobLoadGenerator}. Each sample is
+ * limited to the {@link BlobLoadConfigProperties#getSizeMaximum() maximum size}.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+public enum SizeDistribution {
+
+  /**
+   * Log-normal distribution with the given {@link BlobLoadConfigProperties#getSizeMedian() median} and
+   * {@link BlobLoadConfigProperties#getSizeSigma() sigma}. Typical for documents and images.
+   */
+  LOG_NORMAL {
+
+    @Override
+    double next(Random random, BlobLoadConfigProperties config) {
+
+      return config.getSizeMedian() * Math.exp(config.getSizeSigma() * random.nextGaussian());
+    }
+  },
+
+  /**
+   * Pareto distribution with the given {@link BlobLoadConfigProperties#getSizeMinimum() minimum} and
+   * {@link BlobLoadConfigProperties#getSizeShape() shape}. Many small BLOBs and a heavy tail of huge ones (e.g. media
+   * files).
+   */
+  PARETO {
+
+    @Override
+    double next(Random random, BlobLoadConfigProperties config) {
+
+      double uniform = 1.0 - random.nextDouble();
+      return config.getSizeMinimum() / Math.pow(uniform, 1.0 / config.getSizeShape());
+    }
+  };
+
+  abstract double next(Random random, BlobLoadConfigProperties config);
+
+  /**
+   * @param random the {@link Random} to use.
+   * @param config the {@link BlobLoadConfigProperties} with the parameters of the distribution.
+   * @return the next random size in bytes.
+   */
+  public long sample(Random random, BlobLoadConfigProperties config) {
+
+    double size = next(random, config);
+    return Math.max(0, Math.min(config.getSizeMaximum(), Math.round(size)));
+  }
+
+}
@@ -0,0 +1,13 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+/**
+ * Provides a load generator for BLOB stores.
+ * <a name="documentation"></a><h2>BLOB Load Generator</h2>
+ * This package contains {@link net.sf.mmm.blob.load.BlobLoadGenerator} that drives any
+ * {@link net.sf.mmm.blob.api.BlobStore} with a configurable mix of {@link net.sf.mmm.blob.load.LoadOperation}s, BLOB
+ * sizes following a {@link net.sf.mmm.blob.load.SizeDistribution}, duplicate content and concurrency. It reports the
+ * throughput and the <a href="http://hdrhistogram.org/">HdrHistogram</a> latency percentiles per operation over time
+ * and detects {@link net.sf.mmm.blob.load.LoadAnomaly anomalies} such as lost references or orphaned BLOBs while
+ * measuring.
+ */
+package net.sf.mmm.blob.load;
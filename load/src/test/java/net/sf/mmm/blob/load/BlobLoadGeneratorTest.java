@@ -0,0 +1,102 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.load;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import net.sf.mmm.blob.impl.AbstractBlobStoreFs;
+import net.sf.mmm.blob.impl.BlobStoreFsConfigProperties;
+import net.sf.mmm.blob.impl.BlobStoreImplDeduplicatingFs;
+import net.sf.mmm.blob.impl.BlobStoreImplDeduplicatingFsWithRefCount;
+import net.sf.mmm.util.file.api.FileUtilLimited;
+import net.sf.mmm.util.file.base.FileUtilImpl;
+
+/**
+ * The test-case for {@link BlobLoadGenerator}.
+ *
+ * @author hohwille
+ */
+public class BlobLoadGeneratorTest extends Assertions {
+
+  /**
+   * Test of {@link BlobLoadGenerator#run()} with a {@link BlobStoreImplDeduplicatingFsWithRefCount}.
+   */
+  @Test
+  public void testRun() {
+
+    run(new BlobStoreImplDeduplicatingFsWithRefCount(), "/.blobs-load");
+  }
+
+  /**
+   * Test of {@link BlobLoadGenerator#run()} with a {@link BlobStoreImplDeduplicatingFs} that returns the same ID for
+   * duplicate content.
+   */
+  @Test
+  public void testRunWithSharedIds() {
+
+    run(new BlobStoreImplDeduplicatingFs(), "/.blobs-load-dedup");
+  }
+
+  private void run(AbstractBlobStoreFs store, String path) {
+
+    BlobStoreFsConfigProperties storeConfig = new BlobStoreFsConfigProperties();
+    String directory = System.getProperty(FileUtilLimited.PROPERTY_TMP_DIR) + path;
+    FileUtilImpl.getInstance().deleteRecursive(new File(directory));
+    storeConfig.setDirectory(directory);
+    store.setConfig(storeConfig);
+    store.initialize();
+
+    BlobLoadConfigProperties config = new BlobLoadConfigProperties();
+    config.setThreads(4);
+    config.setDuration(Duration.ofSeconds(2));
+    config.setReportInterval(Duration.ofSeconds(1));
+    config.setSizeMedian(4 * 1024);
+    config.setSizeMaximum(256 * 1024);
+    config.setDuplicateRatio(0.3);
+    BlobLoadGenerator generator = new BlobLoadGenerator(store);
+    generator.setConfig(config);
+    generator.initialize();
+    LoadReport report = generator.run();
+
+    for (LoadOperation operation : LoadOperation.values()) {
+      assertThat(report.getCount(operation)).as(operation.name()).isPositive();
+      assertThat(report.getErrors(operation)).as(operation.name()).isZero();
+    }
+    assertThat(report.getThroughput(LoadOperation.LOAD)).isPositive();
+    assertThat(report.hasAnomalies()).as(report.toString()).isFalse();
+    store.close();
+  }
+
+  /**
+   * Test of {@link SizeDistribution#sample(Random, BlobLoadConfigProperties)}.
+   */
+  @Test
+  public void testSizeDistribution() {
+
+    BlobLoadConfigProperties config = new BlobLoadConfigProperties();
+    Random random = new Random(0);
+    long[] sizes = new long[10001];
+    for (int i = 0; i < sizes.length; i++) {
+      sizes[i] = SizeDistribution.LOG_NORMAL.sample(random, config);
+    }
+    Arrays.sort(sizes);
+    assertThat(sizes[sizes.length / 2]).isBetween(config.getSizeMedian() * 9 / 10, config.getSizeMedian() * 11 / 10);
+    assertThat(sizes[sizes.length - 1]).isLessThanOrEqualTo(config.getSizeMaximum());
+
+    for (int i = 0; i < sizes.length; i++) {
+      sizes[i] = SizeDistribution.PARETO.sample(random, config);
+    }
+    Arrays.sort(sizes);
+    assertThat(sizes[0]).isGreaterThanOrEqualTo(config.getSizeMinimum());
+    // median of pareto is minimum * 2^(1/shape)
+    long median = Math.round(config.getSizeMinimum() * Math.pow(2, 1 / config.getSizeShape()));
+    assertThat(sizes[sizes.length / 2]).isBetween(median * 9 / 10, median * 11 / 10);
+  }
+
+}
@@ -0,0 +1,59 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.reactive;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * The {@link ConfigurationProperties} for {@link ReactiveBlobStore}.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+@ConfigurationProperties(prefix = "blob.reactive")
+public class BlobReactiveConfigProperties {
+
+  private int chunkSize = 64 * 1024;
+
+  private int threads = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * The constructor.
+   */
+  public BlobReactiveConfigProperties() {
+    super();
+  }
+
+  /**
+   * @return the maximum size of a {@link java.nio.ByteBuffer} chunk emitted when loading a BLOB. The default is 64KiB.
+   */
+  public int getChunkSize() {
+
+    return this.chunkSize;
+  }
+
+  /**
+   * @param chunkSize the new value of {@link #getChunkSize()}.
+   */
+  public void setChunkSize(int chunkSize) {
+
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * @return the number of threads used to read and write chunks. The default is the number of available processors.
+   */
+  public int getThreads() {
+
+    return this.threads;
+  }
+
+  /**
+   * @param threads the new value of {@link #getThreads()}.
+   */
+  public void setThreads(int threads) {
+
+    this.threads = threads;
+  }
+
+}
@@ -0,0 +1,139 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.reactive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import net.sf.mmm.blob.api.BlobOutputStream;
+import net.sf.mmm.util.data.api.id.Id;
+import net.sf.mmm.util.resource.api.DataResource;
+
+/**
+ * This is the {@link Subscriber} that writes the {@link ByteBuffer} chunks of a new BLOB to a
+ * {@link BlobOutputStream}. Only a single chunk is requested at a time and the next one is requested after the previous
+ * chunk has been written on the {@link Executor}. This way the producer can never overrun the store and no thread is
+ * blocked while waiting for the next chunk.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+class BlobSubscriber implements Subscriber<ByteBuffer> {
+
+  private final BlobOutputStream out;
+
+  private final Executor executor;
+
+  private final CompletableFuture<Id<DataResource>> result;
+
+  private Subscription subscription;
+
+  private CompletableFuture<Void> tail;
+
+  /**
+   * The constructor.
+   *
+   * @param out the {@link BlobOutputStream} to write to.
+   * @param executor the {@link Executor} to write the chunks.
+   */
+  BlobSubscriber(BlobOutputStream out, Executor executor) {
+    super();
+    this.out = out;
+    this.executor = executor;
+    this.result = new CompletableFuture<>();
+    this.tail = CompletableFuture.completedFuture(null);
+  }
+
+  /**
+   * @return the {@link CompletableFuture} that completes with the {@link Id} of the saved BLOB.
+   */
+  CompletableFuture<Id<DataResource>> getResult() {
+
+    return this.result;
+  }
+
+  @Override
+  public void onSubscribe(Subscription newSubscription) {
+
+    if (this.subscription != null) {
+      newSubscription.cancel();
+      return;
+    }
+    this.subscription = newSubscription;
+    newSubscription.request(1);
+  }
+
+  @Override
+  public void onNext(ByteBuffer chunk) {
+
+    schedule(() -> {
+      write(chunk);
+      this.subscription.request(1);
+    });
+  }
+
+  @Override
+  public void onError(Throwable error) {
+
+    schedule(() -> fail(error));
+  }
+
+  @Override
+  public void onComplete() {
+
+    schedule(() -> {
+      this.out.close();
+      this.result.complete(this.out.getId());
+    });
+  }
+
+  private void write(ByteBuffer chunk) throws IOException {
+
+    if (chunk.hasArray()) {
+      this.out.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+    } else {
+      byte[] bytes = new byte[chunk.remaining()];
+      chunk.duplicate().get(bytes);
+      this.out.write(bytes);
+    }
+  }
+
+  private void schedule(ChunkTask task) {
+
+    // signals are serialized by the publisher so the tasks are chained in order
+    this.tail = this.tail.thenRunAsync(() -> {
+      if (this.result.isDone()) {
+        // cancelled by the caller or failed before
+        this.subscription.cancel();
+        this.out.abort();
+        return;
+      }
+      try {
+        task.run();
+      } catch (Throwable e) {
+        this.subscription.cancel();
+        fail(e);
+      }
+    }, this.executor);
+  }
+
+  private void fail(Throwable error) {
+
+    this.out.abort();
+    this.result.completeExceptionally(error);
+  }
+
+  /**
+   * A task for a single signal.
+   */
+  private interface ChunkTask {
+
+    void run() throws IOException;
+  }
+
+}
@@ -0,0 +1,139 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.reactive;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * This is the abstract base class for a {@link Subscription} that emits the data of a BLOB in {@link ByteBuffer}
+ * chunks. A chunk is only {@link #readNext() read} if there is outstanding demand and at most one read is pending at a
+ * time so signals to the {@link Subscriber} are serialized.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+abstract class ChunkSubscription implements Subscription {
+
+  /** The {@link Subscriber} to emit the chunks to. */
+  protected final Subscriber<? super ByteBuffer> subscriber;
+
+  /** The maximum size of a chunk. */
+  protected final int chunkSize;
+
+  private final AtomicLong demand;
+
+  private final AtomicBoolean reading;
+
+  private volatile boolean done;
+
+  /**
+   * The constructor.
+   *
+   * @param subscriber the {@link Subscriber}.
+   * @param chunkSize the maximum size of a chunk.
+   */
+  ChunkSubscription(Subscriber<? super ByteBuffer> subscriber, int chunkSize) {
+    super();
+    this.subscriber = subscriber;
+    this.chunkSize = chunkSize;
+    this.demand = new AtomicLong();
+    this.reading = new AtomicBoolean();
+  }
+
+  @Override
+  public void request(long n) {
+
+    if (n <= 0) {
+      onFailure(new IllegalArgumentException("Requested " + n + " chunks but demand has to be positive (rule 3.9)."));
+      return;
+    }
+    long current;
+    long next;
+    do {
+      current = this.demand.get();
+      next = current + n;
+      if (next < 0) {
+        next = Long.MAX_VALUE;
+      }
+    } while (!this.demand.compareAndSet(current, next));
+    readIfDemanded();
+  }
+
+  @Override
+  public void cancel() {
+
+    if (!this.done) {
+      this.done = true;
+      release();
+    }
+  }
+
+  private void readIfDemanded() {
+
+    if (!this.done && (this.demand.get() > 0) && this.reading.compareAndSet(false, true)) {
+      try {
+        readNext();
+      } catch (RuntimeException e) {
+        onFailure(e);
+      }
+    }
+  }
+
+  /**
+   * Reads the next chunk asynchronously. Implementations have to call exactly one of {@link #onChunk(ByteBuffer)},
+   * {@link #onEnd()} or {@link #onFailure(Throwable)} when the read is done.
+   */
+  protected abstract void readNext();
+
+  /**
+   * Releases the underlying resources. Called exactly once when the {@link Subscription} terminates or is
+   * {@link #cancel() cancelled}.
+   */
+  protected abstract void release();
+
+  /**
+   * @param chunk the {@link ByteBuffer} that has been {@link #readNext() read} and is ready to be read from.
+   */
+  protected void onChunk(ByteBuffer chunk) {
+
+    if (this.done) {
+      return;
+    }
+    this.demand.decrementAndGet();
+    this.subscriber.onNext(chunk);
+    this.reading.set(false);
+    readIfDemanded();
+  }
+
+  /**
+   * Called if the end of the BLOB has been reached.
+   */
+  protected void onEnd() {
+
+    if (this.done) {
+      return;
+    }
+    this.done = true;
+    release();
+    this.subscriber.onComplete();
+  }
+
+  /**
+   * @param error the {@link Throwable} that occurred.
+   */
+  protected void onFailure(Throwable error) {
+
+    if (this.done) {
+      return;
+    }
+    this.done = true;
+    release();
+    this.subscriber.onError(error);
+  }
+
+}
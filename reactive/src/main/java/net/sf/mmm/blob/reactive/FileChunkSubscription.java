@@ -0,0 +1,95 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.reactive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+
+import org.reactivestreams.Subscriber;
+
+/**
+ * This is the implementation of {@link ChunkSubscription} for a BLOB stored in the local file-system. The chunks are
+ * read via {@link AsynchronousFileChannel} so no thread is blocked while the read is pending.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+class FileChunkSubscription extends ChunkSubscription implements CompletionHandler<Integer, ByteBuffer> {
+
+  private final Path path;
+
+  private final ExecutorService executor;
+
+  private AsynchronousFileChannel channel;
+
+  private long position;
+
+  /**
+   * The constructor.
+   *
+   * @param subscriber the {@link Subscriber}.
+   * @param chunkSize the maximum size of a chunk.
+   * @param path the {@link Path} of the BLOB file.
+   * @param executor the {@link ExecutorService} to complete the reads.
+   */
+  FileChunkSubscription(Subscriber<? super ByteBuffer> subscriber, int chunkSize, Path path, ExecutorService executor) {
+    super(subscriber, chunkSize);
+    this.path = path;
+    this.executor = executor;
+  }
+
+  @Override
+  protected void readNext() {
+
+    if (this.channel == null) {
+      try {
+        this.channel = AsynchronousFileChannel.open(this.path, Collections.singleton(StandardOpenOption.READ),
+            this.executor);
+      } catch (IOException e) {
+        onFailure(e);
+        return;
+      }
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(this.chunkSize);
+    this.channel.read(buffer, this.position, buffer, this);
+  }
+
+  @Override
+  public void completed(Integer result, ByteBuffer buffer) {
+
+    int bytes = result.intValue();
+    if (bytes < 0) {
+      onEnd();
+    } else {
+      this.position += bytes;
+      buffer.flip();
+      onChunk(buffer);
+    }
+  }
+
+  @Override
+  public void failed(Throwable error, ByteBuffer buffer) {
+
+    onFailure(error);
+  }
+
+  @Override
+  protected void release() {
+
+    AsynchronousFileChannel fileChannel = this.channel;
+    if (fileChannel != null) {
+      try {
+        fileChannel.close();
+      } catch (IOException e) {
+        // ignore as nothing is read anymore
+      }
+    }
+  }
+
+}
@@ -0,0 +1,188 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.reactive;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.inject.Inject;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import net.sf.mmm.blob.api.BlobOutputStream;
+import net.sf.mmm.blob.api.BlobStore;
+import net.sf.mmm.util.component.base.AbstractLoggableComponent;
+import net.sf.mmm.util.data.api.id.Id;
+import net.sf.mmm.util.exception.api.ObjectNotFoundException;
+import net.sf.mmm.util.resource.api.DataResource;
+import net.sf.mmm.util.resource.base.FileResource;
+
+/**
+ * This is a non-blocking facade for a {@link BlobStore} based on <a href="http://www.reactive-streams.org/">Reactive
+ * Streams</a>. A BLOB is {@link #load(Id) loaded} as {@link Publisher} that only reads a chunk when the
+ * {@link Subscriber} has requested it and {@link #save(Publisher) saved} from a {@link Publisher} that is only asked
+ * for the next chunk once the previous one has been written. BLOBs from the local file-system are read via
+ * {@link java.nio.channels.AsynchronousFileChannel}. All reads and writes run on a small pool of
+ * {@link BlobReactiveConfigProperties#getThreads() threads} so thousands of concurrent transfers do not need thousands
+ * of threads.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+public class ReactiveBlobStore extends AbstractLoggableComponent implements AutoCloseable {
+
+  private final BlobStore store;
+
+  private BlobReactiveConfigProperties config;
+
+  private ExecutorService executor;
+
+  /**
+   * The constructor.
+   *
+   * @param store the {@link BlobStore} to adapt.
+   */
+  public ReactiveBlobStore(BlobStore store) {
+    super();
+    this.store = store;
+  }
+
+  /**
+   * @return the {@link BlobReactiveConfigProperties}.
+   */
+  protected BlobReactiveConfigProperties getConfig() {
+
+    return this.config;
+  }
+
+  /**
+   * @param config the {@link BlobReactiveConfigProperties} to {@link Inject}.
+   */
+  @Inject
+  public void setConfig(BlobReactiveConfigProperties config) {
+
+    this.config = config;
+  }
+
+  @Override
+  protected void doInitialize() {
+
+    super.doInitialize();
+    if (this.config == null) {
+      this.config = new BlobReactiveConfigProperties();
+    }
+    this.executor = Executors.newFixedThreadPool(this.config.getThreads(), r -> {
+      Thread thread = new Thread(r, "blob-reactive");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * @return the underlying {@link BlobStore}.
+   */
+  public BlobStore getStore() {
+
+    return this.store;
+  }
+
+  /**
+   * Loads a BLOB as {@link Publisher}. The {@link Publisher} is cold and reads the BLOB from the start for every
+   * {@link Subscriber}. If the BLOB does not exist, the {@link Subscriber} is notified with an
+   * {@link ObjectNotFoundException}.
+   *
+   * @param id is the {@link Id} pointing to the requested BLOB.
+   * @return the {@link Publisher} emitting the data of the BLOB as {@link ByteBuffer} chunks. Each emitted
+   *         {@link ByteBuffer} is owned by the {@link Subscriber}.
+   */
+  public Publisher<ByteBuffer> load(Id<DataResource> id) {
+
+    initialize();
+    return subscriber -> subscribe(id, subscriber);
+  }
+
+  private void subscribe(Id<DataResource> id, Subscriber<? super ByteBuffer> subscriber) {
+
+    Objects.requireNonNull(subscriber, "subscriber");
+    DataResource blob;
+    try {
+      blob = this.store.find(id);
+      if (!blob.isAvailable()) {
+        throw new ObjectNotFoundException(DataResource.class.getSimpleName(), id);
+      }
+    } catch (RuntimeException e) {
+      subscriber.onSubscribe(EmptySubscription.INSTANCE);
+      subscriber.onError(e);
+      return;
+    }
+    int chunkSize = this.config.getChunkSize();
+    ChunkSubscription subscription;
+    if (blob instanceof FileResource) {
+      subscription = new FileChunkSubscription(subscriber, chunkSize, Paths.get(((FileResource) blob).getPath()),
+          this.executor);
+    } else {
+      subscription = new StreamChunkSubscription(subscriber, chunkSize, blob, this.executor);
+    }
+    subscriber.onSubscribe(subscription);
+  }
+
+  /**
+   * Saves a new BLOB from the given {@link Publisher}.
+   *
+   * @param data the {@link Publisher} emitting the data of the BLOB as {@link ByteBuffer} chunks.
+   * @return the {@link CompletableFuture} that completes with the {@link Id} of the saved BLOB after the
+   *         {@link Publisher} has completed. If the {@link Publisher} fails, the {@link CompletableFuture} fails and
+   *         nothing is saved. {@link CompletableFuture#cancel(boolean) Cancelling} the {@link CompletableFuture}
+   *         discards the BLOB.
+   */
+  public CompletableFuture<Id<DataResource>> save(Publisher<? extends ByteBuffer> data) {
+
+    initialize();
+    BlobOutputStream out;
+    try {
+      out = this.store.openForWrite();
+    } catch (RuntimeException e) {
+      CompletableFuture<Id<DataResource>> failed = new CompletableFuture<>();
+      failed.completeExceptionally(e);
+      return failed;
+    }
+    BlobSubscriber subscriber = new BlobSubscriber(out, this.executor);
+    data.subscribe(subscriber);
+    return subscriber.getResult();
+  }
+
+  @Override
+  public void close() {
+
+    if (this.executor != null) {
+      this.executor.shutdown();
+    }
+  }
+
+  /**
+   * {@link Subscription} for a {@link Publisher} that fails immediately.
+   */
+  private static final class EmptySubscription implements Subscription {
+
+    private static final EmptySubscription INSTANCE = new EmptySubscription();
+
+    @Override
+    public void request(long n) {
+
+      // nothing to emit
+    }
+
+    @Override
+    public void cancel() {
+
+      // nothing to cancel
+    }
+  }
+
+}
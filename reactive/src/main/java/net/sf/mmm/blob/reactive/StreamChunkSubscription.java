@@ -0,0 +1,85 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.reactive;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+
+import org.reactivestreams.Subscriber;
+
+import net.sf.mmm.util.resource.api.DataResource;
+
+/**
+ * This is the implementation of {@link ChunkSubscription} for BLOBs that are not stored in the local file-system. The
+ * {@link DataResource#openStream() stream} is read on an {@link Executor} chunk by chunk so a thread is only occupied
+ * while a chunk is read.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+class StreamChunkSubscription extends ChunkSubscription {
+
+  private final DataResource blob;
+
+  private final Executor executor;
+
+  private InputStream in;
+
+  /**
+   * The constructor.
+   *
+   * @param subscriber the {@link Subscriber}.
+   * @param chunkSize the maximum size of a chunk.
+   * @param blob the {@link DataResource} of the BLOB.
+   * @param executor the {@link Executor} to read the chunks.
+   */
+  StreamChunkSubscription(Subscriber<? super ByteBuffer> subscriber, int chunkSize, DataResource blob,
+      Executor executor) {
+    super(subscriber, chunkSize);
+    this.blob = blob;
+    this.executor = executor;
+  }
+
+  @Override
+  protected void readNext() {
+
+    this.executor.execute(this::read);
+  }
+
+  private void read() {
+
+    try {
+      if (this.in == null) {
+        this.in = this.blob.openStream();
+      }
+      byte[] buffer = new byte[this.chunkSize];
+      int bytes = this.in.read(buffer);
+      while (bytes == 0) {
+        bytes = this.in.read(buffer);
+      }
+      if (bytes < 0) {
+        onEnd();
+      } else {
+        onChunk(ByteBuffer.wrap(buffer, 0, bytes));
+      }
+    } catch (IOException | RuntimeException e) {
+      onFailure(e);
+    }
+  }
+
+  @Override
+  protected void release() {
+
+    InputStream stream = this.in;
+    if (stream != null) {
+      try {
+        stream.close();
+      } catch (IOException e) {
+        // ignore as nothing is read anymore
+      }
+    }
+  }
+
+}
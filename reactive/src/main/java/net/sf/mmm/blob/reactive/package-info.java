@@ -0,0 +1,13 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+/**
+ * Provides a non-blocking facade for BLOBs.
+ * <a name="documentation"></a><h2>Reactive BLOBs</h2>
+ * This package contains {@link net.sf.mmm.blob.reactive.ReactiveBlobStore} that adapts a
+ * {@link net.sf.mmm.blob.api.BlobStore} to <a href="http://www.reactive-streams.org/">Reactive Streams</a>. A BLOB is
+ * loaded as {@link org.reactivestreams.Publisher} of {@link java.nio.ByteBuffer} chunks that are only read when the
+ * subscriber requests them and saved from such a {@link org.reactivestreams.Publisher}. Threads are only occupied while
+ * a chunk is actually read or written and not while waiting for the consumer or producer. BLOBs from the local
+ * file-system are read via {@link java.nio.channels.AsynchronousFileChannel}.
+ */
+package net.sf.mmm.blob.reactive;
@@ -0,0 +1,227 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.reactive;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import net.sf.mmm.blob.api.BlobStore;
+import net.sf.mmm.blob.impl.BlobStoreFsConfigProperties;
+import net.sf.mmm.blob.impl.BlobStoreImplDeduplicatingFsWithRefCount;
+import net.sf.mmm.util.data.api.id.Id;
+import net.sf.mmm.util.exception.api.ObjectNotFoundException;
+import net.sf.mmm.util.file.api.FileUtilLimited;
+import net.sf.mmm.util.file.base.FileUtilImpl;
+import net.sf.mmm.util.resource.api.DataResource;
+import net.sf.mmm.util.resource.base.StreamResource;
+
+/**
+ * The test-case for {@link ReactiveBlobStore}.
+ *
+ * @author hohwille
+ */
+public class ReactiveBlobStoreTest extends Assertions {
+
+  private static byte[] createData(int size) {
+
+    byte[] data = new byte[size];
+    for (int i = 0; i < size; i++) {
+      data[i] = (byte) (i * 31);
+    }
+    return data;
+  }
+
+  private static BlobStore createStore() {
+
+    BlobStoreFsConfigProperties config = new BlobStoreFsConfigProperties();
+    String directory = System.getProperty(FileUtilLimited.PROPERTY_TMP_DIR) + "/.blobs-reactive";
+    config.setDirectory(directory);
+    FileUtilImpl.getInstance().deleteRecursive(new File(directory));
+    BlobStoreImplDeduplicatingFsWithRefCount store = new BlobStoreImplDeduplicatingFsWithRefCount();
+    store.setConfig(config);
+    store.initialize();
+    return store;
+  }
+
+  private static ReactiveBlobStore createReactiveStore(BlobStore store) {
+
+    BlobReactiveConfigProperties config = new BlobReactiveConfigProperties();
+    config.setChunkSize(1000);
+    config.setThreads(2);
+    ReactiveBlobStore reactiveStore = new ReactiveBlobStore(store);
+    reactiveStore.setConfig(config);
+    return reactiveStore;
+  }
+
+  /**
+   * Test of {@link ReactiveBlobStore#save(Publisher)} and {@link ReactiveBlobStore#load(Id)} with a file-system store.
+   *
+   * @throws Exception on error.
+   */
+  @Test
+  public void testSaveAndLoad() throws Exception {
+
+    byte[] data = createData(10500);
+    try (ReactiveBlobStore reactiveStore = createReactiveStore(createStore())) {
+      Id<DataResource> id = reactiveStore.save(new ArrayPublisher(data, 777)).get(10, TimeUnit.SECONDS);
+      assertThat(id).isNotNull();
+
+      CollectingSubscriber subscriber = new CollectingSubscriber();
+      reactiveStore.load(id).subscribe(subscriber);
+      assertThat(subscriber.result.get(10, TimeUnit.SECONDS)).isEqualTo(data);
+      // chunk size of 1000 bytes
+      assertThat(subscriber.chunks.get()).isEqualTo(11);
+
+      Id<DataResource> deleted = reactiveStore.save(new ArrayPublisher(createData(10), 3)).get(10, TimeUnit.SECONDS);
+      assertThat(reactiveStore.getStore().delete(deleted)).isTrue();
+      CollectingSubscriber missing = new CollectingSubscriber();
+      reactiveStore.load(deleted).subscribe(missing);
+      assertThatThrownBy(() -> missing.result.get(10, TimeUnit.SECONDS))
+          .hasCauseInstanceOf(ObjectNotFoundException.class);
+    }
+  }
+
+  /**
+   * Test of {@link ReactiveBlobStore#load(Id)} with a store that is not backed by files.
+   *
+   * @throws Exception on error.
+   */
+  @Test
+  public void testLoadStream() throws Exception {
+
+    byte[] data = createData(2500);
+    BlobStore store = new BlobStore() {
+
+      @Override
+      public Id<DataResource> save(DataResource blob) {
+
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public DataResource find(Id<DataResource> id) {
+
+        return new StreamResource(new ByteArrayInputStream(data), "blob", data.length);
+      }
+
+      @Override
+      public boolean delete(Id<DataResource> id) {
+
+        return false;
+      }
+    };
+    try (ReactiveBlobStore reactiveStore = createReactiveStore(store)) {
+      CollectingSubscriber subscriber = new CollectingSubscriber();
+      reactiveStore.load(store.createId("42")).subscribe(subscriber);
+      assertThat(subscriber.result.get(10, TimeUnit.SECONDS)).isEqualTo(data);
+    }
+  }
+
+  /**
+   * {@link Publisher} emitting a {@code byte[]} in chunks honoring the demand.
+   */
+  private static class ArrayPublisher implements Publisher<ByteBuffer> {
+
+    private final byte[] data;
+
+    private final int chunkSize;
+
+    private ArrayPublisher(byte[] data, int chunkSize) {
+      super();
+      this.data = data;
+      this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+
+      subscriber.onSubscribe(new Subscription() {
+
+        private int offset;
+
+        private boolean done;
+
+        @Override
+        public synchronized void request(long n) {
+
+          for (long i = 0; (i < n) && !this.done; i++) {
+            if (this.offset >= ArrayPublisher.this.data.length) {
+              this.done = true;
+              subscriber.onComplete();
+            } else {
+              int length = Math.min(ArrayPublisher.this.chunkSize, ArrayPublisher.this.data.length - this.offset);
+              ByteBuffer chunk = ByteBuffer.wrap(ArrayPublisher.this.data, this.offset, length);
+              this.offset += length;
+              subscriber.onNext(chunk);
+            }
+          }
+          if (!this.done && (this.offset >= ArrayPublisher.this.data.length)) {
+            this.done = true;
+            subscriber.onComplete();
+          }
+        }
+
+        @Override
+        public synchronized void cancel() {
+
+          this.done = true;
+        }
+      });
+    }
+  }
+
+  /**
+   * {@link Subscriber} collecting all chunks requesting one chunk at a time.
+   */
+  private static class CollectingSubscriber implements Subscriber<ByteBuffer> {
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+
+    private final AtomicInteger chunks = new AtomicInteger();
+
+    private Subscription subscription;
+
+    @Override
+    public void onSubscribe(Subscription s) {
+
+      this.subscription = s;
+      s.request(1);
+    }
+
+    @Override
+    public void onNext(ByteBuffer chunk) {
+
+      this.chunks.incrementAndGet();
+      byte[] bytes = new byte[chunk.remaining()];
+      chunk.get(bytes);
+      this.out.write(bytes, 0, bytes.length);
+      this.subscription.request(1);
+    }
+
+    @Override
+    public void onError(Throwable error) {
+
+      this.result.completeExceptionally(error);
+    }
+
+    @Override
+    public void onComplete() {
+
+      this.result.complete(this.out.toByteArray());
+    }
+  }
+
+}
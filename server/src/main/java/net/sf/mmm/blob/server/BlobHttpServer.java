@@ -0,0 +1,693 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.server;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.inject.Inject;
+
+import net.sf.mmm.blob.api.BlobStore;
+import net.sf.mmm.blob.impl.BlobId;
+import net.sf.mmm.util.component.base.AbstractLoggableComponent;
+import net.sf.mmm.util.data.api.id.Id;
+import net.sf.mmm.util.exception.api.ObjectNotFoundException;
+import net.sf.mmm.util.io.api.IoMode;
+import net.sf.mmm.util.io.api.RuntimeIoException;
+import net.sf.mmm.util.resource.api.DataResource;
+import net.sf.mmm.util.resource.base.FileResource;
+import net.sf.mmm.util.resource.base.StreamResource;
+
+/**
+ * This is a lightweight embedded HTTP server that exposes a {@link BlobStore} without the need of a servlet container.
+ * The path of a request (without the leading slash) is the {@link Id} of the BLOB (see
+ * {@link BlobStore#createId(String)}). The following methods are supported:
+ * <ul>
+ * <li>{@code GET /<id>} - {@link BlobStore#find(Id) finds} and downloads the BLOB. Single byte {@code Range} requests
+ * as well as conditional requests via {@code If-None-Match} and {@code If-Range} are supported. BLOBs from the local
+ * file-system are transferred directly from the file to the socket (zero-copy via
+ * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel) sendfile}).</li>
+ * <li>{@code HEAD /<id>} - like {@code GET} but without body.</li>
+ * <li>{@code PUT /} - {@link BlobStore#save(DataResource) saves} the body as new BLOB and responds with
+ * {@code 201 Created} and the {@link Id} in the {@code Location} header. As the {@link Id} is always assigned by the
+ * store, {@code PUT /<id>} is rejected with {@code 405 Method Not Allowed}.</li>
+ * <li>{@code DELETE /<id>} - {@link BlobStore#delete(Id) deletes} the BLOB.</li>
+ * </ul>
+ * An {@link Id} that is not accepted by {@link BlobStore#createId(String)} (e.g. containing {@code ..}) is rejected
+ * with {@code 400 Bad Request}.
+ * A connection only occupies one of the {@link BlobHttpServerConfigProperties#getThreads() threads} while a request
+ * is handled. Idle keep-alive connections are watched by a single {@link Selector} and handed back to the threads when
+ * the next request arrives.<br>
+ * As BLOBs are immutable, a strong {@code ETag} is derived from the {@link Id}. For de-duplicating stores it is the
+ * {@link BlobId#getPartition() hash} of the BLOB so identical content always has the same {@code ETag}.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+public class BlobHttpServer extends AbstractLoggableComponent implements AutoCloseable {
+
+  private static final String CRLF = "\r\n";
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private static final long[] RANGE_NOT_SATISFIABLE = new long[0];
+
+  private static final long SELECT_TIMEOUT = 1000;
+
+  private final BlobStore store;
+
+  private BlobHttpServerConfigProperties config;
+
+  private ServerSocketChannel serverChannel;
+
+  private ExecutorService executor;
+
+  private Selector selector;
+
+  private final Queue<Connection> idleConnections;
+
+  private volatile boolean running;
+
+  /**
+   * The constructor.
+   *
+   * @param store the {@link BlobStore} to serve.
+   */
+  public BlobHttpServer(BlobStore store) {
+    super();
+    this.store = store;
+    this.idleConnections = new ConcurrentLinkedQueue<>();
+  }
+
+  /**
+   * @return the {@link BlobHttpServerConfigProperties}.
+   */
+  protected BlobHttpServerConfigProperties getConfig() {
+
+    return this.config;
+  }
+
+  /**
+   * @param config the {@link BlobHttpServerConfigProperties} to {@link Inject}.
+   */
+  @Inject
+  public void setConfig(BlobHttpServerConfigProperties config) {
+
+    this.config = config;
+  }
+
+  @Override
+  protected void doInitialize() {
+
+    super.doInitialize();
+    if (this.config == null) {
+      this.config = new BlobHttpServerConfigProperties();
+    }
+  }
+
+  /**
+   * Starts this server.
+   */
+  public synchronized void start() {
+
+    initialize();
+    if (this.running) {
+      return;
+    }
+    try {
+      this.serverChannel = ServerSocketChannel.open();
+      this.serverChannel.bind(new InetSocketAddress(this.config.getHost(), this.config.getPort()));
+      this.selector = Selector.open();
+    } catch (IOException e) {
+      throw new RuntimeIoException(e, IoMode.OPEN);
+    }
+    this.executor = Executors.newFixedThreadPool(this.config.getThreads(), r -> {
+      Thread thread = new Thread(r, "blob-http");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.running = true;
+    Thread acceptor = new Thread(this::accept, "blob-http-acceptor");
+    acceptor.setDaemon(true);
+    acceptor.start();
+    Thread watcher = new Thread(this::watchIdle, "blob-http-selector");
+    watcher.setDaemon(true);
+    watcher.start();
+    getLogger().info("BLOB server listening on {}", this.serverChannel.socket().getLocalSocketAddress());
+  }
+
+  /**
+   * @return the port this server is listening on.
+   */
+  public int getPort() {
+
+    return this.serverChannel.socket().getLocalPort();
+  }
+
+  @Override
+  public synchronized void close() {
+
+    if (!this.running) {
+      return;
+    }
+    this.running = false;
+    try {
+      this.serverChannel.close();
+    } catch (IOException e) {
+      getLogger().debug("Failed to close server channel", e);
+    }
+    // the selector thread closes the idle connections and the selector itself
+    this.selector.wakeup();
+    this.executor.shutdownNow();
+  }
+
+  private void accept() {
+
+    while (this.running) {
+      try {
+        SocketChannel channel = this.serverChannel.accept();
+        try {
+          Socket socket = channel.socket();
+          socket.setSoTimeout((int) this.config.getIdleTimeout().toMillis());
+          socket.setTcpNoDelay(true);
+          idle(new Connection(channel));
+        } catch (IOException e) {
+          channel.close();
+          throw e;
+        }
+      } catch (ClosedChannelException e) {
+        return;
+      } catch (IOException | RuntimeException e) {
+        if (this.running) {
+          getLogger().warn("Failed to accept connection", e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Hands the given {@link Connection} over to the {@link Selector} until its next request arrives.
+   *
+   * @param connection the {@link Connection} without pending request.
+   */
+  private void idle(Connection connection) {
+
+    connection.idleSince = System.currentTimeMillis();
+    this.idleConnections.add(connection);
+    this.selector.wakeup();
+  }
+
+  private void watchIdle() {
+
+    long idleTimeout = this.config.getIdleTimeout().toMillis();
+    try {
+      while (this.running) {
+        this.selector.select(Math.min(SELECT_TIMEOUT, Math.max(1, idleTimeout)));
+        Connection connection = this.idleConnections.poll();
+        while (connection != null) {
+          register(connection);
+          connection = this.idleConnections.poll();
+        }
+        List<Connection> ready = new ArrayList<>();
+        while (!this.selector.selectedKeys().isEmpty()) {
+          Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+          while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            key.cancel();
+            ready.add((Connection) key.attachment());
+          }
+          // deregisters the cancelled keys so the channels can be switched back to blocking mode
+          this.selector.selectNow();
+        }
+        for (Connection readyConnection : ready) {
+          dispatch(readyConnection);
+        }
+        long now = System.currentTimeMillis();
+        for (SelectionKey key : this.selector.keys()) {
+          Connection idle = (Connection) key.attachment();
+          if (now - idle.idleSince >= idleTimeout) {
+            getLogger().debug("Closing idle connection");
+            idle.close();
+          }
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      if (this.running) {
+        getLogger().error("Failed to watch idle connections", e);
+      }
+    } finally {
+      for (SelectionKey key : this.selector.keys()) {
+        ((Connection) key.attachment()).close();
+      }
+      Connection connection = this.idleConnections.poll();
+      while (connection != null) {
+        connection.close();
+        connection = this.idleConnections.poll();
+      }
+      try {
+        this.selector.close();
+      } catch (IOException e) {
+        getLogger().debug("Failed to close selector", e);
+      }
+    }
+  }
+
+  private void register(Connection connection) {
+
+    try {
+      connection.channel.configureBlocking(false);
+      connection.channel.register(this.selector, SelectionKey.OP_READ, connection);
+    } catch (IOException e) {
+      getLogger().debug("Connection failed", e);
+      connection.close();
+    }
+  }
+
+  private void dispatch(Connection connection) {
+
+    try {
+      connection.channel.configureBlocking(true);
+      this.executor.execute(() -> serve(connection));
+    } catch (IOException | RejectedExecutionException e) {
+      getLogger().debug("Connection failed", e);
+      connection.close();
+    }
+  }
+
+  private void serve(Connection connection) {
+
+    SocketChannel channel = connection.channel;
+    boolean keepAlive = true;
+    try {
+      // requests already received (pipelined) are served directly, otherwise the thread is released
+      do {
+        HttpRequest request;
+        try {
+          request = HttpRequest.read(connection.in);
+        } catch (IllegalArgumentException e) {
+          sendStatus(channel, 400, false);
+          keepAlive = false;
+          break;
+        }
+        if (request == null) {
+          keepAlive = false;
+          break;
+        }
+        keepAlive = handle(request, channel) && request.isKeepAlive();
+      } while (keepAlive && (connection.in.available() > 0));
+    } catch (SocketTimeoutException e) {
+      getLogger().debug("Closing stalled connection");
+      keepAlive = false;
+    } catch (IOException e) {
+      getLogger().debug("Connection failed", e);
+      keepAlive = false;
+    }
+    if (keepAlive && this.running) {
+      idle(connection);
+    } else {
+      connection.close();
+    }
+  }
+
+  /**
+   * @param request the {@link HttpRequest} to handle.
+   * @param channel the {@link SocketChannel} to write the response to.
+   * @return {@code true} if the connection can be reused, {@code false} if it has to be closed.
+   * @throws IOException on I/O error.
+   */
+  private boolean handle(HttpRequest request, SocketChannel channel) throws IOException {
+
+    String method = request.getMethod();
+    boolean keepAlive = !"PUT".equals(method);
+    try {
+      String id = decode(request.getPath().substring(1));
+      switch (method) {
+        case "GET":
+          return get(request, channel, id, true);
+        case "HEAD":
+          return get(request, channel, id, false);
+        case "PUT":
+          return put(request, channel, id);
+        case "DELETE":
+          return delete(channel, id);
+        default:
+          Map<String, String> headers = new LinkedHashMap<>();
+          headers.put("Allow", "GET, HEAD, PUT, DELETE");
+          headers.put("Content-Length", "0");
+          writeHead(channel, 405, headers);
+          return true;
+      }
+    } catch (ObjectNotFoundException e) {
+      return sendStatus(channel, 404, keepAlive);
+    } catch (IllegalArgumentException e) {
+      getLogger().debug("Bad request {} {}", method, request.getPath(), e);
+      return sendStatus(channel, 400, keepAlive);
+    } catch (UnsupportedOperationException e) {
+      return sendStatus(channel, 501, keepAlive);
+    } catch (RuntimeException e) {
+      getLogger().error("Failed to handle {} {}", method, request.getPath(), e);
+      return sendStatus(channel, 500, keepAlive);
+    }
+  }
+
+  private boolean get(HttpRequest request, SocketChannel channel, String idString, boolean body) throws IOException {
+
+    if (idString.isEmpty()) {
+      return sendStatus(channel, 404, true);
+    }
+    Id<DataResource> id = this.store.createId(idString);
+    DataResource blob = this.store.find(id);
+    if (!blob.isAvailable()) {
+      return sendStatus(channel, 404, true);
+    }
+    String etag = '"' + createETag(id) + '"';
+    Map<String, String> headers = new LinkedHashMap<>();
+    headers.put("ETag", etag);
+    headers.put("Accept-Ranges", "bytes");
+    if (matches(request.getHeader("If-None-Match"), etag)) {
+      writeHead(channel, 304, headers);
+      return true;
+    }
+    long size = blob.getSize();
+    long start = 0;
+    long length = size;
+    int status = 200;
+    String range = request.getHeader("Range");
+    String ifRange = request.getHeader("If-Range");
+    if ((range != null) && ((ifRange == null) || ifRange.equals(etag))) {
+      long[] bounds = parseRange(range, size);
+      if (bounds == RANGE_NOT_SATISFIABLE) {
+        headers.put("Content-Range", "bytes */" + size);
+        headers.put("Content-Length", "0");
+        writeHead(channel, 416, headers);
+        return true;
+      } else if (bounds != null) {
+        status = 206;
+        start = bounds[0];
+        length = bounds[1] - start + 1;
+        headers.put("Content-Range", "bytes " + start + "-" + bounds[1] + "/" + size);
+      }
+    }
+    headers.put("Content-Type", "application/octet-stream");
+    headers.put("Content-Length", Long.toString(length));
+    writeHead(channel, status, headers);
+    if (body && (length > 0)) {
+      writeBody(blob, channel, start, length);
+    }
+    return true;
+  }
+
+  private void writeBody(DataResource blob, SocketChannel channel, long start, long length) throws IOException {
+
+    if (blob instanceof FileResource) {
+      File file = new File(blob.getPath());
+      try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+        long position = start;
+        long end = start + length;
+        while (position < end) {
+          long count = fileChannel.transferTo(position, end - position, channel);
+          if (count <= 0) {
+            throw new IOException("Unexpected end of " + file);
+          }
+          position += count;
+        }
+      }
+    } else {
+      try (InputStream in = blob.openStream()) {
+        long skip = start;
+        while (skip > 0) {
+          long skipped = in.skip(skip);
+          if (skipped <= 0) {
+            throw new IOException("Unexpected end of " + blob.getUri());
+          }
+          skip -= skipped;
+        }
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long remaining = length;
+        while (remaining > 0) {
+          int count = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+          if (count < 0) {
+            throw new IOException("Unexpected end of " + blob.getUri());
+          }
+          write(channel, ByteBuffer.wrap(buffer, 0, count));
+          remaining -= count;
+        }
+      } catch (RuntimeIoException e) {
+        // response already committed
+        throw new IOException(e);
+      }
+    }
+  }
+
+  private boolean put(HttpRequest request, SocketChannel channel, String idString) throws IOException {
+
+    Map<String, String> headers = new LinkedHashMap<>();
+    if (!idString.isEmpty()) {
+      // rejects a malformed ID as bad request
+      this.store.createId(idString);
+      headers.put("Allow", "GET, HEAD, DELETE");
+      headers.put("Content-Length", "0");
+      headers.put("Connection", "close");
+      writeHead(channel, 405, headers);
+      return false;
+    }
+    long length = request.getContentLength();
+    if (length < 0) {
+      return sendStatus(channel, 411, false);
+    }
+    Id<DataResource> id;
+    try (InputStream body = request.openBody()) {
+      id = this.store.save(new StreamResource(body, "blob", length));
+    }
+    headers.put("Location", "/" + encode(id.getId().toString()));
+    headers.put("ETag", '"' + createETag(id) + '"');
+    headers.put("Content-Length", "0");
+    writeHead(channel, 201, headers);
+    return true;
+  }
+
+  private boolean delete(SocketChannel channel, String idString) throws IOException {
+
+    if (idString.isEmpty()) {
+      return sendStatus(channel, 404, true);
+    }
+    boolean deleted = this.store.delete(this.store.createId(idString));
+    if (deleted) {
+      return sendStatus(channel, 204, true);
+    }
+    return sendStatus(channel, 404, true);
+  }
+
+  /**
+   * @param id the {@link Id} of the BLOB.
+   * @return the strong {@code ETag} for the BLOB (without quotes). As BLOBs are immutable, it is derived from the
+   *         {@link Id}. For {@link BlobId} this is the {@link BlobId#getPartition() partition} (the hash for
+   *         de-duplicating stores) and the optional {@link BlobId#getFolder() folder}, so all copies of the same
+   *         content share the same {@code ETag}.
+   */
+  protected String createETag(Id<DataResource> id) {
+
+    if (id instanceof BlobId) {
+      BlobId blobId = (BlobId) id;
+      String folder = blobId.getFolder();
+      if (folder == null) {
+        return blobId.getPartition();
+      }
+      return blobId.getPartition() + "-" + folder;
+    }
+    return id.getId().toString().replace('"', '\'');
+  }
+
+  private static boolean matches(String ifNoneMatch, String etag) {
+
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String candidate : ifNoneMatch.split(",")) {
+      String tag = candidate.trim();
+      if (tag.startsWith("W/")) {
+        tag = tag.substring(2);
+      }
+      if (tag.equals("*") || tag.equals(etag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @param range the value of the {@code Range} header.
+   * @param size the size of the BLOB.
+   * @return the inclusive start and end of the range, {@code null} to ignore the range and send the entire BLOB, or
+   *         {@link #RANGE_NOT_SATISFIABLE}.
+   */
+  static long[] parseRange(String range, long size) {
+
+    if (!range.startsWith("bytes=") || (range.indexOf(',') >= 0)) {
+      // multiple ranges are not supported and may be ignored according to RFC 7233
+      return null;
+    }
+    String spec = range.substring(6).trim();
+    int dash = spec.indexOf('-');
+    if (dash < 0) {
+      return null;
+    }
+    try {
+      long start;
+      long end;
+      if (dash == 0) {
+        long suffix = Long.parseLong(spec.substring(1));
+        if (suffix <= 0) {
+          return RANGE_NOT_SATISFIABLE;
+        }
+        start = Math.max(0, size - suffix);
+        end = size - 1;
+      } else {
+        start = Long.parseLong(spec.substring(0, dash));
+        if (dash == spec.length() - 1) {
+          end = size - 1;
+        } else {
+          end = Math.min(Long.parseLong(spec.substring(dash + 1)), size - 1);
+          if (end < start) {
+            return null;
+          }
+        }
+      }
+      if ((start >= size) || (size == 0)) {
+        return RANGE_NOT_SATISFIABLE;
+      }
+      return new long[] { start, end };
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private boolean sendStatus(SocketChannel channel, int status, boolean keepAlive) throws IOException {
+
+    Map<String, String> headers = new LinkedHashMap<>();
+    headers.put("Content-Length", "0");
+    if (!keepAlive) {
+      headers.put("Connection", "close");
+    }
+    writeHead(channel, status, headers);
+    return keepAlive;
+  }
+
+  private static void writeHead(SocketChannel channel, int status, Map<String, String> headers) throws IOException {
+
+    StringBuilder sb = new StringBuilder(256);
+    sb.append("HTTP/1.1 ").append(status).append(' ').append(getReason(status)).append(CRLF);
+    for (Map.Entry<String, String> header : headers.entrySet()) {
+      sb.append(header.getKey()).append(": ").append(header.getValue()).append(CRLF);
+    }
+    sb.append(CRLF);
+    write(channel, ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.ISO_8859_1)));
+  }
+
+  private static void write(SocketChannel channel, ByteBuffer buffer) throws IOException {
+
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  private static String getReason(int status) {
+
+    switch (status) {
+      case 200:
+        return "OK";
+      case 201:
+        return "Created";
+      case 204:
+        return "No Content";
+      case 206:
+        return "Partial Content";
+      case 304:
+        return "Not Modified";
+      case 400:
+        return "Bad Request";
+      case 404:
+        return "Not Found";
+      case 405:
+        return "Method Not Allowed";
+      case 411:
+        return "Length Required";
+      case 416:
+        return "Range Not Satisfiable";
+      case 501:
+        return "Not Implemented";
+      default:
+        return "Internal Server Error";
+    }
+  }
+
+  private static String decode(String path) {
+
+    try {
+      // keep '+' as is since it is no space in a path
+      return URLDecoder.decode(path.replace("+", "%2B"), "UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String encode(String id) {
+
+    return id.replace("%", "%25").replace("#", "%23").replace("?", "%3F").replace(" ", "%20");
+  }
+
+  /**
+   * A client connection with its buffered input that is kept while the connection is idle.
+   */
+  private final class Connection {
+
+    private final SocketChannel channel;
+
+    private final InputStream in;
+
+    private long idleSince;
+
+    private Connection(SocketChannel channel) throws IOException {
+      super();
+      this.channel = channel;
+      this.in = new BufferedInputStream(channel.socket().getInputStream(), BUFFER_SIZE);
+    }
+
+    private void close() {
+
+      try {
+        this.channel.close();
+      } catch (IOException e) {
+        getLogger().debug("Failed to close connection", e);
+      }
+    }
+  }
+
+}
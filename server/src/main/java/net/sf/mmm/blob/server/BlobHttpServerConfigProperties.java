@@ -0,0 +1,99 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.server;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * The {@link ConfigurationProperties} for {@link BlobHttpServer}.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+@ConfigurationProperties(prefix = "blob.server")
+public class BlobHttpServerConfigProperties {
+
+  private String host = "localhost";
+
+  private int port = 8080;
+
+  private int threads = 64;
+
+  private Duration idleTimeout = Duration.ofSeconds(30);
+
+  /**
+   * The constructor.
+   */
+  public BlobHttpServerConfigProperties() {
+    super();
+  }
+
+  /**
+   * @return the host name or address to bind to. The default is {@code localhost}.
+   */
+  public String getHost() {
+
+    return this.host;
+  }
+
+  /**
+   * @param host the new value of {@link #getHost()}.
+   */
+  public void setHost(String host) {
+
+    this.host = host;
+  }
+
+  /**
+   * @return the port to listen on. Use {@code 0} for an arbitrary free port. The default is {@code 8080}.
+   */
+  public int getPort() {
+
+    return this.port;
+  }
+
+  /**
+   * @param port the new value of {@link #getPort()}.
+   */
+  public void setPort(int port) {
+
+    this.port = port;
+  }
+
+  /**
+   * @return the maximum number of requests handled concurrently. Idle keep-alive connections do not occupy a thread.
+   *         The default is {@code 64}.
+   */
+  public int getThreads() {
+
+    return this.threads;
+  }
+
+  /**
+   * @param threads the new value of {@link #getThreads()}.
+   */
+  public void setThreads(int threads) {
+
+    this.threads = threads;
+  }
+
+  /**
+   * @return the maximum time a keep-alive connection may be idle before it is closed. Also limits how long a client
+   *         may stall while sending a request. The default is 30 seconds.
+   */
+  public Duration getIdleTimeout() {
+
+    return this.idleTimeout;
+  }
+
+  /**
+   * @param idleTimeout the new value of {@link #getIdleTimeout()}.
+   */
+  public void setIdleTimeout(Duration idleTimeout) {
+
+    this.idleTimeout = idleTimeout;
+  }
+
+}
@@ -0,0 +1,240 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * This is a minimal HTTP/1.1 request as parsed by {@link BlobHttpServer}.
+ *
+ * @author hohwille
+ * @since 1.0.0
+ */
+final class HttpRequest {
+
+  private static final int MAX_LINE_LENGTH = 8 * 1024;
+
+  private static final int MAX_HEADERS = 100;
+
+  private final String method;
+
+  private final String path;
+
+  private final String version;
+
+  private final Map<String, String> headers;
+
+  private final InputStream in;
+
+  private HttpRequest(String method, String path, String version, Map<String, String> headers, InputStream in) {
+    super();
+    this.method = method;
+    this.path = path;
+    this.version = version;
+    this.headers = headers;
+    this.in = in;
+  }
+
+  /**
+   * @return the HTTP method (e.g. {@code GET}).
+   */
+  public String getMethod() {
+
+    return this.method;
+  }
+
+  /**
+   * @return the request path excluding any query.
+   */
+  public String getPath() {
+
+    return this.path;
+  }
+
+  /**
+   * @param name the case-insensitive name of the header.
+   * @return the value of the requested header or {@code null} if not present.
+   */
+  public String getHeader(String name) {
+
+    return this.headers.get(name.toLowerCase(Locale.US));
+  }
+
+  /**
+   * @return the {@code Content-Length} or {@code -1} if not present.
+   */
+  public long getContentLength() {
+
+    String length = getHeader("Content-Length");
+    if (length == null) {
+      return -1;
+    }
+    try {
+      long result = Long.parseLong(length.trim());
+      if (result < 0) {
+        throw new IllegalArgumentException("Content-Length: " + length);
+      }
+      return result;
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Content-Length: " + length, e);
+    }
+  }
+
+  /**
+   * @return {@code true} if the connection shall be kept alive after this request, {@code false} otherwise.
+   */
+  public boolean isKeepAlive() {
+
+    String connection = getHeader("Connection");
+    if ("HTTP/1.0".equals(this.version)) {
+      return "keep-alive".equalsIgnoreCase(connection);
+    }
+    return !"close".equalsIgnoreCase(connection);
+  }
+
+  /**
+   * @return the {@link InputStream} for the body of this request limited to {@link #getContentLength()}. Closing the
+   *         stream will skip the remaining body but keep the connection open.
+   */
+  public InputStream openBody() {
+
+    long length = getContentLength();
+    if (length < 0) {
+      length = 0;
+    }
+    return new BodyInputStream(this.in, length);
+  }
+
+  /**
+   * @param in the {@link InputStream} of the connection.
+   * @return the parsed {@link HttpRequest} or {@code null} if the connection has been closed by the client.
+   * @throws IOException on I/O error.
+   * @throws IllegalArgumentException if the request is malformed.
+   */
+  static HttpRequest read(InputStream in) throws IOException {
+
+    String requestLine = readLine(in);
+    while ((requestLine != null) && requestLine.isEmpty()) {
+      // tolerate empty lines between requests
+      requestLine = readLine(in);
+    }
+    if (requestLine == null) {
+      return null;
+    }
+    String[] segments = requestLine.split(" ");
+    if (segments.length != 3) {
+      throw new IllegalArgumentException("Invalid request line: " + requestLine);
+    }
+    String path = segments[1];
+    int queryStart = path.indexOf('?');
+    if (queryStart >= 0) {
+      path = path.substring(0, queryStart);
+    }
+    if (!path.startsWith("/")) {
+      throw new IllegalArgumentException("Invalid path: " + path);
+    }
+    Map<String, String> headers = new HashMap<>();
+    String line = readLine(in);
+    while ((line != null) && !line.isEmpty()) {
+      int colon = line.indexOf(':');
+      if ((colon <= 0) || (headers.size() >= MAX_HEADERS)) {
+        throw new IllegalArgumentException("Invalid header: " + line);
+      }
+      headers.put(line.substring(0, colon).trim().toLowerCase(Locale.US), line.substring(colon + 1).trim());
+      line = readLine(in);
+    }
+    if (line == null) {
+      throw new IllegalArgumentException("Incomplete request");
+    }
+    return new HttpRequest(segments[0], path, segments[2], headers, in);
+  }
+
+  private static String readLine(InputStream in) throws IOException {
+
+    StringBuilder sb = new StringBuilder();
+    int c = in.read();
+    if (c < 0) {
+      return null;
+    }
+    while ((c >= 0) && (c != '\n')) {
+      if (c != '\r') {
+        if (sb.length() >= MAX_LINE_LENGTH) {
+          throw new IllegalArgumentException("Line too long");
+        }
+        sb.append((char) c);
+      }
+      c = in.read();
+    }
+    return sb.toString();
+  }
+
+  /**
+   * {@link InputStream} for the body of a request.
+   */
+  private static class BodyInputStream extends InputStream {
+
+    private final InputStream delegate;
+
+    private long remaining;
+
+    private BodyInputStream(InputStream delegate, long length) {
+      super();
+      this.delegate = delegate;
+      this.remaining = length;
+    }
+
+    @Override
+    public int read() throws IOException {
+
+      if (this.remaining <= 0) {
+        return -1;
+      }
+      int b = this.delegate.read();
+      if (b < 0) {
+        throw new IOException("Premature end of request body");
+      }
+      this.remaining--;
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+
+      if (this.remaining <= 0) {
+        return -1;
+      }
+      int count = this.delegate.read(b, off, (int) Math.min(len, this.remaining));
+      if (count < 0) {
+        throw new IOException("Premature end of request body");
+      }
+      this.remaining -= count;
+      return count;
+    }
+
+    @Override
+    public int available() throws IOException {
+
+      return (int) Math.min(this.delegate.available(), this.remaining);
+    }
+
+    @Override
+    public void close() throws IOException {
+
+      while (this.remaining > 0) {
+        long skipped = this.delegate.skip(this.remaining);
+        if (skipped <= 0) {
+          if (this.delegate.read() < 0) {
+            throw new IOException("Premature end of request body");
+          }
+          skipped = 1;
+        }
+        this.remaining -= skipped;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,10 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+/**
+ * Provides an embedded HTTP server for BLOBs.
+ * <a name="documentation"></a><h2>BLOB Server</h2>
+ * This package contains {@link net.sf.mmm.blob.server.BlobHttpServer} that exposes a {@link net.sf.mmm.blob.api.BlobStore}
+ * via HTTP without the need of a servlet container. Downloads of BLOBs from the local file-system are sent directly from
+ * the file to the socket (zero-copy) instead of streaming through the heap.
+ */
+package net.sf.mmm.blob.server;
@@ -0,0 +1,219 @@
+/* Copyright (c) The m-m-m Team, Licensed under the Apache License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0 */
+package net.sf.mmm.blob.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import net.sf.mmm.blob.impl.BlobStoreFsConfigProperties;
+import net.sf.mmm.blob.impl.BlobStoreImplDeduplicatingFsWithRefCount;
+import net.sf.mmm.util.file.api.FileUtilLimited;
+import net.sf.mmm.util.file.base.FileUtilImpl;
+
+/**
+ * The test-case for {@link BlobHttpServer}.
+ *
+ * @author hohwille
+ */
+public class BlobHttpServerTest extends Assertions {
+
+  private static final byte[] DATA = "Hello BLOB world!".getBytes(StandardCharsets.UTF_8);
+
+  private static HttpURLConnection open(BlobHttpServer server, String method, String path) throws IOException {
+
+    URL url = new URL("http://localhost:" + server.getPort() + path);
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setRequestMethod(method);
+    return connection;
+  }
+
+  private static byte[] read(HttpURLConnection connection) throws IOException {
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (InputStream in = connection.getInputStream()) {
+      byte[] buffer = new byte[1024];
+      int count = in.read(buffer);
+      while (count >= 0) {
+        out.write(buffer, 0, count);
+        count = in.read(buffer);
+      }
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Test of upload, download, conditional and range requests as well as delete.
+   *
+   * @throws Exception on error.
+   */
+  @Test
+  public void testServer() throws Exception {
+
+    BlobStoreFsConfigProperties storeConfig = new BlobStoreFsConfigProperties();
+    String directory = System.getProperty(FileUtilLimited.PROPERTY_TMP_DIR) + "/.blobs-server";
+    storeConfig.setDirectory(directory);
+    FileUtilImpl.getInstance().deleteRecursive(new File(directory));
+    BlobStoreImplDeduplicatingFsWithRefCount store = new BlobStoreImplDeduplicatingFsWithRefCount();
+    store.setConfig(storeConfig);
+    store.initialize();
+    BlobHttpServerConfigProperties config = new BlobHttpServerConfigProperties();
+    config.setPort(0);
+    try (BlobHttpServer server = new BlobHttpServer(store)) {
+      server.setConfig(config);
+      server.start();
+
+      // PUT
+      HttpURLConnection connection = open(server, "PUT", "/");
+      connection.setDoOutput(true);
+      connection.setFixedLengthStreamingMode(DATA.length);
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(DATA);
+      }
+      assertThat(connection.getResponseCode()).isEqualTo(201);
+      String location = connection.getHeaderField("Location");
+      String etag = connection.getHeaderField("ETag");
+      assertThat(location).startsWith("/").contains("%23");
+      assertThat(etag).startsWith("\"").endsWith("\"");
+
+      // GET
+      connection = open(server, "GET", location);
+      assertThat(connection.getResponseCode()).isEqualTo(200);
+      assertThat(connection.getHeaderField("ETag")).isEqualTo(etag);
+      assertThat(read(connection)).isEqualTo(DATA);
+
+      // HEAD
+      connection = open(server, "HEAD", location);
+      assertThat(connection.getResponseCode()).isEqualTo(200);
+      assertThat(connection.getContentLengthLong()).isEqualTo(DATA.length);
+
+      // conditional GET
+      connection = open(server, "GET", location);
+      connection.setRequestProperty("If-None-Match", etag);
+      assertThat(connection.getResponseCode()).isEqualTo(304);
+
+      // range GET
+      connection = open(server, "GET", location);
+      connection.setRequestProperty("Range", "bytes=6-9");
+      assertThat(connection.getResponseCode()).isEqualTo(206);
+      assertThat(connection.getHeaderField("Content-Range")).isEqualTo("bytes 6-9/" + DATA.length);
+      assertThat(new String(read(connection), StandardCharsets.UTF_8)).isEqualTo("BLOB");
+      connection = open(server, "GET", location);
+      connection.setRequestProperty("Range", "bytes=-6");
+      assertThat(new String(read(connection), StandardCharsets.UTF_8)).isEqualTo("world!");
+      connection = open(server, "GET", location);
+      connection.setRequestProperty("Range", "bytes=100-");
+      assertThat(connection.getResponseCode()).isEqualTo(416);
+
+      // DELETE
+      connection = open(server, "DELETE", location);
+      assertThat(connection.getResponseCode()).isEqualTo(204);
+      connection = open(server, "GET", location);
+      assertThat(connection.getResponseCode()).isEqualTo(404);
+      connection = open(server, "DELETE", location);
+      assertThat(connection.getResponseCode()).isEqualTo(404);
+
+      // IDs pointing outside of the store
+      for (String method : new String[] { "GET", "DELETE" }) {
+        connection = open(server, method, "/..%2F..%2F..%2Fpwned");
+        assertThat(connection.getResponseCode()).as(method).isEqualTo(400);
+        connection = open(server, method, "/0f1e%23..%2F..");
+        assertThat(connection.getResponseCode()).as(method).isEqualTo(400);
+      }
+      connection = open(server, "PUT", "/..%2F..%2F..%2Fpwned");
+      connection.setDoOutput(true);
+      connection.setFixedLengthStreamingMode(DATA.length);
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(DATA);
+      }
+      assertThat(connection.getResponseCode()).isEqualTo(400);
+      assertThat(new File(directory, "pwned")).doesNotExist();
+      assertThat(new File(directory).getParentFile().toPath().resolve("pwned")).doesNotExist();
+
+      // ID is always assigned by the store
+      connection = open(server, "PUT", location);
+      connection.setDoOutput(true);
+      connection.setFixedLengthStreamingMode(DATA.length);
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(DATA);
+      }
+      assertThat(connection.getResponseCode()).isEqualTo(405);
+    }
+  }
+
+  /**
+   * Test that idle keep-alive connections do not occupy the threads of the server.
+   *
+   * @throws Exception on error.
+   */
+  @Test
+  public void testIdleConnections() throws Exception {
+
+    BlobStoreFsConfigProperties storeConfig = new BlobStoreFsConfigProperties();
+    String directory = System.getProperty(FileUtilLimited.PROPERTY_TMP_DIR) + "/.blobs-server-idle";
+    storeConfig.setDirectory(directory);
+    FileUtilImpl.getInstance().deleteRecursive(new File(directory));
+    BlobStoreImplDeduplicatingFsWithRefCount store = new BlobStoreImplDeduplicatingFsWithRefCount();
+    store.setConfig(storeConfig);
+    store.initialize();
+    BlobHttpServerConfigProperties config = new BlobHttpServerConfigProperties();
+    config.setPort(0);
+    config.setThreads(1);
+    List<Socket> idle = new ArrayList<>();
+    try (BlobHttpServer server = new BlobHttpServer(store)) {
+      server.setConfig(config);
+      server.start();
+      // one connection that has not yet sent a request and one that is kept alive after a request
+      idle.add(new Socket("localhost", server.getPort()));
+      Socket keptAlive = new Socket("localhost", server.getPort());
+      idle.add(keptAlive);
+      keptAlive.setSoTimeout(10000);
+      OutputStream out = keptAlive.getOutputStream();
+      out.write("GET /0f1e HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+      out.flush();
+      byte[] buffer = new byte[12];
+      int count = 0;
+      while (count < buffer.length) {
+        count += keptAlive.getInputStream().read(buffer, count, buffer.length - count);
+      }
+      assertThat(new String(buffer, StandardCharsets.US_ASCII)).isEqualTo("HTTP/1.1 404");
+
+      HttpURLConnection connection = open(server, "GET", "/0f1e");
+      connection.setReadTimeout(5000);
+      assertThat(connection.getResponseCode()).isEqualTo(404);
+    } finally {
+      for (Socket socket : idle) {
+        socket.close();
+      }
+      store.close();
+    }
+  }
+
+  /**
+   * Test of {@link BlobHttpServer#parseRange(String, long)}.
+   */
+  @Test
+  public void testParseRange() {
+
+    assertThat(BlobHttpServer.parseRange("bytes=0-9", 100)).containsExactly(0, 9);
+    assertThat(BlobHttpServer.parseRange("bytes=90-", 100)).containsExactly(90, 99);
+    assertThat(BlobHttpServer.parseRange("bytes=-10", 100)).containsExactly(90, 99);
+    assertThat(BlobHttpServer.parseRange("bytes=50-500", 100)).containsExactly(50, 99);
+    assertThat(BlobHttpServer.parseRange("bytes=-500", 100)).containsExactly(0, 99);
+    assertThat(BlobHttpServer.parseRange("bytes=0-1,5-6", 100)).isNull();
+    assertThat(BlobHttpServer.parseRange("items=0-1", 100)).isNull();
+    assertThat(BlobHttpServer.parseRange("bytes=100-", 100)).isEmpty();
+  }
+
+}